@@ -268,6 +268,18 @@ public abstract class BeanUtils {
 		    Float[].class.equals(clazz) || Double[].class.equals(clazz);
 	}
 
+	/**
+	 * Retrieve the JavaBeans PropertyDescriptors of the given class,
+	 * without creating an instance of it. Uses the same introspection
+	 * cache as BeanWrapperImpl.
+	 * @param clazz the class to introspect
+	 * @return the PropertyDescriptors of the class
+	 * @throws BeansException if introspection failed
+	 */
+	public static PropertyDescriptor[] getPropertyDescriptors(Class clazz) throws BeansException {
+		return CachedIntrospectionResults.forClass(clazz).getBeanInfo().getPropertyDescriptors();
+	}
+
 	/**
 	 * Copy the property values of the given source bean into the target bean.
 	 * @param source source bean
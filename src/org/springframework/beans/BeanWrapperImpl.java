@@ -102,8 +102,8 @@ public class BeanWrapperImpl implements BeanWrapper {
 	/** The nested path of the object */
 	private String nestedPath = "";
 
-	/** Registry for default PropertyEditors */
-	private final Map defaultEditors;
+	/** Registry for default PropertyEditors, shared with nested BeanWrappers */
+	private DefaultEditorHolder defaultEditorHolder;
 
 	/** Map with custom PropertyEditor instances */
 	private Map customEditors;
@@ -127,31 +127,6 @@ public class BeanWrapperImpl implements BeanWrapper {
 	 * @see #setWrappedInstance
 	 */
 	public BeanWrapperImpl() {
-		// Register default editors in this class, for restricted environments.
-		// We're not using the JRE's PropertyEditorManager to avoid potential
-		// SecurityExceptions when running in a SecurityManager.
-		this.defaultEditors = new HashMap(16);
-
-		// Simple editors, without parameterization capabilities.
-		this.defaultEditors.put(byte[].class, new ByteArrayPropertyEditor());
-		this.defaultEditors.put(Class.class, new ClassEditor());
-		this.defaultEditors.put(File.class, new FileEditor());
-		this.defaultEditors.put(InputStream.class, new InputStreamEditor());
-		this.defaultEditors.put(Locale.class, new LocaleEditor());
-		this.defaultEditors.put(Properties.class, new PropertiesEditor());
-		this.defaultEditors.put(String[].class, new StringArrayPropertyEditor());
-		this.defaultEditors.put(URL.class, new URLEditor());
-
-		// Default instances of parameterizable editors.
-		// Can be overridden by registering custom instances of those as custom editors.
-		this.defaultEditors.put(Boolean.class, new CustomBooleanEditor(false));
-		this.defaultEditors.put(Short.class, new CustomNumberEditor(Short.class, false));
-		this.defaultEditors.put(Integer.class, new CustomNumberEditor(Integer.class, false));
-		this.defaultEditors.put(Long.class, new CustomNumberEditor(Long.class, false));
-		this.defaultEditors.put(BigInteger.class, new CustomNumberEditor(BigInteger.class, false));
-		this.defaultEditors.put(Float.class, new CustomNumberEditor(Float.class, false));
-		this.defaultEditors.put(Double.class, new CustomNumberEditor(Double.class, false));
-		this.defaultEditors.put(BigDecimal.class, new CustomNumberEditor(BigDecimal.class, false));
 	}
 
 	/**
@@ -159,7 +134,6 @@ public class BeanWrapperImpl implements BeanWrapper {
 	 * @param object object wrapped by this BeanWrapper
 	 */
 	public BeanWrapperImpl(Object object) {
-		this();
 		setWrappedInstance(object);
 	}
 
@@ -168,7 +142,6 @@ public class BeanWrapperImpl implements BeanWrapper {
 	 * @param clazz class to instantiate and wrap
 	 */
 	public BeanWrapperImpl(Class clazz) {
-		this();
 		setWrappedInstance(BeanUtils.instantiateClass(clazz));
 	}
 
@@ -179,7 +152,6 @@ public class BeanWrapperImpl implements BeanWrapper {
 	 * @param nestedPath the nested path of the object
 	 */
 	public BeanWrapperImpl(Object object, String nestedPath) {
-		this();
 		setWrappedInstance(object, nestedPath);
 	}
 
@@ -191,10 +163,62 @@ public class BeanWrapperImpl implements BeanWrapper {
 	 * @param superBw the containing BeanWrapper (must not be null)
 	 */
 	private BeanWrapperImpl(Object object, String nestedPath, BeanWrapperImpl superBw) {
-		this.defaultEditors = superBw.defaultEditors;
+		this.defaultEditorHolder = superBw.getDefaultEditorHolder();
 		setWrappedInstance(object, nestedPath);
 	}
 
+	/**
+	 * Return the registry of default editors, creating it on first access.
+	 * <p>PropertyEditors are stateful, so each BeanWrapper needs its own
+	 * instances. Creating them lazily avoids the allocations for the
+	 * common case of a BeanWrapper that never needs a default editor,
+	 * like one that just binds String values.
+	 */
+	private Map getDefaultEditors() {
+		return getDefaultEditorHolder().getDefaultEditors();
+	}
+
+	/**
+	 * Return the holder for the default editors, to be shared with nested
+	 * BeanWrappers: The editors get created once on first access by any of
+	 * them, rather than eagerly when creating a nested BeanWrapper.
+	 */
+	private DefaultEditorHolder getDefaultEditorHolder() {
+		if (this.defaultEditorHolder == null) {
+			this.defaultEditorHolder = new DefaultEditorHolder();
+		}
+		return this.defaultEditorHolder;
+	}
+
+	private static Map createDefaultEditors() {
+		// Register default editors in this class, for restricted environments.
+		// We're not using the JRE's PropertyEditorManager to avoid potential
+		// SecurityExceptions when running in a SecurityManager.
+		Map defaultEditors = new HashMap(32);
+
+		// Simple editors, without parameterization capabilities.
+		defaultEditors.put(byte[].class, new ByteArrayPropertyEditor());
+		defaultEditors.put(Class.class, new ClassEditor());
+		defaultEditors.put(File.class, new FileEditor());
+		defaultEditors.put(InputStream.class, new InputStreamEditor());
+		defaultEditors.put(Locale.class, new LocaleEditor());
+		defaultEditors.put(Properties.class, new PropertiesEditor());
+		defaultEditors.put(String[].class, new StringArrayPropertyEditor());
+		defaultEditors.put(URL.class, new URLEditor());
+
+		// Default instances of parameterizable editors.
+		// Can be overridden by registering custom instances of those as custom editors.
+		defaultEditors.put(Boolean.class, new CustomBooleanEditor(false));
+		defaultEditors.put(Short.class, new CustomNumberEditor(Short.class, false));
+		defaultEditors.put(Integer.class, new CustomNumberEditor(Integer.class, false));
+		defaultEditors.put(Long.class, new CustomNumberEditor(Long.class, false));
+		defaultEditors.put(BigInteger.class, new CustomNumberEditor(BigInteger.class, false));
+		defaultEditors.put(Float.class, new CustomNumberEditor(Float.class, false));
+		defaultEditors.put(Double.class, new CustomNumberEditor(Double.class, false));
+		defaultEditors.put(BigDecimal.class, new CustomNumberEditor(BigDecimal.class, false));
+		return defaultEditors;
+	}
+
 
 	//---------------------------------------------------------------------
 	// Implementation of BeanWrapper
@@ -813,7 +837,7 @@ public class BeanWrapperImpl implements BeanWrapper {
 
 				if (pe == null && requiredType != null) {
 					// no custom editor -> check BeanWrapperImpl's default editors
-					pe = (PropertyEditor) this.defaultEditors.get(requiredType);
+					pe = (PropertyEditor) getDefaultEditors().get(requiredType);
 					if (pe == null) {
 						// no BeanWrapper default editor -> check standard JavaBean editors
 						pe = PropertyEditorManager.findEditor(requiredType);
@@ -1038,6 +1062,23 @@ public class BeanWrapperImpl implements BeanWrapper {
 	}
 
 
+	/**
+	 * Holder for the default editors of a BeanWrapper and its nested
+	 * BeanWrappers, creating the editors on first access.
+	 */
+	private static class DefaultEditorHolder {
+
+		private Map defaultEditors;
+
+		private Map getDefaultEditors() {
+			if (this.defaultEditors == null) {
+				this.defaultEditors = createDefaultEditors();
+			}
+			return this.defaultEditors;
+		}
+	}
+
+
 	/**
 	 * Holder for a registered custom editor with property name.
 	 * Keeps the PropertyEditor itself plus the type it was registered for.
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cache.ehcache;
+
+import java.io.IOException;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheException;
+import net.sf.ehcache.Element;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.remoting.support.CachingClientInterceptor;
+
+/**
+ * CachingClientInterceptor that stores the results of remote invocations
+ * in an EHCache, typically obtained via EhCacheFactoryBean. This allows
+ * for sharing the cache configuration and memory limits with other EHCache
+ * usage, and for overflowing to disk.
+ *
+ * <p>The per-method time to live of CachingClientInterceptor applies in
+ * addition to the expiration settings of the cache itself. Results with
+ * non-serializable method arguments or return values will not be cached,
+ * as EHCache requires serializable keys and values.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see #setCache
+ * @see EhCacheFactoryBean
+ */
+public class EhCacheCachingClientInterceptor extends CachingClientInterceptor implements InitializingBean {
+
+	private Cache cache;
+
+	/**
+	 * Set the EHCache to store results in.
+	 * @see EhCacheFactoryBean
+	 */
+	public void setCache(Cache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Return the EHCache to store results in.
+	 */
+	public Cache getCache() {
+		return cache;
+	}
+
+	public void afterPropertiesSet() {
+		if (this.cache == null) {
+			throw new IllegalArgumentException("cache is required");
+		}
+	}
+
+
+	protected CachedResult getCachedResult(CacheKey key) {
+		if (!key.isSerializable()) {
+			return null;
+		}
+		try {
+			Element element = this.cache.get(key);
+			return (element != null ? (CachedResult) element.getValue() : null);
+		}
+		catch (CacheException ex) {
+			logger.warn("Could not retrieve result for [" + key + "] from cache", ex);
+			return null;
+		}
+	}
+
+	protected void putCachedResult(CacheKey key, CachedResult result) {
+		if (key.isSerializable() && result.isSerializable()) {
+			this.cache.put(new Element(key, result));
+		}
+		else if (logger.isDebugEnabled()) {
+			logger.debug("Not caching result for [" + key + "]: arguments or return value not serializable");
+		}
+	}
+
+	public void clear() {
+		try {
+			this.cache.removeAll();
+		}
+		catch (IOException ex) {
+			logger.warn("Could not clear cache", ex);
+		}
+	}
+
+}
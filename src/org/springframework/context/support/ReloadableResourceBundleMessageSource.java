@@ -21,12 +21,18 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Timer;
+import java.util.TimerTask;
 
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.context.ResourceLoaderAware;
 import org.springframework.core.io.DefaultResourceLoader;
 import org.springframework.core.io.Resource;
@@ -58,10 +64,21 @@ import org.springframework.util.StringUtils;
  * <p>This MessageSource can easily be used outside an ApplicationContext: It uses
  * a DefaultResourceLoader as default, getting overridden with the ApplicationContext
  * if running in a context. It does not have any other specific dependencies.
+ *
+ * <p>Messages are resolved against a merged view of all properties files that
+ * apply to a Locale, built once per Locale: A message lookup is a single map
+ * access instead of a walk through the basename and Locale fallback files.
+ * Cache locks are only held for the map access itself, not while loading
+ * files or creating MessageFormats. Note that lookups are not lock-free:
+ * Each one still briefly synchronizes on the cache maps, as concurrent
+ * lookups for the same Locale have to see a consistent merged view.
+ * With "refreshInBackground", changed files are detected by a background
+ * thread instead of on the request threads that access messages.
  * 
  * @author Thomas Achleitner
  * @author Juergen Hoeller
  * @see #setCacheSeconds
+ * @see #setRefreshInBackground
  * @see #setBasenames
  * @see #setDefaultEncoding
  * @see #setFileEncodings
@@ -73,7 +90,7 @@ import org.springframework.util.StringUtils;
  * @see java.util.ResourceBundle
  */
 public class ReloadableResourceBundleMessageSource extends AbstractMessageSource
-    implements ResourceLoaderAware {
+    implements ResourceLoaderAware, DisposableBean {
 
 	private static final String PROPERTIES_SUFFIX = ".properties";
 	
@@ -88,12 +105,30 @@ public class ReloadableResourceBundleMessageSource extends AbstractMessageSource
 
 	private long cacheMillis = -1;
 
+	private boolean refreshInBackground = false;
+
 	/** Cache to hold filename lists per Locale */
 	private final Map cachedFilenames = new HashMap();
 
 	/** Cache to hold already loaded properties per filename */
 	private final Map cachedProperties = new HashMap();
 
+	/** Cache to hold merged properties of all applicable files per Locale */
+	private final Map cachedMergedProperties = new HashMap();
+
+	/**
+	 * Incremented whenever the merged properties get cleared, guarded by
+	 * the cachedMergedProperties monitor: A merge that started before
+	 * must not be cached, as it may contain outdated properties.
+	 */
+	private long mergedPropertiesGeneration = 0;
+
+	/** Monitor for loading properties files and for the refresh timer */
+	private final Object cacheMonitor = new Object();
+
+	/** Timer that refreshes the properties files in the background, if any */
+	private Timer refreshTimer;
+
 	private PropertiesPersister propertiesPersister = new DefaultPropertiesPersister();
 
 	private ResourceLoader resourceLoader = new DefaultResourceLoader();
@@ -184,6 +219,21 @@ public class ReloadableResourceBundleMessageSource extends AbstractMessageSource
 		this.cacheMillis = cacheSeconds * 1000;
 	}
 
+	/**
+	 * Set whether to check the properties files for changes in a background
+	 * thread, every "cacheSeconds", instead of on message access once the
+	 * cache entry for a file has timed out. Default is false.
+	 * <p>With this flag, message lookups never touch the file system after
+	 * initial loading. Only applies to a positive "cacheSeconds" value.
+	 * The background thread is a daemon thread, stopped on <code>destroy</code>.
+	 * @see #setCacheSeconds
+	 * @see #refreshCache
+	 * @see #destroy
+	 */
+	public void setRefreshInBackground(boolean refreshInBackground) {
+		this.refreshInBackground = refreshInBackground;
+	}
+
 	/**
 	 * Set the PropertiesPersister to use for parsing properties files.
 	 * The default is DefaultPropertiesPersister.
@@ -205,20 +255,76 @@ public class ReloadableResourceBundleMessageSource extends AbstractMessageSource
 
 
 	protected MessageFormat resolveCode(String code, Locale locale) {
+		return getMergedProperties(locale).getMessageFormat(code, locale);
+	}
+
+	/**
+	 * Get a PropertiesHolder that contains the merged properties of all
+	 * files that apply to the given Locale, either from the cache or
+	 * freshly merged. Message definitions from files that come first in
+	 * the fallback order override ones from later files.
+	 * <p>A timed-out cache entry gets re-validated against the PropertiesHolders
+	 * of the individual files: It will only be merged again if one of the
+	 * files has actually been reloaded.
+	 * @param locale the locale to merge the properties for
+	 * @return the PropertiesHolder with the merged properties
+	 * @see #calculateAllFilenames
+	 * @see #getProperties
+	 */
+	protected PropertiesHolder getMergedProperties(Locale locale) {
+		PropertiesHolder mergedHolder;
+		long generation;
+		synchronized (this.cachedMergedProperties) {
+			mergedHolder = (PropertiesHolder) this.cachedMergedProperties.get(locale);
+			generation = this.mergedPropertiesGeneration;
+		}
+		if (mergedHolder != null && !isRefreshNecessary(mergedHolder)) {
+			return mergedHolder;
+		}
+		long refreshTimestamp = (this.cacheMillis < 0) ? -1 : System.currentTimeMillis();
+		List sourceHolders = new ArrayList();
 		for (int i = 0; i < this.basenames.length; i++) {
 			List filenames = calculateAllFilenames(this.basenames[i], locale);
 			for (int j = 0; j < filenames.size(); j++) {
-				String filename = (String) filenames.get(j);
-				PropertiesHolder propHolder = getProperties(filename);
-				if (propHolder.getProperties() != null) {
-					MessageFormat result = propHolder.getMessageFormat(code, locale);
-					if (result != null) {
-						return result;
-					}
+				sourceHolders.add(getProperties((String) filenames.get(j)));
+			}
+		}
+		if (mergedHolder != null && sourceHolders.equals(mergedHolder.getSourceHolders())) {
+			// none of the files has been reloaded -> keep merged properties and MessageFormats
+			mergedHolder.setRefreshTimestamp(refreshTimestamp);
+			return mergedHolder;
+		}
+		Properties mergedProps = new Properties();
+		for (int i = sourceHolders.size() - 1; i >= 0; i--) {
+			Properties props = ((PropertiesHolder) sourceHolders.get(i)).getProperties();
+			if (props != null) {
+				for (Enumeration en = props.propertyNames(); en.hasMoreElements();) {
+					String key = (String) en.nextElement();
+					mergedProps.setProperty(key, props.getProperty(key));
 				}
 			}
 		}
-		return null;
+		mergedHolder = new PropertiesHolder(mergedProps, -1);
+		mergedHolder.setSourceHolders(sourceHolders);
+		mergedHolder.setRefreshTimestamp(refreshTimestamp);
+		synchronized (this.cachedMergedProperties) {
+			if (generation == this.mergedPropertiesGeneration) {
+				this.cachedMergedProperties.put(locale, mergedHolder);
+			}
+			// else: cache cleared or refreshed during the merge -> merge again on next access
+		}
+		return mergedHolder;
+	}
+
+	/**
+	 * Determine whether the given cached PropertiesHolder has timed out
+	 * and needs to be re-validated on access.
+	 */
+	private boolean isRefreshNecessary(PropertiesHolder propHolder) {
+		if (propHolder.getRefreshTimestamp() < 0 || (this.refreshInBackground && this.cacheMillis > 0)) {
+			return false;
+		}
+		return (propHolder.getRefreshTimestamp() <= System.currentTimeMillis() - this.cacheMillis);
 	}
 
 	/**
@@ -240,22 +346,23 @@ public class ReloadableResourceBundleMessageSource extends AbstractMessageSource
 					return filenames;
 				}
 			}
-			List filenames = new ArrayList(7);
-			filenames.addAll(calculateFilenamesForLocale(basename, locale));
-			if (this.fallbackToSystemLocale && !locale.equals(Locale.getDefault())) {
-				filenames.addAll(calculateFilenamesForLocale(basename, Locale.getDefault()));
-			}
-			filenames.add(basename);
-			if (localeMap != null) {
-				localeMap.put(locale, filenames);
-			}
-			else {
+		}
+		List filenames = new ArrayList(7);
+		filenames.addAll(calculateFilenamesForLocale(basename, locale));
+		if (this.fallbackToSystemLocale && !locale.equals(Locale.getDefault())) {
+			filenames.addAll(calculateFilenamesForLocale(basename, Locale.getDefault()));
+		}
+		filenames.add(basename);
+		filenames = Collections.unmodifiableList(filenames);
+		synchronized (this.cachedFilenames) {
+			Map localeMap = (Map) this.cachedFilenames.get(basename);
+			if (localeMap == null) {
 				localeMap = new HashMap();
-				localeMap.put(locale, filenames);
 				this.cachedFilenames.put(basename, localeMap);
 			}
-			return filenames;
+			localeMap.put(locale, filenames);
 		}
+		return filenames;
 	}
 
 	/**
@@ -297,16 +404,24 @@ public class ReloadableResourceBundleMessageSource extends AbstractMessageSource
 	 * or freshly loaded.
 	 */
 	protected PropertiesHolder getProperties(String filename) {
-		synchronized (this.cachedProperties) {
-			PropertiesHolder propHolder = (PropertiesHolder) this.cachedProperties.get(filename);
-			if (propHolder != null &&
-					(propHolder.getRefreshTimestamp() < 0 ||
-					 propHolder.getRefreshTimestamp() > System.currentTimeMillis() - this.cacheMillis)) {
+		PropertiesHolder propHolder = getCachedProperties(filename);
+		if (propHolder != null && !isRefreshNecessary(propHolder)) {
+			return propHolder;
+		}
+		synchronized (this.cacheMonitor) {
+			// re-check: another thread might have refreshed the file in the meantime
+			propHolder = getCachedProperties(filename);
+			if (propHolder != null && !isRefreshNecessary(propHolder)) {
 				return propHolder;
 			}
-			else {
-				return refreshProperties(filename, propHolder);
-			}
+			startRefreshTimerIfNecessary();
+			return refreshProperties(filename, propHolder);
+		}
+	}
+
+	private PropertiesHolder getCachedProperties(String filename) {
+		synchronized (this.cachedProperties) {
+			return (PropertiesHolder) this.cachedProperties.get(filename);
 		}
 	}
 
@@ -368,13 +483,73 @@ public class ReloadableResourceBundleMessageSource extends AbstractMessageSource
 				logger.debug("Properties file [" + filename + "] not found for MessageSource: " + ex.getMessage());
 			}
 			// empty holder representing "not found"
-			propHolder = new PropertiesHolder();
+			if (propHolder == null || propHolder.getProperties() != null) {
+				propHolder = new PropertiesHolder();
+			}
 		}
 		propHolder.setRefreshTimestamp(refreshTimestamp);
-		this.cachedProperties.put(filename, propHolder);
+		synchronized (this.cachedProperties) {
+			this.cachedProperties.put(filename, propHolder);
+		}
 		return propHolder;
 	}
 
+	/**
+	 * Re-validate all cached properties files against their last-modified
+	 * timestamps, reloading changed files and re-merging the properties
+	 * of the affected Locales. Called by the background refresh thread.
+	 * <p>Only applies to a non-negative "cacheSeconds" value, as the
+	 * last-modified timestamps are not checked when caching forever.
+	 * @see #setRefreshInBackground
+	 */
+	public void refreshCache() {
+		if (this.cacheMillis < 0) {
+			return;
+		}
+		boolean changed = false;
+		synchronized (this.cacheMonitor) {
+			Map propertiesToRefresh;
+			synchronized (this.cachedProperties) {
+				propertiesToRefresh = new HashMap(this.cachedProperties);
+			}
+			for (Iterator it = propertiesToRefresh.entrySet().iterator(); it.hasNext();) {
+				Map.Entry entry = (Map.Entry) it.next();
+				PropertiesHolder propHolder = (PropertiesHolder) entry.getValue();
+				if (refreshProperties((String) entry.getKey(), propHolder) != propHolder) {
+					changed = true;
+				}
+			}
+			if (changed) {
+				// merged properties will be rebuilt from the refreshed files on next access
+				clearMergedProperties();
+			}
+		}
+		if (changed) {
+			logger.info("Reloaded changed properties files for MessageSource");
+		}
+	}
+
+	/**
+	 * Start the background refresh timer, if configured and not started yet.
+	 * To be called with the cache monitor held.
+	 */
+	private void startRefreshTimerIfNecessary() {
+		if (this.refreshInBackground && this.cacheMillis > 0 && this.refreshTimer == null) {
+			logger.info("Starting background refresh of properties files every " + this.cacheMillis + " ms");
+			this.refreshTimer = new Timer(true);
+			this.refreshTimer.schedule(new TimerTask() {
+				public void run() {
+					try {
+						refreshCache();
+					}
+					catch (RuntimeException ex) {
+						logger.warn("Background refresh of properties files failed", ex);
+					}
+				}
+			}, this.cacheMillis, this.cacheMillis);
+		}
+	}
+
 	/**
 	 * Clear the resource bundle cache.
 	 * Following resolve calls will lead to reloading of the properties files.
@@ -384,6 +559,18 @@ public class ReloadableResourceBundleMessageSource extends AbstractMessageSource
 		synchronized (this.cachedProperties) {
 			this.cachedProperties.clear();
 		}
+		clearMergedProperties();
+	}
+
+	/**
+	 * Clear the merged properties, preventing merges that are
+	 * currently in progress from being cached.
+	 */
+	private void clearMergedProperties() {
+		synchronized (this.cachedMergedProperties) {
+			this.cachedMergedProperties.clear();
+			this.mergedPropertiesGeneration++;
+		}
 	}
 
 	/**
@@ -397,6 +584,19 @@ public class ReloadableResourceBundleMessageSource extends AbstractMessageSource
 		}
 	}
 
+	/**
+	 * Stop the background refresh thread, if any.
+	 */
+	public void destroy() {
+		synchronized (this.cacheMonitor) {
+			if (this.refreshTimer != null) {
+				logger.info("Stopping background refresh of properties files");
+				this.refreshTimer.cancel();
+				this.refreshTimer = null;
+			}
+		}
+	}
+
 	public String toString() {
 		return getClass().getName() + ": basenames=[" + StringUtils.arrayToCommaDelimitedString(this.basenames) + "]";
 	}
@@ -407,6 +607,10 @@ public class ReloadableResourceBundleMessageSource extends AbstractMessageSource
 	 * Stores the last-modified timestamp of the source file for efficient
 	 * change detection, and the timestamp of the last refresh attempt
 	 * (updated every time the cache entry gets re-validated).
+	 * For merged properties, the holders of the individual files
+	 * that the properties have been merged from are kept too.
+	 * MessageFormats get cached per message code and Locale, with the
+	 * cache lock only held for map access, not while parsing messages.
 	 */
 	protected class PropertiesHolder {
 
@@ -416,6 +620,8 @@ public class ReloadableResourceBundleMessageSource extends AbstractMessageSource
 
 		private long refreshTimestamp = -1;
 
+		private List sourceHolders;
+
 		/** Cache to hold already generated MessageFormats per message code */
 		private final Map cachedMessageFormats = new HashMap();
 
@@ -435,15 +641,26 @@ public class ReloadableResourceBundleMessageSource extends AbstractMessageSource
 			return fileTimestamp;
 		}
 
-		protected void setRefreshTimestamp(long refreshTimestamp) {
+		protected synchronized void setRefreshTimestamp(long refreshTimestamp) {
 			this.refreshTimestamp = refreshTimestamp;
 		}
 
-		protected long getRefreshTimestamp() {
+		protected synchronized long getRefreshTimestamp() {
 			return refreshTimestamp;
 		}
 
+		protected void setSourceHolders(List sourceHolders) {
+			this.sourceHolders = sourceHolders;
+		}
+
+		protected List getSourceHolders() {
+			return sourceHolders;
+		}
+
 		protected MessageFormat getMessageFormat(String code, Locale locale) {
+			if (this.properties == null) {
+				return null;
+			}
 			synchronized (this.cachedMessageFormats) {
 				Map localeMap = (Map) this.cachedMessageFormats.get(code);
 				if (localeMap != null) {
@@ -452,18 +669,21 @@ public class ReloadableResourceBundleMessageSource extends AbstractMessageSource
 						return result;
 					}
 				}
-				String msg = this.properties.getProperty(code);
-				if (msg != null) {
-					if (localeMap == null) {
-						localeMap = new HashMap();
-						this.cachedMessageFormats.put(code, localeMap);
-					}
-					MessageFormat result = createMessageFormat(msg, locale);
-					localeMap.put(locale, result);
-					return result;
-				}
+			}
+			String msg = this.properties.getProperty(code);
+			if (msg == null) {
 				return null;
 			}
+			MessageFormat result = createMessageFormat(msg, locale);
+			synchronized (this.cachedMessageFormats) {
+				Map localeMap = (Map) this.cachedMessageFormats.get(code);
+				if (localeMap == null) {
+					localeMap = new HashMap(4);
+					this.cachedMessageFormats.put(code, localeMap);
+				}
+				localeMap.put(locale, result);
+			}
+			return result;
 		}
 	}
 
@@ -32,6 +32,7 @@ import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.core.io.UrlResource;
+import org.springframework.util.CompiledPathPattern;
 import org.springframework.util.PathMatcher;
 import org.springframework.util.StringUtils;
 
@@ -270,14 +271,15 @@ public class PathMatchingResourcePatternResolver implements ResourcePatternResol
 			throw new IOException("Could not retrieve contents of directory [" + dir.getAbsolutePath() + "]");
 		}
 		boolean dirDepthNotFixed = (fullPattern.indexOf("**") != -1);
+		int patternDepth = StringUtils.countOccurrencesOf(fullPattern, "/");
+		CompiledPathPattern compiledPattern = new CompiledPathPattern(fullPattern);
 		for (int i = 0; i < dirContents.length; i++) {
 			String currPath = StringUtils.replace(dirContents[i].getAbsolutePath(), File.separator, "/");
 			if (dirContents[i].isDirectory() &&
-					(dirDepthNotFixed ||
-					StringUtils.countOccurrencesOf(currPath, "/") < StringUtils.countOccurrencesOf(fullPattern, "/"))) {
+					(dirDepthNotFixed || StringUtils.countOccurrencesOf(currPath, "/") < patternDepth)) {
 				doRetrieveMatchingFiles(fullPattern, dirContents[i], result);
 			}
-			if (PathMatcher.match(fullPattern, currPath)) {
+			if (compiledPattern.matches(currPath)) {
 				result.add(dirContents[i]);
 			}
 		}
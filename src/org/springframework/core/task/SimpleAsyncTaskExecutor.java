@@ -0,0 +1,224 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.core.task;
+
+/**
+ * TaskExecutor implementation that fires up a new Thread for each task,
+ * executing it asynchronously.
+ *
+ * <p>Supports limiting concurrent threads through the "concurrencyLimit"
+ * bean property: Once the limit is reached, callers block until a running
+ * task completes. By default, the number of concurrent threads is unlimited.
+ *
+ * <p><b>NOTE: This implementation does not reuse threads!</b> Its threads
+ * are cheap to manage, though, and the concurrency limit keeps the number
+ * of threads bounded. Thread creation overhead is usually negligible
+ * compared to the remote calls and message processing that this executor
+ * is intended for.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see #setConcurrencyLimit
+ * @see SyncTaskExecutor
+ */
+public class SimpleAsyncTaskExecutor implements TaskExecutor {
+
+	/**
+	 * Default thread name prefix: "SimpleAsyncTaskExecutor-".
+	 */
+	public static final String DEFAULT_THREAD_NAME_PREFIX = "SimpleAsyncTaskExecutor-";
+
+	/**
+	 * Value that indicates no concurrency limit: -1.
+	 */
+	public static final int UNBOUNDED_CONCURRENCY = -1;
+
+
+	private String threadNamePrefix = DEFAULT_THREAD_NAME_PREFIX;
+
+	private int threadPriority = Thread.NORM_PRIORITY;
+
+	private boolean daemon = false;
+
+	private int concurrencyLimit = UNBOUNDED_CONCURRENCY;
+
+	private final Object monitor = new Object();
+
+	private int concurrencyCount = 0;
+
+	private int threadCount = 0;
+
+
+	/**
+	 * Create a new SimpleAsyncTaskExecutor with default thread name prefix.
+	 */
+	public SimpleAsyncTaskExecutor() {
+	}
+
+	/**
+	 * Create a new SimpleAsyncTaskExecutor with the given thread name prefix.
+	 * @param threadNamePrefix the prefix to use for the names of newly created threads
+	 */
+	public SimpleAsyncTaskExecutor(String threadNamePrefix) {
+		setThreadNamePrefix(threadNamePrefix);
+	}
+
+	/**
+	 * Specify the prefix to use for the names of newly created threads.
+	 * Default is "SimpleAsyncTaskExecutor-".
+	 */
+	public void setThreadNamePrefix(String threadNamePrefix) {
+		this.threadNamePrefix = (threadNamePrefix != null ? threadNamePrefix : DEFAULT_THREAD_NAME_PREFIX);
+	}
+
+	/**
+	 * Return the thread name prefix to use for the names of newly created threads.
+	 */
+	public String getThreadNamePrefix() {
+		return threadNamePrefix;
+	}
+
+	/**
+	 * Set the priority of the threads that this executor creates.
+	 * Default is 5.
+	 * @see java.lang.Thread#NORM_PRIORITY
+	 */
+	public void setThreadPriority(int threadPriority) {
+		this.threadPriority = threadPriority;
+	}
+
+	/**
+	 * Return the priority of the threads that this executor creates.
+	 */
+	public int getThreadPriority() {
+		return threadPriority;
+	}
+
+	/**
+	 * Set whether this executor should create daemon threads,
+	 * not preventing the VM from shutting down. Default is false.
+	 * @see java.lang.Thread#setDaemon
+	 */
+	public void setDaemon(boolean daemon) {
+		this.daemon = daemon;
+	}
+
+	/**
+	 * Return whether this executor creates daemon threads.
+	 */
+	public boolean isDaemon() {
+		return daemon;
+	}
+
+	/**
+	 * Set the maximum number of parallel task executions allowed.
+	 * Default of -1 indicates no concurrency limit at all.
+	 * <p>Once the limit is reached, <code>execute</code> blocks
+	 * until a running task completes.
+	 * @see #UNBOUNDED_CONCURRENCY
+	 */
+	public void setConcurrencyLimit(int concurrencyLimit) {
+		this.concurrencyLimit = concurrencyLimit;
+	}
+
+	/**
+	 * Return the maximum number of parallel task executions allowed.
+	 */
+	public int getConcurrencyLimit() {
+		return concurrencyLimit;
+	}
+
+	/**
+	 * Return the number of tasks currently executing.
+	 */
+	public int getConcurrencyCount() {
+		synchronized (this.monitor) {
+			return this.concurrencyCount;
+		}
+	}
+
+
+	/**
+	 * Executes the given task in a new thread, blocking while the
+	 * concurrency limit has been reached.
+	 * @throws IllegalStateException if interrupted while waiting for the
+	 * concurrency limit to allow for a new thread
+	 * @see #setConcurrencyLimit
+	 */
+	public void execute(Runnable task) {
+		String threadName;
+		synchronized (this.monitor) {
+			while (this.concurrencyLimit >= 0 && this.concurrencyCount >= this.concurrencyLimit) {
+				try {
+					this.monitor.wait();
+				}
+				catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException(
+							"Thread was interrupted while waiting for the concurrency limit to allow for a new task");
+				}
+			}
+			this.concurrencyCount++;
+			threadName = this.threadNamePrefix + (++this.threadCount);
+		}
+		try {
+			Thread thread = new Thread(new ConcurrencyThrottlingRunnable(task), threadName);
+			thread.setPriority(this.threadPriority);
+			thread.setDaemon(this.daemon);
+			thread.start();
+		}
+		catch (RuntimeException ex) {
+			taskCompleted();
+			throw ex;
+		}
+		catch (Error err) {
+			taskCompleted();
+			throw err;
+		}
+	}
+
+	private void taskCompleted() {
+		synchronized (this.monitor) {
+			this.concurrencyCount--;
+			this.monitor.notify();
+		}
+	}
+
+
+	/**
+	 * Wrapper for a target Runnable that releases
+	 * its concurrency slot after execution.
+	 */
+	private class ConcurrencyThrottlingRunnable implements Runnable {
+
+		private final Runnable target;
+
+		private ConcurrencyThrottlingRunnable(Runnable target) {
+			this.target = target;
+		}
+
+		public void run() {
+			try {
+				this.target.run();
+			}
+			finally {
+				taskCompleted();
+			}
+		}
+	}
+
+}
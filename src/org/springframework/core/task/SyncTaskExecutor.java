@@ -0,0 +1,40 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.core.task;
+
+import java.io.Serializable;
+
+/**
+ * TaskExecutor implementation that executes each task synchronously
+ * in the calling thread. Mainly intended for testing scenarios, and
+ * for switching off asynchronous execution in configuration.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see SimpleAsyncTaskExecutor
+ */
+public class SyncTaskExecutor implements TaskExecutor, Serializable {
+
+	/**
+	 * Executes the given task synchronously, through direct
+	 * invocation of its <code>run</code> method.
+	 */
+	public void execute(Runnable task) {
+		task.run();
+	}
+
+}
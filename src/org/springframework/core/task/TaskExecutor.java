@@ -0,0 +1,42 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.core.task;
+
+/**
+ * Simple task executor interface that abstracts the execution
+ * of a Runnable. Implementations can use all sorts of different
+ * execution strategies, such as synchronous or asynchronous.
+ *
+ * <p>Mirrors the execute method of the Executor interface that
+ * JDK 1.5 introduces, for use on JDK 1.3 and 1.4 as well.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see SyncTaskExecutor
+ * @see SimpleAsyncTaskExecutor
+ */
+public interface TaskExecutor {
+
+	/**
+	 * Execute the given task. The call might return immediately if the
+	 * executor uses an asynchronous execution strategy, or might block
+	 * in the case of synchronous execution.
+	 * @param task the Runnable to execute
+	 */
+	void execute(Runnable task);
+
+}
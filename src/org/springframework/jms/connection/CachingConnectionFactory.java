@@ -0,0 +1,607 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jms.connection;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.QueueConnection;
+import javax.jms.QueueSender;
+import javax.jms.QueueSession;
+import javax.jms.Session;
+import javax.jms.TemporaryQueue;
+import javax.jms.TemporaryTopic;
+import javax.jms.TopicConnection;
+import javax.jms.TopicPublisher;
+import javax.jms.TopicSession;
+
+import org.springframework.jms.support.JmsUtils;
+
+/**
+ * SingleConnectionFactory subclass that additionally caches JMS Sessions
+ * and MessageProducers. Sessions are kept in a pool per session mode and
+ * handed out to one caller at a time: Closing a Session returns it to the
+ * pool instead of physically closing it, and closing a MessageProducer
+ * obtained from such a Session is ignored.
+ *
+ * <p>This avoids the overhead of creating a Session and a MessageProducer
+ * for every JmsTemplate operation, which usually dominates the cost of
+ * sending a message. Each cached Session keeps one MessageProducer per
+ * destination, as determined by the provider's Destination equality, up
+ * to the "producerCacheSize". Producers for temporary destinations, for
+ * example reply queues, are not cached, as they are typically only used
+ * for a single request.
+ *
+ * <p>The "sessionCacheSize" determines how many idle Sessions are kept per
+ * session mode: Further Sessions that are closed will be physically closed.
+ * It should match the number of threads that concurrently use this factory.
+ * Sessions that encountered a JMSException will be closed instead of being
+ * returned to the pool. Closing a transacted Session that has uncommitted
+ * work will roll it back, and closing a CLIENT_ACKNOWLEDGE Session that has
+ * been used for receiving will recover it, so that unacknowledged messages
+ * get redelivered: This preserves standard JMS close semantics.
+ *
+ * <p>Note that MessageConsumers are not cached: They will be closed when
+ * their Session gets returned to the pool. Changes to the delivery settings
+ * of a cached MessageProducer, for example the delivery mode, will affect
+ * subsequent users of the same producer: Prefer JmsTemplate's explicit QoS
+ * settings, which are applied per send call.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see #setSessionCacheSize
+ * @see org.springframework.jms.core.JmsTemplate
+ */
+public class CachingConnectionFactory extends SingleConnectionFactory {
+
+	/**
+	 * Default number of idle Sessions to cache per session mode: 1.
+	 */
+	public static final int DEFAULT_SESSION_CACHE_SIZE = 1;
+
+	/**
+	 * Default number of MessageProducers to cache per Session: 32.
+	 */
+	public static final int DEFAULT_PRODUCER_CACHE_SIZE = 32;
+
+
+	private int sessionCacheSize = DEFAULT_SESSION_CACHE_SIZE;
+
+	private int producerCacheSize = DEFAULT_PRODUCER_CACHE_SIZE;
+
+	private boolean cacheProducers = true;
+
+	/** Whether Sessions may be returned to the cache, guarded by cachedSessions */
+	private boolean active = true;
+
+	/** Session mode key -> LinkedList of idle Session proxies */
+	private final Map cachedSessions = new HashMap();
+
+
+	/**
+	 * Create a new CachingConnectionFactory for bean-style usage.
+	 * @see #setTargetConnectionFactory
+	 */
+	public CachingConnectionFactory() {
+		super();
+	}
+
+	/**
+	 * Create a new CachingConnectionFactory that caches Sessions
+	 * for a single Connection that it will lazily create via the
+	 * given target ConnectionFactory.
+	 * @param targetConnectionFactory the target ConnectionFactory
+	 */
+	public CachingConnectionFactory(ConnectionFactory targetConnectionFactory) {
+		super(targetConnectionFactory);
+	}
+
+	/**
+	 * Set the maximum number of idle Sessions to cache per session mode
+	 * (transacted or acknowledgement mode). Default is 1.
+	 * <p>Set this to the number of threads that concurrently send messages,
+	 * to avoid Sessions being physically closed when returned to the cache.
+	 */
+	public void setSessionCacheSize(int sessionCacheSize) {
+		if (sessionCacheSize < 1) {
+			throw new IllegalArgumentException("sessionCacheSize must be at least 1");
+		}
+		this.sessionCacheSize = sessionCacheSize;
+	}
+
+	/**
+	 * Return the maximum number of idle Sessions to cache per session mode.
+	 */
+	public int getSessionCacheSize() {
+		return sessionCacheSize;
+	}
+
+	/**
+	 * Set whether to cache a MessageProducer per destination for each
+	 * cached Session. Default is true.
+	 */
+	public void setCacheProducers(boolean cacheProducers) {
+		this.cacheProducers = cacheProducers;
+	}
+
+	/**
+	 * Return whether to cache a MessageProducer per destination for each
+	 * cached Session.
+	 */
+	public boolean isCacheProducers() {
+		return cacheProducers;
+	}
+
+	/**
+	 * Set the maximum number of MessageProducers to cache per Session.
+	 * Default is 32. Once the limit is reached, producers for further
+	 * destinations are created for each use, and closed by their users.
+	 * <p>The limit also protects against unbounded growth with providers
+	 * whose Destination objects do not implement equality.
+	 */
+	public void setProducerCacheSize(int producerCacheSize) {
+		if (producerCacheSize < 1) {
+			throw new IllegalArgumentException("producerCacheSize must be at least 1");
+		}
+		this.producerCacheSize = producerCacheSize;
+	}
+
+	/**
+	 * Return the maximum number of MessageProducers to cache per Session.
+	 */
+	public int getProducerCacheSize() {
+		return producerCacheSize;
+	}
+
+	/**
+	 * Return the number of idle Sessions currently held in the cache.
+	 */
+	public int getCachedSessionCount() {
+		int count = 0;
+		synchronized (this.cachedSessions) {
+			for (Iterator it = this.cachedSessions.values().iterator(); it.hasNext();) {
+				LinkedList sessionList = (LinkedList) it.next();
+				synchronized (sessionList) {
+					count += sessionList.size();
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Physically close all idle Sessions in the cache, for example after a
+	 * failure of the underlying Connection. Sessions currently in use will
+	 * be returned to the cache when closed.
+	 */
+	public void resetCache() {
+		List sessionsToClose = new ArrayList();
+		synchronized (this.cachedSessions) {
+			for (Iterator it = this.cachedSessions.values().iterator(); it.hasNext();) {
+				LinkedList sessionList = (LinkedList) it.next();
+				synchronized (sessionList) {
+					sessionsToClose.addAll(sessionList);
+					sessionList.clear();
+				}
+			}
+		}
+		for (Iterator it = sessionsToClose.iterator(); it.hasNext();) {
+			CachedSessionInvocationHandler handler =
+					(CachedSessionInvocationHandler) Proxy.getInvocationHandler(it.next());
+			handler.physicalClose();
+		}
+	}
+
+	/**
+	 * Close all cached Sessions and the underlying Connection.
+	 * Sessions currently in use will be physically closed when closed.
+	 */
+	public void destroy() throws JMSException {
+		synchronized (this.cachedSessions) {
+			this.active = false;
+		}
+		resetCache();
+		super.destroy();
+	}
+
+
+	/**
+	 * Wrap the given Connection with a proxy that suppresses close calls
+	 * and returns cached Sessions on <code>createSession</code> calls.
+	 * @param target the original Connection to wrap
+	 * @return the wrapped Connection
+	 */
+	protected Connection getCloseSuppressingConnectionProxy(Connection target) {
+		List classes = new ArrayList(3);
+		classes.add(Connection.class);
+		if (target instanceof QueueConnection) {
+			classes.add(QueueConnection.class);
+		}
+		if (target instanceof TopicConnection) {
+			classes.add(TopicConnection.class);
+		}
+		return (Connection) Proxy.newProxyInstance(
+				Connection.class.getClassLoader(),
+				(Class[]) classes.toArray(new Class[classes.size()]),
+				new CachingConnectionInvocationHandler(target));
+	}
+
+	/**
+	 * Check out an idle Session for the given mode from the cache,
+	 * or create a new Session via the given method of the target Connection.
+	 */
+	private Session getSession(Connection target, Method method, Object[] args) throws Throwable {
+		boolean transacted = ((Boolean) args[0]).booleanValue();
+		int mode = (transacted ? Session.SESSION_TRANSACTED : ((Integer) args[1]).intValue());
+		String key = method.getName() + ":" + mode;
+		LinkedList sessionList;
+		synchronized (this.cachedSessions) {
+			sessionList = (LinkedList) this.cachedSessions.get(key);
+			if (sessionList == null) {
+				sessionList = new LinkedList();
+				this.cachedSessions.put(key, sessionList);
+			}
+		}
+		synchronized (sessionList) {
+			if (!sessionList.isEmpty()) {
+				Session session = (Session) sessionList.removeFirst();
+				if (logger.isDebugEnabled()) {
+					logger.debug("Found cached JMS Session for mode " + mode + ": " + session);
+				}
+				((CachedSessionInvocationHandler) Proxy.getInvocationHandler(session)).checkedOut();
+				return session;
+			}
+		}
+		Session targetSession = (Session) invokeTarget(target, method, args);
+		if (logger.isDebugEnabled()) {
+			logger.debug("Creating cached JMS Session for mode " + mode + ": " + targetSession);
+		}
+		return getCachedSessionProxy(targetSession, sessionList);
+	}
+
+	/**
+	 * Wrap the given Session with a proxy that returns it to the given
+	 * Session list on <code>close</code> and caches its MessageProducers.
+	 * @param target the original Session to wrap
+	 * @param sessionList the list of idle Sessions to return the Session to
+	 * @return the wrapped Session
+	 */
+	protected Session getCachedSessionProxy(Session target, LinkedList sessionList) {
+		List classes = new ArrayList(3);
+		classes.add(Session.class);
+		if (target instanceof QueueSession) {
+			classes.add(QueueSession.class);
+		}
+		if (target instanceof TopicSession) {
+			classes.add(TopicSession.class);
+		}
+		return (Session) Proxy.newProxyInstance(
+				Session.class.getClassLoader(),
+				(Class[]) classes.toArray(new Class[classes.size()]),
+				new CachedSessionInvocationHandler(target, sessionList));
+	}
+
+	private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		}
+		catch (InvocationTargetException ex) {
+			throw ex.getTargetException();
+		}
+	}
+
+
+	/**
+	 * Invocation handler for the shared Connection: suppresses close calls
+	 * and delegates Session creation to the Session cache.
+	 */
+	private class CachingConnectionInvocationHandler implements InvocationHandler {
+
+		private final Connection target;
+
+		private CachingConnectionInvocationHandler(Connection target) {
+			this.target = target;
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String methodName = method.getName();
+			if (methodName.equals("close")) {
+				// don't pass the call on
+				return null;
+			}
+			else if ((methodName.equals("createSession") || methodName.equals("createQueueSession") ||
+					methodName.equals("createTopicSession")) && args.length == 2) {
+				return getSession(this.target, method, args);
+			}
+			return invokeTarget(this.target, method, args);
+		}
+	}
+
+
+	/**
+	 * Invocation handler for a cached Session: returns the Session to the
+	 * cache on close, caches its MessageProducers and keeps track of whether
+	 * it has uncommitted work or has failed. Rejects use of the Session
+	 * between close and the next checkout from the cache.
+	 */
+	private class CachedSessionInvocationHandler implements InvocationHandler {
+
+		private final Session target;
+
+		private final LinkedList sessionList;
+
+		/** Producer creation method name -> Map of Destination -> MessageProducer proxy */
+		private final Map cachedProducers = new HashMap();
+
+		private int cachedProducerCount = 0;
+
+		private final List consumers = new LinkedList();
+
+		private boolean transactionOpen = false;
+
+		private boolean failed = false;
+
+		/** Whether the current holder has closed the Session, guarded by this handler */
+		private boolean closed = false;
+
+		private CachedSessionInvocationHandler(Session target, LinkedList sessionList) {
+			this.target = target;
+			this.sessionList = sessionList;
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String methodName = method.getName();
+			if (methodName.equals("equals")) {
+				// only consider equal when proxies are identical
+				return (proxy == args[0] ? Boolean.TRUE : Boolean.FALSE);
+			}
+			else if (methodName.equals("hashCode")) {
+				return new Integer(System.identityHashCode(proxy));
+			}
+			else if (methodName.equals("toString")) {
+				return "Cached JMS Session: " + this.target;
+			}
+			else if (methodName.equals("close")) {
+				// ignore repeated close calls by the same holder
+				if (markClosed()) {
+					logicalClose(proxy);
+				}
+				return null;
+			}
+			checkNotClosed();
+			try {
+				if ((methodName.equals("createProducer") || methodName.equals("createSender") ||
+						methodName.equals("createPublisher")) && cacheProducers) {
+					// sends will be tracked by the cached producer
+					Object producer = getCachedProducer(method, args);
+					if (producer != null) {
+						return producer;
+					}
+				}
+				Object result = invokeTarget(this.target, method, args);
+				if (methodName.equals("commit") || methodName.equals("rollback")) {
+					this.transactionOpen = false;
+				}
+				else if (result instanceof MessageConsumer) {
+					this.consumers.add(result);
+					this.transactionOpen = true;
+				}
+				else if (result instanceof MessageProducer) {
+					this.transactionOpen = true;
+				}
+				return result;
+			}
+			catch (JMSException ex) {
+				this.failed = true;
+				throw ex;
+			}
+		}
+
+		/**
+		 * Reopen the Session for a new holder, on checkout from the cache.
+		 */
+		private synchronized void checkedOut() {
+			this.closed = false;
+		}
+
+		/**
+		 * Mark the Session as closed by the current holder.
+		 * @return whether the Session has been open before
+		 */
+		private synchronized boolean markClosed() {
+			boolean wasOpen = !this.closed;
+			this.closed = true;
+			return wasOpen;
+		}
+
+		private synchronized void checkNotClosed() throws JMSException {
+			if (this.closed) {
+				throw new javax.jms.IllegalStateException("Cached JMS Session has been closed");
+			}
+		}
+
+		/**
+		 * Return the cached producer for the given creation method and destination,
+		 * creating it if necessary.
+		 * @return the producer proxy, or null if the producer should not be cached
+		 */
+		private Object getCachedProducer(Method method, Object[] args) throws Throwable {
+			if (args[0] instanceof TemporaryQueue || args[0] instanceof TemporaryTopic) {
+				return null;
+			}
+			Map producers = (Map) this.cachedProducers.get(method.getName());
+			if (producers == null) {
+				producers = new HashMap();
+				this.cachedProducers.put(method.getName(), producers);
+			}
+			// null key for an unidentified producer
+			Object producer = producers.get(args[0]);
+			if (producer == null) {
+				if (this.cachedProducerCount >= producerCacheSize) {
+					return null;
+				}
+				producer = getCachedProducerProxy((MessageProducer) invokeTarget(this.target, method, args));
+				producers.put(args[0], producer);
+				this.cachedProducerCount++;
+			}
+			return producer;
+		}
+
+		private MessageProducer getCachedProducerProxy(MessageProducer target) {
+			List classes = new ArrayList(3);
+			classes.add(MessageProducer.class);
+			if (target instanceof QueueSender) {
+				classes.add(QueueSender.class);
+			}
+			if (target instanceof TopicPublisher) {
+				classes.add(TopicPublisher.class);
+			}
+			return (MessageProducer) Proxy.newProxyInstance(
+					MessageProducer.class.getClassLoader(),
+					(Class[]) classes.toArray(new Class[classes.size()]),
+					new CachedProducerInvocationHandler(target, this));
+		}
+
+		private void logicalClose(Object proxy) throws JMSException {
+			boolean consumed = !this.consumers.isEmpty();
+			for (Iterator it = this.consumers.iterator(); it.hasNext();) {
+				JmsUtils.closeMessageConsumer((MessageConsumer) it.next());
+			}
+			this.consumers.clear();
+			if (!this.failed && this.transactionOpen && this.target.getTransacted()) {
+				// preserve rollback-on-close semantics
+				this.transactionOpen = false;
+				try {
+					this.target.rollback();
+				}
+				catch (JMSException ex) {
+					this.failed = true;
+					throw ex;
+				}
+			}
+			else if (!this.failed && consumed && !this.target.getTransacted() &&
+					this.target.getAcknowledgeMode() == Session.CLIENT_ACKNOWLEDGE) {
+				// unacknowledged messages must be redelivered rather than be
+				// acknowledged by the next user of this Session
+				try {
+					this.target.recover();
+				}
+				catch (JMSException ex) {
+					this.failed = true;
+					throw ex;
+				}
+			}
+			if (!this.failed) {
+				// check and return under the cache lock, so that resetCache on destroy
+				// cannot miss a Session that is being returned concurrently
+				synchronized (cachedSessions) {
+					if (active) {
+						synchronized (this.sessionList) {
+							if (this.sessionList.size() < sessionCacheSize) {
+								this.sessionList.addLast(proxy);
+								return;
+							}
+						}
+					}
+				}
+			}
+			physicalClose();
+		}
+
+		private void physicalClose() {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Closing cached JMS Session: " + this.target);
+			}
+			for (Iterator it = this.cachedProducers.values().iterator(); it.hasNext();) {
+				Map producers = (Map) it.next();
+				for (Iterator it2 = producers.values().iterator(); it2.hasNext();) {
+					CachedProducerInvocationHandler handler =
+							(CachedProducerInvocationHandler) Proxy.getInvocationHandler(it2.next());
+					handler.physicalClose();
+				}
+			}
+			this.cachedProducers.clear();
+			this.cachedProducerCount = 0;
+			JmsUtils.closeSession(this.target);
+		}
+	}
+
+
+	/**
+	 * Invocation handler for a cached MessageProducer: ignores close calls
+	 * and reports sends and failures to the Session's handler.
+	 */
+	private static class CachedProducerInvocationHandler implements InvocationHandler {
+
+		private final MessageProducer target;
+
+		private final CachedSessionInvocationHandler sessionHandler;
+
+		private CachedProducerInvocationHandler(MessageProducer target, CachedSessionInvocationHandler sessionHandler) {
+			this.target = target;
+			this.sessionHandler = sessionHandler;
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String methodName = method.getName();
+			if (methodName.equals("close")) {
+				// don't pass the call on
+				return null;
+			}
+			else if (methodName.equals("equals")) {
+				return (proxy == args[0] ? Boolean.TRUE : Boolean.FALSE);
+			}
+			else if (methodName.equals("hashCode")) {
+				return new Integer(System.identityHashCode(proxy));
+			}
+			this.sessionHandler.checkNotClosed();
+			try {
+				if (methodName.equals("send") || methodName.equals("publish")) {
+					this.sessionHandler.transactionOpen = true;
+				}
+				return invokeTarget(this.target, method, args);
+			}
+			catch (JMSException ex) {
+				this.sessionHandler.failed = true;
+				throw ex;
+			}
+		}
+
+		private void physicalClose() {
+			try {
+				this.target.close();
+			}
+			catch (JMSException ex) {
+				// ignore: the Session will be closed anyway
+			}
+		}
+	}
+
+}
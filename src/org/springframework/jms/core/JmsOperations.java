@@ -16,6 +16,8 @@
 
 package org.springframework.jms.core;
 
+import java.util.Collection;
+
 import javax.jms.Destination;
 import javax.jms.Message;
 
@@ -88,6 +90,36 @@ public interface JmsOperations {
 	 */
 	void send(String destinationName, MessageCreator messageCreator) throws JmsException;
 
+	/**
+	 * Send a batch of messages to the default destination, using a single
+	 * Session and MessageProducer.
+	 * <p>This will only work with a default destination specified!
+	 * @param messageCreators MessageCreator callbacks to create the messages
+	 * @throws JmsException checked JMSException converted to unchecked
+	 */
+	void sendBatch(Collection messageCreators) throws JmsException;
+
+	/**
+	 * Send a batch of messages to the specified destination, using a single
+	 * Session and MessageProducer. A transacted Session will be committed
+	 * according to the batch size of the implementation.
+	 * @param destination the destination to send the messages to
+	 * @param messageCreators MessageCreator callbacks to create the messages
+	 * @throws JmsException checked JMSException converted to unchecked
+	 */
+	void sendBatch(Destination destination, Collection messageCreators) throws JmsException;
+
+	/**
+	 * Send a batch of messages to the specified destination, using a single
+	 * Session and MessageProducer. A transacted Session will be committed
+	 * according to the batch size of the implementation.
+	 * @param destinationName the name of the destination to send the messages to
+	 * (to be resolved to an actual destination by a DestinationResolver)
+	 * @param messageCreators MessageCreator callbacks to create the messages
+	 * @throws JmsException checked JMSException converted to unchecked
+	 */
+	void sendBatch(String destinationName, Collection messageCreators) throws JmsException;
+
 
 	/**
 	 * Send the given object to the default destination, converting the object
@@ -154,6 +186,37 @@ public interface JmsOperations {
 	void convertAndSend(String destinationName, Object message, MessagePostProcessor postProcessor)
 	    throws JmsException;
 
+	/**
+	 * Send the given objects to the default destination, converting each object
+	 * to a JMS message with a configured MessageConverter. Uses a single Session
+	 * and MessageProducer for the entire batch.
+	 * <p>This will only work with a default destination specified!
+	 * @param messages the objects to convert to messages
+	 * @throws JmsException checked JMSException converted to unchecked
+	 */
+	void convertAndSendBatch(Collection messages) throws JmsException;
+
+	/**
+	 * Send the given objects to the specified destination, converting each object
+	 * to a JMS message with a configured MessageConverter. Uses a single Session
+	 * and MessageProducer for the entire batch.
+	 * @param destination the destination to send the messages to
+	 * @param messages the objects to convert to messages
+	 * @throws JmsException checked JMSException converted to unchecked
+	 */
+	void convertAndSendBatch(Destination destination, Collection messages) throws JmsException;
+
+	/**
+	 * Send the given objects to the specified destination, converting each object
+	 * to a JMS message with a configured MessageConverter. Uses a single Session
+	 * and MessageProducer for the entire batch.
+	 * @param destinationName the name of the destination to send the messages to
+	 * (to be resolved to an actual destination by a DestinationResolver)
+	 * @param messages the objects to convert to messages
+	 * @throws JmsException checked JMSException converted to unchecked
+	 */
+	void convertAndSendBatch(String destinationName, Collection messages) throws JmsException;
+
 
 	/**
 	 * Receive a message synchronously from the default destination, but only
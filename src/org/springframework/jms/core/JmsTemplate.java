@@ -16,6 +16,11 @@
 
 package org.springframework.jms.core;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
 import javax.jms.Connection;
 import javax.jms.ConnectionFactory;
 import javax.jms.Destination;
@@ -126,6 +131,11 @@ public class JmsTemplate implements JmsOperations, InitializingBean {
 	 */
 	private long receiveTimeout = DEFAULT_RECEIVE_TIMEOUT;
 
+	/**
+	 * The number of messages per commit for batch send operations.
+	 */
+	private int batchSize = 0;
+
 
 	/**
 	 * Use the default or explicit QOS parameters.
@@ -348,6 +358,26 @@ public class JmsTemplate implements JmsOperations, InitializingBean {
 		return receiveTimeout;
 	}
 
+	/**
+	 * Set the number of messages to send per commit in batch send operations,
+	 * if the template's Session is transacted. Default is 0, which means a
+	 * single commit after all messages of a batch have been sent.
+	 * <p>Not relevant within an active transaction, which will be committed
+	 * by the transaction manager.
+	 * @see #sendBatch(Destination, java.util.Collection)
+	 * @see #setSessionTransacted
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Return the number of messages to send per commit in batch send operations.
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
 
 	/**
 	 * Set if the QOS values (deliveryMode, priority, timeToLive)
@@ -613,6 +643,67 @@ public class JmsTemplate implements JmsOperations, InitializingBean {
 		}
 	}
 
+	public void sendBatch(Collection messageCreators) throws JmsException {
+		if (getDefaultDestination() == null) {
+			throw new IllegalStateException("No defaultDestination specified. Check configuration of JmsTemplate.");
+		}
+		sendBatch(getDefaultDestination(), messageCreators);
+	}
+
+	public void sendBatch(final Destination destination, final Collection messageCreators) throws JmsException {
+		execute(new SessionCallback() {
+			public Object doInJms(Session session) throws JMSException {
+				doSendBatch(session, destination, messageCreators);
+				return null;
+			}
+		});
+	}
+
+	public void sendBatch(final String destinationName, final Collection messageCreators) throws JmsException {
+		execute(new SessionCallback() {
+			public Object doInJms(Session session) throws JMSException {
+				Destination destination = resolveDestinationName(session, destinationName);
+				doSendBatch(session, destination, messageCreators);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Send the messages created by the given MessageCreators with a single
+	 * MessageProducer, committing a transacted Session created by this
+	 * template after every "batchSize" messages and after the last message.
+	 * @param session the JMS Session to send with
+	 * @param destination the destination to send to
+	 * @param messageCreators the MessageCreators for the messages to send
+	 * @throws JMSException if thrown by JMS API methods
+	 * @see #setBatchSize
+	 */
+	protected void doSendBatch(Session session, Destination destination, Collection messageCreators)
+			throws JMSException {
+		MessageProducer producer = createProducer(session, destination);
+		// transacted session created by this template -> commit
+		boolean commit = (session.getTransacted() &&
+				!TransactionSynchronizationManager.hasResource(getConnectionFactory()));
+		int uncommitted = 0;
+		for (Iterator it = messageCreators.iterator(); it.hasNext();) {
+			MessageCreator messageCreator = (MessageCreator) it.next();
+			Message message = messageCreator.createMessage(session);
+			if (logger.isDebugEnabled()) {
+				logger.debug("Sending created message [" + message + "]");
+			}
+			doSend(producer, message);
+			uncommitted++;
+			if (commit && uncommitted == getBatchSize()) {
+				session.commit();
+				uncommitted = 0;
+			}
+		}
+		if (commit && uncommitted > 0) {
+			session.commit();
+		}
+	}
+
 	protected void doSend(MessageProducer producer, Message message) throws JMSException {
 		if (isExplicitQosEnabled()) {
 			producer.send(message, getDeliveryMode(), getPriority(), getTimeToLive());
@@ -686,6 +777,45 @@ public class JmsTemplate implements JmsOperations, InitializingBean {
 	}
 
 
+	public void convertAndSendBatch(Collection messages) throws JmsException {
+		if (getDefaultDestination() == null) {
+			throw new IllegalStateException("No defaultDestination specified. Check configuration of JmsTemplate.");
+		}
+		convertAndSendBatch(getDefaultDestination(), messages);
+	}
+
+	public void convertAndSendBatch(Destination destination, Collection messages) throws JmsException {
+		if (getMessageConverter() == null) {
+			throw new IllegalStateException("No MessageConverter registered. Check configuration of JmsTemplate.");
+		}
+		sendBatch(destination, getConvertingMessageCreators(messages));
+	}
+
+	public void convertAndSendBatch(String destinationName, Collection messages) throws JmsException {
+		if (getMessageConverter() == null) {
+			throw new IllegalStateException("No MessageConverter registered. Check configuration of JmsTemplate.");
+		}
+		sendBatch(destinationName, getConvertingMessageCreators(messages));
+	}
+
+	/**
+	 * Create MessageCreators that convert the given objects
+	 * to JMS messages with the configured MessageConverter.
+	 */
+	private List getConvertingMessageCreators(Collection messages) {
+		List messageCreators = new ArrayList(messages.size());
+		for (Iterator it = messages.iterator(); it.hasNext();) {
+			final Object message = it.next();
+			messageCreators.add(new MessageCreator() {
+				public Message createMessage(Session session) throws JMSException {
+					return getMessageConverter().toMessage(message, session);
+				}
+			});
+		}
+		return messageCreators;
+	}
+
+
 	public Message receive() throws JmsException {
 		if (getDefaultDestination() == null) {
 			throw new IllegalStateException("No defaultDestination specified. Check configuration of JmsTemplate.");
@@ -0,0 +1,923 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jms.listener;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageListener;
+import javax.jms.Session;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.BeanNameAware;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.Constants;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.jms.JmsException;
+import org.springframework.jms.connection.ConnectionHolder;
+import org.springframework.jms.support.JmsUtils;
+import org.springframework.jms.support.destination.DestinationResolver;
+import org.springframework.jms.support.destination.DynamicDestinationResolver;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Message listener container that dispatches messages from a JMS destination
+ * to a plain JMS MessageListener, using a number of concurrent consumer tasks
+ * that loop on synchronous <code>receive</code> calls. Requires a JMS 1.1
+ * provider, as it builds on the domain-independent API.
+ *
+ * <p>All consumers share a single JMS Connection. Without a transaction
+ * manager, each consumer task keeps its JMS Session and MessageConsumer
+ * for its entire lifetime, avoiding the cost of creating them per message.
+ * A transacted Session (see "sessionTransacted") will be committed after
+ * each successfully processed message, and rolled back if the listener
+ * throws an exception, so that the message will be redelivered.
+ *
+ * <p>Alternatively, messages can be received within transactions driven by
+ * a Spring PlatformTransactionManager, typically a JmsTransactionManager
+ * for the same ConnectionFactory. Each receive operation will then use the
+ * transactional Session bound to the thread, with a MessageConsumer that
+ * lives for the duration of the transaction. Other transactional resources
+ * accessed by the listener, for example via JmsTemplate, will participate.
+ * As JmsTransactionManager obtains a Connection and Session per transaction,
+ * its ConnectionFactory should be a CachingConnectionFactory or a
+ * SingleConnectionFactory, to avoid a physical connection per receive attempt.
+ *
+ * <p>The number of consumers scales between "concurrentConsumers" and
+ * "maxConcurrentConsumers": An additional consumer will be scheduled when
+ * a consumer received a message while no other consumer was waiting for one,
+ * and surplus consumers will shut down after "idleReceiveLimit" receive
+ * attempts in a row that did not return a message.
+ *
+ * <p>Received and failed message counts as well as the overall throughput
+ * are available as bean properties, for example for exposure via JMX.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see #setSessionTransacted
+ * @see #setTransactionManager
+ * @see #setConcurrentConsumers
+ * @see #setMaxConcurrentConsumers
+ * @see org.springframework.jms.connection.JmsTransactionManager
+ * @see org.springframework.jms.connection.SingleConnectionFactory
+ * @see org.springframework.jms.connection.CachingConnectionFactory
+ */
+public class MessageListenerContainer implements InitializingBean, DisposableBean, BeanNameAware {
+
+	/**
+	 * Default timeout for each receive attempt: 1000 ms.
+	 */
+	public static final long DEFAULT_RECEIVE_TIMEOUT = 1000;
+
+	/**
+	 * Default interval between attempts to recover from a JMS failure: 5000 ms.
+	 */
+	public static final long DEFAULT_RECOVERY_INTERVAL = 5000;
+
+	/**
+	 * Default number of empty receives in a row after which
+	 * a surplus consumer will shut down: 5.
+	 */
+	public static final int DEFAULT_IDLE_RECEIVE_LIMIT = 5;
+
+	/** Constants instance for javax.jms.Session */
+	private static final Constants constants = new Constants(Session.class);
+
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	private ConnectionFactory connectionFactory;
+
+	private Destination destination;
+
+	private String destinationName;
+
+	private DestinationResolver destinationResolver = new DynamicDestinationResolver();
+
+	private boolean pubSubDomain = false;
+
+	private String messageSelector;
+
+	private MessageListener messageListener;
+
+	private boolean sessionTransacted = false;
+
+	private int sessionAcknowledgeMode = Session.AUTO_ACKNOWLEDGE;
+
+	private PlatformTransactionManager transactionManager;
+
+	private DefaultTransactionDefinition transactionDefinition = new DefaultTransactionDefinition();
+
+	private int concurrentConsumers = 1;
+
+	private int maxConcurrentConsumers = 1;
+
+	private int idleReceiveLimit = DEFAULT_IDLE_RECEIVE_LIMIT;
+
+	private long receiveTimeout = DEFAULT_RECEIVE_TIMEOUT;
+
+	private long recoveryInterval = DEFAULT_RECOVERY_INTERVAL;
+
+	private TaskExecutor taskExecutor;
+
+	private boolean autoStartup = true;
+
+	private String beanName;
+
+	/** Shared Connection, lazily initialized */
+	private Connection sharedConnection;
+
+	private boolean running = false;
+
+	private int scheduledConsumerCount = 0;
+
+	private int waitingConsumerCount = 0;
+
+	private int activeConsumerCount = 0;
+
+	private long receivedMessageCount = 0;
+
+	private long failedMessageCount = 0;
+
+	private long startTime;
+
+	private long stopTime;
+
+	private final Object monitor = new Object();
+
+
+	/**
+	 * Set the JMS ConnectionFactory to obtain the shared Connection from.
+	 * Needs to be the same ConnectionFactory that a given JmsTransactionManager
+	 * manages transactions for, for the listener to use its Sessions.
+	 */
+	public void setConnectionFactory(ConnectionFactory connectionFactory) {
+		this.connectionFactory = connectionFactory;
+	}
+
+	/**
+	 * Return the JMS ConnectionFactory to obtain the shared Connection from.
+	 */
+	public ConnectionFactory getConnectionFactory() {
+		return connectionFactory;
+	}
+
+	/**
+	 * Set the destination to receive messages from.
+	 * Alternatively, specify a "destinationName".
+	 * @see #setDestinationName
+	 */
+	public void setDestination(Destination destination) {
+		this.destination = destination;
+	}
+
+	/**
+	 * Set the name of the destination to receive messages from, to be resolved
+	 * via the DestinationResolver. Alternatively, specify a "destination".
+	 * @see #setDestinationResolver
+	 * @see #setDestination
+	 */
+	public void setDestinationName(String destinationName) {
+		this.destinationName = destinationName;
+	}
+
+	/**
+	 * Set the DestinationResolver to use for resolving the "destinationName".
+	 * Default is a DynamicDestinationResolver.
+	 * @see org.springframework.jms.support.destination.DynamicDestinationResolver
+	 */
+	public void setDestinationResolver(DestinationResolver destinationResolver) {
+		this.destinationResolver = destinationResolver;
+	}
+
+	/**
+	 * Set whether the "destinationName" refers to a Topic rather than a Queue.
+	 * Default is false (Point-to-Point).
+	 * <p>Note that concurrent consumers on a Topic will each receive every
+	 * message: Use a single consumer for Topics.
+	 */
+	public void setPubSubDomain(boolean pubSubDomain) {
+		this.pubSubDomain = pubSubDomain;
+	}
+
+	/**
+	 * Set the JMS message selector expression to apply (null for none).
+	 */
+	public void setMessageSelector(String messageSelector) {
+		this.messageSelector = messageSelector;
+	}
+
+	/**
+	 * Set the JMS MessageListener to dispatch received messages to.
+	 * Needs to be thread-safe if there is more than one consumer.
+	 */
+	public void setMessageListener(MessageListener messageListener) {
+		this.messageListener = messageListener;
+	}
+
+	/**
+	 * Return the JMS MessageListener that received messages get dispatched to.
+	 */
+	public MessageListener getMessageListener() {
+		return messageListener;
+	}
+
+	/**
+	 * Set whether the consumers' own JMS Sessions should be transacted.
+	 * Default is false. Each message will then be committed individually,
+	 * or rolled back in case of a listener exception.
+	 * <p>Not relevant when receiving within transactions driven
+	 * by a "transactionManager".
+	 * @see #setTransactionManager
+	 */
+	public void setSessionTransacted(boolean sessionTransacted) {
+		this.sessionTransacted = sessionTransacted;
+	}
+
+	/**
+	 * Set the JMS acknowledgement mode by the name of the corresponding constant
+	 * in the JMS Session interface, e.g. "CLIENT_ACKNOWLEDGE".
+	 * @param constantName name of the constant
+	 * @see javax.jms.Session#AUTO_ACKNOWLEDGE
+	 * @see javax.jms.Session#CLIENT_ACKNOWLEDGE
+	 * @see javax.jms.Session#DUPS_OK_ACKNOWLEDGE
+	 */
+	public void setSessionAcknowledgeModeName(String constantName) {
+		setSessionAcknowledgeMode(constants.asNumber(constantName).intValue());
+	}
+
+	/**
+	 * Set the JMS acknowledgement mode for non-transacted Sessions.
+	 * Default is AUTO_ACKNOWLEDGE. With CLIENT_ACKNOWLEDGE, each message
+	 * will be acknowledged after successful processing by the listener,
+	 * while a listener exception causes the Session to be recovered,
+	 * so that the message will be redelivered.
+	 */
+	public void setSessionAcknowledgeMode(int sessionAcknowledgeMode) {
+		this.sessionAcknowledgeMode = sessionAcknowledgeMode;
+	}
+
+	/**
+	 * Set the Spring PlatformTransactionManager to receive messages within,
+	 * typically a JmsTransactionManager for the same ConnectionFactory.
+	 * Default is none, using the consumers' own Sessions.
+	 * <p>Note that JmsTransactionManager obtains a new Connection and Session
+	 * from the ConnectionFactory for each transaction, i.e. for each receive
+	 * attempt. Use it with a CachingConnectionFactory or SingleConnectionFactory
+	 * that hands out a shared Connection respectively pooled Sessions;
+	 * a plain JMS provider ConnectionFactory will open a physical connection
+	 * per receive attempt.
+	 * @see org.springframework.jms.connection.JmsTransactionManager
+	 * @see org.springframework.jms.connection.CachingConnectionFactory
+	 * @see org.springframework.jms.connection.SingleConnectionFactory
+	 */
+	public void setTransactionManager(PlatformTransactionManager transactionManager) {
+		this.transactionManager = transactionManager;
+	}
+
+	/**
+	 * Set the timeout (in seconds) for transactions driven by the
+	 * "transactionManager". Default is none.
+	 */
+	public void setTransactionTimeout(int transactionTimeout) {
+		this.transactionDefinition.setTimeout(transactionTimeout);
+	}
+
+	/**
+	 * Set the number of consumers to keep running. Default is 1.
+	 */
+	public void setConcurrentConsumers(int concurrentConsumers) {
+		this.concurrentConsumers = concurrentConsumers;
+	}
+
+	/**
+	 * Set the maximum number of consumers to scale up to under load.
+	 * Default is 1, i.e. no scaling. Will be raised to "concurrentConsumers"
+	 * if lower.
+	 */
+	public void setMaxConcurrentConsumers(int maxConcurrentConsumers) {
+		this.maxConcurrentConsumers = maxConcurrentConsumers;
+	}
+
+	/**
+	 * Set the number of receive attempts in a row without a message
+	 * after which a consumer beyond "concurrentConsumers" will shut down.
+	 * Default is 5.
+	 */
+	public void setIdleReceiveLimit(int idleReceiveLimit) {
+		this.idleReceiveLimit = idleReceiveLimit;
+	}
+
+	/**
+	 * Set the timeout (in milliseconds) for each receive attempt.
+	 * Default is 1000. Also determines how fast the consumers react
+	 * to stopping the container.
+	 * <p>Needs to be positive: A timeout of 0 would block in a receive
+	 * call without limit, as with JMS' <code>receive()</code>, and
+	 * <code>stop</code> would then wait for the consumers forever.
+	 * @throws IllegalArgumentException if the timeout is not positive
+	 * @see #stop
+	 */
+	public void setReceiveTimeout(long receiveTimeout) {
+		if (receiveTimeout <= 0) {
+			throw new IllegalArgumentException("receiveTimeout must be positive");
+		}
+		this.receiveTimeout = receiveTimeout;
+	}
+
+	/**
+	 * Set the interval (in milliseconds) between attempts to recover from
+	 * a JMS failure, for example a broken Connection. Default is 5000.
+	 */
+	public void setRecoveryInterval(long recoveryInterval) {
+		this.recoveryInterval = recoveryInterval;
+	}
+
+	/**
+	 * Set the TaskExecutor to run the consumer tasks with. Needs to be able to
+	 * run "maxConcurrentConsumers" long-lived tasks concurrently.
+	 * Default is a SimpleAsyncTaskExecutor with the bean name as thread prefix.
+	 * @see org.springframework.core.task.SimpleAsyncTaskExecutor
+	 */
+	public void setTaskExecutor(TaskExecutor taskExecutor) {
+		this.taskExecutor = taskExecutor;
+	}
+
+	/**
+	 * Set whether to start the consumers on initialization. Default is true;
+	 * set this to false for calling <code>start</code> manually.
+	 * @see #start
+	 */
+	public void setAutoStartup(boolean autoStartup) {
+		this.autoStartup = autoStartup;
+	}
+
+	public void setBeanName(String beanName) {
+		this.beanName = beanName;
+	}
+
+	public void afterPropertiesSet() {
+		if (this.connectionFactory == null) {
+			throw new IllegalArgumentException("connectionFactory is required");
+		}
+		if (this.destination == null && this.destinationName == null) {
+			throw new IllegalArgumentException("destination or destinationName is required");
+		}
+		if (this.messageListener == null) {
+			throw new IllegalArgumentException("messageListener is required");
+		}
+		if (this.concurrentConsumers < 1) {
+			throw new IllegalArgumentException("concurrentConsumers must be at least 1");
+		}
+		if (this.maxConcurrentConsumers < this.concurrentConsumers) {
+			this.maxConcurrentConsumers = this.concurrentConsumers;
+		}
+		if (this.taskExecutor == null) {
+			String prefix = (this.beanName != null ? this.beanName : "MessageListenerContainer") + "-";
+			this.taskExecutor = new SimpleAsyncTaskExecutor(prefix);
+		}
+		if (this.autoStartup) {
+			start();
+		}
+	}
+
+
+	/**
+	 * Start the configured number of consumers.
+	 * Resets the message counts and the throughput statistics.
+	 */
+	public void start() {
+		synchronized (this.monitor) {
+			if (this.running) {
+				return;
+			}
+			this.running = true;
+			this.receivedMessageCount = 0;
+			this.failedMessageCount = 0;
+			this.startTime = System.currentTimeMillis();
+			this.stopTime = 0;
+			for (int i = 0; i < this.concurrentConsumers; i++) {
+				scheduleNewConsumer();
+			}
+		}
+		if (logger.isInfoEnabled()) {
+			logger.info("Started " + this.concurrentConsumers + " consumers for destination [" +
+					getDestinationDescription() + "]");
+		}
+	}
+
+	/**
+	 * Stop all consumers, waiting for them to finish processing their
+	 * current messages. Logs the message counts and the throughput.
+	 * The shared Connection remains open for a subsequent restart.
+	 */
+	public void stop() {
+		synchronized (this.monitor) {
+			if (!this.running) {
+				return;
+			}
+			this.running = false;
+			this.monitor.notifyAll();
+			waitForConsumers();
+			this.stopTime = System.currentTimeMillis();
+		}
+		if (logger.isInfoEnabled()) {
+			logger.info("Stopped consumers for destination [" + getDestinationDescription() + "]: " +
+					getReceivedMessageCount() + " messages processed, " + getFailedMessageCount() +
+					" failed, throughput " + getThroughput() + " messages/sec");
+		}
+	}
+
+	/**
+	 * Stop all consumers and close the shared Connection.
+	 * Closing the Connection first interrupts consumers blocked in receive calls.
+	 */
+	public void destroy() {
+		synchronized (this.monitor) {
+			this.running = false;
+			this.monitor.notifyAll();
+			closeSharedConnection();
+			waitForConsumers();
+			if (this.stopTime == 0) {
+				this.stopTime = System.currentTimeMillis();
+			}
+		}
+	}
+
+	/**
+	 * Return whether the consumers are running.
+	 */
+	public boolean isRunning() {
+		synchronized (this.monitor) {
+			return this.running;
+		}
+	}
+
+	private void waitForConsumers() {
+		while (this.scheduledConsumerCount > 0) {
+			try {
+				this.monitor.wait();
+			}
+			catch (InterruptedException ex) {
+				// preserve interrupt status and stop waiting
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Schedule a new consumer task. Needs to be called with the monitor held.
+	 */
+	private void scheduleNewConsumer() {
+		this.scheduledConsumerCount++;
+		try {
+			this.taskExecutor.execute(new AsyncMessageListenerInvoker());
+		}
+		catch (RuntimeException ex) {
+			this.scheduledConsumerCount--;
+			throw ex;
+		}
+	}
+
+	/**
+	 * Called by a consumer that received a message: Schedule an additional
+	 * consumer if no other consumer is waiting for messages.
+	 */
+	private void scaleUpIfNecessary() {
+		synchronized (this.monitor) {
+			if (this.running && this.waitingConsumerCount == 0 &&
+					this.scheduledConsumerCount < this.maxConcurrentConsumers) {
+				scheduleNewConsumer();
+				if (logger.isDebugEnabled()) {
+					logger.debug("Scaled up to " + this.scheduledConsumerCount + " consumers");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Called by an idle consumer: Deregister the consumer if there are more
+	 * consumers than configured as minimum.
+	 * @return whether the consumer should shut down
+	 */
+	private boolean scaleDownIfPossible() {
+		synchronized (this.monitor) {
+			if (this.scheduledConsumerCount > this.concurrentConsumers) {
+				consumerFinished();
+				if (logger.isDebugEnabled()) {
+					logger.debug("Scaled down to " + this.scheduledConsumerCount + " consumers");
+				}
+				return true;
+			}
+			return false;
+		}
+	}
+
+	private void consumerFinished() {
+		synchronized (this.monitor) {
+			this.scheduledConsumerCount--;
+			this.monitor.notifyAll();
+		}
+	}
+
+
+	/**
+	 * Return the shared Connection, lazily creating and starting it.
+	 * <p>Refuses to create a new Connection once the container has been
+	 * stopped: A consumer that is still finishing could otherwise create
+	 * one after <code>destroy</code>, which would never be closed.
+	 * @throws javax.jms.IllegalStateException if there is no shared Connection
+	 * and the container is not running
+	 */
+	protected Connection getSharedConnection() throws JMSException {
+		synchronized (this.monitor) {
+			if (this.sharedConnection == null) {
+				if (!this.running) {
+					throw new javax.jms.IllegalStateException(
+							"Container for destination [" + getDestinationDescription() + "] not running");
+				}
+				Connection con = createConnection();
+				try {
+					con.start();
+				}
+				catch (JMSException ex) {
+					JmsUtils.closeConnection(con);
+					throw ex;
+				}
+				this.sharedConnection = con;
+			}
+			return this.sharedConnection;
+		}
+	}
+
+	/**
+	 * Close the given Connection if it is still the shared Connection,
+	 * to let the next consumer create a fresh one.
+	 */
+	private void refreshSharedConnection(Connection failedConnection) {
+		synchronized (this.monitor) {
+			if (failedConnection != null && failedConnection == this.sharedConnection) {
+				closeSharedConnection();
+			}
+		}
+	}
+
+	private void closeSharedConnection() {
+		synchronized (this.monitor) {
+			JmsUtils.closeConnection(this.sharedConnection);
+			this.sharedConnection = null;
+		}
+	}
+
+	/**
+	 * Create a JMS Connection via this container's ConnectionFactory.
+	 * <p>This implementation uses JMS 1.1 API.
+	 * @return the new JMS Connection
+	 * @throws javax.jms.JMSException if thrown by JMS API methods
+	 */
+	protected Connection createConnection() throws JMSException {
+		return this.connectionFactory.createConnection();
+	}
+
+	/**
+	 * Create a JMS Session for a consumer task.
+	 * <p>This implementation uses JMS 1.1 API.
+	 * @param con the JMS Connection to create a Session for
+	 * @return the new JMS Session
+	 * @throws javax.jms.JMSException if thrown by JMS API methods
+	 */
+	protected Session createSession(Connection con) throws JMSException {
+		return con.createSession(this.sessionTransacted, this.sessionAcknowledgeMode);
+	}
+
+	/**
+	 * Create a JMS MessageConsumer for the given Session,
+	 * applying the message selector, if any.
+	 * <p>This implementation uses JMS 1.1 API.
+	 * @param session the JMS Session to create a MessageConsumer for
+	 * @return the new JMS MessageConsumer
+	 * @throws javax.jms.JMSException if thrown by JMS API methods
+	 */
+	protected MessageConsumer createConsumer(Session session) throws JMSException {
+		Destination dest = this.destination;
+		if (dest == null) {
+			dest = this.destinationResolver.resolveDestinationName(session, this.destinationName, this.pubSubDomain);
+		}
+		return session.createConsumer(dest, this.messageSelector);
+	}
+
+	/**
+	 * Receive a message with the given consumer, keeping track of waiting consumers.
+	 * @return the received message, or null if none arrived within the receive timeout
+	 */
+	private Message receiveMessage(MessageConsumer consumer) throws JMSException {
+		synchronized (this.monitor) {
+			this.waitingConsumerCount++;
+		}
+		try {
+			return consumer.receive(this.receiveTimeout);
+		}
+		finally {
+			synchronized (this.monitor) {
+				this.waitingConsumerCount--;
+			}
+		}
+	}
+
+	/**
+	 * Receive a message and dispatch it to the listener. A listener exception
+	 * causes the transaction status to be marked as rollback-only respectively
+	 * a transacted Session to be rolled back, or a CLIENT_ACKNOWLEDGE Session
+	 * to be recovered, for redelivery of the message.
+	 * @param session the JMS Session to work on
+	 * @param consumer the JMS MessageConsumer to receive with
+	 * @param status the current transaction status, or null if not transactional
+	 * @return whether a message has been received
+	 * @throws JMSException if thrown by JMS API methods
+	 */
+	private boolean doReceiveAndExecute(Session session, MessageConsumer consumer, TransactionStatus status)
+			throws JMSException {
+		Message message = receiveMessage(consumer);
+		if (message == null) {
+			return false;
+		}
+		scaleUpIfNecessary();
+		synchronized (this.monitor) {
+			this.activeConsumerCount++;
+		}
+		try {
+			this.messageListener.onMessage(message);
+		}
+		catch (RuntimeException ex) {
+			synchronized (this.monitor) {
+				this.failedMessageCount++;
+			}
+			if (status != null) {
+				status.setRollbackOnly();
+			}
+			else if (session.getTransacted()) {
+				session.rollback();
+			}
+			else if (session.getAcknowledgeMode() == Session.CLIENT_ACKNOWLEDGE) {
+				session.recover();
+			}
+			handleListenerException(message, ex);
+			return true;
+		}
+		finally {
+			synchronized (this.monitor) {
+				this.activeConsumerCount--;
+			}
+		}
+		if (status == null) {
+			if (session.getTransacted()) {
+				session.commit();
+			}
+			else if (session.getAcknowledgeMode() == Session.CLIENT_ACKNOWLEDGE) {
+				message.acknowledge();
+			}
+		}
+		synchronized (this.monitor) {
+			this.receivedMessageCount++;
+		}
+		return true;
+	}
+
+	/**
+	 * Handle the given exception thrown by the listener.
+	 * The default implementation logs it at warn level.
+	 * @param message the message that the listener failed to process
+	 * @param ex the listener exception
+	 */
+	protected void handleListenerException(Message message, RuntimeException ex) {
+		logger.warn("Execution of JMS message listener failed for message " + message, ex);
+	}
+
+
+	/**
+	 * Return the number of messages that have been processed successfully
+	 * since the container was started.
+	 */
+	public long getReceivedMessageCount() {
+		synchronized (this.monitor) {
+			return this.receivedMessageCount;
+		}
+	}
+
+	/**
+	 * Return the number of messages that the listener failed to process
+	 * since the container was started.
+	 */
+	public long getFailedMessageCount() {
+		synchronized (this.monitor) {
+			return this.failedMessageCount;
+		}
+	}
+
+	/**
+	 * Return the number of currently scheduled consumers.
+	 */
+	public int getScheduledConsumerCount() {
+		synchronized (this.monitor) {
+			return this.scheduledConsumerCount;
+		}
+	}
+
+	/**
+	 * Return the number of consumers that are currently processing a message.
+	 */
+	public int getActiveConsumerCount() {
+		synchronized (this.monitor) {
+			return this.activeConsumerCount;
+		}
+	}
+
+	/**
+	 * Return the number of successfully processed messages per second
+	 * since the container was started, up until it was stopped.
+	 */
+	public double getThroughput() {
+		synchronized (this.monitor) {
+			if (this.startTime == 0) {
+				return 0;
+			}
+			long endTime = (this.stopTime != 0 ? this.stopTime : System.currentTimeMillis());
+			long elapsed = Math.max(endTime - this.startTime, 1);
+			return (this.receivedMessageCount * 1000.0) / elapsed;
+		}
+	}
+
+	private String getDestinationDescription() {
+		return (this.destination != null ? this.destination.toString() : this.destinationName);
+	}
+
+
+	/**
+	 * Consumer task that loops on receive calls until the container is
+	 * stopped or the consumer becomes surplus. Keeps its Session and
+	 * MessageConsumer across messages, recreating them after a failure.
+	 */
+	private class AsyncMessageListenerInvoker implements Runnable {
+
+		private Connection connection;
+
+		private Session session;
+
+		private MessageConsumer consumer;
+
+		private int idleReceiveCount = 0;
+
+		public void run() {
+			boolean deregistered = false;
+			try {
+				while (isRunning()) {
+					boolean messageReceived;
+					try {
+						messageReceived = (transactionManager != null ?
+								receiveAndExecuteInTransaction() : receiveAndExecute());
+					}
+					catch (JMSException ex) {
+						recoverAfterException(ex);
+						continue;
+					}
+					catch (JmsException ex) {
+						recoverAfterException(ex);
+						continue;
+					}
+					catch (TransactionException ex) {
+						recoverAfterException(ex);
+						continue;
+					}
+					if (messageReceived) {
+						this.idleReceiveCount = 0;
+					}
+					else if (++this.idleReceiveCount >= idleReceiveLimit && scaleDownIfPossible()) {
+						deregistered = true;
+						return;
+					}
+				}
+			}
+			finally {
+				closeResources();
+				if (!deregistered) {
+					consumerFinished();
+				}
+			}
+		}
+
+		private boolean receiveAndExecute() throws JMSException {
+			initResources();
+			return doReceiveAndExecute(this.session, this.consumer, null);
+		}
+
+		private boolean receiveAndExecuteInTransaction() throws JMSException {
+			TransactionStatus status = transactionManager.getTransaction(transactionDefinition);
+			boolean messageReceived;
+			try {
+				ConnectionHolder conHolder =
+						(ConnectionHolder) TransactionSynchronizationManager.getResource(connectionFactory);
+				if (conHolder != null) {
+					conHolder.getConnection().start();
+					MessageConsumer txConsumer = createConsumer(conHolder.getSession());
+					try {
+						messageReceived = doReceiveAndExecute(conHolder.getSession(), txConsumer, status);
+					}
+					finally {
+						JmsUtils.closeMessageConsumer(txConsumer);
+					}
+				}
+				else {
+					// e.g. JTA transaction: let the consumer's own Session participate, if it can
+					initResources();
+					messageReceived = doReceiveAndExecute(this.session, this.consumer, status);
+				}
+			}
+			catch (JMSException ex) {
+				rollbackOnException(status, ex);
+				throw ex;
+			}
+			catch (RuntimeException ex) {
+				rollbackOnException(status, ex);
+				throw ex;
+			}
+			catch (Error err) {
+				rollbackOnException(status, err);
+				throw err;
+			}
+			transactionManager.commit(status);
+			return messageReceived;
+		}
+
+		private void rollbackOnException(TransactionStatus status, Throwable ex) {
+			try {
+				transactionManager.rollback(status);
+			}
+			catch (RuntimeException ex2) {
+				logger.error("Listener exception overridden by rollback exception", ex);
+				throw ex2;
+			}
+		}
+
+		private void initResources() throws JMSException {
+			if (this.session == null) {
+				this.connection = getSharedConnection();
+				this.session = createSession(this.connection);
+				this.consumer = createConsumer(this.session);
+			}
+		}
+
+		private void closeResources() {
+			JmsUtils.closeMessageConsumer(this.consumer);
+			JmsUtils.closeSession(this.session);
+			this.consumer = null;
+			this.session = null;
+		}
+
+		private void recoverAfterException(Exception ex) {
+			if (!isRunning()) {
+				// exception caused by shutdown: not worth logging
+				return;
+			}
+			logger.warn("JMS failure in listener consumer - trying to recover in " + recoveryInterval + " ms", ex);
+			closeResources();
+			refreshSharedConnection(this.connection);
+			this.connection = null;
+			synchronized (monitor) {
+				if (running) {
+					try {
+						monitor.wait(recoveryInterval);
+					}
+					catch (InterruptedException ex2) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+		}
+	}
+
+}
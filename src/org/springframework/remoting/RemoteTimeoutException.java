@@ -0,0 +1,34 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.remoting;
+
+/**
+ * RemoteAccessException subclass to be thrown when a remote invocation
+ * did not complete within the configured timeout. Note that the remote
+ * invocation itself might still be executed on the server.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see org.springframework.remoting.support.AsyncRemoteClientInterceptor#setTimeout
+ */
+public class RemoteTimeoutException extends RemoteAccessException {
+
+	public RemoteTimeoutException(String msg) {
+		super(msg);
+	}
+
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.remoting.httpinvoker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Abstract base implementation of the HttpInvokerCodec interface,
+ * adding optional gzip compression of large payloads.
+ *
+ * <p>Compression is turned on by specifying a "compressionThreshold":
+ * Encoded content above that size will be gzipped. Decoding detects
+ * gzipped content via the gzip magic number, so compression can be
+ * turned on independently on client and server. Note that clients and
+ * servers before Spring 1.1.2 are not able to read compressed content.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see #setCompressionThreshold
+ * @see #doEncode
+ * @see #doDecode
+ */
+public abstract class AbstractHttpInvokerCodec implements HttpInvokerCodec {
+
+	private static final int ENCODE_BUFFER_INITIAL_SIZE = 512;
+
+	private static final int GZIP_MAGIC_LENGTH = 2;
+
+	private int compressionThreshold = -1;
+
+
+	/**
+	 * Set the size (in bytes) above which encoded content will be gzipped.
+	 * Default is -1, indicating no compression.
+	 * <p>Encoded content is buffered up to the threshold, to determine
+	 * whether to compress it: Once the threshold is exceeded, the buffered
+	 * content and all further content will be gzipped on the fly.
+	 * Compression is usually only worthwhile for payloads of a few
+	 * kilobytes or more, and for slow networks.
+	 */
+	public void setCompressionThreshold(int compressionThreshold) {
+		this.compressionThreshold = compressionThreshold;
+	}
+
+	/**
+	 * Return the size (in bytes) above which encoded content will be gzipped.
+	 */
+	public int getCompressionThreshold() {
+		return compressionThreshold;
+	}
+
+
+	public final void encode(Object obj, OutputStream os) throws IOException {
+		if (this.compressionThreshold < 0) {
+			doEncode(obj, os);
+			return;
+		}
+		ThresholdCompressionOutputStream tcos = new ThresholdCompressionOutputStream(os, this.compressionThreshold);
+		doEncode(obj, tcos);
+		tcos.finish();
+	}
+
+	public final Object decode(InputStream is) throws IOException, ClassNotFoundException {
+		PushbackInputStream in = new PushbackInputStream(is, GZIP_MAGIC_LENGTH);
+		byte[] magic = new byte[GZIP_MAGIC_LENGTH];
+		int count = 0;
+		int read;
+		while (count < magic.length && (read = in.read(magic, count, magic.length - count)) != -1) {
+			count += read;
+		}
+		in.unread(magic, 0, count);
+		if (count == magic.length &&
+				((magic[0] & 0xff) | ((magic[1] & 0xff) << 8)) == GZIPInputStream.GZIP_MAGIC) {
+			return doDecode(new GZIPInputStream(in));
+		}
+		return doDecode(in);
+	}
+
+	/**
+	 * Encode the given object to the given OutputStream.
+	 * Needs to flush but not close the stream.
+	 * @param obj the object to encode
+	 * @param os the OutputStream to write to
+	 * @throws IOException if thrown by I/O methods
+	 */
+	protected abstract void doEncode(Object obj, OutputStream os) throws IOException;
+
+	/**
+	 * Decode an object from the given (uncompressed) InputStream.
+	 * @param is the InputStream to read from
+	 * @return the decoded object
+	 * @throws IOException if thrown by I/O methods
+	 * @throws ClassNotFoundException if a class of the decoded object graph
+	 * could not be found
+	 */
+	protected abstract Object doDecode(InputStream is) throws IOException, ClassNotFoundException;
+
+	/**
+	 * OutputStream that buffers content up to the given threshold,
+	 * switching to gzip compression once the threshold is exceeded.
+	 */
+	private static class ThresholdCompressionOutputStream extends OutputStream {
+
+		private final OutputStream target;
+
+		private final int threshold;
+
+		private ByteArrayOutputStream buffer = new ByteArrayOutputStream(ENCODE_BUFFER_INITIAL_SIZE);
+
+		private GZIPOutputStream gzipStream;
+
+		private ThresholdCompressionOutputStream(OutputStream target, int threshold) {
+			this.target = target;
+			this.threshold = threshold;
+		}
+
+		public void write(int b) throws IOException {
+			if (this.gzipStream == null && this.buffer.size() + 1 > this.threshold) {
+				startCompression();
+			}
+			if (this.gzipStream != null) {
+				this.gzipStream.write(b);
+			}
+			else {
+				this.buffer.write(b);
+			}
+		}
+
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (this.gzipStream == null && this.buffer.size() + len > this.threshold) {
+				startCompression();
+			}
+			if (this.gzipStream != null) {
+				this.gzipStream.write(b, off, len);
+			}
+			else {
+				this.buffer.write(b, off, len);
+			}
+		}
+
+		private void startCompression() throws IOException {
+			this.gzipStream = new GZIPOutputStream(this.target);
+			this.buffer.writeTo(this.gzipStream);
+			this.buffer = null;
+		}
+
+		/**
+		 * Buffered content is only written on finish,
+		 * as its compression has not been decided yet.
+		 */
+		public void flush() throws IOException {
+		}
+
+		/**
+		 * Write the remaining content to the target stream, without closing it.
+		 */
+		public void finish() throws IOException {
+			if (this.gzipStream != null) {
+				this.gzipStream.finish();
+			}
+			else {
+				this.buffer.writeTo(this.target);
+			}
+			this.target.flush();
+		}
+	}
+
+}
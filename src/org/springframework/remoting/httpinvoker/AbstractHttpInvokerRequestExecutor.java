@@ -19,8 +19,6 @@ package org.springframework.remoting.httpinvoker;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 
 import org.apache.commons.logging.Log;
@@ -33,11 +31,20 @@ import org.springframework.remoting.support.RemoteInvocationResult;
  * Abstract base implementation of the HttpInvokerRequestExecutor interface.
  *
  * <p>Preimplements serialization of RemoteInvocation objects and
- * deserialization of RemoteInvocationResults objects.
+ * deserialization of RemoteInvocationResults objects, delegating to
+ * a pluggable HttpInvokerCodec. Uses standard Java serialization
+ * by default.
+ *
+ * <p>By default, the serialized invocation is buffered in a byte array
+ * before being sent, to be able to specify its content length. With
+ * "chunkedStreaming" turned on, it will be written directly to the
+ * connection instead, if supported by the concrete executor.
  *
  * @author Juergen Hoeller
  * @since 1.1
  * @see #doExecuteRequest
+ * @see #setCodec
+ * @see #setChunkedStreaming
  */
 public abstract class AbstractHttpInvokerRequestExecutor implements HttpInvokerRequestExecutor {
 
@@ -54,11 +61,77 @@ public abstract class AbstractHttpInvokerRequestExecutor implements HttpInvokerR
 
 	protected final Log logger = LogFactory.getLog(getClass());
 
+	private HttpInvokerCodec codec = new SerializationHttpInvokerCodec();
+
+	private boolean chunkedStreaming = false;
+
+	private final BufferPool bufferPool = new BufferPool();
+
+
+	/**
+	 * Set the codec to use for encoding invocations and decoding results.
+	 * Default is a SerializationHttpInvokerCodec, using standard Java serialization.
+	 * <p>The target HttpInvokerServiceExporter needs to support the
+	 * content type of the given codec.
+	 * @see SerializationHttpInvokerCodec
+	 * @see CompactHttpInvokerCodec
+	 * @see HttpInvokerServiceExporter#setCodecs
+	 */
+	public void setCodec(HttpInvokerCodec codec) {
+		if (codec == null) {
+			throw new IllegalArgumentException("codec must not be null");
+		}
+		this.codec = codec;
+	}
+
+	/**
+	 * Return the codec to use for encoding invocations and decoding results.
+	 */
+	public HttpInvokerCodec getCodec() {
+		return codec;
+	}
+
+	/**
+	 * Set whether to stream serialized invocations to the connection, using
+	 * chunked transfer encoding, instead of buffering them in a byte array.
+	 * Default is false.
+	 * <p>Streaming avoids holding a serialized copy of large argument graphs
+	 * in memory, but requires an HTTP 1.1 server that accepts chunked request
+	 * content. Executors that do not support streaming in the current
+	 * environment will fall back to buffering.
+	 * @see #doExecuteStreamingRequest
+	 */
+	public void setChunkedStreaming(boolean chunkedStreaming) {
+		this.chunkedStreaming = chunkedStreaming;
+	}
+
+	/**
+	 * Return whether to stream serialized invocations to the connection.
+	 */
+	public boolean isChunkedStreaming() {
+		return chunkedStreaming;
+	}
+
+	/**
+	 * Return the content type to send with requests:
+	 * the content type of the codec.
+	 * @see HttpInvokerCodec#getContentType
+	 */
+	protected String getContentType() {
+		return this.codec.getContentType();
+	}
+
 
 	public final RemoteInvocationResult executeRequest(
 			HttpInvokerClientConfiguration config, RemoteInvocation invocation)
 			throws IOException, ClassNotFoundException {
 
+		if (this.chunkedStreaming) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Streaming HTTP invoker request for service at [" + config.getServiceUrl() + "]");
+			}
+			return doExecuteStreamingRequest(config, invocation);
+		}
 		ByteArrayOutputStream baos = getByteArrayOutputStream(invocation);
 		if (logger.isDebugEnabled()) {
 			logger.debug("Sending HTTP invoker request for service at [" + config.getServiceUrl() +
@@ -80,22 +153,57 @@ public abstract class AbstractHttpInvokerRequestExecutor implements HttpInvokerR
 	}
 
 	/**
-	 * Serialize the given RemoteInvocation to the given OutputStream.
+	 * Serialize the given RemoteInvocation to the given OutputStream,
+	 * closing the stream afterwards.
 	 * @param invocation the RemoteInvocation object
 	 * @param os the OutputStream to write to
 	 * @throws IOException if thrown by I/O methods
 	 */
 	protected void writeRemoteInvocation(RemoteInvocation invocation, OutputStream os) throws IOException {
-		ObjectOutputStream oos = new ObjectOutputStream(os);
 		try {
-			oos.writeObject(invocation);
-			oos.flush();
+			this.codec.encode(invocation, os);
 		}
 		finally {
-			oos.close();
+			os.close();
 		}
 	}
 
+	/**
+	 * Wrap the given stream with a buffer taken from a pool that is shared
+	 * across the requests of this executor. Closing the returned stream
+	 * returns the buffer to the pool and closes the given stream.
+	 * @param os the OutputStream to buffer, typically the connection's stream
+	 * @return the buffered OutputStream
+	 */
+	protected OutputStream createBufferedOutputStream(OutputStream os) {
+		return this.bufferPool.createOutputStream(os);
+	}
+
+	/**
+	 * Execute a request to send the given remote invocation, writing the
+	 * serialized invocation directly to the connection. Called instead of
+	 * doExecuteRequest if "chunkedStreaming" is turned on.
+	 * <p>Default implementation falls back to buffering the serialized
+	 * invocation and calling doExecuteRequest. Implementations will usually
+	 * call writeRemoteInvocation with a stream from createBufferedOutputStream
+	 * and readRemoteInvocationResult to deserialize the result.
+	 * @param config the HTTP invoker configuration that specifies the
+	 * target service
+	 * @param invocation the RemoteInvocation to send
+	 * @return the RemoteInvocationResult object
+	 * @throws IOException if thrown by I/O operations
+	 * @throws ClassNotFoundException if thrown during deserialization
+	 * @see #setChunkedStreaming
+	 * @see #createBufferedOutputStream
+	 * @see #writeRemoteInvocation
+	 * @see #readRemoteInvocationResult
+	 */
+	protected RemoteInvocationResult doExecuteStreamingRequest(
+			HttpInvokerClientConfiguration config, RemoteInvocation invocation)
+			throws IOException, ClassNotFoundException {
+		return doExecuteRequest(config, getByteArrayOutputStream(invocation));
+	}
+
 	/**
 	 * Execute a request to send the given serialized remote invocation.
 	 * <p>Implementations will usually call readRemoteInvocationResult
@@ -121,16 +229,15 @@ public abstract class AbstractHttpInvokerRequestExecutor implements HttpInvokerR
 	 */
 	protected RemoteInvocationResult readRemoteInvocationResult(InputStream is)
 			throws IOException, ClassNotFoundException {
-		ObjectInputStream ois = new ObjectInputStream(is);
 		try {
-			Object obj = ois.readObject();
+			Object obj = this.codec.decode(is);
 			if (!(obj instanceof RemoteInvocationResult)) {
 				throw new IOException("Deserialized object needs to be a RemoteInvocationResult: " + obj);
 			}
 			return (RemoteInvocationResult) obj;
 		}
 		finally {
-			ois.close();
+			is.close();
 		}
 	}
 
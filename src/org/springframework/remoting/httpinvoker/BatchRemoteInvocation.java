@@ -0,0 +1,80 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.remoting.httpinvoker;
+
+import java.util.Arrays;
+
+import org.springframework.remoting.support.RemoteInvocation;
+
+/**
+ * RemoteInvocation that carries multiple invocations for the same
+ * service, to be executed within a single HTTP invoker request.
+ * Sent by HttpInvokerClientInterceptor in batching mode.
+ *
+ * <p>HttpInvokerServiceExporter executes the contained invocations
+ * and returns a RemoteInvocationResult with an array of results as
+ * value, in the order of the invocations. Requires an exporter from
+ * Spring 1.1.2 or later.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see HttpInvokerClientInterceptor#setBatchWindow
+ * @see HttpInvokerServiceExporter#setBatchTaskExecutor
+ */
+public class BatchRemoteInvocation extends RemoteInvocation {
+
+	private RemoteInvocation[] invocations;
+
+
+	/**
+	 * Create a new BatchRemoteInvocation for use as JavaBean.
+	 */
+	public BatchRemoteInvocation() {
+	}
+
+	/**
+	 * Create a new BatchRemoteInvocation for the given invocations.
+	 * @param invocations the invocations to execute
+	 */
+	public BatchRemoteInvocation(RemoteInvocation[] invocations) {
+		this.invocations = invocations;
+	}
+
+	public void setInvocations(RemoteInvocation[] invocations) {
+		this.invocations = invocations;
+	}
+
+	public RemoteInvocation[] getInvocations() {
+		return invocations;
+	}
+
+	/**
+	 * A batch cannot be applied to a target object as a whole:
+	 * Each of its invocations needs to be performed separately.
+	 * @throws UnsupportedOperationException always
+	 * @see #getInvocations
+	 */
+	public Object invoke(Object targetObject) {
+		throw new UnsupportedOperationException("BatchRemoteInvocation needs to be invoked per contained invocation");
+	}
+
+	public String toString() {
+		return "BatchRemoteInvocation: invocations=" +
+				(this.invocations != null ? Arrays.asList(this.invocations).toString() : "null");
+	}
+
+}
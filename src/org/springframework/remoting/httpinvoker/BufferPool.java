@@ -0,0 +1,180 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.remoting.httpinvoker;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+
+/**
+ * Simple pool of byte array buffers for streaming HTTP invoker content,
+ * avoiding the allocation of a new buffer for each request. Hands out
+ * buffered OutputStreams that return their buffer to the pool on close.
+ *
+ * @author agent
+ * @since 1.1.2
+ */
+class BufferPool {
+
+	/** Default size of each buffer: 8 KB */
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	/** Default maximum number of pooled buffers: 16 */
+	public static final int DEFAULT_MAX_POOL_SIZE = 16;
+
+
+	private final int bufferSize;
+
+	private final int maxPoolSize;
+
+	private final LinkedList pool = new LinkedList();
+
+
+	/**
+	 * Create a new BufferPool with default buffer size and pool size.
+	 */
+	public BufferPool() {
+		this(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_POOL_SIZE);
+	}
+
+	/**
+	 * Create a new BufferPool with the given buffer size and pool size.
+	 * @param bufferSize the size of each buffer
+	 * @param maxPoolSize the maximum number of buffers to keep
+	 */
+	public BufferPool(int bufferSize, int maxPoolSize) {
+		this.bufferSize = bufferSize;
+		this.maxPoolSize = maxPoolSize;
+	}
+
+	/**
+	 * Obtain a buffer from the pool, creating a new one if none available.
+	 */
+	public byte[] obtainBuffer() {
+		synchronized (this.pool) {
+			if (!this.pool.isEmpty()) {
+				return (byte[]) this.pool.removeFirst();
+			}
+		}
+		return new byte[this.bufferSize];
+	}
+
+	/**
+	 * Return the given buffer to the pool, if not full yet.
+	 */
+	public void releaseBuffer(byte[] buffer) {
+		synchronized (this.pool) {
+			if (this.pool.size() < this.maxPoolSize) {
+				this.pool.addFirst(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Return the number of buffers currently available in the pool.
+	 */
+	public int getPoolSize() {
+		synchronized (this.pool) {
+			return this.pool.size();
+		}
+	}
+
+	/**
+	 * Create a buffered OutputStream for the given target stream, using a
+	 * pooled buffer. Closing the returned stream flushes the buffer, returns
+	 * it to the pool and closes the target stream.
+	 * @param target the stream to write to
+	 */
+	public OutputStream createOutputStream(OutputStream target) {
+		return new PooledBufferOutputStream(target, obtainBuffer());
+	}
+
+
+	/**
+	 * Buffered OutputStream that returns its buffer to the pool on close.
+	 */
+	private class PooledBufferOutputStream extends OutputStream {
+
+		private final OutputStream target;
+
+		private byte[] buffer;
+
+		private int count;
+
+		private PooledBufferOutputStream(OutputStream target, byte[] buffer) {
+			this.target = target;
+			this.buffer = buffer;
+		}
+
+		public void write(int b) throws IOException {
+			checkOpen();
+			if (this.count == this.buffer.length) {
+				flushBuffer();
+			}
+			this.buffer[this.count++] = (byte) b;
+		}
+
+		public void write(byte[] b, int off, int len) throws IOException {
+			checkOpen();
+			if (len >= this.buffer.length) {
+				// larger than the buffer: write through
+				flushBuffer();
+				this.target.write(b, off, len);
+				return;
+			}
+			if (len > this.buffer.length - this.count) {
+				flushBuffer();
+			}
+			System.arraycopy(b, off, this.buffer, this.count, len);
+			this.count += len;
+		}
+
+		public void flush() throws IOException {
+			checkOpen();
+			flushBuffer();
+			this.target.flush();
+		}
+
+		public void close() throws IOException {
+			if (this.buffer == null) {
+				return;
+			}
+			try {
+				flushBuffer();
+			}
+			finally {
+				releaseBuffer(this.buffer);
+				this.buffer = null;
+				this.target.close();
+			}
+		}
+
+		private void flushBuffer() throws IOException {
+			if (this.count > 0) {
+				this.target.write(this.buffer, 0, this.count);
+				this.count = 0;
+			}
+		}
+
+		private void checkOpen() throws IOException {
+			if (this.buffer == null) {
+				throw new IOException("Stream closed");
+			}
+		}
+	}
+
+}
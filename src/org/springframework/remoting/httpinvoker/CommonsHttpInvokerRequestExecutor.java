@@ -18,12 +18,20 @@ package org.springframework.remoting.httpinvoker;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 
+import org.apache.commons.httpclient.ChunkedOutputStream;
 import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpConnection;
+import org.apache.commons.httpclient.HttpException;
+import org.apache.commons.httpclient.HttpState;
 import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.methods.EntityEnclosingMethod;
 import org.apache.commons.httpclient.methods.PostMethod;
 
+import org.springframework.remoting.support.RemoteInvocation;
 import org.springframework.remoting.support.RemoteInvocationResult;
 
 /**
@@ -34,6 +42,10 @@ import org.springframework.remoting.support.RemoteInvocationResult;
  * <p>Allows to use a preconfigured HttpClient instance, potentially
  * with authentication, HTTP connection pooling, etc.
  *
+ * <p>Supports "chunkedStreaming", writing the serialized invocation
+ * directly to the connection with chunked transfer encoding. This
+ * requires the HttpClient to use HTTP 1.1, which is the default.
+ *
  * @author Juergen Hoeller
  * @since 1.1
  * @see SimpleHttpInvokerRequestExecutor
@@ -93,6 +105,26 @@ public class CommonsHttpInvokerRequestExecutor extends AbstractHttpInvokerReques
 		}
 	}
 
+	/**
+	 * Writes the serialized invocation directly to the connection,
+	 * via a PostMethod created by createStreamingPostMethod.
+	 * @see #createStreamingPostMethod
+	 */
+	protected RemoteInvocationResult doExecuteStreamingRequest(
+			HttpInvokerClientConfiguration config, RemoteInvocation invocation)
+			throws IOException, ClassNotFoundException {
+
+		PostMethod postMethod = createStreamingPostMethod(config, invocation);
+		try {
+			executePostMethod(config, this.httpClient, postMethod);
+			return readRemoteInvocationResult(postMethod.getResponseBodyAsStream());
+		}
+		finally {
+			// need to explicitly release because it might be pooled
+			postMethod.releaseConnection();
+		}
+	}
+
 	/**
 	 * Create a PostMethod for the given configuration.
 	 * @param config the HTTP invoker configuration that specifies the
@@ -102,7 +134,24 @@ public class CommonsHttpInvokerRequestExecutor extends AbstractHttpInvokerReques
 	 */
 	protected PostMethod createPostMethod(HttpInvokerClientConfiguration config) throws IOException {
 		PostMethod postMethod = new PostMethod(config.getServiceUrl());
-		postMethod.setRequestHeader(HTTP_HEADER_CONTENT_TYPE, CONTENT_TYPE_SERIALIZED_OBJECT);
+		postMethod.setRequestHeader(HTTP_HEADER_CONTENT_TYPE, getContentType());
+		return postMethod;
+	}
+
+	/**
+	 * Create a PostMethod for the given configuration that writes the given
+	 * invocation directly to the connection, with chunked transfer encoding.
+	 * The invocation will be serialized again if HttpClient retries the method.
+	 * @param config the HTTP invoker configuration that specifies the
+	 * target service
+	 * @param invocation the RemoteInvocation to send
+	 * @return the PostMethod instance
+	 * @throws IOException if thrown by I/O methods
+	 */
+	protected PostMethod createStreamingPostMethod(
+			HttpInvokerClientConfiguration config, RemoteInvocation invocation) throws IOException {
+		PostMethod postMethod = new StreamingPostMethod(config.getServiceUrl(), invocation);
+		postMethod.setRequestHeader(HTTP_HEADER_CONTENT_TYPE, getContentType());
 		return postMethod;
 	}
 
@@ -120,4 +169,42 @@ public class CommonsHttpInvokerRequestExecutor extends AbstractHttpInvokerReques
 		this.httpClient.executeMethod(postMethod);
 	}
 
+	/**
+	 * PostMethod that serializes a RemoteInvocation directly
+	 * to the connection, with chunked transfer encoding.
+	 */
+	private class StreamingPostMethod extends PostMethod {
+
+		private final RemoteInvocation invocation;
+
+		public StreamingPostMethod(String uri, RemoteInvocation invocation) {
+			super(uri);
+			this.invocation = invocation;
+			setRequestContentLength(EntityEnclosingMethod.CONTENT_LENGTH_CHUNKED);
+		}
+
+		protected boolean hasRequestContent() {
+			return true;
+		}
+
+		protected boolean writeRequestBody(HttpState state, HttpConnection conn) throws IOException, HttpException {
+			if (!isHttp11()) {
+				throw new HttpException("Chunked transfer encoding not allowed for HTTP/1.0");
+			}
+			final ChunkedOutputStream chunkedStream = new ChunkedOutputStream(conn.getRequestOutputStream());
+			// closing the stream just finishes the chunked content, keeping the connection open
+			OutputStream os = new FilterOutputStream(chunkedStream) {
+				public void write(byte[] b, int off, int len) throws IOException {
+					chunkedStream.write(b, off, len);
+				}
+				public void close() throws IOException {
+					chunkedStream.writeClosingChunk();
+					chunkedStream.flush();
+				}
+			};
+			writeRemoteInvocation(this.invocation, createBufferedOutputStream(os));
+			return true;
+		}
+	}
+
 }
@@ -0,0 +1,360 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.remoting.httpinvoker;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.util.Map;
+
+import org.springframework.remoting.support.RemoteInvocation;
+import org.springframework.remoting.support.RemoteInvocationResult;
+
+/**
+ * HttpInvokerCodec implementation that uses a compact binary format,
+ * with "application/x-java-compact-serialized-object" as content type.
+ *
+ * <p>Plain RemoteInvocation and RemoteInvocationResult objects are written
+ * field by field, with parameter types of primitive type written as single
+ * bytes, and with arguments and return values that are Strings or primitive
+ * wrappers written as tagged primitive values. All other objects are written
+ * with Java serialization, but with compact class descriptors: Just the class
+ * name and the serialVersionUID, instead of the full field layout. As with
+ * standard serialization, each class descriptor is sent only once per
+ * request respectively response stream, with back references after that.
+ *
+ * <p>As a consequence, client and server need to have the same versions of
+ * all transferred classes, not just serialization-compatible ones: The local
+ * field layout is used for reading. A mismatch in serialVersionUID will be
+ * detected, though, resulting in an InvalidClassException.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see SerializationHttpInvokerCodec
+ */
+public class CompactHttpInvokerCodec extends AbstractHttpInvokerCodec {
+
+	public static final String CONTENT_TYPE_COMPACT_SERIALIZED_OBJECT =
+			"application/x-java-compact-serialized-object";
+
+	private static final byte TAG_NULL = 0;
+	private static final byte TAG_OBJECT = 1;
+	private static final byte TAG_STRING = 2;
+	private static final byte TAG_INTEGER = 3;
+	private static final byte TAG_LONG = 4;
+	private static final byte TAG_TRUE = 5;
+	private static final byte TAG_FALSE = 6;
+	private static final byte TAG_DOUBLE = 7;
+	private static final byte TAG_FLOAT = 8;
+	private static final byte TAG_SHORT = 9;
+	private static final byte TAG_BYTE = 10;
+	private static final byte TAG_CHARACTER = 11;
+	private static final byte TAG_INVOCATION = 12;
+	private static final byte TAG_RESULT_VALUE = 13;
+	private static final byte TAG_RESULT_EXCEPTION = 14;
+
+	/** Maximum String length that is guaranteed to fit into modified UTF-8 via writeUTF */
+	private static final int MAX_UTF_STRING_LENGTH = 65535 / 3;
+
+	/** Primitive parameter types, indexed by their single-byte codes */
+	private static final Class[] PRIMITIVE_TYPES = new Class[] {
+		boolean.class, byte.class, char.class, short.class, int.class, long.class, float.class, double.class};
+
+	private static final byte TYPE_CLASS = -1;
+
+	private static final byte DESCRIPTOR_COMPACT = 0;
+	private static final byte DESCRIPTOR_FULL = 1;
+
+
+	public String getContentType() {
+		return CONTENT_TYPE_COMPACT_SERIALIZED_OBJECT;
+	}
+
+	protected void doEncode(Object obj, OutputStream os) throws IOException {
+		ObjectOutputStream oos = new CompactObjectOutputStream(os);
+		if (obj != null && obj.getClass() == RemoteInvocation.class) {
+			oos.writeByte(TAG_INVOCATION);
+			writeInvocation((RemoteInvocation) obj, oos);
+		}
+		else if (obj != null && obj.getClass() == RemoteInvocationResult.class) {
+			RemoteInvocationResult result = (RemoteInvocationResult) obj;
+			if (result.hasException()) {
+				oos.writeByte(TAG_RESULT_EXCEPTION);
+				oos.writeObject(result.getException());
+			}
+			else {
+				oos.writeByte(TAG_RESULT_VALUE);
+				writeValue(result.getValue(), oos);
+			}
+		}
+		else {
+			writeValue(obj, oos);
+		}
+		oos.flush();
+	}
+
+	private void writeInvocation(RemoteInvocation invocation, ObjectOutputStream oos) throws IOException {
+		oos.writeUTF(invocation.getMethodName());
+		Class[] parameterTypes = invocation.getParameterTypes();
+		oos.writeInt(parameterTypes != null ? parameterTypes.length : -1);
+		if (parameterTypes != null) {
+			for (int i = 0; i < parameterTypes.length; i++) {
+				writeType(parameterTypes[i], oos);
+			}
+		}
+		Object[] arguments = invocation.getArguments();
+		oos.writeInt(arguments != null ? arguments.length : -1);
+		if (arguments != null) {
+			for (int i = 0; i < arguments.length; i++) {
+				writeValue(arguments[i], oos);
+			}
+		}
+		oos.writeObject(invocation.getAttributes());
+	}
+
+	private void writeType(Class type, ObjectOutputStream oos) throws IOException {
+		if (type.isPrimitive()) {
+			for (int i = 0; i < PRIMITIVE_TYPES.length; i++) {
+				if (PRIMITIVE_TYPES[i] == type) {
+					oos.writeByte(i);
+					return;
+				}
+			}
+		}
+		oos.writeByte(TYPE_CLASS);
+		oos.writeObject(type);
+	}
+
+	private void writeValue(Object value, ObjectOutputStream oos) throws IOException {
+		if (value == null) {
+			oos.writeByte(TAG_NULL);
+		}
+		else if (value instanceof String && ((String) value).length() <= MAX_UTF_STRING_LENGTH) {
+			oos.writeByte(TAG_STRING);
+			oos.writeUTF((String) value);
+		}
+		else if (value instanceof Integer) {
+			oos.writeByte(TAG_INTEGER);
+			oos.writeInt(((Integer) value).intValue());
+		}
+		else if (value instanceof Long) {
+			oos.writeByte(TAG_LONG);
+			oos.writeLong(((Long) value).longValue());
+		}
+		else if (value instanceof Boolean) {
+			oos.writeByte(((Boolean) value).booleanValue() ? TAG_TRUE : TAG_FALSE);
+		}
+		else if (value instanceof Double) {
+			oos.writeByte(TAG_DOUBLE);
+			oos.writeDouble(((Double) value).doubleValue());
+		}
+		else if (value instanceof Float) {
+			oos.writeByte(TAG_FLOAT);
+			oos.writeFloat(((Float) value).floatValue());
+		}
+		else if (value instanceof Short) {
+			oos.writeByte(TAG_SHORT);
+			oos.writeShort(((Short) value).shortValue());
+		}
+		else if (value instanceof Byte) {
+			oos.writeByte(TAG_BYTE);
+			oos.writeByte(((Byte) value).byteValue());
+		}
+		else if (value instanceof Character) {
+			oos.writeByte(TAG_CHARACTER);
+			oos.writeChar(((Character) value).charValue());
+		}
+		else {
+			oos.writeByte(TAG_OBJECT);
+			oos.writeObject(value);
+		}
+	}
+
+
+	protected Object doDecode(InputStream is) throws IOException, ClassNotFoundException {
+		ObjectInputStream ois = new CompactObjectInputStream(is);
+		byte tag = ois.readByte();
+		switch (tag) {
+			case TAG_INVOCATION:
+				return readInvocation(ois);
+			case TAG_RESULT_VALUE:
+				return new RemoteInvocationResult(readValue(ois));
+			case TAG_RESULT_EXCEPTION:
+				return new RemoteInvocationResult((Throwable) ois.readObject());
+			default:
+				return readValue(tag, ois);
+		}
+	}
+
+	private RemoteInvocation readInvocation(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+		String methodName = ois.readUTF();
+		Class[] parameterTypes = null;
+		int parameterCount = ois.readInt();
+		if (parameterCount >= 0) {
+			parameterTypes = new Class[parameterCount];
+			for (int i = 0; i < parameterCount; i++) {
+				parameterTypes[i] = readType(ois);
+			}
+		}
+		Object[] arguments = null;
+		int argumentCount = ois.readInt();
+		if (argumentCount >= 0) {
+			arguments = new Object[argumentCount];
+			for (int i = 0; i < argumentCount; i++) {
+				arguments[i] = readValue(ois);
+			}
+		}
+		RemoteInvocation invocation = new RemoteInvocation(methodName, parameterTypes, arguments);
+		invocation.setAttributes((Map) ois.readObject());
+		return invocation;
+	}
+
+	private Class readType(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+		byte code = ois.readByte();
+		if (code == TYPE_CLASS) {
+			return (Class) ois.readObject();
+		}
+		if (code < 0 || code >= PRIMITIVE_TYPES.length) {
+			throw new StreamCorruptedException("Invalid primitive type code: " + code);
+		}
+		return PRIMITIVE_TYPES[code];
+	}
+
+	private Object readValue(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+		return readValue(ois.readByte(), ois);
+	}
+
+	private Object readValue(byte tag, ObjectInputStream ois) throws IOException, ClassNotFoundException {
+		switch (tag) {
+			case TAG_NULL:
+				return null;
+			case TAG_OBJECT:
+				return ois.readObject();
+			case TAG_STRING:
+				return ois.readUTF();
+			case TAG_INTEGER:
+				return new Integer(ois.readInt());
+			case TAG_LONG:
+				return new Long(ois.readLong());
+			case TAG_TRUE:
+				return Boolean.TRUE;
+			case TAG_FALSE:
+				return Boolean.FALSE;
+			case TAG_DOUBLE:
+				return new Double(ois.readDouble());
+			case TAG_FLOAT:
+				return new Float(ois.readFloat());
+			case TAG_SHORT:
+				return new Short(ois.readShort());
+			case TAG_BYTE:
+				return new Byte(ois.readByte());
+			case TAG_CHARACTER:
+				return new Character(ois.readChar());
+			default:
+				throw new StreamCorruptedException("Invalid value tag: " + tag);
+		}
+	}
+
+
+	/**
+	 * ObjectOutputStream that writes class descriptors of serializable
+	 * classes as class name plus serialVersionUID.
+	 */
+	private static class CompactObjectOutputStream extends ObjectOutputStream {
+
+		public CompactObjectOutputStream(OutputStream os) throws IOException {
+			super(os);
+		}
+
+		protected void writeClassDescriptor(ObjectStreamClass desc) throws IOException {
+			Class clazz = desc.forClass();
+			if (clazz != null && ObjectStreamClass.lookup(clazz) != null) {
+				writeByte(DESCRIPTOR_COMPACT);
+				writeUTF(desc.getName());
+				writeLong(desc.getSerialVersionUID());
+			}
+			else {
+				// Class object for a primitive type or a non-serializable class
+				writeByte(DESCRIPTOR_FULL);
+				super.writeClassDescriptor(desc);
+			}
+		}
+	}
+
+
+	/**
+	 * ObjectInputStream that reads class descriptors written by
+	 * CompactObjectOutputStream, resolving them against local classes.
+	 * Loads classes via the thread context class loader, if available.
+	 */
+	private static class CompactObjectInputStream extends ObjectInputStream {
+
+		public CompactObjectInputStream(InputStream is) throws IOException {
+			super(is);
+		}
+
+		protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+			byte type = readByte();
+			if (type == DESCRIPTOR_FULL) {
+				return super.readClassDescriptor();
+			}
+			if (type != DESCRIPTOR_COMPACT) {
+				throw new StreamCorruptedException("Invalid class descriptor type: " + type);
+			}
+			String className = readUTF();
+			long serialVersionUID = readLong();
+			ObjectStreamClass desc = ObjectStreamClass.lookup(loadClass(className));
+			if (desc == null) {
+				throw new InvalidClassException(className, "Local class is not serializable");
+			}
+			if (desc.getSerialVersionUID() != serialVersionUID) {
+				throw new InvalidClassException(className,
+						"Local class incompatible: stream classdesc serialVersionUID = " + serialVersionUID +
+						", local class serialVersionUID = " + desc.getSerialVersionUID());
+			}
+			return desc;
+		}
+
+		protected Class resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+			try {
+				return loadClass(desc.getName());
+			}
+			catch (ClassNotFoundException ex) {
+				return super.resolveClass(desc);
+			}
+		}
+
+		private Class loadClass(String className) throws ClassNotFoundException {
+			ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+			if (classLoader != null) {
+				try {
+					return Class.forName(className, false, classLoader);
+				}
+				catch (ClassNotFoundException ex) {
+					// fall back to the class loader that loaded this codec
+				}
+			}
+			return Class.forName(className, false, CompactHttpInvokerCodec.class.getClassLoader());
+		}
+	}
+
+}
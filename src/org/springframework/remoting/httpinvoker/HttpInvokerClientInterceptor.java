@@ -17,11 +17,15 @@
 package org.springframework.remoting.httpinvoker;
 
 import java.io.IOException;
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
 
 import org.springframework.remoting.RemoteAccessException;
+import org.springframework.remoting.RemoteConnectFailureException;
 import org.springframework.remoting.support.RemoteInvocation;
 import org.springframework.remoting.support.RemoteInvocationBasedAccessor;
 import org.springframework.remoting.support.RemoteInvocationResult;
@@ -34,17 +38,42 @@ import org.springframework.remoting.support.RemoteInvocationResult;
  * invocation results. Uses Java serialization just like RMI, but provides
  * the same ease of setup as Caucho's HTTP-based Hessian and Burlap protocols.
  *
+ * <p>Supports a batching mode, activated by specifying a "batchWindow":
+ * Invocations that are issued concurrently within that time window are
+ * sent as a single BatchRemoteInvocation, with each calling thread
+ * receiving its own result. This trades a small delay per invocation
+ * for fewer HTTP round trips, for clients that issue many small calls
+ * from many threads. Requires an HttpInvokerServiceExporter from
+ * Spring 1.1.2 or later.
+ *
  * @author Juergen Hoeller
  * @since 1.1
  * @see #setServiceUrl
+ * @see #setBatchWindow
  * @see HttpInvokerServiceExporter
  * @see HttpInvokerProxyFactoryBean
  */
 public class HttpInvokerClientInterceptor extends RemoteInvocationBasedAccessor
 		implements MethodInterceptor, HttpInvokerClientConfiguration {
 
+	/**
+	 * Default maximum number of invocations per batch: 32.
+	 */
+	public static final int DEFAULT_MAX_BATCH_SIZE = 32;
+
+
 	private HttpInvokerRequestExecutor httpInvokerRequestExecutor = new SimpleHttpInvokerRequestExecutor();
 
+	private long batchWindow = 0;
+
+	private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+	private final Object batchMonitor = new Object();
+
+	/** Batch that is currently collecting invocations, if any */
+	private List openBatch;
+
+
 	public void setHttpInvokerRequestExecutor(HttpInvokerRequestExecutor httpInvokerRequestExecutor) {
 		this.httpInvokerRequestExecutor = httpInvokerRequestExecutor;
 	}
@@ -53,11 +82,60 @@ public class HttpInvokerClientInterceptor extends RemoteInvocationBasedAccessor
 		return httpInvokerRequestExecutor;
 	}
 
+	/**
+	 * Set the time window (in milliseconds) to collect concurrent invocations
+	 * for a single batch request. Default is 0, sending each invocation
+	 * in a separate request.
+	 * <p>The first invocation that does not find an open batch starts one
+	 * and waits for the given time (or until the maximum batch size has been
+	 * reached) before sending it. Invocations that arrive in the meantime
+	 * join the batch. A batch with just one invocation will be sent as a
+	 * plain invocation. A window of a few milliseconds is usually sufficient.
+	 * @see #setMaxBatchSize
+	 * @see BatchRemoteInvocation
+	 */
+	public void setBatchWindow(long batchWindow) {
+		this.batchWindow = batchWindow;
+	}
+
+	/**
+	 * Return the time window (in milliseconds) to collect concurrent
+	 * invocations for a single batch request.
+	 */
+	public long getBatchWindow() {
+		return batchWindow;
+	}
+
+	/**
+	 * Set the maximum number of invocations per batch. Default is 32.
+	 * A batch will be sent right away once it reaches this size.
+	 */
+	public void setMaxBatchSize(int maxBatchSize) {
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	/**
+	 * Return the maximum number of invocations per batch.
+	 */
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+
 	public Object invoke(MethodInvocation methodInvocation) throws Throwable {
 		RemoteInvocation invocation = createRemoteInvocation(methodInvocation);
 		RemoteInvocationResult result = null;
 		try {
-			result = executeRequest(invocation);
+			if (this.batchWindow > 0) {
+				result = executeBatchedRequest(invocation);
+			}
+			else {
+				result = executeRequest(invocation);
+			}
+		}
+		catch (ConnectException ex) {
+			throw new RemoteConnectFailureException(
+					"Cannot connect to HTTP invoker remote service at [" + getServiceUrl() + "]", ex);
 		}
 		catch (IOException ex) {
 			throw new RemoteAccessException("Cannot access HTTP invoker remote service at [" + getServiceUrl() + "]", ex);
@@ -86,6 +164,128 @@ public class HttpInvokerClientInterceptor extends RemoteInvocationBasedAccessor
 		return getHttpInvokerRequestExecutor().executeRequest(this, invocation);
 	}
 
+	/**
+	 * Execute the given remote invocation as part of a batch, collecting
+	 * concurrent invocations within the batch window.
+	 * @param invocation the RemoteInvocation to execute
+	 * @return the RemoteInvocationResult object
+	 * @throws IOException if thrown by I/O operations
+	 * @throws ClassNotFoundException if thrown during deserialization
+	 * @see #setBatchWindow
+	 * @see #executeRequest
+	 */
+	protected RemoteInvocationResult executeBatchedRequest(RemoteInvocation invocation)
+			throws IOException, ClassNotFoundException {
+
+		BatchedCall call = new BatchedCall(invocation);
+		List batch = null;
+		synchronized (this.batchMonitor) {
+			if (this.openBatch != null) {
+				// join the open batch and wait for it to be executed
+				this.openBatch.add(call);
+				if (this.openBatch.size() >= this.maxBatchSize) {
+					this.openBatch = null;
+					this.batchMonitor.notifyAll();
+				}
+				boolean interrupted = false;
+				while (!call.isDone()) {
+					try {
+						this.batchMonitor.wait();
+					}
+					catch (InterruptedException ex) {
+						// keep waiting: the batch has already been handed off
+						interrupted = true;
+					}
+				}
+				if (interrupted) {
+					Thread.currentThread().interrupt();
+				}
+				return call.getResult();
+			}
+			// start a new batch and collect further invocations within the window
+			batch = new ArrayList(this.maxBatchSize);
+			batch.add(call);
+			this.openBatch = batch;
+			long deadline = System.currentTimeMillis() + this.batchWindow;
+			long remaining = this.batchWindow;
+			while (this.openBatch == batch && batch.size() < this.maxBatchSize && remaining > 0) {
+				try {
+					this.batchMonitor.wait(remaining);
+				}
+				catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+				remaining = deadline - System.currentTimeMillis();
+			}
+			if (this.openBatch == batch) {
+				this.openBatch = null;
+			}
+		}
+
+		try {
+			executeBatch(batch);
+		}
+		finally {
+			synchronized (this.batchMonitor) {
+				for (int i = 0; i < batch.size(); i++) {
+					((BatchedCall) batch.get(i)).markDone();
+				}
+				this.batchMonitor.notifyAll();
+			}
+		}
+		return call.getResult();
+	}
+
+	/**
+	 * Execute the given batch of calls, as single invocation if it
+	 * contains just one call, and store the result in each call.
+	 */
+	private void executeBatch(List batch) {
+		if (batch.size() == 1) {
+			BatchedCall call = (BatchedCall) batch.get(0);
+			try {
+				call.setResult(executeRequest(call.getInvocation()));
+			}
+			catch (Exception ex) {
+				call.setFailure(ex);
+			}
+			return;
+		}
+		RemoteInvocation[] invocations = new RemoteInvocation[batch.size()];
+		for (int i = 0; i < invocations.length; i++) {
+			invocations[i] = ((BatchedCall) batch.get(i)).getInvocation();
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Sending batch of " + invocations.length + " invocations to HTTP invoker service at [" +
+					getServiceUrl() + "]");
+		}
+		try {
+			RemoteInvocationResult batchResult = executeRequest(new BatchRemoteInvocation(invocations));
+			if (batchResult.hasException()) {
+				for (int i = 0; i < batch.size(); i++) {
+					((BatchedCall) batch.get(i)).setResult(batchResult);
+				}
+				return;
+			}
+			Object value = batchResult.getValue();
+			if (!(value instanceof RemoteInvocationResult[]) ||
+					((RemoteInvocationResult[]) value).length != invocations.length) {
+				throw new IOException("Batch result needs to be a RemoteInvocationResult array of length " +
+						invocations.length + ": " + value);
+			}
+			RemoteInvocationResult[] results = (RemoteInvocationResult[]) value;
+			for (int i = 0; i < batch.size(); i++) {
+				((BatchedCall) batch.get(i)).setResult(results[i]);
+			}
+		}
+		catch (Exception ex) {
+			for (int i = 0; i < batch.size(); i++) {
+				((BatchedCall) batch.get(i)).setFailure(ex);
+			}
+		}
+	}
+
 	/**
 	 * Recreate the invocation result contained in the given RemoteInvocationResult
 	 * object. The default implementation calls the default recreate method.
@@ -100,4 +300,63 @@ public class HttpInvokerClientInterceptor extends RemoteInvocationBasedAccessor
 		return result.recreate();
 	}
 
+	/**
+	 * Holder for an invocation that is part of a batch, and its outcome.
+	 * Guarded by the batch monitor of the interceptor, except for the
+	 * result, which is set before the call is marked as done.
+	 */
+	private static class BatchedCall {
+
+		private final RemoteInvocation invocation;
+
+		private RemoteInvocationResult result;
+
+		private Exception failure;
+
+		private boolean done;
+
+		private BatchedCall(RemoteInvocation invocation) {
+			this.invocation = invocation;
+		}
+
+		private RemoteInvocation getInvocation() {
+			return invocation;
+		}
+
+		private void setResult(RemoteInvocationResult result) {
+			this.result = result;
+		}
+
+		private void setFailure(Exception failure) {
+			this.failure = failure;
+		}
+
+		private void markDone() {
+			this.done = true;
+		}
+
+		private boolean isDone() {
+			return done;
+		}
+
+		private RemoteInvocationResult getResult() throws IOException, ClassNotFoundException {
+			if (this.failure instanceof IOException) {
+				throw (IOException) this.failure;
+			}
+			if (this.failure instanceof ClassNotFoundException) {
+				throw (ClassNotFoundException) this.failure;
+			}
+			if (this.failure instanceof RuntimeException) {
+				throw (RuntimeException) this.failure;
+			}
+			if (this.failure != null) {
+				throw new IOException("Batch execution failed: " + this.failure);
+			}
+			if (this.result == null) {
+				throw new IOException("No result received for batched invocation");
+			}
+			return this.result;
+		}
+	}
+
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.remoting.httpinvoker;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Strategy interface for encoding and decoding the objects that
+ * HTTP invoker clients and services exchange, that is, RemoteInvocation
+ * and RemoteInvocationResult objects.
+ *
+ * <p>Two implementations are provided out of the box:
+ * <ul>
+ * <li><b>SerializationHttpInvokerCodec:</b>
+ * Uses standard Java serialization. This is the default.
+ * <li><b>CompactHttpInvokerCodec:</b>
+ * Uses Java serialization with compact class descriptors,
+ * plus a specialized binary encoding for invocations,
+ * primitive wrappers and Strings.
+ * </ul>
+ *
+ * <p>Client and server need to use compatible codecs. The server
+ * chooses the codec according to the content type of the request.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see AbstractHttpInvokerRequestExecutor#setCodec
+ * @see HttpInvokerServiceExporter#setCodecs
+ */
+public interface HttpInvokerCodec {
+
+	/**
+	 * Return the content type of the encoded representation,
+	 * to be used as HTTP "Content-Type" header.
+	 */
+	String getContentType();
+
+	/**
+	 * Encode the given object to the given OutputStream.
+	 * Does not close the stream.
+	 * @param obj the object to encode
+	 * @param os the OutputStream to write to
+	 * @throws IOException if thrown by I/O methods
+	 */
+	void encode(Object obj, OutputStream os) throws IOException;
+
+	/**
+	 * Decode an object from the given InputStream.
+	 * Does not close the stream.
+	 * @param is the InputStream to read from
+	 * @return the decoded object
+	 * @throws IOException if thrown by I/O methods
+	 * @throws ClassNotFoundException if a class of the decoded object graph
+	 * could not be found
+	 */
+	Object decode(InputStream is) throws IOException, ClassNotFoundException;
+
+}
@@ -17,13 +17,14 @@
 package org.springframework.remoting.httpinvoker;
 
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.remoting.support.RemoteInvocation;
 import org.springframework.remoting.support.RemoteInvocationBasedExporter;
 import org.springframework.remoting.support.RemoteInvocationResult;
@@ -38,17 +39,98 @@ import org.springframework.web.servlet.mvc.Controller;
  * invocation results. Uses Java serialization just like RMI, but provides
  * the same ease of setup as Caucho's HTTP-based Hessian and Burlap protocols.
  *
+ * <p>The actual encoding is determined by pluggable HttpInvokerCodecs:
+ * The codec is chosen according to the content type of the request, and
+ * used for both the request and the response. By default, only standard
+ * Java serialization is supported.
+ *
+ * <p>Invocations are decoded directly from the request stream, and results
+ * encoded directly to the response stream, through buffers that are pooled
+ * across requests. Clients may send their requests with chunked transfer
+ * encoding, as supported by the HTTP invoker request executors.
+ *
+ * <p>Executes batches of invocations sent by clients in batching mode,
+ * returning the results in the order of the invocations. The invocations
+ * of a batch are executed one after the other, unless a "batchTaskExecutor"
+ * is specified for executing them in parallel.
+ *
  * @author Juergen Hoeller
  * @since 1.1
  * @see HttpInvokerProxyFactoryBean
+ * @see #setCodecs
+ * @see #setBatchTaskExecutor
  */
 public class HttpInvokerServiceExporter extends RemoteInvocationBasedExporter
 		implements Controller, InitializingBean {
 
 	protected static final String CONTENT_TYPE_SERIALIZED_OBJECT = "application/x-java-serialized-object";
 
+	private HttpInvokerCodec[] codecs = new HttpInvokerCodec[] {new SerializationHttpInvokerCodec()};
+
+	private TaskExecutor batchTaskExecutor;
+
+	private final BufferPool bufferPool = new BufferPool();
+
+	/** Codec for the request that is currently handled by the current thread */
+	private final ThreadLocal currentCodec = new ThreadLocal();
+
 	private Object proxy;
 
+
+	/**
+	 * Set the codec to use for decoding invocations and encoding results.
+	 * Default is a SerializationHttpInvokerCodec, using standard Java serialization.
+	 * @see #setCodecs
+	 */
+	public void setCodec(HttpInvokerCodec codec) {
+		setCodecs(new HttpInvokerCodec[] {codec});
+	}
+
+	/**
+	 * Set the codecs to support for decoding invocations and encoding results.
+	 * The codec whose content type matches the content type of a request will
+	 * be used for that request, with the first codec used as fallback.
+	 * <p>For example, specify a CompactHttpInvokerCodec plus a
+	 * SerializationHttpInvokerCodec to serve clients that use the compact
+	 * format as well as clients that use standard serialization.
+	 * @see SerializationHttpInvokerCodec
+	 * @see CompactHttpInvokerCodec
+	 * @see AbstractHttpInvokerRequestExecutor#setCodec
+	 */
+	public void setCodecs(HttpInvokerCodec[] codecs) {
+		if (codecs == null || codecs.length == 0) {
+			throw new IllegalArgumentException("At least one codec is required");
+		}
+		this.codecs = codecs;
+	}
+
+	/**
+	 * Return the codecs to support for decoding invocations and encoding results.
+	 */
+	public HttpInvokerCodec[] getCodecs() {
+		return codecs;
+	}
+
+	/**
+	 * Set the TaskExecutor to use for executing the invocations of a batch
+	 * in parallel. Default is none, executing them one after the other.
+	 * <p>The first invocation of a batch is executed in the request thread,
+	 * the others via the given executor. Use a bounded executor, such as a
+	 * SimpleAsyncTaskExecutor with a concurrency limit.
+	 * @see BatchRemoteInvocation
+	 * @see org.springframework.core.task.SimpleAsyncTaskExecutor#setConcurrencyLimit
+	 */
+	public void setBatchTaskExecutor(TaskExecutor batchTaskExecutor) {
+		this.batchTaskExecutor = batchTaskExecutor;
+	}
+
+	/**
+	 * Return the TaskExecutor to use for executing the invocations of a batch.
+	 */
+	public TaskExecutor getBatchTaskExecutor() {
+		return batchTaskExecutor;
+	}
+
 	public void afterPropertiesSet() {
 		this.proxy = getProxyForService();
 	}
@@ -59,24 +141,118 @@ public class HttpInvokerServiceExporter extends RemoteInvocationBasedExporter
 	 */
 	public ModelAndView handleRequest(HttpServletRequest request, HttpServletResponse response)
 			throws IOException, ClassNotFoundException {
-		RemoteInvocation invocation = readRemoteInvocation(request);
-		RemoteInvocationResult result = invokeAndCreateResult(invocation, this.proxy);
-		writeRemoteInvocationResult(response, result);
-		return null;
+		this.currentCodec.set(getCodec(request));
+		try {
+			RemoteInvocation invocation = readRemoteInvocation(request);
+			RemoteInvocationResult result = null;
+			if (invocation instanceof BatchRemoteInvocation) {
+				result = new RemoteInvocationResult(invokeBatch((BatchRemoteInvocation) invocation));
+			}
+			else {
+				result = invokeAndCreateResult(invocation, this.proxy);
+			}
+			writeRemoteInvocationResult(response, result);
+			return null;
+		}
+		finally {
+			this.currentCodec.set(null);
+		}
+	}
+
+	/**
+	 * Execute the invocations of the given batch, in parallel
+	 * if a batchTaskExecutor has been specified.
+	 * @param batch the batch of invocations to execute
+	 * @return the results, in the order of the invocations
+	 * @see #setBatchTaskExecutor
+	 */
+	protected RemoteInvocationResult[] invokeBatch(BatchRemoteInvocation batch) {
+		RemoteInvocation[] invocations = batch.getInvocations();
+		if (invocations == null) {
+			return new RemoteInvocationResult[0];
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Executing batch of " + invocations.length + " remote invocations");
+		}
+		if (this.batchTaskExecutor == null || invocations.length < 2) {
+			RemoteInvocationResult[] results = new RemoteInvocationResult[invocations.length];
+			for (int i = 0; i < invocations.length; i++) {
+				results[i] = invokeAndCreateResult(invocations[i], this.proxy);
+			}
+			return results;
+		}
+		ParallelBatchExecution execution = new ParallelBatchExecution(invocations);
+		for (int i = 1; i < invocations.length; i++) {
+			this.batchTaskExecutor.execute(execution.createTask(i));
+		}
+		execution.createTask(0).run();
+		return execution.awaitResults();
+	}
+
+	/**
+	 * Determine the codec to use for the given HTTP request.
+	 * <p>Default implementation returns the codec whose content type
+	 * matches the content type of the request, ignoring parameters like
+	 * a charset, and falls back to the first codec.
+	 * @param request current HTTP request
+	 * @return the codec to use (never null)
+	 * @see #setCodecs
+	 */
+	protected HttpInvokerCodec getCodec(HttpServletRequest request) {
+		String contentType = request.getContentType();
+		if (contentType != null && this.codecs.length > 1) {
+			int paramIndex = contentType.indexOf(';');
+			if (paramIndex != -1) {
+				contentType = contentType.substring(0, paramIndex);
+			}
+			contentType = contentType.trim();
+			for (int i = 0; i < this.codecs.length; i++) {
+				if (this.codecs[i].getContentType().equalsIgnoreCase(contentType)) {
+					return this.codecs[i];
+				}
+			}
+		}
+		return this.codecs[0];
+	}
+
+	/**
+	 * Return the codec determined for the request that is currently
+	 * handled by this thread, falling back to the first codec.
+	 */
+	private HttpInvokerCodec getCurrentCodec() {
+		HttpInvokerCodec codec = (HttpInvokerCodec) this.currentCodec.get();
+		return (codec != null ? codec : this.codecs[0]);
 	}
 
 	/**
 	 * Read a RemoteInvocation from the given HTTP request.
+	 * <p>Delegates to <code>readRemoteInvocation(request, codec)</code>
+	 * with the codec determined for the current request.
 	 * @param request current HTTP request
 	 * @return the RemoteInvocation object
 	 * @throws IOException if thrown by operations on the request
 	 * @throws ClassNotFoundException if thrown by deserialization
+	 * @see #getCodec
 	 */
 	protected RemoteInvocation readRemoteInvocation(HttpServletRequest request)
 			throws IOException, ClassNotFoundException {
-		ObjectInputStream ois = new ObjectInputStream(request.getInputStream());
+		HttpInvokerCodec codec = (HttpInvokerCodec) this.currentCodec.get();
+		return readRemoteInvocation(request, (codec != null ? codec : getCodec(request)));
+	}
+
+	/**
+	 * Read a RemoteInvocation from the given HTTP request.
+	 * @param request current HTTP request
+	 * @param codec the codec to decode the request with
+	 * @return the RemoteInvocation object
+	 * @throws IOException if thrown by operations on the request
+	 * @throws ClassNotFoundException if thrown by deserialization
+	 */
+	protected RemoteInvocation readRemoteInvocation(HttpServletRequest request, HttpInvokerCodec codec)
+			throws IOException, ClassNotFoundException {
+		InputStream is = request.getInputStream();
 		try {
-			Object obj = ois.readObject();
+			Object obj = codec.decode(is);
 			if (!(obj instanceof RemoteInvocation)) {
 				throw new IOException("Deserialized object needs to be a RemoteInvocation: " + obj);
 			}
@@ -84,25 +260,89 @@ public class HttpInvokerServiceExporter extends RemoteInvocationBasedExporter
 			return invocation;
 		}
 		finally {
-			ois.close();
+			is.close();
 		}
 	}
 
 	/**
 	 * Write the given RemoteInvocationResult to the given HTTP response.
+	 * <p>Delegates to <code>writeRemoteInvocationResult(response, result, codec)</code>
+	 * with the codec determined for the current request.
 	 * @param response current HTTP response
 	 * @param result the RemoteInvocationResult object
 	 * @throws IOException if thrown by operations on the response
 	 */
 	protected void writeRemoteInvocationResult(HttpServletResponse response, RemoteInvocationResult result)
 			throws IOException {
-		response.setContentType(CONTENT_TYPE_SERIALIZED_OBJECT);
-		ObjectOutputStream oos = new ObjectOutputStream(response.getOutputStream());
+		writeRemoteInvocationResult(response, result, getCurrentCodec());
+	}
+
+	/**
+	 * Write the given RemoteInvocationResult to the given HTTP response.
+	 * @param response current HTTP response
+	 * @param result the RemoteInvocationResult object
+	 * @param codec the codec to encode the result with
+	 * @throws IOException if thrown by operations on the response
+	 */
+	protected void writeRemoteInvocationResult(
+			HttpServletResponse response, RemoteInvocationResult result, HttpInvokerCodec codec)
+			throws IOException {
+		response.setContentType(codec.getContentType());
+		OutputStream os = this.bufferPool.createOutputStream(response.getOutputStream());
 		try {
-			oos.writeObject(result);
+			codec.encode(result, os);
 		}
 		finally {
-			oos.close();
+			os.close();
+		}
+	}
+
+	/**
+	 * Holder for the results of a batch executed in parallel,
+	 * keeping track of the invocations that are still running.
+	 */
+	private class ParallelBatchExecution {
+
+		private final RemoteInvocation[] invocations;
+
+		private final RemoteInvocationResult[] results;
+
+		private int pendingCount;
+
+		private ParallelBatchExecution(RemoteInvocation[] invocations) {
+			this.invocations = invocations;
+			this.results = new RemoteInvocationResult[invocations.length];
+			this.pendingCount = invocations.length;
+		}
+
+		private Runnable createTask(final int index) {
+			return new Runnable() {
+				public void run() {
+					RemoteInvocationResult result = invokeAndCreateResult(invocations[index], proxy);
+					synchronized (ParallelBatchExecution.this) {
+						results[index] = result;
+						pendingCount--;
+						ParallelBatchExecution.this.notifyAll();
+					}
+				}
+			};
+		}
+
+		private synchronized RemoteInvocationResult[] awaitResults() {
+			boolean interrupted = false;
+			while (this.pendingCount > 0) {
+				try {
+					wait();
+				}
+				catch (InterruptedException ex) {
+					// keep waiting: the results are needed for the response
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			return this.results;
 		}
 	}
 
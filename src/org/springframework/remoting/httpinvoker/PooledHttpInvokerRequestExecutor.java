@@ -0,0 +1,428 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.remoting.httpinvoker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.URI;
+import org.apache.commons.httpclient.URIException;
+import org.apache.commons.httpclient.methods.PostMethod;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.remoting.support.RemoteInvocation;
+import org.springframework.remoting.support.RemoteInvocationResult;
+
+/**
+ * CommonsHttpInvokerRequestExecutor that manages its own pool of persistent
+ * HTTP 1.1 connections, with defaults tuned for HTTP invoker usage: HttpClient's
+ * MultiThreadedHttpConnectionManager only allows 2 connections per host and
+ * no timeouts by default, which serializes concurrent invocations and lets
+ * callers hang forever on an unresponsive server.
+ *
+ * <p>Connections are kept alive and reused across invocations, up to
+ * "maxConnectionsPerHost" per target host and "maxTotalConnections" overall.
+ * Invocations that find no free connection wait up to "connectionWaitTimeout".
+ * Pooled connections are checked for staleness before reuse, to detect
+ * connections that have been closed by the server in the meantime.
+ *
+ * <p>A custom HttpClient can be passed in, for example to share HTTP state
+ * or credentials. It needs to use a MultiThreadedHttpConnectionManager, which
+ * gets configured with this executor's pool settings and timeouts.
+ *
+ * <p>Exposes the number of open connections and active requests as well as
+ * request statistics for monitoring. Shuts down its own connection pool on
+ * destruction; the pool of a given HttpClient is left to the caller.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see org.apache.commons.httpclient.MultiThreadedHttpConnectionManager
+ */
+public class PooledHttpInvokerRequestExecutor extends CommonsHttpInvokerRequestExecutor
+		implements DisposableBean {
+
+	/**
+	 * Default maximum number of connections per host: 20.
+	 */
+	public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 20;
+
+	/**
+	 * Default maximum number of connections overall: 100.
+	 */
+	public static final int DEFAULT_MAX_TOTAL_CONNECTIONS = 100;
+
+	/**
+	 * Default timeout for establishing a connection: 10 seconds.
+	 */
+	public static final int DEFAULT_CONNECT_TIMEOUT = 10 * 1000;
+
+	/**
+	 * Default timeout for waiting for response data: 60 seconds.
+	 */
+	public static final int DEFAULT_READ_TIMEOUT = 60 * 1000;
+
+	/**
+	 * Default timeout for waiting for a free pooled connection: 30 seconds.
+	 */
+	public static final long DEFAULT_CONNECTION_WAIT_TIMEOUT = 30 * 1000;
+
+
+	private MultiThreadedHttpConnectionManager connectionManager;
+
+	private boolean ownConnectionManager;
+
+	private int maxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+
+	private int maxTotalConnections = DEFAULT_MAX_TOTAL_CONNECTIONS;
+
+	private boolean staleConnectionCheck = true;
+
+	private int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+
+	private int readTimeout = DEFAULT_READ_TIMEOUT;
+
+	private long connectionWaitTimeout = DEFAULT_CONNECTION_WAIT_TIMEOUT;
+
+	private int activeRequestCount = 0;
+
+	private long requestCount = 0;
+
+	private long failureCount = 0;
+
+	private long totalRequestTime = 0;
+
+
+	/**
+	 * Create a new PooledHttpInvokerRequestExecutor with default settings.
+	 */
+	public PooledHttpInvokerRequestExecutor() {
+		super(new HttpClient(new MultiThreadedHttpConnectionManager()));
+		this.connectionManager = (MultiThreadedHttpConnectionManager) getHttpClient().getHttpConnectionManager();
+		this.ownConnectionManager = true;
+		applySettings();
+	}
+
+	/**
+	 * Create a new PooledHttpInvokerRequestExecutor for the given HttpClient,
+	 * with default settings.
+	 * @param httpClient the HttpClient instance to use for this request executor
+	 * @see #setHttpClient
+	 */
+	public PooledHttpInvokerRequestExecutor(HttpClient httpClient) {
+		super(httpClient);
+		this.connectionManager = getConnectionManager(httpClient);
+		applySettings();
+	}
+
+	/**
+	 * Set the HttpClient instance to use for this request executor.
+	 * <p>The HttpClient needs to use a MultiThreadedHttpConnectionManager,
+	 * which gets configured with this executor's pool settings and timeouts.
+	 * It will not be shut down on destruction of this executor.
+	 * @throws IllegalArgumentException if the HttpClient does not use
+	 * a MultiThreadedHttpConnectionManager
+	 */
+	public void setHttpClient(HttpClient httpClient) {
+		MultiThreadedHttpConnectionManager connectionManager = getConnectionManager(httpClient);
+		if (this.ownConnectionManager && connectionManager != this.connectionManager) {
+			this.connectionManager.shutdown();
+			this.ownConnectionManager = false;
+		}
+		super.setHttpClient(httpClient);
+		this.connectionManager = connectionManager;
+		applySettings();
+	}
+
+	private MultiThreadedHttpConnectionManager getConnectionManager(HttpClient httpClient) {
+		if (httpClient == null || !(httpClient.getHttpConnectionManager() instanceof MultiThreadedHttpConnectionManager)) {
+			throw new IllegalArgumentException(
+					"PooledHttpInvokerRequestExecutor requires an HttpClient with a MultiThreadedHttpConnectionManager");
+		}
+		return (MultiThreadedHttpConnectionManager) httpClient.getHttpConnectionManager();
+	}
+
+	/**
+	 * Apply the pool settings and timeouts to the current HttpClient
+	 * and its connection manager.
+	 */
+	private void applySettings() {
+		this.connectionManager.setMaxConnectionsPerHost(this.maxConnectionsPerHost);
+		this.connectionManager.setMaxTotalConnections(this.maxTotalConnections);
+		this.connectionManager.setConnectionStaleCheckingEnabled(this.staleConnectionCheck);
+		getHttpClient().setConnectionTimeout(this.connectTimeout);
+		getHttpClient().setTimeout(this.readTimeout);
+		getHttpClient().setHttpConnectionFactoryTimeout(this.connectionWaitTimeout);
+	}
+
+	/**
+	 * Set the maximum number of connections per target host.
+	 * Default is 20.
+	 * @see org.apache.commons.httpclient.MultiThreadedHttpConnectionManager#setMaxConnectionsPerHost
+	 */
+	public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+		this.connectionManager.setMaxConnectionsPerHost(maxConnectionsPerHost);
+		this.maxConnectionsPerHost = maxConnectionsPerHost;
+	}
+
+	/**
+	 * Return the maximum number of connections per target host.
+	 */
+	public int getMaxConnectionsPerHost() {
+		return maxConnectionsPerHost;
+	}
+
+	/**
+	 * Set the maximum number of connections overall.
+	 * Default is 100.
+	 * @see org.apache.commons.httpclient.MultiThreadedHttpConnectionManager#setMaxTotalConnections
+	 */
+	public void setMaxTotalConnections(int maxTotalConnections) {
+		this.connectionManager.setMaxTotalConnections(maxTotalConnections);
+		this.maxTotalConnections = maxTotalConnections;
+	}
+
+	/**
+	 * Return the maximum number of connections overall.
+	 */
+	public int getMaxTotalConnections() {
+		return maxTotalConnections;
+	}
+
+	/**
+	 * Set the timeout (in milliseconds) for establishing a connection.
+	 * Default is 10 seconds; 0 indicates no timeout.
+	 * @see org.apache.commons.httpclient.HttpClient#setConnectionTimeout
+	 */
+	public void setConnectTimeout(int connectTimeout) {
+		getHttpClient().setConnectionTimeout(connectTimeout);
+		this.connectTimeout = connectTimeout;
+	}
+
+	/**
+	 * Return the timeout (in milliseconds) for establishing a connection.
+	 */
+	public int getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	/**
+	 * Set the timeout (in milliseconds) for waiting for response data,
+	 * i.e. the socket timeout. Default is 60 seconds; 0 indicates no timeout.
+	 * @see org.apache.commons.httpclient.HttpClient#setTimeout
+	 */
+	public void setReadTimeout(int readTimeout) {
+		getHttpClient().setTimeout(readTimeout);
+		this.readTimeout = readTimeout;
+	}
+
+	/**
+	 * Return the timeout (in milliseconds) for waiting for response data.
+	 */
+	public int getReadTimeout() {
+		return readTimeout;
+	}
+
+	/**
+	 * Set the timeout (in milliseconds) for waiting for a free connection
+	 * when the connection limits have been reached. Default is 30 seconds;
+	 * 0 indicates no timeout.
+	 * @see org.apache.commons.httpclient.HttpClient#setHttpConnectionFactoryTimeout
+	 */
+	public void setConnectionWaitTimeout(long connectionWaitTimeout) {
+		getHttpClient().setHttpConnectionFactoryTimeout(connectionWaitTimeout);
+		this.connectionWaitTimeout = connectionWaitTimeout;
+	}
+
+	/**
+	 * Return the timeout (in milliseconds) for waiting for a free connection.
+	 */
+	public long getConnectionWaitTimeout() {
+		return connectionWaitTimeout;
+	}
+
+	/**
+	 * Set whether to check pooled connections for staleness before reusing
+	 * them. Default is true. Costs a quick read attempt per invocation, but
+	 * avoids failures on connections that have been closed by the server.
+	 * @see org.apache.commons.httpclient.MultiThreadedHttpConnectionManager#setConnectionStaleCheckingEnabled
+	 */
+	public void setStaleConnectionCheck(boolean staleConnectionCheck) {
+		this.connectionManager.setConnectionStaleCheckingEnabled(staleConnectionCheck);
+		this.staleConnectionCheck = staleConnectionCheck;
+	}
+
+	/**
+	 * Return whether pooled connections are checked for staleness before reuse.
+	 */
+	public boolean isStaleConnectionCheck() {
+		return staleConnectionCheck;
+	}
+
+
+	protected RemoteInvocationResult doExecuteRequest(
+			HttpInvokerClientConfiguration config, ByteArrayOutputStream baos)
+			throws IOException, ClassNotFoundException {
+		requestStarted();
+		try {
+			return super.doExecuteRequest(config, baos);
+		}
+		finally {
+			requestFinished();
+		}
+	}
+
+	protected RemoteInvocationResult doExecuteStreamingRequest(
+			HttpInvokerClientConfiguration config, RemoteInvocation invocation)
+			throws IOException, ClassNotFoundException {
+		requestStarted();
+		try {
+			return super.doExecuteStreamingRequest(config, invocation);
+		}
+		finally {
+			requestFinished();
+		}
+	}
+
+	private synchronized void requestStarted() {
+		this.activeRequestCount++;
+	}
+
+	private synchronized void requestFinished() {
+		this.activeRequestCount--;
+	}
+
+	/**
+	 * Measures the execution of the given PostMethod for the request statistics.
+	 */
+	protected void executePostMethod(
+			HttpInvokerClientConfiguration config, HttpClient httpClient, PostMethod postMethod)
+			throws IOException {
+		long startTime = System.currentTimeMillis();
+		boolean success = false;
+		try {
+			super.executePostMethod(config, httpClient, postMethod);
+			success = true;
+		}
+		finally {
+			long requestTime = System.currentTimeMillis() - startTime;
+			synchronized (this) {
+				this.requestCount++;
+				this.totalRequestTime += requestTime;
+				if (!success) {
+					this.failureCount++;
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Return the number of connections that the pool currently holds,
+	 * whether in use or idle.
+	 * <p>Delegates to the connection manager's <code>getConnectionsInUse</code>,
+	 * which despite its name counts all connections that have been created
+	 * and not closed yet, including idle ones that have been released back
+	 * to the pool. For the number of connections that are actually in use,
+	 * see <code>getActiveRequestCount</code>.
+	 * @see #getActiveRequestCount
+	 * @see org.apache.commons.httpclient.MultiThreadedHttpConnectionManager#getConnectionsInUse()
+	 */
+	public int getOpenConnections() {
+		return this.connectionManager.getConnectionsInUse();
+	}
+
+	/**
+	 * Return the number of connections to the host of the given service URL
+	 * that the pool currently holds, whether in use or idle.
+	 * <p>Like <code>getOpenConnections()</code>, this includes idle connections
+	 * despite the name of the connection manager method it delegates to.
+	 * @param serviceUrl the URL of an HTTP invoker service
+	 * @throws IllegalArgumentException if the URL is invalid
+	 * @see org.apache.commons.httpclient.MultiThreadedHttpConnectionManager#getConnectionsInUse(HostConfiguration)
+	 */
+	public int getOpenConnections(String serviceUrl) {
+		try {
+			// determine the host the same way as HttpClient does for a PostMethod
+			HostConfiguration hostConfiguration = new HostConfiguration();
+			hostConfiguration.setHost(new URI(serviceUrl.toCharArray()));
+			return this.connectionManager.getConnectionsInUse(hostConfiguration);
+		}
+		catch (URIException ex) {
+			throw new IllegalArgumentException("Invalid service URL [" + serviceUrl + "]: " + ex.getMessage());
+		}
+	}
+
+	/**
+	 * Return the number of requests that are currently executing,
+	 * including requests that are still waiting for a pooled connection.
+	 * <p>This counts requests, not connections: It is an upper bound for the
+	 * number of connections in use, which can be lower if the pool limits
+	 * the connections per host or in total.
+	 * @see #setMaxConnectionsPerHost
+	 * @see #setMaxTotalConnections
+	 */
+	public synchronized int getActiveRequestCount() {
+		return activeRequestCount;
+	}
+
+	/**
+	 * Return the number of requests executed so far, including failed ones.
+	 */
+	public synchronized long getRequestCount() {
+		return requestCount;
+	}
+
+	/**
+	 * Return the number of requests that failed with an I/O error,
+	 * for example because of a timeout.
+	 */
+	public synchronized long getFailureCount() {
+		return failureCount;
+	}
+
+	/**
+	 * Return the average time (in milliseconds) for sending a request and
+	 * receiving the response status and headers, or 0 if no requests yet.
+	 * Does not include reading the response body.
+	 */
+	public synchronized long getAverageRequestTime() {
+		return (this.requestCount > 0 ? this.totalRequestTime / this.requestCount : 0);
+	}
+
+	public String toString() {
+		return getClass().getName() + ": openConnections=" + getOpenConnections() +
+				", activeRequests=" + getActiveRequestCount() +
+				", maxConnectionsPerHost=" + getMaxConnectionsPerHost() +
+				", maxTotalConnections=" + getMaxTotalConnections() + ", requests=" + getRequestCount() +
+				", failures=" + getFailureCount() + ", averageRequestTime=" + getAverageRequestTime();
+	}
+
+
+	/**
+	 * Shuts down the connection pool, closing all connections,
+	 * unless it belongs to a given HttpClient.
+	 */
+	public void destroy() {
+		if (this.ownConnectionManager) {
+			this.connectionManager.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.remoting.httpinvoker;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+/**
+ * HttpInvokerCodec implementation that uses standard Java serialization,
+ * with "application/x-java-serialized-object" as content type.
+ * This is the default codec of HTTP invoker clients and services.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see java.io.ObjectOutputStream
+ * @see java.io.ObjectInputStream
+ */
+public class SerializationHttpInvokerCodec extends AbstractHttpInvokerCodec {
+
+	public static final String CONTENT_TYPE_SERIALIZED_OBJECT = "application/x-java-serialized-object";
+
+
+	public String getContentType() {
+		return CONTENT_TYPE_SERIALIZED_OBJECT;
+	}
+
+	protected void doEncode(Object obj, OutputStream os) throws IOException {
+		ObjectOutputStream oos = new ObjectOutputStream(os);
+		oos.writeObject(obj);
+		oos.flush();
+	}
+
+	protected Object doDecode(InputStream is) throws IOException, ClassNotFoundException {
+		return new ObjectInputStream(is).readObject();
+	}
+
+}
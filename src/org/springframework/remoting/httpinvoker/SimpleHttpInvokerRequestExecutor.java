@@ -18,10 +18,13 @@ package org.springframework.remoting.httpinvoker;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
 
+import org.springframework.remoting.support.RemoteInvocation;
 import org.springframework.remoting.support.RemoteInvocationResult;
 
 /**
@@ -29,6 +32,11 @@ import org.springframework.remoting.support.RemoteInvocationResult;
  * to execute POST requests, without support for HTTP authentication
  * or advanced configuration options.
  *
+ * <p>Supports "chunkedStreaming" on JDK 1.5+, where HttpURLConnection
+ * offers a chunked streaming mode. On older JDKs, HttpURLConnection
+ * always buffers the request content, so this executor falls back
+ * to buffering the serialized invocation itself.
+ *
  * <p>Consider CommonsHttpInvokerRequestExecutor for more sophisticated needs.
  *
  * @author Juergen Hoeller
@@ -37,35 +45,94 @@ import org.springframework.remoting.support.RemoteInvocationResult;
  */
 public class SimpleHttpInvokerRequestExecutor extends AbstractHttpInvokerRequestExecutor {
 
+	/** HttpURLConnection's setChunkedStreamingMode method on JDK 1.5+, else null */
+	private static Method setChunkedStreamingModeMethod;
+
+	static {
+		try {
+			setChunkedStreamingModeMethod =
+					HttpURLConnection.class.getMethod("setChunkedStreamingMode", new Class[] {int.class});
+		}
+		catch (NoSuchMethodException ex) {
+			// JDK < 1.5: no streaming support
+		}
+	}
+
+
 	protected RemoteInvocationResult doExecuteRequest(
 			HttpInvokerClientConfiguration config, ByteArrayOutputStream baos)
 			throws IOException, ClassNotFoundException {
 
+		HttpURLConnection con = openConnection(config);
+		prepareConnection(con, baos.size());
+		baos.writeTo(con.getOutputStream());
+		return readRemoteInvocationResult(con.getInputStream());
+	}
+
+	/**
+	 * Writes the serialized invocation to the connection in chunked
+	 * streaming mode on JDK 1.5+, else falls back to buffering.
+	 */
+	protected RemoteInvocationResult doExecuteStreamingRequest(
+			HttpInvokerClientConfiguration config, RemoteInvocation invocation)
+			throws IOException, ClassNotFoundException {
+
+		if (setChunkedStreamingModeMethod == null) {
+			return super.doExecuteStreamingRequest(config, invocation);
+		}
+		HttpURLConnection con = openConnection(config);
+		prepareConnection(con, -1);
+		enableChunkedStreamingMode(con);
+		writeRemoteInvocation(invocation, createBufferedOutputStream(con.getOutputStream()));
+		return readRemoteInvocationResult(con.getInputStream());
+	}
+
+	/**
+	 * Open an HTTP connection for the given configuration.
+	 * @param config the HTTP invoker configuration that specifies the
+	 * target service
+	 * @return the HttpURLConnection for the given request
+	 * @throws IOException if thrown by I/O methods
+	 */
+	protected HttpURLConnection openConnection(HttpInvokerClientConfiguration config) throws IOException {
 		URLConnection con = new URL(config.getServiceUrl()).openConnection();
 		if (!(con instanceof HttpURLConnection)) {
 			throw new IOException("Service URL [" + config.getServiceUrl() + "] is not an HTTP URL");
 		}
-		HttpURLConnection httpCon = (HttpURLConnection) con;
-
-		prepareConnection(httpCon, baos.size());
-		baos.writeTo(httpCon.getOutputStream());
-		return readRemoteInvocationResult(httpCon.getInputStream());
+		return (HttpURLConnection) con;
 	}
 
 	/**
 	 * Prepare the given HTTP connection.
-	 * <p>Default implementation specifies POST as method,
-	 * "application/x-java-serialized-object" as "Content-Type" header,
-	 * and the given content length as "Content-Length" header.
+	 * <p>Default implementation specifies POST as method, the content
+	 * type of the codec as "Content-Type" header (by default,
+	 * "application/x-java-serialized-object"), and the given content
+	 * length as "Content-Length" header.
 	 * @param con the HTTP connection to prepare
-	 * @param contentLength the length of the content to send
+	 * @param contentLength the length of the content to send,
+	 * or -1 if not known in advance (in case of streaming)
 	 * @throws IOException if thrown by HttpURLConnection methods
+	 * @see #getContentType
 	 */
 	protected void prepareConnection(HttpURLConnection con, int contentLength) throws IOException {
 		con.setDoOutput(true);
 		con.setRequestMethod(HTTP_METHOD_POST);
-		con.setRequestProperty(HTTP_HEADER_CONTENT_TYPE, CONTENT_TYPE_SERIALIZED_OBJECT);
-		con.setRequestProperty(HTTP_HEADER_CONTENT_LENGTH, Integer.toString(contentLength));
+		con.setRequestProperty(HTTP_HEADER_CONTENT_TYPE, getContentType());
+		if (contentLength >= 0) {
+			con.setRequestProperty(HTTP_HEADER_CONTENT_LENGTH, Integer.toString(contentLength));
+		}
+	}
+
+	private void enableChunkedStreamingMode(HttpURLConnection con) throws IOException {
+		try {
+			setChunkedStreamingModeMethod.invoke(con, new Object[] {new Integer(BufferPool.DEFAULT_BUFFER_SIZE)});
+		}
+		catch (InvocationTargetException ex) {
+			throw new IOException("Could not enable chunked streaming mode: " + ex.getTargetException());
+		}
+		catch (IllegalAccessException ex) {
+			throw new IOException("Could not enable chunked streaming mode: " + ex);
+		}
 	}
 
 }
@@ -0,0 +1,473 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.remoting.support;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.remoting.RemoteTimeoutException;
+
+/**
+ * Interceptor that executes invocations on a synchronous remote service
+ * proxy asynchronously, for an "async interface" that mirrors the service
+ * interface. Works with any remote proxy, e.g. an RMI, Hessian, Burlap or
+ * HTTP invoker proxy: The target is simply invoked via reflection.
+ *
+ * <p>The methods of the async interface are mapped onto target methods
+ * with the same name, in one of the following ways:
+ * <ul>
+ * <li>A method that returns a RemoteInvocationFuture is mapped onto the
+ * target method with the same parameter types. The future provides
+ * access to the return value once the invocation has completed.
+ * <li>A void method with a RemoteInvocationCallback as last parameter
+ * is mapped onto the target method with the remaining parameter types.
+ * The callback gets notified once the invocation has completed.
+ * <li>Any other method is mapped onto the target method with the same
+ * signature, and invoked synchronously.
+ * </ul>
+ *
+ * <p>For example, the async interface for a service method
+ * <code>Order getOrder(int id)</code> can declare
+ * <code>RemoteInvocationFuture getOrder(int id)</code> and/or
+ * <code>void getOrder(int id, RemoteInvocationCallback callback)</code>.
+ *
+ * <p>Asynchronous invocations are executed via a TaskExecutor, which can
+ * be shared between multiple endpoints. The number of concurrent invocations
+ * per endpoint is bounded by the "concurrencyLimit": Further invocations are
+ * queued until a running one completes, without blocking the caller, and
+ * are then executed by the worker that completed the previous invocation. A
+ * "timeout" completes invocations that take too long with a
+ * RemoteTimeoutException; note that the remote call itself will not be
+ * aborted, as the underlying remoting protocols do not support this.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see AsyncRemoteProxyFactoryBean
+ * @see RemoteInvocationFuture
+ * @see RemoteInvocationCallback
+ */
+public class AsyncRemoteClientInterceptor implements MethodInterceptor, InitializingBean, DisposableBean {
+
+	/**
+	 * Default maximum number of concurrent invocations per endpoint: 10.
+	 */
+	public static final int DEFAULT_CONCURRENCY_LIMIT = 10;
+
+	private static final int MODE_SYNC = 0;
+
+	private static final int MODE_FUTURE = 1;
+
+	private static final int MODE_CALLBACK = 2;
+
+
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	private Class asyncInterface;
+
+	private Object target;
+
+	private TaskExecutor taskExecutor;
+
+	private int concurrencyLimit = DEFAULT_CONCURRENCY_LIMIT;
+
+	private long timeout = 0;
+
+	/** Async interface Method -> AsyncMethod */
+	private final Map asyncMethods = new HashMap();
+
+	private final LinkedList queuedCalls = new LinkedList();
+
+	private int activeCount = 0;
+
+	private Timer timeoutTimer;
+
+
+	/**
+	 * Set the async interface that the proxy should implement.
+	 */
+	public void setAsyncInterface(Class asyncInterface) {
+		if (asyncInterface != null && !asyncInterface.isInterface()) {
+			throw new IllegalArgumentException("asyncInterface must be an interface");
+		}
+		this.asyncInterface = asyncInterface;
+	}
+
+	/**
+	 * Return the async interface that the proxy should implement.
+	 */
+	public Class getAsyncInterface() {
+		return asyncInterface;
+	}
+
+	/**
+	 * Set the synchronous target to invoke, typically a remote service proxy
+	 * created by an RMI, Hessian, Burlap or HTTP invoker proxy factory bean.
+	 */
+	public void setTarget(Object target) {
+		this.target = target;
+	}
+
+	/**
+	 * Return the synchronous target to invoke.
+	 */
+	public Object getTarget() {
+		return target;
+	}
+
+	/**
+	 * Set the TaskExecutor to execute asynchronous invocations with.
+	 * Can be shared between multiple endpoints, with the number of
+	 * concurrent invocations per endpoint limited by "concurrencyLimit".
+	 * <p>Default is a SimpleAsyncTaskExecutor with daemon threads,
+	 * specific to this endpoint.
+	 * @see #setConcurrencyLimit
+	 * @see org.springframework.core.task.SimpleAsyncTaskExecutor
+	 */
+	public void setTaskExecutor(TaskExecutor taskExecutor) {
+		this.taskExecutor = taskExecutor;
+	}
+
+	/**
+	 * Return the TaskExecutor to execute asynchronous invocations with.
+	 */
+	public TaskExecutor getTaskExecutor() {
+		return taskExecutor;
+	}
+
+	/**
+	 * Set the maximum number of concurrent asynchronous invocations for this
+	 * endpoint. Further invocations will be queued until a running invocation
+	 * completes. Default is 10; -1 indicates no limit.
+	 */
+	public void setConcurrencyLimit(int concurrencyLimit) {
+		this.concurrencyLimit = concurrencyLimit;
+	}
+
+	/**
+	 * Return the maximum number of concurrent asynchronous invocations for this endpoint.
+	 */
+	public int getConcurrencyLimit() {
+		return concurrencyLimit;
+	}
+
+	/**
+	 * Set the timeout (in milliseconds) for asynchronous invocations,
+	 * including the time spent in the queue. Default is 0, indicating
+	 * no timeout.
+	 * <p>An invocation that does not complete within the timeout will
+	 * be completed with a RemoteTimeoutException. Its remote call
+	 * continues in the background, though, if already started.
+	 * @see org.springframework.remoting.RemoteTimeoutException
+	 */
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Return the timeout (in milliseconds) for asynchronous invocations.
+	 */
+	public long getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * Return the number of asynchronous invocations that are currently executing.
+	 */
+	public synchronized int getActiveCount() {
+		return activeCount;
+	}
+
+	/**
+	 * Return the number of asynchronous invocations that are currently
+	 * waiting for the concurrency limit to allow for their execution.
+	 */
+	public synchronized int getQueueSize() {
+		return this.queuedCalls.size();
+	}
+
+
+	/**
+	 * Resolves the target method for each method of the async interface,
+	 * and creates the default TaskExecutor if necessary.
+	 */
+	public void afterPropertiesSet() {
+		if (this.asyncInterface == null) {
+			throw new IllegalArgumentException("asyncInterface is required");
+		}
+		if (this.target == null) {
+			throw new IllegalArgumentException("target is required");
+		}
+		Method[] methods = this.asyncInterface.getMethods();
+		for (int i = 0; i < methods.length; i++) {
+			this.asyncMethods.put(methods[i], resolveAsyncMethod(methods[i]));
+		}
+		if (this.taskExecutor == null) {
+			SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(getClass().getName() + "-");
+			executor.setDaemon(true);
+			this.taskExecutor = executor;
+		}
+		if (this.timeout > 0) {
+			this.timeoutTimer = new Timer(true);
+		}
+	}
+
+	private AsyncMethod resolveAsyncMethod(Method method) {
+		Class[] parameterTypes = method.getParameterTypes();
+		int mode = MODE_SYNC;
+		if (RemoteInvocationFuture.class.equals(method.getReturnType())) {
+			mode = MODE_FUTURE;
+		}
+		else if (void.class.equals(method.getReturnType()) && parameterTypes.length > 0 &&
+				RemoteInvocationCallback.class.equals(parameterTypes[parameterTypes.length - 1])) {
+			mode = MODE_CALLBACK;
+			Class[] targetParameterTypes = new Class[parameterTypes.length - 1];
+			System.arraycopy(parameterTypes, 0, targetParameterTypes, 0, targetParameterTypes.length);
+			parameterTypes = targetParameterTypes;
+		}
+		try {
+			Method targetMethod = this.target.getClass().getMethod(method.getName(), parameterTypes);
+			return new AsyncMethod(targetMethod, mode);
+		}
+		catch (NoSuchMethodException ex) {
+			throw new IllegalArgumentException("Method [" + method + "] of async interface [" +
+					this.asyncInterface.getName() + "] does not correspond to a public method of target [" +
+					this.target + "]");
+		}
+	}
+
+	/**
+	 * Cancels the timeout timer. Invocations that are still queued will
+	 * be executed, but will not time out anymore.
+	 */
+	public void destroy() {
+		if (this.timeoutTimer != null) {
+			this.timeoutTimer.cancel();
+		}
+	}
+
+
+	public Object invoke(MethodInvocation methodInvocation) throws Throwable {
+		AsyncMethod asyncMethod = (AsyncMethod) this.asyncMethods.get(methodInvocation.getMethod());
+		if (asyncMethod == null) {
+			// e.g. toString: not declared by the async interface
+			return invokeTarget(methodInvocation.getMethod(), methodInvocation.getArguments());
+		}
+		Object[] args = methodInvocation.getArguments();
+		if (asyncMethod.mode == MODE_SYNC) {
+			return invokeTarget(asyncMethod.targetMethod, args);
+		}
+		RemoteInvocationFuture future = null;
+		if (asyncMethod.mode == MODE_CALLBACK) {
+			future = new RemoteInvocationFuture((RemoteInvocationCallback) args[args.length - 1]);
+			Object[] targetArgs = new Object[args.length - 1];
+			System.arraycopy(args, 0, targetArgs, 0, targetArgs.length);
+			args = targetArgs;
+		}
+		else {
+			future = new RemoteInvocationFuture();
+		}
+		submit(new AsyncCall(asyncMethod.targetMethod, args, future));
+		return (asyncMethod.mode == MODE_FUTURE ? future : null);
+	}
+
+	private Object invokeTarget(Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(this.target, args);
+		}
+		catch (InvocationTargetException ex) {
+			throw ex.getTargetException();
+		}
+	}
+
+	/**
+	 * Execute the given call if the concurrency limit allows for it,
+	 * else queue it. Schedules its timeout, if any.
+	 */
+	private void submit(AsyncCall call) {
+		if (this.timeoutTimer != null) {
+			call.timeoutTask = new TimeoutTask(call.future);
+			this.timeoutTimer.schedule(call.timeoutTask, this.timeout);
+		}
+		synchronized (this) {
+			if (this.concurrencyLimit >= 0 && this.activeCount >= this.concurrencyLimit) {
+				this.queuedCalls.addLast(call);
+				return;
+			}
+			this.activeCount++;
+		}
+		execute(call);
+	}
+
+	/**
+	 * Hand the given call to the TaskExecutor. If the executor rejects it,
+	 * the call is completed with the exception, and its slot is passed on
+	 * to the next queued call.
+	 */
+	private void execute(AsyncCall call) {
+		while (call != null) {
+			try {
+				this.taskExecutor.execute(call);
+				return;
+			}
+			catch (RuntimeException ex) {
+				call.future.setException(ex);
+				call.cancelTimeout();
+				call = nextCall();
+			}
+		}
+	}
+
+	/**
+	 * Return the next queued call to execute in the slot of a completed call,
+	 * or release the slot if there is none.
+	 * <p>Queued calls are executed by the worker that completed the previous
+	 * call, rather than being handed to the TaskExecutor again: A worker
+	 * of a shared, bounded executor would otherwise block on a slot
+	 * that only it can free.
+	 */
+	private synchronized AsyncCall nextCall() {
+		if (this.queuedCalls.isEmpty()) {
+			this.activeCount--;
+			return null;
+		}
+		return (AsyncCall) this.queuedCalls.removeFirst();
+	}
+
+
+	/**
+	 * Target method and invocation mode for a method of the async interface.
+	 */
+	private static class AsyncMethod {
+
+		private final Method targetMethod;
+
+		private final int mode;
+
+		private AsyncMethod(Method targetMethod, int mode) {
+			this.targetMethod = targetMethod;
+			this.mode = mode;
+		}
+	}
+
+
+	/**
+	 * Runnable that performs an asynchronous invocation of the target.
+	 */
+	private class AsyncCall implements Runnable {
+
+		private final Method method;
+
+		private final Object[] args;
+
+		private final RemoteInvocationFuture future;
+
+		private TimeoutTask timeoutTask;
+
+		private AsyncCall(Method method, Object[] args, RemoteInvocationFuture future) {
+			this.method = method;
+			this.args = args;
+			this.future = future;
+		}
+
+		public void run() {
+			AsyncCall call = this;
+			while (call != null) {
+				call.invoke();
+				call = nextCall();
+			}
+		}
+
+		/**
+		 * Invoke the target and complete the future, unless the call
+		 * has already timed out while queued.
+		 */
+		private void invoke() {
+			try {
+				if (!this.future.isDone()) {
+					this.future.setResult(invokeTarget(this.method, this.args));
+				}
+				else if (logger.isDebugEnabled()) {
+					logger.debug("Skipping invocation of " + this.method + " that timed out while queued");
+				}
+			}
+			catch (Throwable ex) {
+				this.future.setException(ex);
+			}
+			finally {
+				cancelTimeout();
+			}
+		}
+
+		/**
+		 * Cancel the timeout of this call, if any, as the call has completed.
+		 */
+		private void cancelTimeout() {
+			if (this.timeoutTask != null) {
+				this.timeoutTask.cancel();
+				this.timeoutTask = null;
+			}
+		}
+	}
+
+
+	/**
+	 * TimerTask that completes a future with a RemoteTimeoutException.
+	 * Releases the future when cancelled, as a cancelled task stays in
+	 * the Timer's queue until its scheduled time.
+	 */
+	private class TimeoutTask extends TimerTask {
+
+		private RemoteInvocationFuture future;
+
+		private TimeoutTask(RemoteInvocationFuture future) {
+			this.future = future;
+		}
+
+		public synchronized boolean cancel() {
+			this.future = null;
+			return super.cancel();
+		}
+
+		public void run() {
+			RemoteInvocationFuture future = null;
+			synchronized (this) {
+				future = this.future;
+			}
+			if (future != null && future.setException(new RemoteTimeoutException(
+					"Remote invocation did not complete within " + timeout + " ms"))) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Remote invocation on [" + target + "] timed out after " + timeout + " ms");
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.remoting.support;
+
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.FactoryBean;
+
+/**
+ * Factory bean for async proxies to remote services. Exposes a proxy
+ * for the specified async interface, executing invocations on the target
+ * remote service proxy asynchronously.
+ *
+ * <p>Typical configuration, with "orderService" being a synchronous
+ * HttpInvokerProxyFactoryBean (or RMI, Hessian or Burlap proxy):
+ *
+ * <pre>
+ * &lt;bean id="asyncOrderService" class="org.springframework.remoting.support.AsyncRemoteProxyFactoryBean"&gt;
+ *   &lt;property name="asyncInterface"&gt;&lt;value&gt;example.AsyncOrderService&lt;/value&gt;&lt;/property&gt;
+ *   &lt;property name="target"&gt;&lt;ref bean="orderService"/&gt;&lt;/property&gt;
+ *   &lt;property name="concurrencyLimit"&gt;&lt;value&gt;5&lt;/value&gt;&lt;/property&gt;
+ *   &lt;property name="timeout"&gt;&lt;value&gt;3000&lt;/value&gt;&lt;/property&gt;
+ * &lt;/bean&gt;</pre>
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see #setAsyncInterface
+ * @see #setTarget
+ * @see AsyncRemoteClientInterceptor
+ */
+public class AsyncRemoteProxyFactoryBean extends AsyncRemoteClientInterceptor implements FactoryBean {
+
+	private Object asyncProxy;
+
+	public void afterPropertiesSet() {
+		super.afterPropertiesSet();
+		this.asyncProxy = ProxyFactory.getProxy(getAsyncInterface(), this);
+	}
+
+	public Object getObject() {
+		return this.asyncProxy;
+	}
+
+	public Class getObjectType() {
+		return (this.asyncProxy != null) ? this.asyncProxy.getClass() : getAsyncInterface();
+	}
+
+	public boolean isSingleton() {
+		return true;
+	}
+
+}
@@ -0,0 +1,543 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.remoting.support;
+
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.util.LruCache;
+
+/**
+ * Interceptor that caches the results of remote invocations, keyed by
+ * method and argument values. Typically applied to a remote service proxy
+ * (e.g. a HessianProxyFactoryBean or HttpInvokerProxyFactoryBean) that
+ * fetches reference data, via a ProxyFactoryBean with this interceptor and
+ * the remote proxy as target, to avoid hitting the network for each call.
+ *
+ * <p>Only the methods specified as "cachedMethods" will be cached, each with
+ * its own time to live; all other methods are simply passed through. Results
+ * are held in an in-heap LruCache with a maximum of "cacheSize" entries.
+ * EhCacheCachingClientInterceptor stores them in an EHCache instead.
+ *
+ * <p>Cached result objects are shared between callers, so they should be
+ * treated as immutable. Argument values need to implement equals and hashCode
+ * properly; array arguments are compared by their elements, and copied for
+ * the cache key. Other argument values are kept as passed in, so they must not
+ * be modified after the invocation. Exceptions thrown by the remote service
+ * are never cached. Concurrent invocations for the same uncached key will all
+ * be passed on to the remote service.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see #setCachedMethods
+ * @see #setCacheSize
+ * @see org.springframework.util.LruCache
+ * @see org.springframework.cache.ehcache.EhCacheCachingClientInterceptor
+ */
+public class CachingClientInterceptor implements MethodInterceptor {
+
+	/**
+	 * Default maximum number of cached results: 1000.
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 1000;
+
+	/** Value of a method's time to live that indicates that its results never expire */
+	public static final long NO_EXPIRY = -1;
+
+	private static final Object NO_METHOD_CONFIG = new Object();
+
+
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	/** Method name pattern String -> Long time to live, also used as monitor for methodConfigs */
+	private final Map cachedMethods = new HashMap();
+
+	/** Method -> MethodConfig or NO_METHOD_CONFIG, guarded by the cachedMethods monitor */
+	private final Map methodConfigs = new HashMap();
+
+	private int cacheSize = DEFAULT_CACHE_SIZE;
+
+	/** In-heap cache, created on first use: not needed if a subclass uses a different cache */
+	private LruCache cache;
+
+	private long hitCount = 0;
+
+	private long missCount = 0;
+
+
+	/**
+	 * Set the methods to cache results for, with method names as keys and the
+	 * time to live of their results (in milliseconds) as values, e.g. "getCountries=3600000".
+	 * Supports "xxx*" and "*xxx" matches for method names. A time to live of -1
+	 * indicates that results never expire.
+	 * <p>The time to live is measured from the remote invocation that produced the result.
+	 * @see #NO_EXPIRY
+	 */
+	public void setCachedMethods(Properties cachedMethods) {
+		synchronized (this.cachedMethods) {
+			this.cachedMethods.clear();
+			this.methodConfigs.clear();
+		}
+		for (Iterator it = cachedMethods.keySet().iterator(); it.hasNext();) {
+			String methodName = (String) it.next();
+			String timeToLive = cachedMethods.getProperty(methodName).trim();
+			try {
+				addCachedMethod(methodName, Long.parseLong(timeToLive));
+			}
+			catch (NumberFormatException ex) {
+				throw new IllegalArgumentException("Invalid time to live [" + timeToLive + "] for method '" +
+						methodName + "': needs to be a number of milliseconds");
+			}
+		}
+	}
+
+	/**
+	 * Add a method to cache results for.
+	 * @param methodName the name of the method (may end or start with "*")
+	 * @param timeToLive the time to live of its results, in milliseconds
+	 * (-1 for no expiry)
+	 * @see #setCachedMethods
+	 */
+	public void addCachedMethod(String methodName, long timeToLive) {
+		synchronized (this.cachedMethods) {
+			this.cachedMethods.put(methodName, new Long(timeToLive));
+			this.methodConfigs.clear();
+		}
+	}
+
+	/**
+	 * Set the maximum number of results to hold in the in-heap cache.
+	 * Default is 1000. The least recently used result will be evicted
+	 * once the cache is full.
+	 */
+	public void setCacheSize(int cacheSize) {
+		if (cacheSize <= 0) {
+			throw new IllegalArgumentException("cacheSize must be greater than 0");
+		}
+		synchronized (this) {
+			this.cacheSize = cacheSize;
+			this.cache = null;
+		}
+	}
+
+
+	public Object invoke(MethodInvocation invocation) throws Throwable {
+		MethodConfig methodConfig = getMethodConfig(invocation.getMethod());
+		if (methodConfig == null) {
+			return invocation.proceed();
+		}
+		CacheKey key = new CacheKey(methodConfig.methodKey, invocation.getArguments());
+		CachedResult cachedResult = getCachedResult(key);
+		long now = System.currentTimeMillis();
+		if (cachedResult != null && !cachedResult.isExpired(now)) {
+			synchronized (this) {
+				this.hitCount++;
+			}
+			return cachedResult.getValue();
+		}
+		synchronized (this) {
+			this.missCount++;
+		}
+		Object result = invocation.proceed();
+		long expirationTime = (methodConfig.timeToLive >= 0 ? now + methodConfig.timeToLive : NO_EXPIRY);
+		putCachedResult(key, new CachedResult(result, expirationTime));
+		return result;
+	}
+
+	/**
+	 * Determine the cache configuration for the given method,
+	 * resolving it once per method.
+	 * @return the MethodConfig, or null if the method should not be cached
+	 */
+	private MethodConfig getMethodConfig(Method method) {
+		Object methodConfig = null;
+		synchronized (this.cachedMethods) {
+			methodConfig = this.methodConfigs.get(method);
+			if (methodConfig == null) {
+				methodConfig = NO_METHOD_CONFIG;
+				Long timeToLive = getTimeToLive(method.getName());
+				if (timeToLive != null) {
+					methodConfig = new MethodConfig(method, timeToLive.longValue());
+				}
+				this.methodConfigs.put(method, methodConfig);
+			}
+		}
+		return (methodConfig != NO_METHOD_CONFIG ? (MethodConfig) methodConfig : null);
+	}
+
+	private Long getTimeToLive(String methodName) {
+		Long timeToLive = (Long) this.cachedMethods.get(methodName);
+		if (timeToLive == null) {
+			// look for most specific name match
+			String bestNameMatch = null;
+			for (Iterator it = this.cachedMethods.keySet().iterator(); it.hasNext();) {
+				String mappedName = (String) it.next();
+				if (isMatch(methodName, mappedName) &&
+						(bestNameMatch == null || bestNameMatch.length() <= mappedName.length())) {
+					timeToLive = (Long) this.cachedMethods.get(mappedName);
+					bestNameMatch = mappedName;
+				}
+			}
+		}
+		return timeToLive;
+	}
+
+	/**
+	 * Return if the given method name matches the mapped name.
+	 * The default implementation checks for "xxx*" and "*xxx" matches.
+	 * Can be overridden in subclasses.
+	 * @param methodName the method name of the class
+	 * @param mappedName the name in the descriptor
+	 * @return if the names match
+	 */
+	protected boolean isMatch(String methodName, String mappedName) {
+		return (mappedName.endsWith("*") && methodName.startsWith(mappedName.substring(0, mappedName.length() - 1))) ||
+				(mappedName.startsWith("*") && methodName.endsWith(mappedName.substring(1, mappedName.length())));
+	}
+
+
+	/**
+	 * Retrieve the cached result for the given key.
+	 * <p>Default implementation looks up the in-heap LruCache.
+	 * Can be overridden to use a different cache.
+	 * @param key the key to look up (serializable if method arguments are)
+	 * @return the cached result, or null if none (expired results may be returned)
+	 */
+	protected CachedResult getCachedResult(CacheKey key) {
+		return (CachedResult) getInHeapCache().get(key);
+	}
+
+	/**
+	 * Store the given result for the given key.
+	 * <p>Default implementation puts the result into the in-heap LruCache.
+	 * Can be overridden to use a different cache.
+	 * @param key the key to store the result for (serializable if method arguments are)
+	 * @param result the result to cache (serializable if the value is)
+	 */
+	protected void putCachedResult(CacheKey key, CachedResult result) {
+		getInHeapCache().put(key, result);
+	}
+
+	/**
+	 * Remove all cached results. Does not reset the statistics.
+	 * <p>Default implementation clears the in-heap LruCache.
+	 * Can be overridden to use a different cache.
+	 */
+	public void clear() {
+		getInHeapCache().clear();
+	}
+
+	/**
+	 * Return the in-heap LruCache, creating it on first access.
+	 */
+	private synchronized LruCache getInHeapCache() {
+		if (this.cache == null) {
+			this.cache = new LruCache(this.cacheSize);
+		}
+		return this.cache;
+	}
+
+
+	/**
+	 * Return the number of invocations that were served from the cache.
+	 */
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * Return the number of invocations of cached methods that had to be
+	 * passed on to the remote service, because no valid result was cached.
+	 */
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Return the ratio of cache hits to invocations of cached methods,
+	 * between 0.0 and 1.0. Returns 0.0 if there were no such invocations yet.
+	 */
+	public synchronized double getHitRatio() {
+		long total = this.hitCount + this.missCount;
+		return (total > 0 ? (double) this.hitCount / total : 0.0);
+	}
+
+	public String toString() {
+		String cachedMethodNames = null;
+		synchronized (this.cachedMethods) {
+			cachedMethodNames = this.cachedMethods.keySet().toString();
+		}
+		return getClass().getName() + ": hits=" + getHitCount() + ", misses=" + getMissCount() +
+				", cachedMethods=" + cachedMethodNames;
+	}
+
+
+	/**
+	 * Cache configuration for a specific method.
+	 */
+	private static class MethodConfig {
+
+		private final String methodKey;
+
+		private final long timeToLive;
+
+		private MethodConfig(Method method, long timeToLive) {
+			StringBuffer sb = new StringBuffer(method.getDeclaringClass().getName());
+			sb.append('.').append(method.getName()).append('(');
+			Class[] parameterTypes = method.getParameterTypes();
+			for (int i = 0; i < parameterTypes.length; i++) {
+				if (i > 0) {
+					sb.append(',');
+				}
+				sb.append(parameterTypes[i].getName());
+			}
+			sb.append(')');
+			this.methodKey = sb.toString();
+			this.timeToLive = timeToLive;
+		}
+	}
+
+
+	/**
+	 * Key for a cached result: method signature plus argument values.
+	 * Serializable, to allow for storing it in a cache that requires it,
+	 * provided that the argument values are serializable.
+	 */
+	protected static class CacheKey implements Serializable {
+
+		private final String methodKey;
+
+		private final Object[] arguments;
+
+		private final int hashCode;
+
+		private CacheKey(String methodKey, Object[] arguments) {
+			this.methodKey = methodKey;
+			this.arguments = (Object[]) copyArgument(arguments);
+			int hashCode = methodKey.hashCode();
+			if (arguments != null) {
+				for (int i = 0; i < arguments.length; i++) {
+					hashCode = 31 * hashCode + argumentHashCode(arguments[i]);
+				}
+			}
+			this.hashCode = hashCode;
+		}
+
+		/**
+		 * Return whether this key can be serialized,
+		 * i.e. whether all argument values are serializable.
+		 */
+		public boolean isSerializable() {
+			if (this.arguments != null) {
+				for (int i = 0; i < this.arguments.length; i++) {
+					if (this.arguments[i] != null && !(this.arguments[i] instanceof Serializable)) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof CacheKey)) {
+				return false;
+			}
+			CacheKey otherKey = (CacheKey) other;
+			if (this.hashCode != otherKey.hashCode || !this.methodKey.equals(otherKey.methodKey)) {
+				return false;
+			}
+			int length = (this.arguments != null ? this.arguments.length : 0);
+			int otherLength = (otherKey.arguments != null ? otherKey.arguments.length : 0);
+			if (length != otherLength) {
+				return false;
+			}
+			for (int i = 0; i < length; i++) {
+				if (!argumentEquals(this.arguments[i], otherKey.arguments[i])) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		public int hashCode() {
+			return this.hashCode;
+		}
+
+		/**
+		 * Copy the given argument value if it is an array, including nested
+		 * arrays, so that later modifications by the caller do not affect the key.
+		 */
+		private static Object copyArgument(Object arg) {
+			if (arg == null || !arg.getClass().isArray()) {
+				return arg;
+			}
+			int length = Array.getLength(arg);
+			Object copy = Array.newInstance(arg.getClass().getComponentType(), length);
+			if (arg instanceof Object[]) {
+				Object[] array = (Object[]) arg;
+				Object[] arrayCopy = (Object[]) copy;
+				for (int i = 0; i < length; i++) {
+					arrayCopy[i] = copyArgument(array[i]);
+				}
+			}
+			else {
+				System.arraycopy(arg, 0, copy, 0, length);
+			}
+			return copy;
+		}
+
+		/**
+		 * Compare the given argument values, comparing arrays by their elements.
+		 */
+		private static boolean argumentEquals(Object arg, Object otherArg) {
+			if (arg == otherArg) {
+				return true;
+			}
+			if (arg == null || otherArg == null) {
+				return false;
+			}
+			if (arg instanceof Object[] && otherArg instanceof Object[]) {
+				Object[] array = (Object[]) arg;
+				Object[] otherArray = (Object[]) otherArg;
+				if (array.length != otherArray.length) {
+					return false;
+				}
+				for (int i = 0; i < array.length; i++) {
+					if (!argumentEquals(array[i], otherArray[i])) {
+						return false;
+					}
+				}
+				return true;
+			}
+			if (arg instanceof boolean[] && otherArg instanceof boolean[]) {
+				return Arrays.equals((boolean[]) arg, (boolean[]) otherArg);
+			}
+			if (arg instanceof byte[] && otherArg instanceof byte[]) {
+				return Arrays.equals((byte[]) arg, (byte[]) otherArg);
+			}
+			if (arg instanceof char[] && otherArg instanceof char[]) {
+				return Arrays.equals((char[]) arg, (char[]) otherArg);
+			}
+			if (arg instanceof double[] && otherArg instanceof double[]) {
+				return Arrays.equals((double[]) arg, (double[]) otherArg);
+			}
+			if (arg instanceof float[] && otherArg instanceof float[]) {
+				return Arrays.equals((float[]) arg, (float[]) otherArg);
+			}
+			if (arg instanceof int[] && otherArg instanceof int[]) {
+				return Arrays.equals((int[]) arg, (int[]) otherArg);
+			}
+			if (arg instanceof long[] && otherArg instanceof long[]) {
+				return Arrays.equals((long[]) arg, (long[]) otherArg);
+			}
+			if (arg instanceof short[] && otherArg instanceof short[]) {
+				return Arrays.equals((short[]) arg, (short[]) otherArg);
+			}
+			return arg.equals(otherArg);
+		}
+
+		/**
+		 * Compute a hash code for the given argument value that matches
+		 * <code>argumentEquals</code>, based on the elements for arrays.
+		 * Computed manually, as J2SE 1.3 does not offer Arrays.hashCode.
+		 */
+		private static int argumentHashCode(Object arg) {
+			if (arg == null) {
+				return 0;
+			}
+			if (!arg.getClass().isArray()) {
+				return arg.hashCode();
+			}
+			int hashCode = 1;
+			int length = Array.getLength(arg);
+			for (int i = 0; i < length; i++) {
+				// primitive elements get wrapped, with hash codes consistent to Arrays.equals
+				hashCode = 31 * hashCode + argumentHashCode(Array.get(arg, i));
+			}
+			return hashCode;
+		}
+
+		public String toString() {
+			StringBuffer sb = new StringBuffer(this.methodKey);
+			if (this.arguments != null && this.arguments.length > 0) {
+				sb.append(" with arguments ");
+				for (int i = 0; i < this.arguments.length; i++) {
+					if (i > 0) {
+						sb.append(',');
+					}
+					sb.append('[').append(this.arguments[i]).append(']');
+				}
+			}
+			return sb.toString();
+		}
+	}
+
+
+	/**
+	 * Cached result of a remote invocation, with its expiration time.
+	 * Serializable, to allow for storing it in a cache that requires it,
+	 * provided that the value is serializable.
+	 */
+	protected static class CachedResult implements Serializable {
+
+		private final Object value;
+
+		private final long expirationTime;
+
+		private CachedResult(Object value, long expirationTime) {
+			this.value = value;
+			this.expirationTime = expirationTime;
+		}
+
+		/**
+		 * Return the cached return value of the remote invocation.
+		 */
+		public Object getValue() {
+			return value;
+		}
+
+		/**
+		 * Return whether this result has expired at the given time.
+		 */
+		public boolean isExpired(long now) {
+			return (this.expirationTime != NO_EXPIRY && now >= this.expirationTime);
+		}
+
+		/**
+		 * Return whether this result can be serialized,
+		 * i.e. whether the return value is serializable.
+		 */
+		public boolean isSerializable() {
+			return (this.value == null || this.value instanceof Serializable);
+		}
+	}
+
+}
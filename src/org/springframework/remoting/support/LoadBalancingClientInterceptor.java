@@ -0,0 +1,548 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.remoting.support;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.Constants;
+import org.springframework.remoting.RemoteAccessException;
+import org.springframework.remoting.RemoteConnectFailureException;
+import org.springframework.remoting.RemoteLookupFailureException;
+
+/**
+ * Interceptor that distributes invocations across multiple endpoints of the
+ * same remote service, typically replicas of a backend. Each endpoint is a
+ * client interceptor for a single service URL, for example an
+ * HttpInvokerClientInterceptor, HessianClientInterceptor,
+ * BurlapClientInterceptor or RmiClientInterceptor.
+ *
+ * <p>Endpoints can either be specified as "endpoints" (e.g. references to
+ * proxy factory beans via the "&amp;" prefix, or inner beans), or be created
+ * from "serviceUrls" and an "endpointClass", applying the given
+ * "endpointProperties" to each of them. Plain remote proxies are accepted as
+ * endpoints too, but cannot be identified by their URL in log messages.
+ *
+ * <p>Endpoints get selected round-robin by default. Alternatively, the
+ * endpoint with the lowest average latency can be preferred. An endpoint that
+ * fails "failureThreshold" consecutive times gets ejected for "ejectionTime"
+ * milliseconds; if all endpoints are ejected, they will still be tried.
+ *
+ * <p>Invocations that fail with a connect failure are always retried on the
+ * next endpoint, as they cannot have reached the server. Other remote access
+ * failures are only retried for methods that match one of the given
+ * "idempotentMethods", as the invocation may have been executed already.
+ * Exceptions thrown by the service itself are never retried.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see LoadBalancingProxyFactoryBean
+ * @see #setEndpoints
+ * @see #setServiceUrls
+ * @see #setSelectionPolicy
+ * @see #setIdempotentMethods
+ */
+public class LoadBalancingClientInterceptor extends RemoteAccessor implements MethodInterceptor, InitializingBean {
+
+	/**
+	 * Prefix for selection policy constants.
+	 */
+	public static final String SELECTION_CONSTANT_PREFIX = "SELECTION";
+
+	/**
+	 * Select endpoints in turn.
+	 */
+	public static final int SELECTION_ROUND_ROBIN = 0;
+
+	/**
+	 * Select the endpoint with the lowest average latency,
+	 * trying endpoints without measurements first.
+	 */
+	public static final int SELECTION_LEAST_LATENCY = 1;
+
+	/**
+	 * Default number of consecutive failures before ejecting an endpoint: 2.
+	 */
+	public static final int DEFAULT_FAILURE_THRESHOLD = 2;
+
+	/**
+	 * Default time (in milliseconds) that a failed endpoint stays ejected: 30 seconds.
+	 */
+	public static final long DEFAULT_EJECTION_TIME = 30000;
+
+	/** Constants instance for this class */
+	private static final Constants constants = new Constants(LoadBalancingClientInterceptor.class);
+
+
+	private Object[] endpointObjects;
+
+	private String[] serviceUrls;
+
+	private Class endpointClass;
+
+	private Map endpointProperties;
+
+	private int selectionPolicy = SELECTION_ROUND_ROBIN;
+
+	private int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+
+	private long ejectionTime = DEFAULT_EJECTION_TIME;
+
+	private String[] idempotentMethods;
+
+	private int maxAttempts = -1;
+
+	private Endpoint[] endpoints;
+
+	private int nextIndex = 0;
+
+
+	/**
+	 * Set the endpoints to distribute invocations across: typically client
+	 * interceptors like HttpInvokerClientInterceptor or RmiClientInterceptor,
+	 * or the corresponding proxy factory beans themselves. Plain remote
+	 * proxies that implement the service interface are accepted too.
+	 * @see org.springframework.remoting.httpinvoker.HttpInvokerClientInterceptor
+	 * @see org.springframework.remoting.caucho.HessianClientInterceptor
+	 * @see org.springframework.remoting.caucho.BurlapClientInterceptor
+	 * @see org.springframework.remoting.rmi.RmiClientInterceptor
+	 */
+	public void setEndpoints(Object[] endpoints) {
+		this.endpointObjects = endpoints;
+	}
+
+	/**
+	 * Set the service URLs to create endpoints for, as alternative to
+	 * specifying "endpoints". Requires an "endpointClass".
+	 * @see #setEndpointClass
+	 * @see #setEndpointProperties
+	 */
+	public void setServiceUrls(String[] serviceUrls) {
+		this.serviceUrls = serviceUrls;
+	}
+
+	/**
+	 * Set the class of the endpoints to create for the specified service URLs,
+	 * for example HttpInvokerClientInterceptor or RmiClientInterceptor.
+	 * Needs to be a UrlBasedRemoteAccessor that is a MethodInterceptor.
+	 * <p>Each endpoint will receive the "serviceInterface" of this interceptor,
+	 * its service URL and the "endpointProperties", and will be initialized
+	 * if it implements InitializingBean.
+	 * @see #setServiceUrls
+	 */
+	public void setEndpointClass(Class endpointClass) {
+		if (endpointClass != null && (!UrlBasedRemoteAccessor.class.isAssignableFrom(endpointClass) ||
+				!MethodInterceptor.class.isAssignableFrom(endpointClass))) {
+			throw new IllegalArgumentException("endpointClass must be a UrlBasedRemoteAccessor and MethodInterceptor");
+		}
+		this.endpointClass = endpointClass;
+	}
+
+	/**
+	 * Set bean properties to apply to each endpoint created for the specified
+	 * service URLs, for example "username" and "password" for Hessian, or
+	 * "lookupStubOnStartup" for RMI.
+	 * @see #setServiceUrls
+	 */
+	public void setEndpointProperties(Map endpointProperties) {
+		this.endpointProperties = endpointProperties;
+	}
+
+	/**
+	 * Set the endpoint selection policy by the name of the corresponding
+	 * constant in this class, e.g. "SELECTION_LEAST_LATENCY".
+	 * @see #SELECTION_ROUND_ROBIN
+	 * @see #SELECTION_LEAST_LATENCY
+	 */
+	public void setSelectionPolicyName(String constantName) {
+		if (constantName == null || !constantName.startsWith(SELECTION_CONSTANT_PREFIX)) {
+			throw new IllegalArgumentException("Only selection policy constants allowed");
+		}
+		setSelectionPolicy(constants.asNumber(constantName).intValue());
+	}
+
+	/**
+	 * Set the endpoint selection policy. Default is SELECTION_ROUND_ROBIN.
+	 * @see #SELECTION_ROUND_ROBIN
+	 * @see #SELECTION_LEAST_LATENCY
+	 */
+	public void setSelectionPolicy(int selectionPolicy) {
+		if (!constants.getValues(SELECTION_CONSTANT_PREFIX).contains(new Integer(selectionPolicy))) {
+			throw new IllegalArgumentException("Only values of selection policy constants allowed");
+		}
+		this.selectionPolicy = selectionPolicy;
+	}
+
+	/**
+	 * Return the endpoint selection policy.
+	 */
+	public int getSelectionPolicy() {
+		return selectionPolicy;
+	}
+
+	/**
+	 * Set the number of consecutive failed invocations after which an endpoint
+	 * gets ejected. Default is 2. Only remote access failures count, not
+	 * exceptions thrown by the service itself.
+	 * @see #setEjectionTime
+	 */
+	public void setFailureThreshold(int failureThreshold) {
+		this.failureThreshold = failureThreshold;
+	}
+
+	/**
+	 * Return the number of consecutive failed invocations after which an endpoint gets ejected.
+	 */
+	public int getFailureThreshold() {
+		return failureThreshold;
+	}
+
+	/**
+	 * Set the time (in milliseconds) that an ejected endpoint will not be
+	 * selected. Default is 30 seconds. Afterwards, the endpoint will be
+	 * tried again: A single failure will eject it again, while a successful
+	 * invocation fully reinstates it.
+	 */
+	public void setEjectionTime(long ejectionTime) {
+		this.ejectionTime = ejectionTime;
+	}
+
+	/**
+	 * Return the time (in milliseconds) that an ejected endpoint will not be selected.
+	 */
+	public long getEjectionTime() {
+		return ejectionTime;
+	}
+
+	/**
+	 * Set the names of idempotent methods, which can safely be retried on another
+	 * endpoint after any remote access failure. Supports "xxx*" and "*xxx" matches,
+	 * e.g. "get*". Default is none: Only connect failures will be retried.
+	 */
+	public void setIdempotentMethods(String[] idempotentMethods) {
+		this.idempotentMethods = idempotentMethods;
+	}
+
+	/**
+	 * Set the maximum number of endpoints to try per invocation.
+	 * Default is -1, trying each endpoint at most once.
+	 */
+	public void setMaxAttempts(int maxAttempts) {
+		this.maxAttempts = maxAttempts;
+	}
+
+	/**
+	 * Return the maximum number of endpoints to try per invocation.
+	 */
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+
+	/**
+	 * Creates the endpoints for the specified service URLs, if necessary.
+	 */
+	public void afterPropertiesSet() throws Exception {
+		List endpointList = new ArrayList();
+		if (this.endpointObjects != null) {
+			for (int i = 0; i < this.endpointObjects.length; i++) {
+				endpointList.add(new Endpoint(this.endpointObjects[i], endpointList.size()));
+			}
+		}
+		if (this.serviceUrls != null) {
+			if (this.endpointClass == null) {
+				throw new IllegalArgumentException("endpointClass is required when specifying serviceUrls");
+			}
+			for (int i = 0; i < this.serviceUrls.length; i++) {
+				endpointList.add(new Endpoint(createEndpoint(this.serviceUrls[i]), endpointList.size()));
+			}
+		}
+		if (endpointList.isEmpty()) {
+			throw new IllegalArgumentException("At least one endpoint or service URL is required");
+		}
+		this.endpoints = (Endpoint[]) endpointList.toArray(new Endpoint[endpointList.size()]);
+	}
+
+	/**
+	 * Create an endpoint for the given service URL.
+	 * <p>Default implementation instantiates the endpoint class, applying the
+	 * endpoint properties, the service interface and the given service URL.
+	 * Can be overridden in subclasses, e.g. for custom endpoint configuration.
+	 * @param serviceUrl the service URL to create an endpoint for
+	 * @return the endpoint, typically a client interceptor
+	 * @throws Exception if the endpoint could not be initialized
+	 * @see #setEndpointClass
+	 * @see #setEndpointProperties
+	 */
+	protected Object createEndpoint(String serviceUrl) throws Exception {
+		BeanWrapper bw = new BeanWrapperImpl(this.endpointClass);
+		if (this.endpointProperties != null) {
+			bw.setPropertyValues(this.endpointProperties);
+		}
+		bw.setPropertyValue("serviceInterface", getServiceInterface());
+		bw.setPropertyValue("serviceUrl", serviceUrl);
+		Object endpoint = bw.getWrappedInstance();
+		if (endpoint instanceof InitializingBean) {
+			((InitializingBean) endpoint).afterPropertiesSet();
+		}
+		return endpoint;
+	}
+
+
+	public Object invoke(MethodInvocation invocation) throws Throwable {
+		boolean idempotent = isIdempotent(invocation.getMethod());
+		int attempts = this.endpoints.length;
+		if (this.maxAttempts > 0 && this.maxAttempts < attempts) {
+			attempts = this.maxAttempts;
+		}
+		boolean[] tried = new boolean[this.endpoints.length];
+		Throwable lastFailure = null;
+		for (int attempt = 0; attempt < attempts; attempt++) {
+			Endpoint endpoint = selectEndpoint(tried);
+			tried[endpoint.index] = true;
+			long startTime = System.currentTimeMillis();
+			try {
+				Object result = endpoint.invoke(invocation);
+				endpoint.recordSuccess(System.currentTimeMillis() - startTime);
+				return result;
+			}
+			catch (Throwable ex) {
+				boolean connectFailure = isConnectFailure(ex);
+				if (!connectFailure && !isRemoteAccessFailure(ex)) {
+					// thrown by the service itself: the endpoint is healthy
+					endpoint.recordSuccess(System.currentTimeMillis() - startTime);
+					throw ex;
+				}
+				if (endpoint.recordFailure(this.failureThreshold, this.ejectionTime)) {
+					logger.warn("Ejecting remote endpoint [" + endpoint.description + "] for " +
+							this.ejectionTime + " ms after " + endpoint.consecutiveFailures + " failures");
+				}
+				if (!connectFailure && !idempotent) {
+					throw ex;
+				}
+				if (logger.isDebugEnabled()) {
+					logger.debug("Invocation of [" + invocation.getMethod().getName() +
+							"] failed on remote endpoint [" + endpoint.description + "]", ex);
+				}
+				lastFailure = ex;
+			}
+		}
+		throw lastFailure;
+	}
+
+	/**
+	 * Select the next endpoint to try, according to the selection policy.
+	 * Prefers available endpoints; if all untried endpoints are ejected,
+	 * returns the one that has been ejected earliest.
+	 */
+	private Endpoint selectEndpoint(boolean[] tried) {
+		int start;
+		synchronized (this) {
+			start = this.nextIndex;
+			this.nextIndex = (this.nextIndex + 1) % this.endpoints.length;
+		}
+		long now = System.currentTimeMillis();
+		Endpoint selected = null;
+		Endpoint fallback = null;
+		for (int i = 0; i < this.endpoints.length; i++) {
+			Endpoint endpoint = this.endpoints[(start + i) % this.endpoints.length];
+			if (tried[endpoint.index]) {
+				continue;
+			}
+			if (!endpoint.isAvailable(now)) {
+				if (fallback == null || endpoint.getEjectedUntil() < fallback.getEjectedUntil()) {
+					fallback = endpoint;
+				}
+			}
+			else if (this.selectionPolicy == SELECTION_ROUND_ROBIN) {
+				return endpoint;
+			}
+			else if (selected == null || endpoint.getAverageLatency() < selected.getAverageLatency()) {
+				selected = endpoint;
+			}
+		}
+		return (selected != null ? selected : fallback);
+	}
+
+	/**
+	 * Determine whether the given method is idempotent, i.e. whether it
+	 * may be retried after any remote access failure.
+	 * @see #setIdempotentMethods
+	 */
+	protected boolean isIdempotent(Method method) {
+		if (this.idempotentMethods != null) {
+			String methodName = method.getName();
+			for (int i = 0; i < this.idempotentMethods.length; i++) {
+				String mappedName = this.idempotentMethods[i];
+				if (mappedName.equals(methodName) ||
+						(mappedName.endsWith("*") && methodName.startsWith(mappedName.substring(0, mappedName.length() - 1))) ||
+						(mappedName.startsWith("*") && methodName.endsWith(mappedName.substring(1)))) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Determine whether the given exception indicates that the endpoint could
+	 * not be reached, so that the invocation can be retried in any case.
+	 * @param ex the exception thrown by an endpoint
+	 * @see org.springframework.remoting.RemoteConnectFailureException
+	 * @see org.springframework.remoting.RemoteLookupFailureException
+	 */
+	protected boolean isConnectFailure(Throwable ex) {
+		return (ex instanceof RemoteConnectFailureException || ex instanceof RemoteLookupFailureException ||
+				ex instanceof java.rmi.ConnectException || ex instanceof java.rmi.ConnectIOException ||
+				ex instanceof java.rmi.UnknownHostException ||
+				(ex instanceof RemoteAccessException &&
+				((RemoteAccessException) ex).getCause() instanceof java.net.ConnectException));
+	}
+
+	/**
+	 * Determine whether the given exception indicates a remote access failure,
+	 * in contrast to an exception thrown by the service itself.
+	 * @param ex the exception thrown by an endpoint
+	 * @see org.springframework.remoting.RemoteAccessException
+	 * @see java.rmi.RemoteException
+	 */
+	protected boolean isRemoteAccessFailure(Throwable ex) {
+		return (ex instanceof RemoteAccessException || ex instanceof java.rmi.RemoteException);
+	}
+
+
+	/**
+	 * Return descriptions of all endpoints: their service URLs, if known.
+	 */
+	public String[] getEndpointDescriptions() {
+		return getEndpointDescriptions(false);
+	}
+
+	/**
+	 * Return descriptions of all endpoints that are currently ejected.
+	 */
+	public String[] getEjectedEndpointDescriptions() {
+		return getEndpointDescriptions(true);
+	}
+
+	private String[] getEndpointDescriptions(boolean ejectedOnly) {
+		long now = System.currentTimeMillis();
+		List descriptions = new ArrayList();
+		for (int i = 0; i < this.endpoints.length; i++) {
+			if (!ejectedOnly || !this.endpoints[i].isAvailable(now)) {
+				descriptions.add(this.endpoints[i].description);
+			}
+		}
+		return (String[]) descriptions.toArray(new String[descriptions.size()]);
+	}
+
+	/**
+	 * Return the average latency (in milliseconds) of the endpoint with the
+	 * given description, or -1 if not measured yet.
+	 * @see #getEndpointDescriptions
+	 */
+	public long getAverageLatency(String description) {
+		for (int i = 0; i < this.endpoints.length; i++) {
+			if (this.endpoints[i].description.equals(description)) {
+				return this.endpoints[i].getAverageLatency();
+			}
+		}
+		throw new IllegalArgumentException("No endpoint [" + description + "]");
+	}
+
+
+	/**
+	 * Holder for an endpoint and its health and latency state.
+	 */
+	private static class Endpoint {
+
+		private final Object target;
+
+		private final int index;
+
+		private final String description;
+
+		private int consecutiveFailures = 0;
+
+		private long ejectedUntil = 0;
+
+		private long averageLatency = -1;
+
+		private Endpoint(Object target, int index) {
+			this.target = target;
+			this.index = index;
+			this.description = (target instanceof UrlBasedRemoteAccessor ?
+					((UrlBasedRemoteAccessor) target).getServiceUrl() : "endpoint " + (index + 1));
+		}
+
+		private Object invoke(MethodInvocation invocation) throws Throwable {
+			if (this.target instanceof MethodInterceptor) {
+				return ((MethodInterceptor) this.target).invoke(invocation);
+			}
+			try {
+				return invocation.getMethod().invoke(this.target, invocation.getArguments());
+			}
+			catch (InvocationTargetException ex) {
+				throw ex.getTargetException();
+			}
+		}
+
+		private synchronized boolean isAvailable(long now) {
+			return (this.ejectedUntil <= now);
+		}
+
+		private synchronized long getEjectedUntil() {
+			return this.ejectedUntil;
+		}
+
+		private synchronized long getAverageLatency() {
+			return this.averageLatency;
+		}
+
+		private synchronized void recordSuccess(long latency) {
+			this.consecutiveFailures = 0;
+			this.ejectedUntil = 0;
+			// exponentially weighted moving average, weighting the latest invocation by 1/4
+			this.averageLatency = (this.averageLatency < 0 ? latency : (3 * this.averageLatency + latency) / 4);
+		}
+
+		/**
+		 * Record a failed invocation.
+		 * @return whether the endpoint has been newly ejected because of this failure
+		 */
+		private synchronized boolean recordFailure(int failureThreshold, long ejectionTime) {
+			this.consecutiveFailures++;
+			if (this.consecutiveFailures >= failureThreshold) {
+				long now = System.currentTimeMillis();
+				boolean wasAvailable = (this.ejectedUntil <= now);
+				this.ejectedUntil = now + ejectionTime;
+				return wasAvailable;
+			}
+			return false;
+		}
+	}
+
+}
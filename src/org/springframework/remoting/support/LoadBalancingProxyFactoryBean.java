@@ -0,0 +1,75 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.remoting.support;
+
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.FactoryBean;
+
+/**
+ * Factory bean for proxies that distribute invocations across multiple
+ * endpoints of the same remote service. Behaves like a proxy factory bean
+ * for a single endpoint, exposing a proxy for the specified service interface.
+ *
+ * <p>Typical configuration for HTTP invoker endpoints:
+ *
+ * <pre>
+ * &lt;bean id="orderService" class="org.springframework.remoting.support.LoadBalancingProxyFactoryBean"&gt;
+ *   &lt;property name="serviceInterface"&gt;&lt;value&gt;example.OrderService&lt;/value&gt;&lt;/property&gt;
+ *   &lt;property name="endpointClass"&gt;
+ *     &lt;value&gt;org.springframework.remoting.httpinvoker.HttpInvokerClientInterceptor&lt;/value&gt;
+ *   &lt;/property&gt;
+ *   &lt;property name="serviceUrls"&gt;
+ *     &lt;list&gt;
+ *       &lt;value&gt;http://host1:8080/remoting/OrderService&lt;/value&gt;
+ *       &lt;value&gt;http://host2:8080/remoting/OrderService&lt;/value&gt;
+ *     &lt;/list&gt;
+ *   &lt;/property&gt;
+ *   &lt;property name="idempotentMethods"&gt;&lt;value&gt;get*,find*&lt;/value&gt;&lt;/property&gt;
+ * &lt;/bean&gt;</pre>
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see #setServiceInterface
+ * @see #setEndpoints
+ * @see #setServiceUrls
+ * @see LoadBalancingClientInterceptor
+ */
+public class LoadBalancingProxyFactoryBean extends LoadBalancingClientInterceptor implements FactoryBean {
+
+	private Object serviceProxy;
+
+	public void afterPropertiesSet() throws Exception {
+		if (getServiceInterface() == null) {
+			throw new IllegalArgumentException("serviceInterface is required");
+		}
+		super.afterPropertiesSet();
+		this.serviceProxy = ProxyFactory.getProxy(getServiceInterface(), this);
+	}
+
+	public Object getObject() {
+		return this.serviceProxy;
+	}
+
+	public Class getObjectType() {
+		return (this.serviceProxy != null) ? this.serviceProxy.getClass() : getServiceInterface();
+	}
+
+	public boolean isSingleton() {
+		return true;
+	}
+
+}
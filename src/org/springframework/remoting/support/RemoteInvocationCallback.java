@@ -0,0 +1,51 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.remoting.support;
+
+/**
+ * Callback interface for receiving the outcome of an asynchronous
+ * remote invocation. To be used as last parameter of a method in an
+ * async interface that is exposed by AsyncRemoteProxyFactoryBean.
+ *
+ * <p>Callbacks are invoked in the thread that completed the invocation,
+ * that is, an executor thread or the timeout timer thread. They should
+ * return quickly, handing off any extensive processing.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see AsyncRemoteClientInterceptor
+ * @see RemoteInvocationFuture
+ */
+public interface RemoteInvocationCallback {
+
+	/**
+	 * Called when the remote invocation returned successfully.
+	 * @param result the return value of the invocation
+	 * (null for void methods)
+	 */
+	void onSuccess(Object result);
+
+	/**
+	 * Called when the remote invocation failed, including timeouts.
+	 * @param ex the exception thrown by the invocation, typically a
+	 * RemoteAccessException or an application exception of the service
+	 * @see org.springframework.remoting.RemoteAccessException
+	 * @see org.springframework.remoting.RemoteTimeoutException
+	 */
+	void onFailure(Throwable ex);
+
+}
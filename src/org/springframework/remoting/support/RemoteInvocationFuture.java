@@ -0,0 +1,178 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.remoting.support;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.remoting.RemoteTimeoutException;
+
+/**
+ * Holder for the pending result of an asynchronous remote invocation.
+ * Returned by methods of an async interface exposed by AsyncRemoteProxyFactoryBean.
+ *
+ * <p>The result can be retrieved via <code>get</code>, blocking until the
+ * invocation has completed. The invocation completes exactly once: with a
+ * return value, with an exception, or with a RemoteTimeoutException if a
+ * timeout has been specified for the proxy.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see AsyncRemoteClientInterceptor
+ * @see RemoteInvocationCallback
+ */
+public class RemoteInvocationFuture {
+
+	private static final Log logger = LogFactory.getLog(RemoteInvocationFuture.class);
+
+	private final RemoteInvocationCallback callback;
+
+	private Object result;
+
+	private Throwable exception;
+
+	private boolean done = false;
+
+
+	/**
+	 * Create a new RemoteInvocationFuture.
+	 */
+	public RemoteInvocationFuture() {
+		this(null);
+	}
+
+	/**
+	 * Create a new RemoteInvocationFuture that notifies the given callback on completion.
+	 * @param callback the callback to notify (can be null)
+	 */
+	public RemoteInvocationFuture(RemoteInvocationCallback callback) {
+		this.callback = callback;
+	}
+
+
+	/**
+	 * Complete this future with the given result.
+	 * @param result the return value of the invocation
+	 * @return whether this future has been completed by this call,
+	 * false if already completed before
+	 */
+	public boolean setResult(Object result) {
+		synchronized (this) {
+			if (this.done) {
+				return false;
+			}
+			this.result = result;
+			this.done = true;
+			notifyAll();
+		}
+		if (this.callback != null) {
+			try {
+				this.callback.onSuccess(result);
+			}
+			catch (Throwable ex) {
+				logger.error("RemoteInvocationCallback threw exception on success", ex);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Complete this future with the given exception.
+	 * @param exception the exception thrown by the invocation
+	 * @return whether this future has been completed by this call,
+	 * false if already completed before
+	 */
+	public boolean setException(Throwable exception) {
+		synchronized (this) {
+			if (this.done) {
+				return false;
+			}
+			this.exception = exception;
+			this.done = true;
+			notifyAll();
+		}
+		if (this.callback != null) {
+			try {
+				this.callback.onFailure(exception);
+			}
+			catch (Throwable ex) {
+				logger.error("RemoteInvocationCallback threw exception on failure", ex);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Return whether the invocation has completed, successfully or not.
+	 */
+	public synchronized boolean isDone() {
+		return done;
+	}
+
+	/**
+	 * Wait for the invocation to complete and return its result.
+	 * @return the return value of the invocation (null for void methods)
+	 * @throws Exception the exception thrown by the invocation, typically a
+	 * RemoteAccessException or an application exception of the service
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public Object get() throws Exception {
+		return get(0);
+	}
+
+	/**
+	 * Wait for the invocation to complete, for at most the given time,
+	 * and return its result.
+	 * @param timeout the maximum time to wait (in milliseconds), or 0 to wait
+	 * until completion
+	 * @return the return value of the invocation (null for void methods)
+	 * @throws RemoteTimeoutException if the invocation did not complete
+	 * within the given time
+	 * @throws Exception the exception thrown by the invocation, typically a
+	 * RemoteAccessException or an application exception of the service
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public synchronized Object get(long timeout) throws Exception {
+		if (timeout > 0) {
+			long deadline = System.currentTimeMillis() + timeout;
+			long remaining = timeout;
+			while (!this.done && remaining > 0) {
+				wait(remaining);
+				remaining = deadline - System.currentTimeMillis();
+			}
+			if (!this.done) {
+				throw new RemoteTimeoutException("Remote invocation did not complete within " + timeout + " ms");
+			}
+		}
+		else {
+			while (!this.done) {
+				wait();
+			}
+		}
+		if (this.exception instanceof Exception) {
+			throw (Exception) this.exception;
+		}
+		if (this.exception instanceof Error) {
+			throw (Error) this.exception;
+		}
+		if (this.exception != null) {
+			throw new IllegalStateException("Unexpected Throwable: " + this.exception);
+		}
+		return this.result;
+	}
+
+}
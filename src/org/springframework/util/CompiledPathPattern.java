@@ -0,0 +1,246 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ant-style path pattern that is parsed once and can then be matched
+ * against any number of paths. Follows the same rules as PathMatcher:
+ * <ul>
+ * <li>? matches one character</li>
+ * <li>* matches zero or more characters</li>
+ * <li>** matches zero or more 'directories' in a path</li>
+ * </ul>
+ *
+ * <p>Matching works on the given path String via index arithmetic,
+ * without tokenizing it, so <code>matches</code> does not create any
+ * objects. Instances are immutable and thus thread-safe; they are
+ * intended to be kept for patterns that are matched repeatedly,
+ * like handler mappings or resource locations.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see PathMatcher
+ */
+public class CompiledPathPattern {
+
+	private static final String DIRECTORY_WILDCARD = "**";
+
+	private final String pattern;
+
+	private final boolean absolute;
+
+	private final char[][] segments;
+
+	private final boolean[] directoryWildcards;
+
+	private final boolean[] literals;
+
+
+	/**
+	 * Create a new CompiledPathPattern for the given pattern.
+	 * @param pattern the Ant-style pattern to parse
+	 */
+	public CompiledPathPattern(String pattern) {
+		if (pattern == null) {
+			throw new IllegalArgumentException("Pattern must not be null");
+		}
+		this.pattern = pattern;
+		this.absolute = pattern.startsWith("/");
+		List segmentList = new ArrayList();
+		int start = 0;
+		while (start < pattern.length()) {
+			int end = pattern.indexOf('/', start);
+			if (end == -1) {
+				end = pattern.length();
+			}
+			if (end > start) {
+				String segment = pattern.substring(start, end);
+				// "**/**" is equivalent to a single "**"
+				boolean redundant = DIRECTORY_WILDCARD.equals(segment) && !segmentList.isEmpty() &&
+						DIRECTORY_WILDCARD.equals(segmentList.get(segmentList.size() - 1));
+				if (!redundant) {
+					segmentList.add(segment);
+				}
+			}
+			start = end + 1;
+		}
+		int count = segmentList.size();
+		this.segments = new char[count][];
+		this.directoryWildcards = new boolean[count];
+		this.literals = new boolean[count];
+		for (int i = 0; i < count; i++) {
+			String segment = (String) segmentList.get(i);
+			this.segments[i] = segment.toCharArray();
+			this.directoryWildcards[i] = DIRECTORY_WILDCARD.equals(segment);
+			this.literals[i] = !PathMatcher.isPattern(segment);
+		}
+	}
+
+	/**
+	 * Return the original pattern String.
+	 */
+	public String getPattern() {
+		return pattern;
+	}
+
+	/**
+	 * Return whether this pattern contains any wildcards: if not,
+	 * it only matches paths that are equal apart from duplicate slashes.
+	 * @see PathMatcher#isPattern
+	 */
+	public boolean isPattern() {
+		return PathMatcher.isPattern(this.pattern);
+	}
+
+	/**
+	 * Match the given path against this pattern.
+	 * @param path the path to test
+	 * @return whether the path matches this pattern
+	 */
+	public boolean matches(String path) {
+		if (path.startsWith("/") != this.absolute) {
+			return false;
+		}
+		int length = path.length();
+		int patIdx = 0;
+		int pos = skipSlashes(path, 0);
+		// backtracking state for the last "**" seen
+		int wildcardPatIdx = -1;
+		int wildcardPos = -1;
+
+		while (pos < length) {
+			int end = segmentEnd(path, pos);
+			if (patIdx < this.segments.length && this.directoryWildcards[patIdx]) {
+				wildcardPatIdx = patIdx;
+				wildcardPos = pos;
+				patIdx++;
+			}
+			else if (patIdx < this.segments.length && matchSegment(patIdx, path, pos, end)) {
+				patIdx++;
+				pos = skipSlashes(path, end);
+			}
+			else if (wildcardPatIdx != -1) {
+				// let the last "**" consume one more directory
+				patIdx = wildcardPatIdx + 1;
+				wildcardPos = skipSlashes(path, segmentEnd(path, wildcardPos));
+				pos = wildcardPos;
+			}
+			else {
+				return false;
+			}
+		}
+
+		// path exhausted: only match if rest of pattern is "**"
+		while (patIdx < this.segments.length) {
+			if (!this.directoryWildcards[patIdx]) {
+				return false;
+			}
+			patIdx++;
+		}
+		return true;
+	}
+
+	/**
+	 * Match a single path segment, given as range of the path String,
+	 * against the pattern segment at the given index.
+	 */
+	private boolean matchSegment(int patIdx, String path, int start, int end) {
+		char[] seg = this.segments[patIdx];
+		if (!this.literals[patIdx]) {
+			return matchChars(seg, path, start, end);
+		}
+		if (seg.length != end - start) {
+			return false;
+		}
+		for (int i = 0; i < seg.length; i++) {
+			if (seg[i] != path.charAt(start + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Match the given character range against a segment pattern
+	 * containing '*' and/or '?' wildcards.
+	 */
+	private static boolean matchChars(char[] seg, String str, int start, int end) {
+		int patIdx = 0;
+		int strIdx = start;
+		// backtracking state for the last '*' seen
+		int starPatIdx = -1;
+		int starStrIdx = -1;
+		while (strIdx < end) {
+			if (patIdx < seg.length && seg[patIdx] == '*') {
+				starPatIdx = patIdx;
+				starStrIdx = strIdx;
+				patIdx++;
+			}
+			else if (patIdx < seg.length && (seg[patIdx] == '?' || seg[patIdx] == str.charAt(strIdx))) {
+				patIdx++;
+				strIdx++;
+			}
+			else if (starPatIdx != -1) {
+				// let the last '*' consume one more character
+				patIdx = starPatIdx + 1;
+				starStrIdx++;
+				strIdx = starStrIdx;
+			}
+			else {
+				return false;
+			}
+		}
+		while (patIdx < seg.length) {
+			if (seg[patIdx] != '*') {
+				return false;
+			}
+			patIdx++;
+		}
+		return true;
+	}
+
+	private static int skipSlashes(String str, int pos) {
+		int length = str.length();
+		while (pos < length && str.charAt(pos) == '/') {
+			pos++;
+		}
+		return pos;
+	}
+
+	private static int segmentEnd(String str, int pos) {
+		int end = str.indexOf('/', pos);
+		return (end != -1 ? end : str.length());
+	}
+
+
+	public boolean equals(Object other) {
+		return (this == other || (other instanceof CompiledPathPattern &&
+				this.pattern.equals(((CompiledPathPattern) other).pattern)));
+	}
+
+	public int hashCode() {
+		return this.pattern.hashCode();
+	}
+
+	public String toString() {
+		return this.pattern;
+	}
+
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Simple size-bounded cache that evicts the least recently used entry
+ * when full. Keeps hit, miss and eviction counts for monitoring.
+ * Mainly for internal use within the framework.
+ *
+ * <p>All operations are synchronized on the cache instance and run in
+ * constant time. Implemented as a HashMap plus doubly linked entry list,
+ * to avoid a runtime dependency on JDK 1.4's LinkedHashMap.
+ * Note that this is not a concurrent cache: A single lock guards all entries.
+ * Callers with heavily contended caches can split them into several instances
+ * by key hash, as AbstractCachingViewResolver does.
+ *
+ * @author agent
+ * @since 1.1.2
+ */
+public class LruCache {
+
+	private final int maxSize;
+
+	private final Map entries;
+
+	/** Sentinel of the circular entry list: header.after is the most recently used entry */
+	private final Entry header = new Entry(null, null);
+
+	private long hitCount = 0;
+
+	private long missCount = 0;
+
+	private long evictionCount = 0;
+
+
+	/**
+	 * Create a new LruCache with the given maximum number of entries.
+	 * @param maxSize the maximum number of entries to hold
+	 */
+	public LruCache(int maxSize) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize must be greater than 0");
+		}
+		this.maxSize = maxSize;
+		this.entries = new HashMap(maxSize < 16 ? 16 : maxSize * 4 / 3 + 1);
+		this.header.before = this.header;
+		this.header.after = this.header;
+	}
+
+	/**
+	 * Return the maximum number of entries in this cache.
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Return the value for the given key, marking it as most recently used.
+	 * @param key the key to look up
+	 * @return the cached value, or null if none
+	 */
+	public synchronized Object get(Object key) {
+		Entry entry = (Entry) this.entries.get(key);
+		if (entry == null) {
+			this.missCount++;
+			return null;
+		}
+		this.hitCount++;
+		entry.unlink();
+		entry.linkAfter(this.header);
+		return entry.value;
+	}
+
+	/**
+	 * Put the given value into the cache, evicting the least recently
+	 * used entry if the cache is full.
+	 * @param key the key to cache the value for
+	 * @param value the value to cache
+	 * @return the previous value for the key, or null if none
+	 */
+	public synchronized Object put(Object key, Object value) {
+		Entry entry = (Entry) this.entries.get(key);
+		if (entry != null) {
+			Object oldValue = entry.value;
+			entry.value = value;
+			entry.unlink();
+			entry.linkAfter(this.header);
+			return oldValue;
+		}
+		if (this.entries.size() >= this.maxSize) {
+			Entry eldest = this.header.before;
+			eldest.unlink();
+			this.entries.remove(eldest.key);
+			this.evictionCount++;
+		}
+		entry = new Entry(key, value);
+		entry.linkAfter(this.header);
+		this.entries.put(key, entry);
+		return null;
+	}
+
+	/**
+	 * Remove the entry for the given key, if any.
+	 * @param key the key to remove
+	 * @return the removed value, or null if none
+	 */
+	public synchronized Object remove(Object key) {
+		Entry entry = (Entry) this.entries.remove(key);
+		if (entry == null) {
+			return null;
+		}
+		entry.unlink();
+		return entry.value;
+	}
+
+	/**
+	 * Remove all entries from this cache. Does not reset the statistics.
+	 */
+	public synchronized void clear() {
+		this.entries.clear();
+		this.header.before = this.header;
+		this.header.after = this.header;
+	}
+
+	/**
+	 * Return the current number of entries in this cache.
+	 */
+	public synchronized int size() {
+		return this.entries.size();
+	}
+
+	/**
+	 * Return the number of lookups that found a cached value.
+	 */
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * Return the number of lookups that did not find a cached value.
+	 */
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Return the number of entries evicted because the cache was full.
+	 */
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	public synchronized String toString() {
+		return "LruCache: size=" + this.entries.size() + ", maxSize=" + this.maxSize +
+				", hits=" + this.hitCount + ", misses=" + this.missCount + ", evictions=" + this.evictionCount;
+	}
+
+
+	/**
+	 * Cache entry, linked into the list of entries in access order.
+	 */
+	private static class Entry {
+
+		private final Object key;
+
+		private Object value;
+
+		private Entry before;
+
+		private Entry after;
+
+		private Entry(Object key, Object value) {
+			this.key = key;
+			this.value = value;
+		}
+
+		private void unlink() {
+			this.before.after = this.after;
+			this.after.before = this.before;
+		}
+
+		private void linkAfter(Entry existing) {
+			this.before = existing;
+			this.after = existing.after;
+			existing.after.before = this;
+			existing.after = this;
+		}
+	}
+
+}
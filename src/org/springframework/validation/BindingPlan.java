@@ -0,0 +1,229 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.validation;
+
+import java.beans.PropertyDescriptor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeanWrapper;
+
+/**
+ * Precomputed binding information for a given target class and allowed
+ * fields configuration, to be reused across DataBinder instances.
+ * Determines the writable top-level properties of the target class with
+ * their types, and which of them are allowed for binding.
+ *
+ * <p>All information is computed on creation, so a plan is immutable and
+ * thread-safe, in contrast to the binder itself. Typically kept per command
+ * class by a controller and applied to each new binder via DataBinder's
+ * <code>setBindingPlan</code>. Custom PropertyEditors are not part of a plan,
+ * as PropertyEditors are stateful: They still need to be registered with
+ * each binder.
+ *
+ * <p>Field names that do not correspond to a writable top-level property,
+ * like nested paths, are matched against the allowed field patterns on
+ * each call, without creating substrings of the patterns. Note that only
+ * DataBinder's default <code>isAllowed</code> implementation uses the plan:
+ * An overridden <code>isAllowed</code> method in a DataBinder subclass is
+ * still invoked for each field.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see DataBinder#setBindingPlan
+ * @see org.springframework.web.servlet.mvc.BaseCommandController
+ */
+public class BindingPlan {
+
+	private final Class targetClass;
+
+	private final String[] allowedFields;
+
+	/** Prefixes of "xxx*" patterns in the allowed fields */
+	private final String[] allowedPrefixes;
+
+	/** Suffixes of "*xxx" patterns in the allowed fields */
+	private final String[] allowedSuffixes;
+
+	/** Writable top-level property name -> PropertyPlan */
+	private final Map propertyPlans;
+
+
+	/**
+	 * Create a new BindingPlan for the given target class,
+	 * allowing all fields.
+	 * @param targetClass the class of the objects to bind onto
+	 * @throws org.springframework.beans.BeansException if the class could not be introspected
+	 */
+	public BindingPlan(Class targetClass) {
+		this(targetClass, null);
+	}
+
+	/**
+	 * Create a new BindingPlan for the given target class
+	 * and allowed fields.
+	 * @param targetClass the class of the objects to bind onto
+	 * @param allowedFields the allowed fields (null for all)
+	 * @throws org.springframework.beans.BeansException if the class could not be introspected
+	 * @see DataBinder#setAllowedFields
+	 */
+	public BindingPlan(Class targetClass, String[] allowedFields) {
+		if (targetClass == null) {
+			throw new IllegalArgumentException("targetClass is required");
+		}
+		this.targetClass = targetClass;
+		this.allowedFields = allowedFields;
+		List prefixes = new ArrayList();
+		List suffixes = new ArrayList();
+		if (allowedFields != null) {
+			for (int i = 0; i < allowedFields.length; i++) {
+				String allowed = allowedFields[i];
+				if (allowed.endsWith("*")) {
+					prefixes.add(allowed.substring(0, allowed.length() - 1));
+				}
+				if (allowed.startsWith("*")) {
+					suffixes.add(allowed.substring(1, allowed.length()));
+				}
+			}
+		}
+		this.allowedPrefixes = (String[]) prefixes.toArray(new String[prefixes.size()]);
+		this.allowedSuffixes = (String[]) suffixes.toArray(new String[suffixes.size()]);
+		PropertyDescriptor[] pds = BeanUtils.getPropertyDescriptors(targetClass);
+		this.propertyPlans = new HashMap(pds.length * 2);
+		for (int i = 0; i < pds.length; i++) {
+			if (pds[i].getWriteMethod() != null) {
+				Class type = pds[i].getPropertyType();
+				this.propertyPlans.put(pds[i].getName(),
+						new PropertyPlan(type != null ? type : Object.class, matchesAllowedFieldPattern(pds[i].getName())));
+			}
+		}
+	}
+
+	/**
+	 * Return the class of the objects to bind onto.
+	 */
+	public Class getTargetClass() {
+		return targetClass;
+	}
+
+	/**
+	 * Return the allowed fields that this plan has been created for.
+	 */
+	public String[] getAllowedFields() {
+		return allowedFields;
+	}
+
+	/**
+	 * Return whether this plan applies to the given target object
+	 * and allowed fields.
+	 * @param target the target object to bind onto
+	 * @param allowedFields the allowed fields of the binder
+	 */
+	public boolean matches(Object target, String[] allowedFields) {
+		return (this.targetClass.equals(target.getClass()) && matchesAllowedFields(allowedFields));
+	}
+
+
+	/**
+	 * Return whether this plan has been created for the given allowed fields.
+	 * @param allowedFields the allowed fields of the binder
+	 */
+	boolean matchesAllowedFields(String[] allowedFields) {
+		return (this.allowedFields == allowedFields || Arrays.equals(this.allowedFields, allowedFields));
+	}
+
+	/**
+	 * Determine whether the given field matches one of the allowed field
+	 * patterns of this plan, using the precomputed result for writable
+	 * top-level properties.
+	 * @see DataBinder#matchesAllowedFieldPattern
+	 */
+	boolean isAllowed(String field) {
+		PropertyPlan propertyPlan = (PropertyPlan) this.propertyPlans.get(field);
+		if (propertyPlan != null) {
+			return propertyPlan.allowed;
+		}
+		return matchesAllowedFieldPattern(field);
+	}
+
+	private boolean matchesAllowedFieldPattern(String field) {
+		if (this.allowedFields == null) {
+			return true;
+		}
+		for (int i = 0; i < this.allowedPrefixes.length; i++) {
+			if (field.startsWith(this.allowedPrefixes[i])) {
+				return true;
+			}
+		}
+		for (int i = 0; i < this.allowedSuffixes.length; i++) {
+			if (field.endsWith(this.allowedSuffixes[i])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Determine the type of the given writable property. Top-level
+	 * properties are resolved from this plan; nested property paths
+	 * depend on the state of the target object, so the given
+	 * BeanWrapper is asked for them.
+	 * @return the property type, or null if not writable
+	 */
+	Class getWritablePropertyType(String field, BeanWrapper beanWrapper) {
+		if (isTopLevelProperty(field)) {
+			PropertyPlan propertyPlan = (PropertyPlan) this.propertyPlans.get(field);
+			return (propertyPlan != null ? propertyPlan.type : null);
+		}
+		if (!beanWrapper.isWritableProperty(field)) {
+			return null;
+		}
+		Class type = beanWrapper.getPropertyType(field);
+		return (type != null ? type : Object.class);
+	}
+
+	private boolean isTopLevelProperty(String field) {
+		return (field.indexOf(BeanWrapper.NESTED_PROPERTY_SEPARATOR) == -1 &&
+				field.indexOf(BeanWrapper.PROPERTY_KEY_PREFIX) == -1);
+	}
+
+	public String toString() {
+		return "BindingPlan for class [" + this.targetClass.getName() + "]: " +
+				this.propertyPlans.size() + " writable properties";
+	}
+
+
+	/**
+	 * Precomputed information about a writable top-level property.
+	 */
+	private static class PropertyPlan {
+
+		private final Class type;
+
+		private final boolean allowed;
+
+		private PropertyPlan(Class type, boolean allowed) {
+			this.type = type;
+			this.allowed = allowed;
+		}
+	}
+
+}
@@ -17,8 +17,6 @@
 package org.springframework.validation;
 
 import java.beans.PropertyEditor;
-import java.util.Arrays;
-import java.util.List;
 import java.util.Map;
 
 import org.springframework.beans.BeanWrapper;
@@ -60,6 +58,8 @@ public class DataBinder {
 
 	private String[] requiredFields;
 
+	private BindingPlan bindingPlan;
+
 
 	/**
 	 * Create a new DataBinder instance.
@@ -185,6 +185,25 @@ public class DataBinder {
 		this.errors.getBeanWrapper().registerCustomEditor(requiredType, field, propertyEditor);
 	}
 
+	/**
+	 * Set a precomputed BindingPlan to reuse cached binding information from.
+	 * The plan will only be used if it has been created for the class of the
+	 * target object and for this binder's allowed fields; else it is ignored.
+	 * <p>A plan is typically shared by all binders for a given command class.
+	 * It can be applied at any time before <code>bind</code> is invoked.
+	 * @see BindingPlan#matches
+	 */
+	public void setBindingPlan(BindingPlan bindingPlan) {
+		this.bindingPlan = bindingPlan;
+	}
+
+	/**
+	 * Return the BindingPlan that this binder uses, if any.
+	 */
+	public BindingPlan getBindingPlan() {
+		return bindingPlan;
+	}
+
 	/**
 	 * Set the strategy to use for resolving errors into message codes.
 	 * Applies the given strategy to the underlying errors holder.
@@ -209,13 +228,12 @@ public class DataBinder {
 	 */
 	public void bind(PropertyValues pvs) {
 		// check for fields to bind
-		List allowedFieldsList = (this.allowedFields != null) ? Arrays.asList(this.allowedFields) : null;
 		MutablePropertyValues mpvs = (pvs instanceof MutablePropertyValues) ?
 		    (MutablePropertyValues) pvs : new MutablePropertyValues(pvs);
 		PropertyValue[] pvArray = pvs.getPropertyValues();
 		for (int i = 0; i < pvArray.length; i++) {
 			String field = pvArray[i].getName();
-			if (!((allowedFieldsList != null && allowedFieldsList.contains(field)) || isAllowed(field))) {
+			if (!isAllowedField(field)) {
 				mpvs.removePropertyValue(pvArray[i]);
 			}
 		}
@@ -253,11 +271,29 @@ public class DataBinder {
 		}
 	}
 
+	/**
+	 * Return if the given field is allowed for binding, either as
+	 * direct match in the allowedFields array or via <code>isAllowed</code>.
+	 * @param field the field to check
+	 * @see #isAllowed
+	 */
+	boolean isAllowedField(String field) {
+		if (this.allowedFields != null) {
+			for (int i = 0; i < this.allowedFields.length; i++) {
+				if (this.allowedFields[i].equals(field)) {
+					return true;
+				}
+			}
+		}
+		return isAllowed(field);
+	}
+
 	/**
 	 * Return if the given field is allowed for binding.
 	 * Invoked for each passed-in property value.
-	 * <p>The default implementation checks for "xxx*" and "*xxx" matches.
-	 * Can be overridden in subclasses.
+	 * <p>The default implementation checks for "xxx*" and "*xxx" matches,
+	 * reusing the results of the BindingPlan for this binder's allowed fields,
+	 * if any. Can be overridden in subclasses.
 	 * <p>If the field is found in the allowedFields array as direct match,
 	 * this method will not be invoked.
 	 * @param field the field to check
@@ -265,9 +301,23 @@ public class DataBinder {
 	 * @see #setAllowedFields
 	 */
 	protected boolean isAllowed(String field) {
-		if (this.allowedFields != null) {
-			for (int i = 0; i < this.allowedFields.length; i++) {
-				String allowed = this.allowedFields[i];
+		if (this.bindingPlan != null && this.bindingPlan.matchesAllowedFields(this.allowedFields)) {
+			return this.bindingPlan.isAllowed(field);
+		}
+		return matchesAllowedFieldPattern(field, this.allowedFields);
+	}
+
+	/**
+	 * Return if the given field matches one of the given allowed fields,
+	 * checking for "xxx*" and "*xxx" matches.
+	 * @param field the field to check
+	 * @param allowedFields the allowed fields (null for all)
+	 * @see #isAllowed
+	 */
+	static boolean matchesAllowedFieldPattern(String field, String[] allowedFields) {
+		if (allowedFields != null) {
+			for (int i = 0; i < allowedFields.length; i++) {
+				String allowed = allowedFields[i];
 				if ((allowed.endsWith("*") && field.startsWith(allowed.substring(0, allowed.length() - 1))) ||
 						(allowed.startsWith("*") && field.endsWith(allowed.substring(1, allowed.length())))) {
 					return true;
@@ -278,6 +328,25 @@ public class DataBinder {
 		return true;
 	}
 
+	/**
+	 * Determine the type of the given field, if it is a writable property
+	 * of the target object. Uses the BindingPlan, if any.
+	 * @param field the field to check (can also be a nested path)
+	 * @return the property type (Object if not determinable),
+	 * or null if the field is not a writable property
+	 * @see #setBindingPlan
+	 */
+	protected Class getWritablePropertyType(String field) {
+		if (this.bindingPlan != null && this.bindingPlan.getTargetClass().equals(getTarget().getClass())) {
+			return this.bindingPlan.getWritablePropertyType(field, getBeanWrapper());
+		}
+		if (!getBeanWrapper().isWritableProperty(field)) {
+			return null;
+		}
+		Class type = getBeanWrapper().getPropertyType(field);
+		return (type != null ? type : Object.class);
+	}
+
 	/**
 	 * Return FieldError arguments for a binding error on the given field.
 	 * Invoked for each missing required fields and each type mismatch.
@@ -138,13 +138,13 @@ public class ServletRequestDataBinder extends DataBinder {
 				PropertyValue pv = pvArray[i];
 				if (pv.getName().startsWith(this.fieldMarkerPrefix)) {
 					String field = pv.getName().substring(this.fieldMarkerPrefix.length());
-					if (getBeanWrapper().isWritableProperty(field) && !pvs.contains(field)) {
-						Class type = getBeanWrapper().getPropertyType(field);
-						if (type != null && boolean.class.equals(type) || Boolean.class.equals(type)) {
+					Class type = (!pvs.contains(field) ? getWritablePropertyType(field) : null);
+					if (type != null) {
+						if (boolean.class.equals(type) || Boolean.class.equals(type)) {
 							// special handling of boolean property
 							pvs.addPropertyValue(field, Boolean.FALSE);
 						}
-						else if (type != null && type.isArray()) {
+						else if (type.isArray()) {
 							// special handling of array property
 							pvs.addPropertyValue(field, Array.newInstance(type.getComponentType(), 0));
 						}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.filter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.springframework.web.util.WebUtils;
+
+/**
+ * Response wrapper that buffers the content in a stream of the subclass,
+ * as shared by ShallowEtagHeaderFilter and CompressionFilter.
+ *
+ * <p>Passes headers and status codes through to the actual response,
+ * after letting the subclass check them for their effect on the content
+ * processing. Content written after a <code>sendError</code> or
+ * <code>sendRedirect</code> call gets discarded.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see ShallowEtagHeaderFilter
+ * @see CompressionFilter
+ */
+abstract class AbstractBufferingResponseWrapper extends HttpServletResponseWrapper {
+
+	private BufferingStream outputStream;
+
+	private PrintWriter writer;
+
+	protected AbstractBufferingResponseWrapper(HttpServletResponse response) {
+		super(response);
+	}
+
+	public void setHeader(String name, String value) {
+		if (checkHeader(name, value)) {
+			super.setHeader(name, value);
+		}
+	}
+
+	public void addHeader(String name, String value) {
+		if (checkHeader(name, value)) {
+			super.addHeader(name, value);
+		}
+	}
+
+	public void setIntHeader(String name, int value) {
+		if (checkHeader(name, Integer.toString(value))) {
+			super.setIntHeader(name, value);
+		}
+	}
+
+	public void addIntHeader(String name, int value) {
+		if (checkHeader(name, Integer.toString(value))) {
+			super.addIntHeader(name, value);
+		}
+	}
+
+	/**
+	 * Check the given header for its effect on the content processing.
+	 * @return whether to pass the header on to the actual response
+	 */
+	protected abstract boolean checkHeader(String name, String value);
+
+	public void setStatus(int sc) {
+		checkStatus(sc);
+		super.setStatus(sc);
+	}
+
+	public void setStatus(int sc, String sm) {
+		checkStatus(sc);
+		super.setStatus(sc, sm);
+	}
+
+	/**
+	 * Check the given status code for its effect on the content processing.
+	 */
+	protected abstract void checkStatus(int sc);
+
+	public void sendError(int sc) throws IOException {
+		discardContent();
+		super.sendError(sc);
+	}
+
+	public void sendError(int sc, String msg) throws IOException {
+		discardContent();
+		super.sendError(sc, msg);
+	}
+
+	public void sendRedirect(String location) throws IOException {
+		discardContent();
+		super.sendRedirect(location);
+	}
+
+	/**
+	 * Discard the buffered content and any content written later on.
+	 * Subclasses can override this to track the discarded state.
+	 */
+	protected void discardContent() {
+		if (this.outputStream != null) {
+			this.outputStream.discard();
+		}
+	}
+
+	public ServletOutputStream getOutputStream() throws IOException {
+		if (this.writer != null) {
+			throw new IllegalStateException("getWriter has already been called for this response");
+		}
+		if (this.outputStream == null) {
+			this.outputStream = createOutputStream();
+		}
+		return this.outputStream;
+	}
+
+	public PrintWriter getWriter() throws IOException {
+		if (this.writer == null) {
+			if (this.outputStream != null) {
+				throw new IllegalStateException("getOutputStream has already been called for this response");
+			}
+			this.outputStream = createOutputStream();
+			String encoding = getCharacterEncoding();
+			if (encoding == null) {
+				// servlet spec default
+				encoding = WebUtils.DEFAULT_CHARACTER_ENCODING;
+			}
+			this.writer = new PrintWriter(new OutputStreamWriter(this.outputStream, encoding));
+		}
+		return this.writer;
+	}
+
+	/**
+	 * Create the stream that buffers the content of this response.
+	 */
+	protected abstract BufferingStream createOutputStream();
+
+	public void flushBuffer() throws IOException {
+		if (this.writer != null) {
+			this.writer.flush();
+		}
+		else if (this.outputStream != null) {
+			this.outputStream.flush();
+		}
+	}
+
+	public void resetBuffer() {
+		if (this.outputStream != null) {
+			this.outputStream.resetBuffer();
+		}
+		super.resetBuffer();
+	}
+
+	public void reset() {
+		if (this.outputStream != null) {
+			this.outputStream.resetBuffer();
+		}
+		super.reset();
+	}
+
+	/**
+	 * Flush the Writer into the buffering stream, if a Writer has been obtained.
+	 */
+	protected void flushWriter() {
+		if (this.writer != null) {
+			this.writer.flush();
+		}
+	}
+
+	/**
+	 * Return the buffering stream of this response,
+	 * or null if no content has been written.
+	 */
+	protected BufferingStream getContentStream() {
+		return this.outputStream;
+	}
+
+	/**
+	 * Return the OutputStream of the actual response.
+	 */
+	protected OutputStream getTargetStream() throws IOException {
+		return super.getOutputStream();
+	}
+
+
+	/**
+	 * OutputStream that buffers content for the response wrapper.
+	 */
+	protected abstract static class BufferingStream extends ServletOutputStream {
+
+		/**
+		 * Reset the buffered content.
+		 * @throws IllegalStateException if content has already been written
+		 * to the actual response
+		 */
+		protected abstract void resetBuffer();
+
+		/**
+		 * Discard the buffered content and ignore any further content.
+		 */
+		protected abstract void discard();
+	}
+
+}
@@ -0,0 +1,587 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.filter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet 2.3 Filter that gzips responses for clients that accept gzip
+ * encoding, typically mapped in front of a DispatcherServlet to compress
+ * the output of JSP, Velocity and FreeMarker views.
+ *
+ * <p>Response content is buffered up to the specified "threshold": Smaller
+ * responses are sent uncompressed, with a proper Content-Length header, as
+ * compressing them is not worth the CPU cost. Only responses with one of
+ * the "compressedContentTypes" get compressed, and never responses that
+ * specify a Content-Encoding of their own, a "no-transform" Cache-Control
+ * directive, or a status without body (like "304 Not Modified").
+ *
+ * <p>Cache headers as set by WebContentGenerator are passed through as-is;
+ * compressible responses get a "Vary: Accept-Encoding" header, to let
+ * proxies cache compressed and uncompressed variants separately.
+ *
+ * <p>Deflaters and buffers are pooled across requests, up to "maxPoolSize"
+ * instances. The filter keeps statistics on compressed and uncompressed
+ * responses, the overall compression ratio and the time spent compressing;
+ * they get logged on shutdown.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see #setThreshold
+ * @see #setCompressedContentTypes
+ * @see org.springframework.web.servlet.support.WebContentGenerator
+ */
+public class CompressionFilter extends OncePerRequestFilter {
+
+	/**
+	 * Default size threshold in bytes above which responses get compressed: 2048.
+	 */
+	public static final int DEFAULT_THRESHOLD = 2048;
+
+	/**
+	 * Default content types to compress, matched as prefixes.
+	 */
+	public static final String[] DEFAULT_COMPRESSED_CONTENT_TYPES = new String[] {
+			"text/", "application/x-javascript", "application/javascript", "application/xml"};
+
+	/**
+	 * Default maximum number of pooled Deflaters and buffers: 16 each.
+	 */
+	public static final int DEFAULT_MAX_POOL_SIZE = 16;
+
+	private static final int DEFLATE_BUFFER_SIZE = 8192;
+
+	/** GZIP header: magic number, deflate method, no flags, no timestamp, no extra flags, unknown OS */
+	private static final byte[] GZIP_HEADER = new byte[] {
+			(byte) 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+
+	private int threshold = DEFAULT_THRESHOLD;
+
+	private String[] compressedContentTypes = DEFAULT_COMPRESSED_CONTENT_TYPES;
+
+	private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+	private int maxPoolSize = DEFAULT_MAX_POOL_SIZE;
+
+	private final LinkedList deflaterPool = new LinkedList();
+
+	private final LinkedList bufferPool = new LinkedList();
+
+	private final LinkedList deflateBufferPool = new LinkedList();
+
+	private long compressedResponseCount = 0;
+
+	private long uncompressedResponseCount = 0;
+
+	private long bytesBeforeCompression = 0;
+
+	private long bytesAfterCompression = 0;
+
+	private long compressionTimeMillis = 0;
+
+
+	/**
+	 * Set the response size in bytes above which responses get compressed.
+	 * Default is 2048. Responses up to this size are buffered completely.
+	 */
+	public void setThreshold(int threshold) {
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Set the content types to compress, as prefixes like "text/".
+	 * Default is text, JavaScript and XML types.
+	 * @see #DEFAULT_COMPRESSED_CONTENT_TYPES
+	 */
+	public void setCompressedContentTypes(String[] compressedContentTypes) {
+		this.compressedContentTypes = compressedContentTypes;
+	}
+
+	/**
+	 * Set the compression level (0-9) to use. Default is the Deflater's default.
+	 * @see java.util.zip.Deflater#DEFAULT_COMPRESSION
+	 */
+	public void setCompressionLevel(int compressionLevel) {
+		this.compressionLevel = compressionLevel;
+	}
+
+	/**
+	 * Set the maximum number of Deflaters and buffers to keep for reuse.
+	 * Default is 16.
+	 */
+	public void setMaxPoolSize(int maxPoolSize) {
+		this.maxPoolSize = maxPoolSize;
+	}
+
+
+	/**
+	 * Return the number of responses that have been sent compressed.
+	 */
+	public synchronized long getCompressedResponseCount() {
+		return compressedResponseCount;
+	}
+
+	/**
+	 * Return the number of responses that have been sent uncompressed,
+	 * because of their size, content type or headers.
+	 */
+	public synchronized long getUncompressedResponseCount() {
+		return uncompressedResponseCount;
+	}
+
+	/**
+	 * Return the ratio of compressed to uncompressed size over all
+	 * compressed responses, for example 0.25 for compression to a quarter.
+	 * Returns 1 if no response has been compressed yet.
+	 */
+	public synchronized double getCompressionRatio() {
+		if (this.bytesBeforeCompression == 0) {
+			return 1.0;
+		}
+		return ((double) this.bytesAfterCompression / (double) this.bytesBeforeCompression);
+	}
+
+	/**
+	 * Return the total time in milliseconds spent compressing responses.
+	 * Measured as elapsed time within the Deflater calls, as approximation
+	 * of the CPU cost of compression.
+	 */
+	public synchronized long getCompressionTimeMillis() {
+		return compressionTimeMillis;
+	}
+
+
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+	                                FilterChain filterChain) throws ServletException, IOException {
+		String acceptEncoding = request.getHeader("Accept-Encoding");
+		if (acceptEncoding == null || acceptEncoding.indexOf("gzip") == -1 || "HEAD".equals(request.getMethod())) {
+			filterChain.doFilter(request, response);
+			return;
+		}
+		CompressingResponseWrapper responseWrapper = new CompressingResponseWrapper(response);
+		try {
+			filterChain.doFilter(request, responseWrapper);
+			responseWrapper.finishResponse();
+		}
+		finally {
+			responseWrapper.release();
+		}
+	}
+
+	/**
+	 * Log the compression statistics and release pooled Deflaters.
+	 */
+	public void destroy() {
+		if (logger.isInfoEnabled()) {
+			logger.info("CompressionFilter statistics: " + getCompressedResponseCount() +
+					" responses compressed with ratio " + getCompressionRatio() + " in " +
+					getCompressionTimeMillis() + " ms, " + getUncompressedResponseCount() + " responses uncompressed");
+		}
+		synchronized (this.deflaterPool) {
+			while (!this.deflaterPool.isEmpty()) {
+				((Deflater) this.deflaterPool.removeFirst()).end();
+			}
+		}
+	}
+
+
+	private boolean isCompressedContentType(String contentType) {
+		if (contentType == null || this.compressedContentTypes == null) {
+			return false;
+		}
+		for (int i = 0; i < this.compressedContentTypes.length; i++) {
+			if (contentType.startsWith(this.compressedContentTypes[i])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private Deflater obtainDeflater() {
+		synchronized (this.deflaterPool) {
+			if (!this.deflaterPool.isEmpty()) {
+				return (Deflater) this.deflaterPool.removeFirst();
+			}
+		}
+		// "nowrap" for raw deflate data, as we write the GZIP header and trailer ourselves
+		return new Deflater(this.compressionLevel, true);
+	}
+
+	private void releaseDeflater(Deflater deflater) {
+		deflater.reset();
+		synchronized (this.deflaterPool) {
+			if (this.deflaterPool.size() < this.maxPoolSize) {
+				this.deflaterPool.addFirst(deflater);
+				return;
+			}
+		}
+		deflater.end();
+	}
+
+	private byte[] obtainBuffer(LinkedList pool, int size) {
+		synchronized (pool) {
+			if (!pool.isEmpty()) {
+				byte[] buffer = (byte[]) pool.removeFirst();
+				if (buffer.length == size) {
+					return buffer;
+				}
+			}
+		}
+		return new byte[size];
+	}
+
+	private void releaseBuffer(LinkedList pool, byte[] buffer) {
+		synchronized (pool) {
+			if (pool.size() < this.maxPoolSize) {
+				pool.addFirst(buffer);
+			}
+		}
+	}
+
+	private synchronized void recordResponse(boolean compressed, long bytesIn, long bytesOut, long timeMillis) {
+		if (compressed) {
+			this.compressedResponseCount++;
+			this.bytesBeforeCompression += bytesIn;
+			this.bytesAfterCompression += bytesOut;
+			this.compressionTimeMillis += timeMillis;
+		}
+		else {
+			this.uncompressedResponseCount++;
+		}
+	}
+
+
+	/**
+	 * Response wrapper that decides whether to compress once the threshold
+	 * is exceeded or the response is complete, tracking the headers that
+	 * affect that decision.
+	 */
+	private class CompressingResponseWrapper extends AbstractBufferingResponseWrapper {
+
+		private String contentType;
+
+		private int contentLength = -1;
+
+		private boolean compressionAllowed = true;
+
+		private CompressingResponseWrapper(HttpServletResponse response) {
+			super(response);
+		}
+
+		public void setContentType(String contentType) {
+			this.contentType = contentType;
+			super.setContentType(contentType);
+		}
+
+		public void setContentLength(int contentLength) {
+			// applied later, as the length changes with compression
+			this.contentLength = contentLength;
+		}
+
+		protected boolean checkHeader(String name, String value) {
+			if ("Content-Length".equalsIgnoreCase(name)) {
+				long length = -1;
+				try {
+					length = Long.parseLong(value);
+				}
+				catch (NumberFormatException ex) {
+					// malformed value -> pass it on as-is
+				}
+				if (length >= 0 && length <= Integer.MAX_VALUE) {
+					setContentLength((int) length);
+					return false;
+				}
+				// cannot be tracked: send the response uncompressed, with the given header
+				this.compressionAllowed = false;
+				return true;
+			}
+			if ("Content-Type".equalsIgnoreCase(name)) {
+				this.contentType = value;
+			}
+			else if ("Content-Encoding".equalsIgnoreCase(name)) {
+				this.compressionAllowed = false;
+			}
+			else if ("Cache-Control".equalsIgnoreCase(name) && value != null && value.indexOf("no-transform") != -1) {
+				this.compressionAllowed = false;
+			}
+			return true;
+		}
+
+		protected void checkStatus(int sc) {
+			if (sc == SC_NO_CONTENT || sc == SC_NOT_MODIFIED) {
+				this.compressionAllowed = false;
+			}
+		}
+
+		protected void discardContent() {
+			this.compressionAllowed = false;
+			super.discardContent();
+		}
+
+		protected BufferingStream createOutputStream() {
+			return new CompressingOutputStream(this);
+		}
+
+		public void reset() {
+			this.contentType = null;
+			this.contentLength = -1;
+			this.compressionAllowed = true;
+			super.reset();
+		}
+
+		private boolean shouldCompress() {
+			return (this.compressionAllowed && isCompressedContentType(this.contentType));
+		}
+
+		private void startCompression() {
+			super.setHeader("Content-Encoding", "gzip");
+			super.addHeader("Vary", "Accept-Encoding");
+		}
+
+		private void startUncompressed(int completeLength) {
+			if (shouldCompress()) {
+				// small response that could have been compressed
+				super.addHeader("Vary", "Accept-Encoding");
+			}
+			if (completeLength >= 0) {
+				super.setContentLength(completeLength);
+			}
+			else if (this.contentLength >= 0) {
+				super.setContentLength(this.contentLength);
+			}
+		}
+
+		private void finishResponse() throws IOException {
+			flushWriter();
+			CompressingOutputStream outputStream = (CompressingOutputStream) getContentStream();
+			if (outputStream != null) {
+				outputStream.finish();
+			}
+		}
+
+		private void release() {
+			CompressingOutputStream outputStream = (CompressingOutputStream) getContentStream();
+			if (outputStream != null) {
+				outputStream.release();
+			}
+		}
+	}
+
+
+	/**
+	 * OutputStream that buffers content up to the threshold, then either
+	 * writes it through or compresses it into GZIP format.
+	 */
+	private class CompressingOutputStream extends AbstractBufferingResponseWrapper.BufferingStream {
+
+		private final CompressingResponseWrapper response;
+
+		private byte[] buffer;
+
+		private int count = 0;
+
+		private OutputStream target;
+
+		private Deflater deflater;
+
+		private byte[] deflateBuffer;
+
+		private final CRC32 crc = new CRC32();
+
+		private boolean compressing = false;
+
+		private boolean finished = false;
+
+		private boolean discarded = false;
+
+		private long bytesIn = 0;
+
+		private long bytesOut = 0;
+
+		private long timeMillis = 0;
+
+		private CompressingOutputStream(CompressingResponseWrapper response) {
+			this.response = response;
+			this.buffer = obtainBuffer(bufferPool, threshold);
+		}
+
+		public void write(int b) throws IOException {
+			if (this.target == null && !this.finished && this.count < this.buffer.length) {
+				this.buffer[this.count++] = (byte) b;
+			}
+			else {
+				write(new byte[] {(byte) b}, 0, 1);
+			}
+		}
+
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (this.discarded) {
+				// content after sendError or sendRedirect
+				return;
+			}
+			if (this.finished) {
+				throw new IOException("Response has already been completed");
+			}
+			if (this.target == null) {
+				if (this.count + len <= this.buffer.length) {
+					System.arraycopy(b, off, this.buffer, this.count, len);
+					this.count += len;
+					return;
+				}
+				// threshold exceeded
+				if (this.response.shouldCompress()) {
+					this.response.startCompression();
+					this.target = this.response.getTargetStream();
+					this.compressing = true;
+					this.deflater = obtainDeflater();
+					this.deflateBuffer = obtainBuffer(deflateBufferPool, DEFLATE_BUFFER_SIZE);
+					writeToTarget(GZIP_HEADER, 0, GZIP_HEADER.length);
+					deflate(this.buffer, 0, this.count);
+				}
+				else {
+					this.response.startUncompressed(-1);
+					this.target = this.response.getTargetStream();
+					this.target.write(this.buffer, 0, this.count);
+				}
+				this.count = 0;
+			}
+			if (this.compressing) {
+				deflate(b, off, len);
+			}
+			else {
+				this.target.write(b, off, len);
+			}
+		}
+
+		private void deflate(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return;
+			}
+			long startTime = System.currentTimeMillis();
+			this.crc.update(b, off, len);
+			this.bytesIn += len;
+			this.deflater.setInput(b, off, len);
+			while (!this.deflater.needsInput()) {
+				drainDeflater();
+			}
+			this.timeMillis += System.currentTimeMillis() - startTime;
+		}
+
+		private void drainDeflater() throws IOException {
+			int deflated = this.deflater.deflate(this.deflateBuffer, 0, this.deflateBuffer.length);
+			if (deflated > 0) {
+				writeToTarget(this.deflateBuffer, 0, deflated);
+			}
+		}
+
+		private void writeToTarget(byte[] b, int off, int len) throws IOException {
+			this.target.write(b, off, len);
+			this.bytesOut += len;
+		}
+
+		/**
+		 * Flushes only once it has been decided whether to compress,
+		 * keeping small responses buffered.
+		 */
+		public void flush() throws IOException {
+			if (this.target != null && !this.finished) {
+				this.target.flush();
+			}
+		}
+
+		protected void resetBuffer() {
+			if (this.target != null) {
+				throw new IllegalStateException("Cannot reset buffer - response content has already been written");
+			}
+			this.count = 0;
+		}
+
+		protected void discard() {
+			this.count = 0;
+			this.discarded = true;
+			this.finished = true;
+		}
+
+		private void finish() throws IOException {
+			if (this.finished) {
+				return;
+			}
+			this.finished = true;
+			if (this.target == null) {
+				// complete response below threshold
+				this.response.startUncompressed(this.count);
+				this.response.getTargetStream().write(this.buffer, 0, this.count);
+				recordResponse(false, this.count, this.count, 0);
+			}
+			else if (this.compressing) {
+				long startTime = System.currentTimeMillis();
+				this.deflater.finish();
+				while (!this.deflater.finished()) {
+					drainDeflater();
+				}
+				byte[] trailer = new byte[8];
+				writeInt((int) this.crc.getValue(), trailer, 0);
+				writeInt((int) this.bytesIn, trailer, 4);
+				writeToTarget(trailer, 0, trailer.length);
+				this.timeMillis += System.currentTimeMillis() - startTime;
+				recordResponse(true, this.bytesIn, this.bytesOut, this.timeMillis);
+				if (logger.isDebugEnabled()) {
+					logger.debug("Compressed response from " + this.bytesIn + " to " + this.bytesOut +
+							" bytes in " + this.timeMillis + " ms");
+				}
+			}
+			else {
+				recordResponse(false, 0, 0, 0);
+			}
+		}
+
+		private void writeInt(int value, byte[] b, int off) {
+			// GZIP uses little-endian byte order
+			b[off] = (byte) value;
+			b[off + 1] = (byte) (value >> 8);
+			b[off + 2] = (byte) (value >> 16);
+			b[off + 3] = (byte) (value >> 24);
+		}
+
+		private void release() {
+			this.finished = true;
+			if (this.buffer != null) {
+				releaseBuffer(bufferPool, this.buffer);
+				this.buffer = null;
+			}
+			if (this.deflater != null) {
+				releaseDeflater(this.deflater);
+				this.deflater = null;
+			}
+			if (this.deflateBuffer != null) {
+				releaseBuffer(deflateBufferPool, this.deflateBuffer);
+				this.deflateBuffer = null;
+			}
+		}
+	}
+
+}
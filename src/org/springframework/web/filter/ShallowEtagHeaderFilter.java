@@ -0,0 +1,327 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.filter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.util.WebUtils;
+
+/**
+ * Servlet 2.3 Filter that generates an ETag from a hash of the response
+ * content, answering GET requests with "304 Not Modified" if the client
+ * sends a matching "If-None-Match" header.
+ *
+ * <p>This is a "shallow" ETag: The view still gets rendered for every
+ * request, but unchanged content does not have to be sent to the client
+ * again, saving bandwidth. For saving the rendering cost as well, let the
+ * controller implement the EntityTag interface ("deep" ETag); responses
+ * that already carry an ETag are passed through as-is by this filter.
+ *
+ * <p>Content is buffered in memory up to the specified "maxBufferSize",
+ * growing the buffer as needed. Larger responses are streamed to the
+ * client once the limit is exceeded, without an ETag, so that memory
+ * consumption is bounded per request.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see #setMaxBufferSize
+ * @see org.springframework.web.servlet.mvc.EntityTag
+ */
+public class ShallowEtagHeaderFilter extends OncePerRequestFilter {
+
+	/**
+	 * Default maximum size in bytes of responses that get an ETag: 256 KB.
+	 */
+	public static final int DEFAULT_MAX_BUFFER_SIZE = 256 * 1024;
+
+	private static final int INITIAL_BUFFER_SIZE = 4096;
+
+	private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+
+
+	private int maxBufferSize = DEFAULT_MAX_BUFFER_SIZE;
+
+	private long notModifiedCount = 0;
+
+	private long eTagCount = 0;
+
+
+	/**
+	 * Set the maximum size in bytes of responses to buffer and hash.
+	 * Default is 256 KB. Larger responses will be streamed without an ETag.
+	 */
+	public void setMaxBufferSize(int maxBufferSize) {
+		this.maxBufferSize = maxBufferSize;
+	}
+
+	/**
+	 * Return the number of responses that have been answered with
+	 * "304 Not Modified" by this filter.
+	 */
+	public synchronized long getNotModifiedCount() {
+		return notModifiedCount;
+	}
+
+	/**
+	 * Return the number of responses that have been sent with
+	 * a generated ETag (excluding "304 Not Modified" responses).
+	 */
+	public synchronized long getETagCount() {
+		return eTagCount;
+	}
+
+
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+	                                FilterChain filterChain) throws ServletException, IOException {
+		if (!"GET".equals(request.getMethod())) {
+			filterChain.doFilter(request, response);
+			return;
+		}
+		BufferingResponseWrapper responseWrapper = new BufferingResponseWrapper(response);
+		filterChain.doFilter(request, responseWrapper);
+		responseWrapper.flushWriter();
+
+		BufferingOutputStream content = (BufferingOutputStream) responseWrapper.getContentStream();
+		if (content == null || !content.isBuffering()) {
+			// nothing written, or already streamed to the client
+			return;
+		}
+		if (!responseWrapper.isETagAllowed()) {
+			content.writeTo(response, content.getCount() > 0 ? content.getCount() : -1);
+			return;
+		}
+
+		String eTag = generateETag(content.getBuffer(), content.getCount());
+		response.setHeader(WebUtils.ETAG_HEADER, eTag);
+		if (WebUtils.matchesETag(request, eTag)) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Response for [" + request.getRequestURI() + "] not modified - ETag " + eTag);
+			}
+			recordResponse(true);
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+		}
+		else {
+			recordResponse(false);
+			content.writeTo(response, content.getCount());
+		}
+	}
+
+	/**
+	 * Generate the ETag for the given response content.
+	 * <p>Default implementation uses an MD5 hash in hex format,
+	 * prefixed with "0" to distinguish it from deep ETags.
+	 * @param content the buffered response content
+	 * @param length the length of the content in the buffer
+	 * @return the ETag, including surrounding quotes
+	 */
+	protected String generateETag(byte[] content, int length) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("MD5");
+		}
+		catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException("Could not find MD5 MessageDigest: " + ex.getMessage());
+		}
+		digest.update(content, 0, length);
+		byte[] hash = digest.digest();
+		StringBuffer eTag = new StringBuffer(hash.length * 2 + 3);
+		eTag.append("\"0");
+		for (int i = 0; i < hash.length; i++) {
+			eTag.append(HEX_CHARS[(hash[i] >> 4) & 0x0f]);
+			eTag.append(HEX_CHARS[hash[i] & 0x0f]);
+		}
+		return eTag.append('"').toString();
+	}
+
+	private synchronized void recordResponse(boolean notModified) {
+		if (notModified) {
+			this.notModifiedCount++;
+		}
+		else {
+			this.eTagCount++;
+		}
+	}
+
+
+	/**
+	 * Response wrapper that buffers the content, tracking
+	 * the status and headers that prevent generating an ETag.
+	 */
+	private class BufferingResponseWrapper extends AbstractBufferingResponseWrapper {
+
+		private boolean eTagAllowed = true;
+
+		private BufferingResponseWrapper(HttpServletResponse response) {
+			super(response);
+		}
+
+		public void setContentLength(int contentLength) {
+			// applied when writing the buffered content
+		}
+
+		protected boolean checkHeader(String name, String value) {
+			if ("Content-Length".equalsIgnoreCase(name)) {
+				return false;
+			}
+			if (WebUtils.ETAG_HEADER.equalsIgnoreCase(name)) {
+				// deep ETag set by the handler
+				this.eTagAllowed = false;
+			}
+			return true;
+		}
+
+		protected void checkStatus(int sc) {
+			if (sc != SC_OK) {
+				this.eTagAllowed = false;
+			}
+		}
+
+		protected void discardContent() {
+			this.eTagAllowed = false;
+			super.discardContent();
+		}
+
+		protected BufferingStream createOutputStream() {
+			return new BufferingOutputStream(this);
+		}
+
+		public void reset() {
+			this.eTagAllowed = true;
+			super.reset();
+		}
+
+		private boolean isETagAllowed() {
+			return this.eTagAllowed;
+		}
+	}
+
+
+	/**
+	 * OutputStream that buffers content up to the maximum buffer size,
+	 * then streams it to the actual response.
+	 */
+	private class BufferingOutputStream extends AbstractBufferingResponseWrapper.BufferingStream {
+
+		private final BufferingResponseWrapper response;
+
+		private byte[] buffer = new byte[Math.min(INITIAL_BUFFER_SIZE, maxBufferSize)];
+
+		private int count = 0;
+
+		private OutputStream target;
+
+		private boolean discarded = false;
+
+		private BufferingOutputStream(BufferingResponseWrapper response) {
+			this.response = response;
+		}
+
+		public void write(int b) throws IOException {
+			if (this.target == null && this.count < this.buffer.length) {
+				this.buffer[this.count++] = (byte) b;
+			}
+			else {
+				write(new byte[] {(byte) b}, 0, 1);
+			}
+		}
+
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (this.discarded) {
+				// content after sendError or sendRedirect
+				return;
+			}
+			if (this.target == null) {
+				int newCount = this.count + len;
+				if (newCount <= maxBufferSize) {
+					if (newCount > this.buffer.length) {
+						byte[] newBuffer = new byte[Math.min(Math.max(this.buffer.length * 2, newCount), maxBufferSize)];
+						System.arraycopy(this.buffer, 0, newBuffer, 0, this.count);
+						this.buffer = newBuffer;
+					}
+					System.arraycopy(b, off, this.buffer, this.count, len);
+					this.count = newCount;
+					return;
+				}
+				// maximum buffer size exceeded: stream without ETag
+				if (logger.isDebugEnabled()) {
+					logger.debug("Response exceeds maximum buffer size of " + maxBufferSize + " bytes - not generating ETag");
+				}
+				writeTo(this.response, -1);
+			}
+			this.target.write(b, off, len);
+		}
+
+		/**
+		 * Flushes only once the buffer has been exceeded,
+		 * as flushing commits the response.
+		 */
+		public void flush() throws IOException {
+			if (this.target != null) {
+				this.target.flush();
+			}
+		}
+
+		private boolean isBuffering() {
+			return (this.target == null && !this.discarded);
+		}
+
+		private byte[] getBuffer() {
+			return this.buffer;
+		}
+
+		private int getCount() {
+			return this.count;
+		}
+
+		/**
+		 * Write the buffered content to the actual response,
+		 * switching to streaming for any further content.
+		 * @param response the response to write to
+		 * @param contentLength the Content-Length to set, or -1 if none
+		 */
+		private void writeTo(HttpServletResponse response, int contentLength) throws IOException {
+			if (contentLength >= 0) {
+				response.setContentLength(contentLength);
+			}
+			this.target = this.response.getTargetStream();
+			this.target.write(this.buffer, 0, this.count);
+			this.buffer = null;
+			this.count = 0;
+		}
+
+		protected void resetBuffer() {
+			if (this.target != null) {
+				throw new IllegalStateException("Cannot reset buffer - response content has already been written");
+			}
+			this.count = 0;
+		}
+
+		protected void discard() {
+			this.count = 0;
+			this.discarded = true;
+		}
+	}
+
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.multipart.streaming;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.util.FileCopyUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * MultipartFile implementation for files that have been read ahead of
+ * the application: kept in memory up to a given size, else stored in a
+ * temporary file. Used by StreamingMultipartHttpServletRequest when
+ * accessing files by name rather than consuming them via <code>nextFile</code>.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see StreamingMultipartHttpServletRequest#getFile
+ */
+class DiskMultipartFile implements MultipartFile {
+
+	private final PartHeaders headers;
+
+	private byte[] content;
+
+	private File tempFile;
+
+	private long size;
+
+	private boolean moved = false;
+
+
+	/**
+	 * Read the given part content, keeping it in memory if not larger
+	 * than <code>maxInMemorySize</code>, else in a file in the given directory.
+	 */
+	DiskMultipartFile(PartHeaders headers, InputStream in, int maxInMemorySize, File tempDir) throws IOException {
+		this.headers = headers;
+		byte[] buffer = new byte[maxInMemorySize + 1];
+		int count = 0;
+		int read;
+		while (count < buffer.length && (read = in.read(buffer, count, buffer.length - count)) != -1) {
+			count += read;
+		}
+		if (count <= maxInMemorySize) {
+			this.content = new byte[count];
+			System.arraycopy(buffer, 0, this.content, 0, count);
+			this.size = count;
+		}
+		else {
+			File file = File.createTempFile("upload_", ".tmp", tempDir);
+			try {
+				this.size = FileTransfer.transfer(buffer, count, in, file);
+			}
+			catch (IOException ex) {
+				// not referenced by any request yet -> clean up right away
+				file.delete();
+				throw ex;
+			}
+			this.tempFile = file;
+		}
+	}
+
+	public String getName() {
+		return this.headers.getName();
+	}
+
+	public boolean isEmpty() {
+		return (this.headers.getFilename() == null || this.headers.getFilename().length() == 0);
+	}
+
+	public String getOriginalFilename() {
+		return this.headers.getFilename();
+	}
+
+	public String getContentType() {
+		return this.headers.getContentType();
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public byte[] getBytes() throws IOException {
+		checkAvailable();
+		if (this.content != null) {
+			return this.content;
+		}
+		return FileCopyUtils.copyToByteArray(this.tempFile);
+	}
+
+	public InputStream getInputStream() throws IOException {
+		checkAvailable();
+		if (this.content != null) {
+			return new ByteArrayInputStream(this.content);
+		}
+		return new FileInputStream(this.tempFile);
+	}
+
+	/**
+	 * Moves the temporary file if possible, else copies the content.
+	 */
+	public void transferTo(File dest) throws IOException, IllegalStateException {
+		checkAvailable();
+		if (dest.exists() && !dest.delete()) {
+			throw new IOException(
+					"Destination file [" + dest.getAbsolutePath() + "] already exists and could not be deleted");
+		}
+		if (this.content != null) {
+			FileCopyUtils.copy(this.content, dest);
+		}
+		else if (this.tempFile.renameTo(dest)) {
+			this.moved = true;
+		}
+		else {
+			FileTransfer.transfer(this.tempFile, dest);
+		}
+	}
+
+	private void checkAvailable() throws IllegalStateException {
+		if (this.moved) {
+			throw new IllegalStateException("File [" + getName() + "] has already been moved - cannot be transferred again");
+		}
+	}
+
+	/**
+	 * Delete the temporary file, if any.
+	 */
+	void delete() {
+		if (this.tempFile != null && !this.moved) {
+			this.tempFile.delete();
+		}
+	}
+
+	/**
+	 * Return a description of where this file is stored, for logging purposes.
+	 */
+	String getStorageDescription() {
+		return (this.tempFile != null ? "at [" + this.tempFile.getAbsolutePath() + "]" : "in memory");
+	}
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.multipart.streaming;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+import org.springframework.core.JdkVersion;
+import org.springframework.util.FileCopyUtils;
+
+/**
+ * Helper for writing uploaded content to files. Uses NIO channels on
+ * JDK 1.4+, letting the FileChannel transfer the content, which can
+ * avoid copying through Java buffers for file-to-file transfers.
+ *
+ * @author agent
+ * @since 1.1.2
+ */
+abstract class FileTransfer {
+
+	private static final long TRANSFER_CHUNK_SIZE = 64 * 1024;
+
+	/**
+	 * Write the given stream to the given file, closing the stream.
+	 * @param in the stream to read from
+	 * @param dest the file to write to (will be replaced if existing)
+	 * @return the number of bytes written
+	 */
+	static long transfer(InputStream in, File dest) throws IOException {
+		return transfer(null, 0, in, dest);
+	}
+
+	/**
+	 * Write the given prefix plus the given stream to the given file, closing the stream.
+	 * @param prefix content that has already been read from the stream (may be null)
+	 * @param prefixLength the number of bytes to use from the prefix
+	 * @param in the stream to read from
+	 * @param dest the file to write to (will be replaced if existing)
+	 * @return the number of bytes written
+	 */
+	static long transfer(byte[] prefix, int prefixLength, InputStream in, File dest) throws IOException {
+		if (JdkVersion.getMajorJavaVersion() >= JdkVersion.JAVA_14) {
+			return Jdk14FileTransfer.transfer(prefix, prefixLength, in, dest);
+		}
+		OutputStream out = new FileOutputStream(dest);
+		if (prefix != null) {
+			try {
+				out.write(prefix, 0, prefixLength);
+			}
+			catch (IOException ex) {
+				out.close();
+				in.close();
+				throw ex;
+			}
+		}
+		FileCopyUtils.copy(in, out);
+		return dest.length();
+	}
+
+	/**
+	 * Copy the given file to the given destination file.
+	 * @param source the file to read from
+	 * @param dest the file to write to (will be replaced if existing)
+	 */
+	static void transfer(File source, File dest) throws IOException {
+		if (JdkVersion.getMajorJavaVersion() >= JdkVersion.JAVA_14) {
+			Jdk14FileTransfer.transfer(source, dest);
+		}
+		else {
+			FileCopyUtils.copy(source, dest);
+		}
+	}
+
+
+	/**
+	 * Actual NIO-based transfer, in an inner class
+	 * to avoid a hard dependency on JDK 1.4.
+	 */
+	private static abstract class Jdk14FileTransfer {
+
+		private static long transfer(byte[] prefix, int prefixLength, InputStream in, File dest)
+				throws IOException {
+			ReadableByteChannel source = Channels.newChannel(in);
+			FileOutputStream out = new FileOutputStream(dest);
+			try {
+				long position = 0;
+				if (prefix != null) {
+					out.write(prefix, 0, prefixLength);
+					position = prefixLength;
+				}
+				FileChannel target = out.getChannel();
+				long count;
+				// blocking source channel: 0 indicates the end of the stream
+				while ((count = target.transferFrom(source, position, TRANSFER_CHUNK_SIZE)) > 0) {
+					position += count;
+				}
+				return position;
+			}
+			finally {
+				closeQuietly(out);
+				closeQuietly(in);
+			}
+		}
+
+		private static void transfer(File source, File dest) throws IOException {
+			FileInputStream in = new FileInputStream(source);
+			FileOutputStream out = new FileOutputStream(dest);
+			try {
+				FileChannel sourceChannel = in.getChannel();
+				long size = sourceChannel.size();
+				long position = 0;
+				while (position < size) {
+					position += sourceChannel.transferTo(position, size - position, out.getChannel());
+				}
+			}
+			finally {
+				closeQuietly(out);
+				closeQuietly(in);
+			}
+		}
+
+		private static void closeQuietly(InputStream in) {
+			try {
+				in.close();
+			}
+			catch (IOException ex) {
+				// ignore
+			}
+		}
+
+		private static void closeQuietly(OutputStream out) {
+			try {
+				out.close();
+			}
+			catch (IOException ex) {
+				// ignore
+			}
+		}
+	}
+
+}
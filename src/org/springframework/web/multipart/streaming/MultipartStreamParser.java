@@ -0,0 +1,371 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.multipart.streaming;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+
+/**
+ * Incremental parser for multipart/form-data content as defined in RFC 1867,
+ * reading one part at a time from the underlying stream. Part content is
+ * exposed as an InputStream that ends at the next boundary, so that no part
+ * ever has to be held in memory completely.
+ *
+ * <p>Enforces the overall upload size and the size of each file part
+ * while reading, instead of relying on the Content-Length header.
+ *
+ * <p>Not thread-safe: meant to be used by the thread processing the request.
+ *
+ * @author agent
+ * @since 1.1.2
+ */
+class MultipartStreamParser {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private static final int MAX_HEADER_SIZE = 10240;
+
+	private final InputStream inputStream;
+
+	/** CRLF plus "--" plus boundary: separates parts */
+	private final byte[] delimiter;
+
+	private final String headerEncoding;
+
+	private final long maxUploadSize;
+
+	private final long maxFileSize;
+
+	private final byte[] buffer;
+
+	private int pos = 0;
+
+	private int limit = 0;
+
+	private boolean endOfStream = false;
+
+	private long bytesRead = 0;
+
+	/** Whether the closing delimiter has been reached */
+	private boolean finished = false;
+
+	private PartInputStream currentPart;
+
+	private MaxUploadSizeExceededException sizeLimitException;
+
+
+	/**
+	 * Create a new parser for the given stream.
+	 * @param inputStream the stream to read the multipart content from
+	 * @param boundary the boundary as specified in the content type
+	 * @param headerEncoding the encoding to use for part headers
+	 * @param maxUploadSize the maximum number of bytes to read overall (-1 for no limit)
+	 * @param maxFileSize the maximum number of bytes per file part (-1 for no limit)
+	 */
+	MultipartStreamParser(InputStream inputStream, byte[] boundary, String headerEncoding,
+	                      long maxUploadSize, long maxFileSize) {
+		this.inputStream = inputStream;
+		this.delimiter = new byte[boundary.length + 4];
+		this.delimiter[0] = '\r';
+		this.delimiter[1] = '\n';
+		this.delimiter[2] = '-';
+		this.delimiter[3] = '-';
+		System.arraycopy(boundary, 0, this.delimiter, 4, boundary.length);
+		this.headerEncoding = headerEncoding;
+		this.maxUploadSize = maxUploadSize;
+		this.maxFileSize = maxFileSize;
+		this.buffer = new byte[Math.max(BUFFER_SIZE, this.delimiter.length * 2)];
+		// the first boundary is not preceded by a CRLF: pretend it is,
+		// so that the preamble ends like every part does
+		this.buffer[0] = '\r';
+		this.buffer[1] = '\n';
+		this.limit = 2;
+		this.currentPart = new PartInputStream(-1);
+	}
+
+	/**
+	 * Advance to the next part, skipping any unread content of the current part.
+	 * @return the headers of the next part, or null if there are no further parts
+	 * @throws IOException in case of I/O errors or malformed content
+	 */
+	public PartHeaders nextPart() throws IOException {
+		if (this.currentPart != null) {
+			this.currentPart.skipRemaining();
+		}
+		if (this.finished) {
+			this.currentPart = null;
+			return null;
+		}
+		PartHeaders headers = readHeaders();
+		this.currentPart = new PartInputStream(headers.isFile() ? this.maxFileSize : -1);
+		return headers;
+	}
+
+	/**
+	 * Return an InputStream for the content of the current part.
+	 * The stream will be invalid once the parser advances to the next part.
+	 */
+	public InputStream getPartInputStream() {
+		if (this.currentPart == null) {
+			throw new IllegalStateException("No current part");
+		}
+		return this.currentPart;
+	}
+
+	/**
+	 * Return the number of bytes of multipart content read so far.
+	 */
+	public long getBytesRead() {
+		return bytesRead;
+	}
+
+	/**
+	 * Return the size limit exception encountered while reading, if any.
+	 * Reading methods throw plain IOExceptions, as dictated by the
+	 * InputStream contract; callers can check for this to report the cause.
+	 */
+	public MaxUploadSizeExceededException getSizeLimitException() {
+		return sizeLimitException;
+	}
+
+
+	/**
+	 * Read more content into the buffer, keeping unread content.
+	 * @return whether any content has been read
+	 */
+	private boolean fill() throws IOException {
+		if (this.endOfStream) {
+			return false;
+		}
+		if (this.pos > 0) {
+			System.arraycopy(this.buffer, this.pos, this.buffer, 0, this.limit - this.pos);
+			this.limit -= this.pos;
+			this.pos = 0;
+		}
+		int count = this.inputStream.read(this.buffer, this.limit, this.buffer.length - this.limit);
+		if (count == -1) {
+			this.endOfStream = true;
+			return false;
+		}
+		this.limit += count;
+		this.bytesRead += count;
+		if (this.maxUploadSize >= 0 && this.bytesRead > this.maxUploadSize) {
+			throw sizeLimitExceeded(this.maxUploadSize);
+		}
+		return true;
+	}
+
+	private IOException sizeLimitExceeded(long maxSize) {
+		this.sizeLimitException = new MaxUploadSizeExceededException(maxSize);
+		return new IOException(this.sizeLimitException.getMessage());
+	}
+
+	/**
+	 * Make sure that the given number of bytes is available in the buffer.
+	 */
+	private void ensureAvailable(int count) throws IOException {
+		while (this.limit - this.pos < count) {
+			if (!fill()) {
+				throw new IOException("Unexpected end of multipart content");
+			}
+		}
+	}
+
+	/**
+	 * Return the position of the delimiter in the buffer, or -1 if none.
+	 */
+	private int indexOfDelimiter() {
+		int last = this.limit - this.delimiter.length;
+		for (int i = this.pos; i <= last; i++) {
+			if (this.buffer[i] == '\r') {
+				int j = 1;
+				while (j < this.delimiter.length && this.buffer[i + j] == this.delimiter[j]) {
+					j++;
+				}
+				if (j == this.delimiter.length) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Consume the delimiter at the current position, plus the line break
+	 * that follows it or the "--" that marks the end of the content.
+	 */
+	private void consumeDelimiter() throws IOException {
+		this.pos += this.delimiter.length;
+		ensureAvailable(2);
+		if (this.buffer[this.pos] == '-' && this.buffer[this.pos + 1] == '-') {
+			// closing delimiter: ignore the epilogue
+			this.pos += 2;
+			this.finished = true;
+			return;
+		}
+		// skip optional transport padding up to the line break
+		while (true) {
+			ensureAvailable(2);
+			if (this.buffer[this.pos] == '\r' && this.buffer[this.pos + 1] == '\n') {
+				this.pos += 2;
+				return;
+			}
+			if (this.buffer[this.pos] != ' ' && this.buffer[this.pos] != '\t') {
+				throw new IOException("Malformed multipart content: unexpected characters after boundary");
+			}
+			this.pos++;
+		}
+	}
+
+	/**
+	 * Read the headers of the part at the current position.
+	 */
+	private PartHeaders readHeaders() throws IOException {
+		PartHeaders headers = new PartHeaders();
+		ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+		int headerSize = 0;
+		while (true) {
+			ensureAvailable(1);
+			byte b = this.buffer[this.pos++];
+			if (++headerSize > MAX_HEADER_SIZE) {
+				throw new IOException("Multipart part headers exceed maximum size of " + MAX_HEADER_SIZE + " bytes");
+			}
+			if (b == '\n') {
+				byte[] lineBytes = line.toByteArray();
+				int length = lineBytes.length;
+				if (length > 0 && lineBytes[length - 1] == '\r') {
+					length--;
+				}
+				if (length == 0) {
+					return headers;
+				}
+				String header = (this.headerEncoding != null ?
+						new String(lineBytes, 0, length, this.headerEncoding) : new String(lineBytes, 0, length));
+				headers.addHeaderLine(header);
+				line.reset();
+			}
+			else {
+				line.write(b);
+			}
+		}
+	}
+
+
+	/**
+	 * InputStream for the content of a single part,
+	 * ending right before the next delimiter.
+	 */
+	private class PartInputStream extends InputStream {
+
+		private final long maxSize;
+
+		private long count = 0;
+
+		private boolean ended = false;
+
+		private PartInputStream(long maxSize) {
+			this.maxSize = maxSize;
+		}
+
+		public int read() throws IOException {
+			byte[] single = new byte[1];
+			int result = read(single, 0, 1);
+			return (result == -1 ? -1 : single[0] & 0xff);
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (this.ended) {
+				return -1;
+			}
+			if (len == 0) {
+				return 0;
+			}
+			int available = available();
+			if (available == 0) {
+				consumeDelimiter();
+				this.ended = true;
+				return -1;
+			}
+			int count = Math.min(available, len);
+			System.arraycopy(buffer, pos, b, off, count);
+			pos += count;
+			this.count += count;
+			if (this.maxSize >= 0 && this.count > this.maxSize) {
+				throw sizeLimitExceeded(this.maxSize);
+			}
+			return count;
+		}
+
+		/**
+		 * Return the number of bytes that can be read before the delimiter,
+		 * reading more content into the buffer if necessary. Returns 0 only
+		 * if the delimiter is at the current position.
+		 */
+		public int available() throws IOException {
+			if (this.ended) {
+				return 0;
+			}
+			while (true) {
+				int index = indexOfDelimiter();
+				if (index != -1) {
+					return index - pos;
+				}
+				// keep enough bytes for a delimiter that may only be partially read
+				int safe = limit - pos - (delimiter.length - 1);
+				if (safe > 0) {
+					return safe;
+				}
+				if (!fill()) {
+					throw new IOException("Unexpected end of multipart content: missing closing boundary");
+				}
+			}
+		}
+
+		public long skip(long n) throws IOException {
+			long skipped = 0;
+			while (skipped < n && !this.ended) {
+				int available = available();
+				if (available == 0) {
+					read();
+				}
+				else {
+					int count = (int) Math.min(available, n - skipped);
+					pos += count;
+					this.count += count;
+					skipped += count;
+				}
+			}
+			return skipped;
+		}
+
+		private void skipRemaining() throws IOException {
+			while (!this.ended) {
+				skip(Long.MAX_VALUE);
+			}
+		}
+
+		/**
+		 * Does not close the underlying stream: further parts may follow.
+		 */
+		public void close() {
+		}
+	}
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.multipart.streaming;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Headers of a single part of multipart/form-data content,
+ * with convenient access to the form field name and filename
+ * as specified in the Content-Disposition header.
+ *
+ * @author agent
+ * @since 1.1.2
+ */
+class PartHeaders {
+
+	private static final String CONTENT_DISPOSITION = "content-disposition";
+
+	private static final String CONTENT_TYPE = "content-type";
+
+	/** Header values, keyed by lower-case header name */
+	private final Map headers = new HashMap(4);
+
+	private String name;
+
+	private String filename;
+
+
+	/**
+	 * Add the given raw header line, in "Name: value" format.
+	 */
+	void addHeaderLine(String line) {
+		int separator = line.indexOf(':');
+		if (separator == -1) {
+			// not a valid header: ignore it
+			return;
+		}
+		String headerName = line.substring(0, separator).trim().toLowerCase();
+		String value = line.substring(separator + 1).trim();
+		this.headers.put(headerName, value);
+		if (CONTENT_DISPOSITION.equals(headerName)) {
+			this.name = getParameter(value, "name");
+			this.filename = getParameter(value, "filename");
+		}
+	}
+
+	/**
+	 * Return the value of the given header, or null if none.
+	 */
+	public String getHeader(String headerName) {
+		return (String) this.headers.get(headerName.toLowerCase());
+	}
+
+	/**
+	 * Return the name of the form field that this part belongs to.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Return the original filename of a file part, or null for a form field.
+	 * An empty String indicates a file field without a chosen file.
+	 */
+	public String getFilename() {
+		return filename;
+	}
+
+	/**
+	 * Return the content type of this part, or null if not specified.
+	 */
+	public String getContentType() {
+		return getHeader(CONTENT_TYPE);
+	}
+
+	/**
+	 * Return whether this part is a file, as opposed to a simple form field.
+	 */
+	public boolean isFile() {
+		return (this.filename != null);
+	}
+
+
+	/**
+	 * Extract the given parameter from a header value like
+	 * <code>form-data; name="file"; filename="a.txt"</code>.
+	 */
+	private static String getParameter(String headerValue, String parameterName) {
+		int index = 0;
+		while (index < headerValue.length()) {
+			int separator = headerValue.indexOf(';', index);
+			if (separator == -1) {
+				return null;
+			}
+			int start = separator + 1;
+			while (start < headerValue.length() && Character.isWhitespace(headerValue.charAt(start))) {
+				start++;
+			}
+			int equals = headerValue.indexOf('=', start);
+			if (equals == -1) {
+				return null;
+			}
+			String name = headerValue.substring(start, equals).trim();
+			int valueStart = equals + 1;
+			String value;
+			if (valueStart < headerValue.length() && headerValue.charAt(valueStart) == '"') {
+				int valueEnd = headerValue.indexOf('"', valueStart + 1);
+				if (valueEnd == -1) {
+					valueEnd = headerValue.length();
+				}
+				value = headerValue.substring(valueStart + 1, valueEnd);
+				index = valueEnd;
+			}
+			else {
+				int valueEnd = headerValue.indexOf(';', valueStart);
+				if (valueEnd == -1) {
+					valueEnd = headerValue.length();
+				}
+				value = headerValue.substring(valueStart, valueEnd).trim();
+				index = valueEnd;
+			}
+			if (name.equalsIgnoreCase(parameterName)) {
+				return value;
+			}
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.multipart.streaming;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.util.FileCopyUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * MultipartFile implementation that reads its content directly from the
+ * request, as returned by StreamingMultipartHttpServletRequest's
+ * <code>nextFile</code> method. The content is not stored anywhere:
+ * It can only be read once, and only until the next file is requested.
+ *
+ * <p>Consequently, <code>getInputStream</code>, <code>getBytes</code> and
+ * <code>transferTo</code> may only be called once. <code>getSize</code>
+ * returns the number of bytes read so far, which is the actual size
+ * once the content has been consumed completely.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see StreamingMultipartHttpServletRequest#nextFile
+ */
+public class StreamingMultipartFile implements MultipartFile {
+
+	private final PartHeaders headers;
+
+	private final InputStream content;
+
+	private boolean consumed = false;
+
+	private long size = 0;
+
+
+	StreamingMultipartFile(PartHeaders headers, InputStream content) {
+		this.headers = headers;
+		this.content = content;
+	}
+
+	public String getName() {
+		return this.headers.getName();
+	}
+
+	/**
+	 * Return whether no file has been chosen in the multipart form,
+	 * judging from an empty original filename.
+	 */
+	public boolean isEmpty() {
+		return (this.headers.getFilename() == null || this.headers.getFilename().length() == 0);
+	}
+
+	public String getOriginalFilename() {
+		return this.headers.getFilename();
+	}
+
+	public String getContentType() {
+		return this.headers.getContentType();
+	}
+
+	/**
+	 * Return the number of bytes read from this file so far.
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	public byte[] getBytes() throws IOException {
+		return FileCopyUtils.copyToByteArray(getInputStream());
+	}
+
+	/**
+	 * Return the content of this file as stream, reading directly from
+	 * the request. Can only be called once.
+	 * @throws IllegalStateException if the content has already been consumed
+	 */
+	public InputStream getInputStream() throws IOException, IllegalStateException {
+		if (this.consumed) {
+			throw new IllegalStateException("Content of multipart file [" + getName() + "] has already been consumed");
+		}
+		this.consumed = true;
+		return new FilterInputStream(this.content) {
+			public int read() throws IOException {
+				int b = super.read();
+				if (b != -1) {
+					size++;
+				}
+				return b;
+			}
+			public int read(byte[] b, int off, int len) throws IOException {
+				int count = super.read(b, off, len);
+				if (count > 0) {
+					size += count;
+				}
+				return count;
+			}
+			public long skip(long n) throws IOException {
+				long skipped = super.skip(n);
+				size += skipped;
+				return skipped;
+			}
+		};
+	}
+
+	/**
+	 * Write the content of this file to the given destination file,
+	 * reading directly from the request. Can only be called once.
+	 * @throws IllegalStateException if the content has already been consumed
+	 */
+	public void transferTo(File dest) throws IOException, IllegalStateException {
+		if (dest.exists() && !dest.delete()) {
+			throw new IOException(
+					"Destination file [" + dest.getAbsolutePath() + "] already exists and could not be deleted");
+		}
+		FileTransfer.transfer(getInputStream(), dest);
+	}
+
+	/**
+	 * Mark this file as no longer readable, once the request has moved on.
+	 */
+	void invalidate() {
+		this.consumed = true;
+	}
+
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.multipart.streaming;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartException;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.multipart.support.AbstractMultipartHttpServletRequest;
+
+/**
+ * MultipartHttpServletRequest implementation that parses the multipart
+ * content incrementally, as created by StreamingMultipartResolver.
+ *
+ * <p>Form fields that precede the first file are parsed on creation and
+ * are available as request parameters right away. Files can then be consumed
+ * one by one via <code>nextFile</code>, reading their content directly from
+ * the request: This allows for processing uploads of any size with bounded
+ * memory and without temporary files. Form fields that follow a file become
+ * available as parameters once the parser has moved past that file.
+ *
+ * <pre>
+ * StreamingMultipartHttpServletRequest multipartRequest = (StreamingMultipartHttpServletRequest) request;
+ * MultipartFile file;
+ * while ((file = multipartRequest.nextFile()) != null) {
+ *   file.transferTo(new File(uploadDir, file.getOriginalFilename()));
+ * }</pre>
+ *
+ * <p>Alternatively, files can be accessed by name via the standard
+ * MultipartHttpServletRequest methods. This will read all remaining parts,
+ * keeping small files in memory and writing larger ones to temporary files.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see StreamingMultipartResolver
+ * @see #nextFile
+ */
+public class StreamingMultipartHttpServletRequest extends AbstractMultipartHttpServletRequest {
+
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	private final MultipartStreamParser parser;
+
+	private final String encoding;
+
+	private final int maxInMemorySize;
+
+	private final int maxFieldSize;
+
+	private final int maxFieldCount;
+
+	private final long maxTotalFieldSize;
+
+	private final File tempDir;
+
+	/** Parameter name -> String array */
+	private final Map parameters = new HashMap();
+
+	/** Parameter name -> DiskMultipartFile, for files that have been read ahead */
+	private final Map multipartFiles = new HashMap();
+
+	/**
+	 * All files that have been read ahead, including ones that have been
+	 * replaced in the map by a later file with the same name
+	 */
+	private final List readAheadFiles = new LinkedList();
+
+	/** Headers of the file part that the parser is positioned at, if not consumed yet */
+	private PartHeaders pendingFile;
+
+	private StreamingMultipartFile currentFile;
+
+	private boolean fullyParsed = false;
+
+	private int fieldCount = 0;
+
+	private long totalFieldSize = 0;
+
+
+	/**
+	 * Create a new StreamingMultipartHttpServletRequest for the given request,
+	 * parsing the form fields that precede the first file.
+	 * @param request the request to wrap
+	 * @param parser the parser for the multipart content of the request
+	 * @param encoding the encoding to use for form fields
+	 * @param maxInMemorySize the maximum size of files read ahead to keep in memory
+	 * @param maxFieldSize the maximum size of form fields
+	 * @param maxFieldCount the maximum number of form fields (-1 for no limit)
+	 * @param maxTotalFieldSize the maximum size of all form fields together (-1 for no limit)
+	 * @param tempDir the directory for files read ahead (null for the default temp dir)
+	 * @throws MultipartException if the leading form fields could not be parsed
+	 */
+	StreamingMultipartHttpServletRequest(HttpServletRequest request, MultipartStreamParser parser,
+	    String encoding, int maxInMemorySize, int maxFieldSize, int maxFieldCount, long maxTotalFieldSize,
+	    File tempDir) throws MultipartException {
+		super(request);
+		this.parser = parser;
+		this.encoding = encoding;
+		this.maxInMemorySize = maxInMemorySize;
+		this.maxFieldSize = maxFieldSize;
+		this.maxFieldCount = maxFieldCount;
+		this.maxTotalFieldSize = maxTotalFieldSize;
+		this.tempDir = tempDir;
+		setMultipartFiles(this.multipartFiles);
+		try {
+			this.pendingFile = advanceToNextFile();
+		}
+		catch (IOException ex) {
+			throw translateException(ex);
+		}
+	}
+
+
+	/**
+	 * Return the next file of the multipart content, reading its content
+	 * directly from the request. Skips the remaining content of the file
+	 * returned by the previous call, if not consumed completely.
+	 * @return the next file, or null if there are no further files
+	 * @throws MultipartException if the multipart content is malformed
+	 * or exceeds the configured size limits
+	 * @throws IllegalStateException if the remaining files have already
+	 * been read via the standard MultipartHttpServletRequest methods
+	 * @see StreamingMultipartFile
+	 */
+	public MultipartFile nextFile() throws MultipartException {
+		if (this.fullyParsed) {
+			throw new IllegalStateException(
+					"Multipart content has already been parsed completely - use getFile/getFileMap instead");
+		}
+		try {
+			PartHeaders headers = this.pendingFile;
+			this.pendingFile = null;
+			if (headers == null) {
+				headers = advanceToNextFile();
+			}
+			if (headers == null) {
+				this.fullyParsed = true;
+				return null;
+			}
+			this.currentFile = new StreamingMultipartFile(headers, this.parser.getPartInputStream());
+			return this.currentFile;
+		}
+		catch (IOException ex) {
+			throw translateException(ex);
+		}
+	}
+
+	/**
+	 * Advance the parser to the next file part, storing form fields
+	 * on the way as parameters.
+	 * @return the headers of the next file part, or null if none
+	 */
+	private PartHeaders advanceToNextFile() throws IOException, MultipartException {
+		if (this.currentFile != null) {
+			this.currentFile.invalidate();
+			this.currentFile = null;
+		}
+		PartHeaders headers;
+		while ((headers = this.parser.nextPart()) != null) {
+			if (headers.isFile()) {
+				return headers;
+			}
+			addParameter(headers.getName(), readField(headers, this.parser.getPartInputStream()));
+		}
+		return null;
+	}
+
+	private String readField(PartHeaders headers, InputStream in) throws IOException, MultipartException {
+		if (this.maxFieldCount >= 0 && this.fieldCount >= this.maxFieldCount) {
+			throw new MultipartException("Multipart request exceeds maximum number of " +
+					this.maxFieldCount + " form fields");
+		}
+		this.fieldCount++;
+		ByteArrayOutputStream content = new ByteArrayOutputStream(256);
+		byte[] buffer = new byte[1024];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			content.write(buffer, 0, read);
+			if (content.size() > this.maxFieldSize) {
+				throw new MultipartException("Form field '" + headers.getName() + "' exceeds maximum size of " +
+						this.maxFieldSize + " bytes");
+			}
+			if (this.maxTotalFieldSize >= 0 && this.totalFieldSize + content.size() > this.maxTotalFieldSize) {
+				throw new MultipartException("Form fields exceed maximum total size of " +
+						this.maxTotalFieldSize + " bytes");
+			}
+		}
+		this.totalFieldSize += content.size();
+		try {
+			return content.toString(this.encoding);
+		}
+		catch (UnsupportedEncodingException ex) {
+			logger.warn("Could not decode multipart item '" + headers.getName() +
+			    "' with encoding '" + this.encoding + "': using platform default");
+			return content.toString();
+		}
+	}
+
+	private void addParameter(String name, String value) {
+		String[] values = (String[]) this.parameters.get(name);
+		if (values == null) {
+			this.parameters.put(name, new String[] {value});
+		}
+		else {
+			this.parameters.put(name, StringUtils.addStringToArray(values, value));
+		}
+	}
+
+	/**
+	 * Read all remaining parts, storing files in memory or in temporary files.
+	 */
+	private void parseRemainingParts() {
+		if (this.fullyParsed) {
+			return;
+		}
+		this.fullyParsed = true;
+		try {
+			PartHeaders headers = this.pendingFile;
+			this.pendingFile = null;
+			if (headers == null) {
+				headers = advanceToNextFile();
+			}
+			while (headers != null) {
+				DiskMultipartFile file = new DiskMultipartFile(
+						headers, this.parser.getPartInputStream(), this.maxInMemorySize, this.tempDir);
+				this.readAheadFiles.add(file);
+				this.multipartFiles.put(file.getName(), file);
+				if (logger.isDebugEnabled()) {
+					logger.debug("Found multipart file [" + file.getName() + "] of size " + file.getSize() +
+					    " bytes with original filename [" + file.getOriginalFilename() + "], stored " +
+					    file.getStorageDescription());
+				}
+				headers = advanceToNextFile();
+			}
+		}
+		catch (IOException ex) {
+			throw parseFailure(translateException(ex));
+		}
+		catch (MultipartException ex) {
+			throw parseFailure(ex);
+		}
+	}
+
+	private IllegalStateException parseFailure(MultipartException ex) {
+		logger.warn("Could not parse remaining multipart content", ex);
+		return new IllegalStateException("Could not parse remaining multipart content: " + ex.getMessage());
+	}
+
+	private MultipartException translateException(IOException ex) {
+		if (this.parser.getSizeLimitException() != null) {
+			return this.parser.getSizeLimitException();
+		}
+		return new MultipartException("Could not parse multipart request", ex);
+	}
+
+	/**
+	 * Delete the temporary files of files that have been read ahead.
+	 */
+	void cleanup() {
+		for (Iterator it = this.readAheadFiles.iterator(); it.hasNext();) {
+			DiskMultipartFile file = (DiskMultipartFile) it.next();
+			if (logger.isDebugEnabled()) {
+				logger.debug("Cleaning up multipart file [" + file.getName() + "] with original filename [" +
+				    file.getOriginalFilename() + "], stored " + file.getStorageDescription());
+			}
+			file.delete();
+		}
+	}
+
+
+	/**
+	 * Reads all remaining parts first.
+	 * @throws IllegalStateException if the remaining parts could not be parsed
+	 */
+	public Iterator getFileNames() {
+		parseRemainingParts();
+		return super.getFileNames();
+	}
+
+	/**
+	 * Reads all remaining parts first.
+	 * Does not include files that have been consumed via <code>nextFile</code>.
+	 * @throws IllegalStateException if the remaining parts could not be parsed
+	 */
+	public MultipartFile getFile(String name) {
+		parseRemainingParts();
+		return super.getFile(name);
+	}
+
+	/**
+	 * Reads all remaining parts first.
+	 * Does not include files that have been consumed via <code>nextFile</code>.
+	 * @throws IllegalStateException if the remaining parts could not be parsed
+	 */
+	public Map getFileMap() {
+		parseRemainingParts();
+		return super.getFileMap();
+	}
+
+	public Enumeration getParameterNames() {
+		return Collections.enumeration(this.parameters.keySet());
+	}
+
+	public String getParameter(String name) {
+		String[] values = getParameterValues(name);
+		return (values != null && values.length > 0 ? values[0] : null);
+	}
+
+	public String[] getParameterValues(String name) {
+		return (String[]) this.parameters.get(name);
+	}
+
+	public Map getParameterMap() {
+		return Collections.unmodifiableMap(this.parameters);
+	}
+
+}
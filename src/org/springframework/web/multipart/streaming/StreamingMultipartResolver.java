@@ -0,0 +1,292 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.multipart.streaming;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.core.io.Resource;
+import org.springframework.web.context.ServletContextAware;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.multipart.MultipartException;
+import org.springframework.web.multipart.MultipartHttpServletRequest;
+import org.springframework.web.multipart.MultipartResolver;
+import org.springframework.web.util.WebUtils;
+
+/**
+ * MultipartResolver implementation that parses multipart content
+ * incrementally, without any third-party library. Returns a
+ * StreamingMultipartHttpServletRequest, which lets controllers consume
+ * uploaded files one by one as streams, directly from the request.
+ *
+ * <p>Provides maxUploadSize, maxFileSize, maxInMemorySize, maxFieldSize,
+ * maxFieldCount, maxTotalFieldSize and defaultEncoding settings as bean
+ * properties. The size limits are enforced
+ * while reading, so that clients cannot get around them by omitting or
+ * faking the Content-Length header. A Content-Length above the maximum
+ * upload size will be rejected right away, though.
+ *
+ * <p>Files that are accessed by name instead of being streamed will be read
+ * ahead, keeping them in memory up to "maxInMemorySize" and storing larger
+ * ones in temporary files in the servlet container's temporary directory.
+ * Needs to be initialized <i>either</i> by an application context <i>or</i>
+ * via the constructor that takes a ServletContext (for standalone usage).
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see StreamingMultipartHttpServletRequest#nextFile
+ * @see org.springframework.web.multipart.commons.CommonsMultipartResolver
+ */
+public class StreamingMultipartResolver implements MultipartResolver, ServletContextAware {
+
+	/**
+	 * Default maximum size of files read ahead to keep in memory: 10240 bytes.
+	 */
+	public static final int DEFAULT_MAX_IN_MEMORY_SIZE = 10240;
+
+	/**
+	 * Default maximum size of a form field: 1 MB.
+	 */
+	public static final int DEFAULT_MAX_FIELD_SIZE = 1024 * 1024;
+
+	/**
+	 * Default maximum number of form fields: 1000.
+	 */
+	public static final int DEFAULT_MAX_FIELD_COUNT = 1000;
+
+	/**
+	 * Default maximum size of all form fields together: 10 MB.
+	 */
+	public static final long DEFAULT_MAX_TOTAL_FIELD_SIZE = 10 * 1024 * 1024;
+
+	private static final String MULTIPART = "multipart/";
+
+	private static final String BOUNDARY = "boundary=";
+
+
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	private long maxUploadSize = -1;
+
+	private long maxFileSize = -1;
+
+	private int maxInMemorySize = DEFAULT_MAX_IN_MEMORY_SIZE;
+
+	private int maxFieldSize = DEFAULT_MAX_FIELD_SIZE;
+
+	private int maxFieldCount = DEFAULT_MAX_FIELD_COUNT;
+
+	private long maxTotalFieldSize = DEFAULT_MAX_TOTAL_FIELD_SIZE;
+
+	private String defaultEncoding = WebUtils.DEFAULT_CHARACTER_ENCODING;
+
+	private File uploadTempDir;
+
+
+	/**
+	 * Constructor for use as bean. Determines the servlet container's
+	 * temporary directory via the ServletContext passed in as through the
+	 * ServletContextAware interface (typically by a WebApplicationContext).
+	 * @see #setServletContext
+	 */
+	public StreamingMultipartResolver() {
+	}
+
+	/**
+	 * Constructor for standalone usage. Determines the servlet container's
+	 * temporary directory via the given ServletContext.
+	 * @param servletContext the ServletContext to use
+	 */
+	public StreamingMultipartResolver(ServletContext servletContext) {
+		setServletContext(servletContext);
+	}
+
+	/**
+	 * Set the maximum allowed size (in bytes) of the entire multipart content.
+	 * -1 indicates no limit (the default).
+	 */
+	public void setMaxUploadSize(long maxUploadSize) {
+		this.maxUploadSize = maxUploadSize;
+	}
+
+	/**
+	 * Set the maximum allowed size (in bytes) of a single uploaded file.
+	 * -1 indicates no limit (the default).
+	 */
+	public void setMaxFileSize(long maxFileSize) {
+		this.maxFileSize = maxFileSize;
+	}
+
+	/**
+	 * Set the maximum size (in bytes) of files that are read ahead to keep
+	 * in memory; larger files will be written to temporary files.
+	 * Default is 10240. Does not apply to files consumed via <code>nextFile</code>.
+	 * @see StreamingMultipartHttpServletRequest#getFile
+	 */
+	public void setMaxInMemorySize(int maxInMemorySize) {
+		this.maxInMemorySize = maxInMemorySize;
+	}
+
+	/**
+	 * Set the maximum allowed size (in bytes) of a simple form field,
+	 * which is always held in memory. Default is 1 MB.
+	 */
+	public void setMaxFieldSize(int maxFieldSize) {
+		this.maxFieldSize = maxFieldSize;
+	}
+
+	/**
+	 * Set the maximum allowed number of simple form fields. Default is 1000;
+	 * -1 indicates no limit.
+	 * <p>As form fields are held in memory, this limit applies even if
+	 * there is no limit for the size of the entire multipart content.
+	 */
+	public void setMaxFieldCount(int maxFieldCount) {
+		this.maxFieldCount = maxFieldCount;
+	}
+
+	/**
+	 * Set the maximum allowed size (in bytes) of all simple form fields
+	 * together. Default is 10 MB; -1 indicates no limit.
+	 * <p>As form fields are held in memory, this limit applies even if
+	 * there is no limit for the size of the entire multipart content.
+	 */
+	public void setMaxTotalFieldSize(long maxTotalFieldSize) {
+		this.maxTotalFieldSize = maxTotalFieldSize;
+	}
+
+	/**
+	 * Set the default character encoding to use for parsing requests,
+	 * to be applied to headers of individual parts and to form fields.
+	 * Default is ISO-8859-1, according to the Servlet spec.
+	 * <p>If the request specifies a character encoding itself, the request
+	 * encoding will override this setting.
+	 * @see #determineEncoding
+	 */
+	public void setDefaultEncoding(String defaultEncoding) {
+		this.defaultEncoding = defaultEncoding;
+	}
+
+	/**
+	 * Set the temporary directory where files that are read ahead get stored.
+	 * Default is the servlet container's temporary directory for the web application.
+	 * @see org.springframework.web.util.WebUtils#TEMP_DIR_CONTEXT_ATTRIBUTE
+	 */
+	public void setUploadTempDir(Resource uploadTempDir) throws IOException {
+		if (!uploadTempDir.exists() && !uploadTempDir.getFile().mkdirs()) {
+			throw new IllegalArgumentException("Given uploadTempDir [" + uploadTempDir + "] could not be created");
+		}
+		this.uploadTempDir = uploadTempDir.getFile();
+	}
+
+	public void setServletContext(ServletContext servletContext) {
+		if (this.uploadTempDir == null) {
+			this.uploadTempDir = WebUtils.getTempDir(servletContext);
+		}
+	}
+
+
+	public boolean isMultipart(HttpServletRequest request) {
+		String contentType = request.getContentType();
+		return (contentType != null && contentType.toLowerCase().startsWith(MULTIPART));
+	}
+
+	public MultipartHttpServletRequest resolveMultipart(HttpServletRequest request) throws MultipartException {
+		byte[] boundary = extractBoundary(request.getContentType());
+		if (boundary == null) {
+			throw new MultipartException("Could not find multipart boundary in content type [" +
+					request.getContentType() + "]");
+		}
+		if (this.maxUploadSize >= 0 && request.getContentLength() > this.maxUploadSize) {
+			throw new MaxUploadSizeExceededException(this.maxUploadSize);
+		}
+		String enc = determineEncoding(request);
+		try {
+			MultipartStreamParser parser = new MultipartStreamParser(
+					request.getInputStream(), boundary, enc, this.maxUploadSize, this.maxFileSize);
+			return new StreamingMultipartHttpServletRequest(request, parser, enc, this.maxInMemorySize,
+					this.maxFieldSize, this.maxFieldCount, this.maxTotalFieldSize, this.uploadTempDir);
+		}
+		catch (IOException ex) {
+			throw new MultipartException("Could not read multipart request", ex);
+		}
+	}
+
+	/**
+	 * Extract the boundary from the given multipart content type.
+	 * @return the boundary as bytes, or null if none found
+	 */
+	private byte[] extractBoundary(String contentType) {
+		if (contentType == null) {
+			return null;
+		}
+		int index = contentType.toLowerCase().indexOf(BOUNDARY);
+		if (index == -1) {
+			return null;
+		}
+		String boundary = contentType.substring(index + BOUNDARY.length());
+		int end = boundary.indexOf(';');
+		if (end != -1) {
+			boundary = boundary.substring(0, end);
+		}
+		boundary = boundary.trim();
+		if (boundary.length() > 1 && boundary.startsWith("\"") && boundary.endsWith("\"")) {
+			boundary = boundary.substring(1, boundary.length() - 1);
+		}
+		if (boundary.length() == 0) {
+			return null;
+		}
+		try {
+			return boundary.getBytes("ISO-8859-1");
+		}
+		catch (UnsupportedEncodingException ex) {
+			throw new IllegalStateException("ISO-8859-1 not supported");
+		}
+	}
+
+	/**
+	 * Determine the encoding for the given request.
+	 * Can be overridden in subclasses.
+	 * <p>The default implementation checks the request encoding,
+	 * falling back to the default encoding specified for this resolver.
+	 * @param request current HTTP request
+	 * @return the encoding for the request (never null)
+	 * @see javax.servlet.ServletRequest#getCharacterEncoding
+	 * @see #setDefaultEncoding
+	 */
+	protected String determineEncoding(HttpServletRequest request) {
+		String enc = request.getCharacterEncoding();
+		if (enc == null) {
+			enc = this.defaultEncoding;
+		}
+		return enc;
+	}
+
+	public void cleanupMultipart(MultipartHttpServletRequest request) {
+		if (request instanceof StreamingMultipartHttpServletRequest) {
+			((StreamingMultipartHttpServletRequest) request).cleanup();
+		}
+	}
+
+}
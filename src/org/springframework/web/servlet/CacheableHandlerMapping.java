@@ -0,0 +1,62 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.servlet;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Extension of the HandlerMapping interface, to be implemented by
+ * mappings whose result only depends on a key derived from the request,
+ * like the lookup path of a URL-based mapping.
+ *
+ * <p>DispatcherServlet caches the HandlerExecutionChain returned by such
+ * a mapping per cache key and HTTP method, to avoid resolving the handler
+ * again for subsequent requests. Consequently, a cacheable mapping must
+ * return the same handler instance for the same key: This is the case for
+ * mappings that refer to singleton handlers, but not for prototypes.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see DispatcherServlet#setHandlerCacheLimit
+ * @see org.springframework.web.servlet.handler.AbstractUrlHandlerMapping#setCacheable
+ */
+public interface CacheableHandlerMapping extends HandlerMapping {
+
+	/**
+	 * Return the key that determines the handler for the given request,
+	 * for example the lookup path. Will be combined with the HTTP method.
+	 * @param request current HTTP request
+	 * @return the cache key, or null if the handler for the given
+	 * request must not be cached
+	 * @throws Exception if the key could not be determined
+	 */
+	Object getHandlerCacheKey(HttpServletRequest request) throws Exception;
+
+	/**
+	 * Return the handler for the given request and the cache key that
+	 * getHandlerCacheKey returned for it, reusing the information that
+	 * the key has been derived from. Called on a cache miss instead of
+	 * <code>getHandler(HttpServletRequest)</code>.
+	 * @param request current HTTP request
+	 * @param cacheKey the cache key for the request
+	 * @return the HandlerExecutionChain, or null if no mapping found
+	 * @throws Exception if there is an internal error
+	 * @see #getHandlerCacheKey
+	 */
+	HandlerExecutionChain getHandler(HttpServletRequest request, Object cacheKey) throws Exception;
+
+}
@@ -34,6 +34,7 @@ import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.BeanFactoryUtils;
 import org.springframework.beans.factory.NoSuchBeanDefinitionException;
 import org.springframework.core.OrderComparator;
+import org.springframework.util.LruCache;
 import org.springframework.web.multipart.MultipartHttpServletRequest;
 import org.springframework.web.multipart.MultipartResolver;
 import org.springframework.web.servlet.handler.BeanNameUrlHandlerMapping;
@@ -173,6 +174,25 @@ public class DispatcherServlet extends FrameworkServlet {
 	 */
 	public static final String PAGE_NOT_FOUND_LOG_CATEGORY = "org.springframework.web.servlet.PageNotFound";
 
+	/**
+	 * Default maximum number of cached handlers.
+	 * @see #setHandlerCacheLimit
+	 */
+	public static final int DEFAULT_HANDLER_CACHE_LIMIT = 256;
+
+	/**
+	 * Prefix of the request attribute that holds the HandlerExecutionChain determined
+	 * by getLastModified, for reuse by doService within the same request.
+	 * Suffixed with the servlet name.
+	 */
+	private static final String HANDLER_EXECUTION_CHAIN_ATTRIBUTE_PREFIX =
+			DispatcherServlet.class.getName() + ".HANDLER_EXECUTION_CHAIN.";
+
+	/**
+	 * Marker for cache keys that a cacheable HandlerMapping returned no handler for.
+	 */
+	private static final Object NO_HANDLER = new Object();
+
 	/**
 	 * Additional logger to use when no mapped handler is found for a request.
 	 */
@@ -188,6 +208,12 @@ public class DispatcherServlet extends FrameworkServlet {
 	/** Detect all ViewResolvers or just expect "viewResolver" bean? */
 	private boolean detectAllViewResolvers = true;
 
+	/** Maximum number of cached handlers and handler adapters */
+	private int handlerCacheLimit = DEFAULT_HANDLER_CACHE_LIMIT;
+
+	/** Cache the HandlerAdapter per handler class? */
+	private boolean cacheHandlerAdapters = false;
+
 	/** MultipartResolver used by this servlet */
 	private MultipartResolver multipartResolver;
 
@@ -209,6 +235,12 @@ public class DispatcherServlet extends FrameworkServlet {
 	/** List of ViewResolvers used by this servlet */
 	private List viewResolvers;
 
+	/** Cache of HandlerExecutionChains returned by CacheableHandlerMappings */
+	private LruCache handlerCache;
+
+	/** Cache of HandlerAdapters per handler class */
+	private LruCache handlerAdapterCache;
+
 
 	/**
 	 * Set whether to detect all HandlerMapping beans in this servlet's context.
@@ -243,6 +275,48 @@ public class DispatcherServlet extends FrameworkServlet {
 		this.detectAllViewResolvers = detectAllViewResolvers;
 	}
 
+	/**
+	 * Set the maximum number of handlers to cache, for HandlerMappings
+	 * that implement the CacheableHandlerMapping interface, and the maximum
+	 * number of handler classes to cache the HandlerAdapter for.
+	 * <p>Default is 256. The least recently used entries get evicted
+	 * when the limit is reached; 0 turns caching off.
+	 * @see CacheableHandlerMapping
+	 * @see #setCacheHandlerAdapters
+	 */
+	public void setHandlerCacheLimit(int handlerCacheLimit) {
+		this.handlerCacheLimit = handlerCacheLimit;
+	}
+
+	/**
+	 * Set whether to cache the HandlerAdapter found for each handler class,
+	 * instead of asking all HandlerAdapters on each request. Default is false.
+	 * <p>Only turn this on if all HandlerAdapters decide on the handler type
+	 * alone, as the standard ones do.
+	 * @see HandlerAdapter#supports
+	 * @see #setHandlerCacheLimit
+	 */
+	public void setCacheHandlerAdapters(boolean cacheHandlerAdapters) {
+		this.cacheHandlerAdapters = cacheHandlerAdapters;
+	}
+
+	/**
+	 * Return the number of handler lookups served from the handler cache.
+	 * @see #setHandlerCacheLimit
+	 */
+	public long getHandlerCacheHitCount() {
+		return (this.handlerCache != null ? this.handlerCache.getHitCount() : 0);
+	}
+
+	/**
+	 * Return the number of handler lookups that could not be served
+	 * from the handler cache, for cacheable HandlerMappings.
+	 * @see #setHandlerCacheLimit
+	 */
+	public long getHandlerCacheMissCount() {
+		return (this.handlerCache != null ? this.handlerCache.getMissCount() : 0);
+	}
+
 
 	/**
 	 * Overridden method, invoked after any bean properties have been set and the
@@ -269,6 +343,7 @@ public class DispatcherServlet extends FrameworkServlet {
 		initHandlerExceptionResolvers();
 		//初始化ViewResolver，视图解析器
 		initViewResolvers();
+		initHandlerCaches();
 	}
 
 	/**
@@ -492,6 +567,22 @@ public class DispatcherServlet extends FrameworkServlet {
 	}
 
 
+	/**
+	 * Initialize the caches for handlers and handler adapters,
+	 * unless turned off via the "handlerCacheLimit" property respectively
+	 * not turned on via the "cacheHandlerAdapters" property.
+	 */
+	private void initHandlerCaches() {
+		if (this.handlerCacheLimit > 0) {
+			this.handlerCache = new LruCache(this.handlerCacheLimit);
+			this.handlerAdapterCache = (this.cacheHandlerAdapters ? new LruCache(this.handlerCacheLimit) : null);
+		}
+		else {
+			this.handlerCache = null;
+			this.handlerAdapterCache = null;
+		}
+	}
+
 	/**
 	 * Obtain and use the handler for this method.
 	 * The handler will be obtained by applying the servlet's HandlerMappings in order.
@@ -533,8 +624,16 @@ public class DispatcherServlet extends FrameworkServlet {
 						processedRequest = this.multipartResolver.resolveMultipart(request);
 					}
 				}
-				//根据request信息获取Handler
-				mappedHandler = getHandler(processedRequest);
+				// reuse handler determined by getLastModified, if any
+				String handlerAttribute = HANDLER_EXECUTION_CHAIN_ATTRIBUTE_PREFIX + getServletName();
+				mappedHandler = (HandlerExecutionChain) request.getAttribute(handlerAttribute);
+				if (mappedHandler != null) {
+					request.removeAttribute(handlerAttribute);
+				}
+				if (mappedHandler == null || processedRequest != request) {
+					//根据request信息获取Handler
+					mappedHandler = getHandler(processedRequest);
+				}
 				if (mappedHandler == null || mappedHandler.getHandler() == null) {
 					// if we didn't find a handler
 					if (pageNotFoundLogger.isWarnEnabled()) {
@@ -641,6 +740,7 @@ public class DispatcherServlet extends FrameworkServlet {
 				return -1;
 			}
 
+			request.setAttribute(HANDLER_EXECUTION_CHAIN_ATTRIBUTE_PREFIX + getServletName(), mappedHandler);
 			HandlerAdapter ha = getHandlerAdapter(mappedHandler.getHandler());
 			long lastModified = ha.getLastModified(request, mappedHandler.getHandler());
 			if (logger.isDebugEnabled()) {
@@ -658,7 +758,10 @@ public class DispatcherServlet extends FrameworkServlet {
 	/**
 	 * Return the handler for this request.
 	 * Try all handler mappings in order.
+	 * <p>The result of a CacheableHandlerMapping is cached per cache key
+	 * and HTTP method, to be reused for subsequent requests.
 	 * @return the handler, or null if no handler could be found
+	 * @see CacheableHandlerMapping
 	 * 根据request信息获取Handler
 	 */
 	private HandlerExecutionChain getHandler(HttpServletRequest request) throws Exception {
@@ -669,8 +772,28 @@ public class DispatcherServlet extends FrameworkServlet {
 				logger.debug("Testing handler map [" + hm  + "] in DispatcherServlet with name '" +
 						getServletName() + "'");
 			}
-			//获取Handler，并封装成执行链
-			HandlerExecutionChain handler = hm.getHandler(request);
+			HandlerExecutionChain handler = null;
+			HandlerCacheKey cacheKey = null;
+			if (this.handlerCache != null && hm instanceof CacheableHandlerMapping) {
+				CacheableHandlerMapping chm = (CacheableHandlerMapping) hm;
+				Object mappingKey = chm.getHandlerCacheKey(request);
+				if (mappingKey != null) {
+					cacheKey = new HandlerCacheKey(hm, mappingKey, request.getMethod());
+					Object cachedHandler = this.handlerCache.get(cacheKey);
+					if (cachedHandler == NO_HANDLER) {
+						continue;
+					}
+					if (cachedHandler != null) {
+						return (HandlerExecutionChain) cachedHandler;
+					}
+					handler = chm.getHandler(request, mappingKey);
+					this.handlerCache.put(cacheKey, (handler != null ? (Object) handler : NO_HANDLER));
+				}
+			}
+			if (cacheKey == null) {
+				//获取Handler，并封装成执行链
+				handler = hm.getHandler(request);
+			}
 			if (handler != null)
 				return handler;
 		}
@@ -679,11 +802,20 @@ public class DispatcherServlet extends FrameworkServlet {
 
 	/**
 	 * Return the HandlerAdapter for this handler class.
+	 * <p>The adapter found is cached per handler class if the
+	 * "cacheHandlerAdapters" flag is set.
 	 * @throws ServletException if no HandlerAdapter can be found for the handler.
 	 * This is a fatal error.
+	 * @see HandlerAdapter#supports
 	 * 根据Handler获取HandlerAdapter
 	 */
 	private HandlerAdapter getHandlerAdapter(Object handler) throws ServletException {
+		if (this.handlerAdapterCache != null) {
+			HandlerAdapter ha = (HandlerAdapter) this.handlerAdapterCache.get(handler.getClass());
+			if (ha != null) {
+				return ha;
+			}
+		}
 		Iterator it = this.handlerAdapters.iterator();
 		while (it.hasNext()) {
 			HandlerAdapter ha = (HandlerAdapter) it.next();
@@ -692,6 +824,9 @@ public class DispatcherServlet extends FrameworkServlet {
 			}
 			//用这个方法判断Handler是不是Controller类型
 			if (ha.supports(handler)) {
+				if (this.handlerAdapterCache != null) {
+					this.handlerAdapterCache.put(handler.getClass(), ha);
+				}
 				return ha;
 			}
 		}
@@ -771,4 +906,39 @@ public class DispatcherServlet extends FrameworkServlet {
 		}
 	}
 
+	/**
+	 * Key for the handler cache: the HandlerMapping,
+	 * its cache key for the request, and the HTTP method.
+	 */
+	private static class HandlerCacheKey {
+
+		private final HandlerMapping handlerMapping;
+
+		private final Object mappingKey;
+
+		private final String method;
+
+		private HandlerCacheKey(HandlerMapping handlerMapping, Object mappingKey, String method) {
+			this.handlerMapping = handlerMapping;
+			this.mappingKey = mappingKey;
+			this.method = method;
+		}
+
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof HandlerCacheKey)) {
+				return false;
+			}
+			HandlerCacheKey otherKey = (HandlerCacheKey) other;
+			return (this.handlerMapping == otherKey.handlerMapping && this.mappingKey.equals(otherKey.mappingKey) &&
+					(this.method != null ? this.method.equals(otherKey.method) : otherKey.method == null));
+		}
+
+		public int hashCode() {
+			return (this.mappingKey.hashCode() * 29 + (this.method != null ? this.method.hashCode() : 0));
+		}
+	}
+
 }
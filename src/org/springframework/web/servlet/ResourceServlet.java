@@ -16,17 +16,30 @@
 
 package org.springframework.web.servlet;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.RequestDispatcher;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.springframework.util.PathMatcher;
+import org.springframework.core.JdkVersion;
+import org.springframework.util.CompiledPathPattern;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.LruCache;
 import org.springframework.util.StringUtils;
 import org.springframework.web.context.support.ServletContextResource;
+import org.springframework.web.util.WebUtils;
 
 /**
  * Simple servlet that can expose an internal resource, including a 
@@ -82,11 +95,23 @@ import org.springframework.web.context.support.ServletContextResource;
  * resources that are not fronted by a controller, like JavaScript files
  * that are generated by a JSP (without depending on the HttpSession).
  *
+ * <p>For static resources like JavaScript, CSS and image files, set the
+ * <code>serveDirectly</code> property to true: This servlet will then write
+ * the content of the target file to the response itself instead of going
+ * through a RequestDispatcher include. Small files are cached in memory,
+ * along with a gzipped variant for compressible content types; larger files
+ * get streamed, via NIO's <code>FileChannel.transferTo</code> on JDK 1.4+.
+ * Each resource gets an ETag, with a distinct one for its gzipped variant,
+ * allowing for "If-None-Match" requests to be answered with "304 Not Modified",
+ * and single byte ranges are supported. Resource URLs containing ".." segments
+ * are rejected, as they could escape the allowed resources.
+ *
  * @author Rod Johnson
  * @author Juergen Hoeller
  * @see #setDefaultUrl
  * @see #setAllowedResources
  * @see #setApplyLastModified
+ * @see #setServeDirectly
  */
 public class ResourceServlet extends HttpServletBean {
 
@@ -101,17 +126,54 @@ public class ResourceServlet extends HttpServletBean {
 	 */
 	public static final String RESOURCE_PARAM_NAME = "resource";
 
+	/**
+	 * Default maximum number of resources to cache when serving directly: 256.
+	 */
+	public static final int DEFAULT_CACHE_LIMIT = 256;
+
+	/**
+	 * Default maximum size of files to cache when serving directly: 64 KB.
+	 */
+	public static final int DEFAULT_MAX_CACHED_FILE_SIZE = 64 * 1024;
+
+	/**
+	 * Default content types to serve gzipped, matched as prefixes.
+	 */
+	public static final String[] DEFAULT_GZIP_CONTENT_TYPES = new String[] {
+			"text/", "application/x-javascript", "application/javascript", "application/xml"};
+
+	private static final String HEADER_RANGE = "Range";
+
+	private static final String HEADER_IF_RANGE = "If-Range";
+
+	private static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+
+	private static final String BYTES_UNIT = "bytes";
+
+	private static final int STREAM_BUFFER_SIZE = 8192;
+
 
 	private String defaultUrl;
 
-	private String allowedResources;
+	private CompiledPathPattern allowedResources;
 
 	private String contentType;
 
 	private boolean applyLastModified = false;
 
+	private boolean serveDirectly = false;
+
+	private int cacheLimit = DEFAULT_CACHE_LIMIT;
+
+	private int maxCachedFileSize = DEFAULT_MAX_CACHED_FILE_SIZE;
+
+	private String[] gzipContentTypes = DEFAULT_GZIP_CONTENT_TYPES;
+
 	private long startupTime;
 
+	/** Resource URL --> CachedResource */
+	private LruCache resourceCache;
+
 
 	/**
 	 * Set the URL within the current web application from which to
@@ -132,7 +194,7 @@ public class ResourceServlet extends HttpServletBean {
 	 * @see org.springframework.util.PathMatcher#match
 	 */
 	public void setAllowedResources(String allowedResources) {
-		this.allowedResources = allowedResources;
+		this.allowedResources = (allowedResources != null ? new CompiledPathPattern(allowedResources) : null);
 	}
 
 	/**
@@ -162,12 +224,61 @@ public class ResourceServlet extends HttpServletBean {
 		this.applyLastModified = applyLastModified;
 	}
 
+	/**
+	 * Set whether to write the content of the target resource to the response
+	 * directly, instead of including it via the RequestDispatcher. Default is false.
+	 * <p>Intended for static files like JavaScript, CSS and images: They will
+	 * be served with an ETag and byte range support, small files from an
+	 * in-memory cache. Lists of target resources are still combined via includes.
+	 * <p>The content type is taken from the <code>contentType</code> property
+	 * if specified, else from the ServletContext's mime type mapping.
+	 * @see #setContentType
+	 * @see #setCacheLimit
+	 * @see #setMaxCachedFileSize
+	 * @see #setGzipContentTypes
+	 */
+	public void setServeDirectly(boolean serveDirectly) {
+		this.serveDirectly = serveDirectly;
+	}
+
+	/**
+	 * Set the maximum number of resources to keep in memory when serving
+	 * directly. Default is 256; 0 switches caching off.
+	 * <p>Cached resources are re-validated against their file timestamps
+	 * on each request, if the WAR is expanded.
+	 */
+	public void setCacheLimit(int cacheLimit) {
+		this.cacheLimit = cacheLimit;
+	}
+
+	/**
+	 * Set the maximum size in bytes of files to cache in memory when serving
+	 * directly. Default is 64 KB. Larger files get streamed from the file system.
+	 */
+	public void setMaxCachedFileSize(int maxCachedFileSize) {
+		this.maxCachedFileSize = maxCachedFileSize;
+	}
+
+	/**
+	 * Set the content types to serve gzipped to clients that accept gzip
+	 * encoding, as prefixes like "text/". Applies to cached resources only,
+	 * whose gzipped variant is computed once. Default is text, JavaScript
+	 * and XML types; null or an empty array switches compression off.
+	 * @see #DEFAULT_GZIP_CONTENT_TYPES
+	 */
+	public void setGzipContentTypes(String[] gzipContentTypes) {
+		this.gzipContentTypes = gzipContentTypes;
+	}
+
 
 	/**
 	 * Remember the startup time, using no last-modified time before it.
 	 */
 	protected void initServletBean() {
 		this.startupTime = System.currentTimeMillis();
+		if (this.serveDirectly && this.cacheLimit > 0) {
+			this.resourceCache = new LruCache(this.cacheLimit);
+		}
 	}
 
 	/**
@@ -191,6 +302,13 @@ public class ResourceServlet extends HttpServletBean {
 					throw ex;
 				}
 			}
+			catch (FileNotFoundException ex) {
+				logger.warn("Failed to include content of resource [" + resourceUrl + "]: " + ex.getMessage());
+				// try including default URL if appropriate
+				if (!includeDefaultUrl(request, response)) {
+					response.sendError(HttpServletResponse.SC_NOT_FOUND);
+				}
+			}
 			catch (IOException ex) {
 				logger.warn("Failed to include content of resource [" + resourceUrl + "]", ex);
 				// try including default URL if appropriate
@@ -236,26 +354,29 @@ public class ResourceServlet extends HttpServletBean {
 	}
 
 	/**
-	 * Include the specified resource via the RequestDispatcher.
+	 * Include the specified resource via the RequestDispatcher,
+	 * or serve it directly if demanded.
 	 * @param request current HTTP request
 	 * @param response current HTTP response
 	 * @param resourceUrl the URL of the target resource
 	 * @throws ServletException if thrown by the RequestDispatcher
 	 * @throws IOException if thrown by the RequestDispatcher
+	 * @see #setServeDirectly
 	 */
 	private void doInclude(HttpServletRequest request, HttpServletResponse response, String resourceUrl)
 	    throws ServletException, IOException {
+		String[] resourceUrls =
+		    StringUtils.tokenizeToStringArray(resourceUrl, RESOURCE_URL_DELIMITERS, true, true);
+		if (this.serveDirectly && resourceUrls.length == 1) {
+			checkAllowedResource(resourceUrls[0]);
+			serveResource(request, response, resourceUrls[0]);
+			return;
+		}
 		if (this.contentType != null) {
 			response.setContentType(this.contentType);
 		}
-		String[] resourceUrls =
-		    StringUtils.tokenizeToStringArray(resourceUrl, RESOURCE_URL_DELIMITERS, true, true);
 		for (int i = 0; i < resourceUrls.length; i++) {
-			// check whether URL matches allowed resources
-			if (this.allowedResources != null && !PathMatcher.match(this.allowedResources, resourceUrls[i])) {
-				throw new ServletException("Resource [" + resourceUrls[i] + "] does not match allowed pattern [" +
-				                           this.allowedResources + "]");
-			}
+			checkAllowedResource(resourceUrls[i]);
 			if (logger.isDebugEnabled()) {
 				logger.debug("Including resource [" + resourceUrls[i] + "]");
 			}
@@ -264,6 +385,326 @@ public class ResourceServlet extends HttpServletBean {
 		}
 	}
 
+	/**
+	 * Check whether the given URL matches the allowed resources.
+	 * @throws ServletException if not allowed
+	 */
+	private void checkAllowedResource(String resourceUrl) throws ServletException {
+		if (isInvalidPath(resourceUrl)) {
+			throw new ServletException("Resource [" + resourceUrl + "] contains relative path segments");
+		}
+		if (this.allowedResources != null && !this.allowedResources.matches(resourceUrl)) {
+			throw new ServletException("Resource [" + resourceUrl + "] does not match allowed pattern [" +
+			                           this.allowedResources + "]");
+		}
+	}
+
+	/**
+	 * Check whether the given URL contains ".." segments, which could
+	 * otherwise escape the allowed resources after matching the pattern.
+	 */
+	private boolean isInvalidPath(String resourceUrl) {
+		String[] segments = StringUtils.tokenizeToStringArray(resourceUrl, "/\\", false, false);
+		for (int i = 0; i < segments.length; i++) {
+			if ("..".equals(segments[i])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Write the content of the specified resource to the response,
+	 * answering conditional and range requests.
+	 * @param request current HTTP request
+	 * @param response current HTTP response
+	 * @param resourceUrl the URL of the target resource
+	 * @throws FileNotFoundException if the resource does not exist
+	 * @throws IOException if reading or writing failed
+	 */
+	private void serveResource(HttpServletRequest request, HttpServletResponse response, String resourceUrl)
+	    throws IOException {
+
+		ServletContextResource resource = new ServletContextResource(getServletContext(), resourceUrl);
+		File file = null;
+		try {
+			file = resource.getFile();
+		}
+		catch (IOException ex) {
+			// WAR not expanded -> read via ServletContext InputStream
+		}
+		if (file != null && !file.isFile()) {
+			throw new FileNotFoundException("Resource [" + resourceUrl + "] does not exist");
+		}
+
+		CachedResource cachedResource = getCachedResource(resourceUrl, resource, file);
+		long length = (cachedResource != null ? cachedResource.content.length : (file != null ? file.length() : -1));
+		String eTag = (cachedResource != null ? cachedResource.eTag :
+				(file != null ? generateETag(file.lastModified(), length, 0) : null));
+
+		String resourceContentType = this.contentType;
+		if (resourceContentType == null) {
+			resourceContentType = getServletContext().getMimeType(resourceUrl);
+		}
+		if (resourceContentType != null) {
+			response.setContentType(resourceContentType);
+		}
+
+		// determine gzipped variant, with its own ETag; byte ranges refer to the identity variant
+		byte[] gzippedContent = null;
+		if (cachedResource != null && isGzipContentType(resourceContentType)) {
+			response.setHeader("Vary", HEADER_ACCEPT_ENCODING);
+			String acceptEncoding = request.getHeader(HEADER_ACCEPT_ENCODING);
+			if (acceptEncoding != null && acceptEncoding.indexOf("gzip") != -1 &&
+					request.getHeader(HEADER_RANGE) == null) {
+				gzippedContent = cachedResource.getGzippedContent();
+				if (gzippedContent != null) {
+					eTag = cachedResource.gzipETag;
+				}
+			}
+		}
+
+		if (eTag != null) {
+			response.setHeader(WebUtils.ETAG_HEADER, eTag);
+			if (WebUtils.matchesETag(request, eTag)) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Resource [" + resourceUrl + "] not modified - ETag " + eTag);
+				}
+				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				return;
+			}
+		}
+
+		// determine requested byte range, if any
+		long[] range = null;
+		if (length >= 0 && eTag != null) {
+			response.setHeader("Accept-Ranges", BYTES_UNIT);
+			String ifRange = request.getHeader(HEADER_IF_RANGE);
+			if (ifRange == null || ifRange.equals(eTag)) {
+				String rangeHeader = request.getHeader(HEADER_RANGE);
+				if (rangeHeader != null) {
+					range = parseRange(rangeHeader, length);
+					if (range == null) {
+						response.setHeader("Content-Range", BYTES_UNIT + " */" + length);
+						response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+						return;
+					}
+					if (range.length == 0) {
+						// unsupported range format -> serve full content
+						range = null;
+					}
+				}
+			}
+		}
+
+		OutputStream out = response.getOutputStream();
+		if (range != null) {
+			long rangeLength = range[1] - range[0] + 1;
+			response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+			response.setHeader("Content-Range", BYTES_UNIT + " " + range[0] + "-" + range[1] + "/" + length);
+			setContentLength(response, rangeLength);
+			if (cachedResource != null) {
+				out.write(cachedResource.content, (int) range[0], (int) rangeLength);
+			}
+			else {
+				writeFile(file, range[0], rangeLength, out);
+			}
+		}
+		else if (gzippedContent != null) {
+			response.setHeader("Content-Encoding", "gzip");
+			response.setContentLength(gzippedContent.length);
+			out.write(gzippedContent);
+		}
+		else if (cachedResource != null) {
+			response.setContentLength(cachedResource.content.length);
+			out.write(cachedResource.content);
+		}
+		else if (file != null) {
+			setContentLength(response, length);
+			writeFile(file, 0, length, out);
+		}
+		else {
+			InputStream is = resource.getInputStream();
+			try {
+				FileCopyUtils.copy(is, out);
+			}
+			finally {
+				is.close();
+			}
+		}
+	}
+
+	/**
+	 * Return the cached content of the given resource, loading it into
+	 * the cache if necessary, or null if the resource should not be cached.
+	 * A cache entry is replaced if the file has been modified in the meantime.
+	 */
+	private CachedResource getCachedResource(String resourceUrl, ServletContextResource resource, File file)
+	    throws IOException {
+
+		if (this.resourceCache == null) {
+			return null;
+		}
+		long lastModified = -1;
+		if (file != null) {
+			if (file.length() > this.maxCachedFileSize) {
+				return null;
+			}
+			lastModified = file.lastModified();
+		}
+		CachedResource cachedResource = (CachedResource) this.resourceCache.get(resourceUrl);
+		if (cachedResource != null && cachedResource.lastModified == lastModified &&
+				(file == null || cachedResource.content.length == file.length())) {
+			return cachedResource;
+		}
+
+		InputStream is = (file != null ? new FileInputStream(file) : resource.getInputStream());
+		byte[] content = null;
+		try {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream(file != null ? (int) file.length() : STREAM_BUFFER_SIZE);
+			byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+			int bytesRead = -1;
+			while ((bytesRead = is.read(buffer)) != -1) {
+				bos.write(buffer, 0, bytesRead);
+				if (bos.size() > this.maxCachedFileSize) {
+					// not a file with known size, and too large to cache
+					return null;
+				}
+			}
+			content = bos.toByteArray();
+		}
+		finally {
+			is.close();
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Caching content of resource [" + resourceUrl + "] (" + content.length + " bytes)");
+		}
+		int hash = 0;
+		if (file == null) {
+			for (int i = 0; i < content.length; i++) {
+				hash = 31 * hash + content[i];
+			}
+		}
+		cachedResource = new CachedResource(content, lastModified, generateETag(lastModified, content.length, hash));
+		this.resourceCache.put(resourceUrl, cachedResource);
+		return cachedResource;
+	}
+
+	/**
+	 * Generate an ETag from the given file timestamp, length and content hash.
+	 */
+	private String generateETag(long lastModified, long length, int hash) {
+		StringBuffer eTag = new StringBuffer("\"");
+		eTag.append(Long.toHexString(lastModified)).append('-').append(Long.toHexString(length));
+		if (hash != 0) {
+			eTag.append('-').append(Integer.toHexString(hash));
+		}
+		return eTag.append('"').toString();
+	}
+
+	/**
+	 * Parse the given "Range" header value, supporting a single byte range.
+	 * @return the first and last byte position of the range, an empty array
+	 * for a range format that is not supported (like multiple ranges),
+	 * or null if the range cannot be satisfied
+	 */
+	private long[] parseRange(String rangeHeader, long length) {
+		if (!rangeHeader.startsWith(BYTES_UNIT + "=") || rangeHeader.indexOf(',') != -1) {
+			return new long[0];
+		}
+		String rangeSpec = rangeHeader.substring(BYTES_UNIT.length() + 1).trim();
+		int dash = rangeSpec.indexOf('-');
+		if (dash == -1) {
+			return new long[0];
+		}
+		try {
+			long start;
+			long end;
+			if (dash == 0) {
+				// suffix range: last n bytes
+				long suffixLength = Long.parseLong(rangeSpec.substring(1));
+				start = Math.max(0, length - suffixLength);
+				end = length - 1;
+				if (suffixLength == 0) {
+					return null;
+				}
+			}
+			else {
+				start = Long.parseLong(rangeSpec.substring(0, dash));
+				end = (dash < rangeSpec.length() - 1 ? Long.parseLong(rangeSpec.substring(dash + 1)) : length - 1);
+				end = Math.min(end, length - 1);
+			}
+			if (start > end || start >= length) {
+				return null;
+			}
+			return new long[] {start, end};
+		}
+		catch (NumberFormatException ex) {
+			return new long[0];
+		}
+	}
+
+	/**
+	 * Check whether the given content type should be served gzipped.
+	 */
+	private boolean isGzipContentType(String contentType) {
+		if (contentType == null || this.gzipContentTypes == null) {
+			return false;
+		}
+		for (int i = 0; i < this.gzipContentTypes.length; i++) {
+			if (contentType.startsWith(this.gzipContentTypes[i])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Set the Content-Length header, via a String value for resources
+	 * that exceed the int range of HttpServletResponse.setContentLength.
+	 */
+	private void setContentLength(HttpServletResponse response, long length) {
+		if (length <= Integer.MAX_VALUE) {
+			response.setContentLength((int) length);
+		}
+		else {
+			response.setHeader("Content-Length", Long.toString(length));
+		}
+	}
+
+	/**
+	 * Write the given range of the given file to the given OutputStream,
+	 * via FileChannel.transferTo on JDK 1.4+.
+	 */
+	private void writeFile(File file, long start, long length, OutputStream out) throws IOException {
+		if (JdkVersion.getMajorJavaVersion() >= JdkVersion.JAVA_14) {
+			Jdk14FileTransfer.transfer(file, start, length, out);
+			return;
+		}
+		InputStream is = new FileInputStream(file);
+		try {
+			long skipped = 0;
+			while (skipped < start) {
+				long n = is.skip(start - skipped);
+				if (n <= 0) {
+					throw new IOException("Could not skip to position " + start + " in file [" + file + "]");
+				}
+				skipped += n;
+			}
+			byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+			long remaining = length;
+			int bytesRead = -1;
+			while (remaining > 0 &&
+					(bytesRead = is.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+				out.write(buffer, 0, bytesRead);
+				remaining -= bytesRead;
+			}
+		}
+		finally {
+			is.close();
+		}
+	}
+
 	/**
 	 * Return the last-modified timestamp of the file that corresponds
 	 * to the target resource URL (i.e. typically the request ".jsp" file).
@@ -306,6 +747,9 @@ public class ResourceServlet extends HttpServletBean {
 	 * or -1 if not determinable
 	 */
 	protected long getFileTimestamp(String resourceUrl) {
+		if (isInvalidPath(resourceUrl)) {
+			return -1;
+		}
 		try {
 			File resource = new ServletContextResource(getServletContext(), resourceUrl).getFile();
 			long lastModifiedTime = resource.lastModified();
@@ -322,4 +766,76 @@ public class ResourceServlet extends HttpServletBean {
 		}
 	}
 
+	/**
+	 * Content of a resource held in memory, with its gzipped variant
+	 * computed on first demand.
+	 */
+	private static class CachedResource {
+
+		private final byte[] content;
+
+		private final long lastModified;
+
+		private final String eTag;
+
+		private final String gzipETag;
+
+		private byte[] gzippedContent;
+
+		private boolean gzipped = false;
+
+		private CachedResource(byte[] content, long lastModified, String eTag) {
+			this.content = content;
+			this.lastModified = lastModified;
+			this.eTag = eTag;
+			this.gzipETag = eTag.substring(0, eTag.length() - 1) + "-gz\"";
+		}
+
+		/**
+		 * Return the gzipped content, or null if compression
+		 * does not make the content any smaller.
+		 */
+		private synchronized byte[] getGzippedContent() throws IOException {
+			if (!this.gzipped) {
+				ByteArrayOutputStream bos = new ByteArrayOutputStream(this.content.length / 2 + 32);
+				GZIPOutputStream gzos = new GZIPOutputStream(bos);
+				gzos.write(this.content);
+				gzos.close();
+				if (bos.size() < this.content.length) {
+					this.gzippedContent = bos.toByteArray();
+				}
+				this.gzipped = true;
+			}
+			return this.gzippedContent;
+		}
+	}
+
+
+	/**
+	 * Actual file transfer via NIO channels.
+	 * In separate inner class to avoid runtime dependency on JDK 1.4.
+	 */
+	private static abstract class Jdk14FileTransfer {
+
+		private static void transfer(File file, long start, long length, OutputStream out) throws IOException {
+			FileInputStream fis = new FileInputStream(file);
+			try {
+				FileChannel fileChannel = fis.getChannel();
+				WritableByteChannel outChannel = Channels.newChannel(out);
+				long position = start;
+				long end = start + length;
+				while (position < end) {
+					long transferred = fileChannel.transferTo(position, end - position, outChannel);
+					if (transferred <= 0) {
+						throw new IOException("Could not transfer content of file [" + file + "]");
+					}
+					position += transferred;
+				}
+			}
+			finally {
+				fis.close();
+			}
+		}
+	}
+
 }
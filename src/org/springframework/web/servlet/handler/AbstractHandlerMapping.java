@@ -94,7 +94,17 @@ public abstract class AbstractHandlerMapping extends WebApplicationObjectSupport
 	 */
 	public final HandlerExecutionChain getHandler(HttpServletRequest request) throws Exception {
 		//根据request信息获取Handler
-		Object handler = getHandlerInternal(request);
+		return getHandlerExecutionChain(getHandlerInternal(request));
+	}
+
+	/**
+	 * Build the HandlerExecutionChain for the given handler, falling back
+	 * to the default handler if none is given.
+	 * @param handler the looked up handler instance or bean name, or null
+	 * @return the HandlerExecutionChain, or null if no handler available
+	 * @see #getHandler
+	 */
+	protected final HandlerExecutionChain getHandlerExecutionChain(Object handler) {
 		//没有找到，就使用默认的Handler
 		if (handler == null) {
 			handler = this.defaultHandler;
@@ -17,14 +17,14 @@
 package org.springframework.web.servlet.handler;
 
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
 
 import org.springframework.beans.BeansException;
 import org.springframework.context.ApplicationContextException;
-import org.springframework.util.PathMatcher;
+import org.springframework.web.servlet.CacheableHandlerMapping;
+import org.springframework.web.servlet.HandlerExecutionChain;
 import org.springframework.web.util.UrlPathHelper;
 
 /**
@@ -38,20 +38,46 @@ import org.springframework.web.util.UrlPathHelper;
  * "/test" directory, "/test/**" matches all paths below "/test".
  * For details, see the PathMatcher class.
  *
+ * <p>Pattern matches are resolved through a trie of path segments rather
+ * than by evaluating every registered pattern, with the most specific
+ * pattern winning if several match. Resolved lookup paths are cached,
+ * see the "lookupCacheLimit" property.
+ *
  * @author Juergen Hoeller
  * @since 16.04.2003
  * @see #setAlwaysUseFullPath
  * @see #setUrlDecode
+ * @see #setLookupCacheLimit
  * @see org.springframework.util.PathMatcher
  */
-public abstract class AbstractUrlHandlerMapping extends AbstractHandlerMapping {
+public abstract class AbstractUrlHandlerMapping extends AbstractHandlerMapping
+    implements CacheableHandlerMapping {
+
+	/**
+	 * Default maximum number of cached lookup paths.
+	 */
+	public static final int DEFAULT_LOOKUP_CACHE_LIMIT = 1024;
+
+	/**
+	 * Marker for cached lookup paths that did not match any pattern.
+	 */
+	private static final Object NO_MATCH = new Object();
+
 
 	private UrlPathHelper urlPathHelper = new UrlPathHelper();
 
 	private boolean lazyInitHandlers = false;
 
+	private int lookupCacheLimit = DEFAULT_LOOKUP_CACHE_LIMIT;
+
+	private boolean cacheable = false;
+
 	private final Map handlerMap = new HashMap();
 
+	private final PathPatternTrie patternTrie = new PathPatternTrie();
+
+	private final Map lookupCache = new HashMap();
+
 
 	/**
 	 * Set if URL lookup should always use full path within current servlet
@@ -103,16 +129,82 @@ public abstract class AbstractUrlHandlerMapping extends AbstractHandlerMapping {
 		this.lazyInitHandlers = lazyInitHandlers;
 	}
 
+	/**
+	 * Set the maximum number of lookup paths for which the result of
+	 * pattern matching gets cached. Default is 1024; 0 turns caching off.
+	 * <p>As lookup paths come from client requests, the cache gets cleared
+	 * when it reaches this limit, to avoid unbounded growth.
+	 */
+	public void setLookupCacheLimit(int lookupCacheLimit) {
+		this.lookupCacheLimit = lookupCacheLimit;
+	}
+
+	/**
+	 * Set whether DispatcherServlet may cache the handlers returned by this
+	 * mapping per lookup path. Default is false.
+	 * <p>Only turn this on if all mapped handlers are singletons and subclasses
+	 * do not take other request state than the lookup path into account.
+	 * Subclasses that override <code>getHandlerInternal(HttpServletRequest)</code>
+	 * must not enable caching, as cached resolution bypasses that method:
+	 * Override <code>getHandlerInternal(HttpServletRequest, String)</code> instead.
+	 * @see org.springframework.web.servlet.DispatcherServlet#setHandlerCacheLimit
+	 * @see #getHandlerInternal(HttpServletRequest, String)
+	 */
+	public void setCacheable(boolean cacheable) {
+		this.cacheable = cacheable;
+	}
+
+
+	/**
+	 * Return the lookup path for the given request as cache key,
+	 * if the "cacheable" flag is set.
+	 * @see #setCacheable
+	 */
+	public Object getHandlerCacheKey(HttpServletRequest request) {
+		if (!this.cacheable) {
+			return null;
+		}
+		return this.urlPathHelper.getLookupPathForRequest(request);
+	}
+
+	/**
+	 * Look up a handler for the lookup path that has been returned
+	 * as cache key, without determining it again.
+	 * @see #getHandlerCacheKey
+	 * @see #getHandlerInternal(HttpServletRequest, String)
+	 */
+	public HandlerExecutionChain getHandler(HttpServletRequest request, Object cacheKey) throws Exception {
+		return getHandlerExecutionChain(getHandlerInternal(request, (String) cacheKey));
+	}
 
 	/**
 	 * Look up a handler for the URL path of the given request.
 	 * @param request current HTTP request
 	 * @return the looked up handler instance, or null
+	 * @see #getHandlerInternal(HttpServletRequest, String)
 	 * 根据request信息查找Handler
 	 */
 	protected Object getHandlerInternal(HttpServletRequest request) throws Exception {
 		//截取用于匹配的url的有路径
 		String lookupPath = this.urlPathHelper.getLookupPathForRequest(request);
+		return getHandlerInternal(request, lookupPath);
+	}
+
+	/**
+	 * Look up a handler for the given request and its lookup path.
+	 * Called for uncached as well as for cached handler resolution:
+	 * Subclasses of a cacheable mapping should override this method
+	 * rather than <code>getHandlerInternal(HttpServletRequest)</code>
+	 * to customize the resolution.
+	 * <p>Default implementation delegates to <code>lookupHandler</code>.
+	 * @param request current HTTP request
+	 * @param lookupPath the lookup path for the request
+	 * @return the looked up handler instance, or null
+	 * @throws Exception if there is an internal error
+	 * @see #setCacheable
+	 * @see #lookupHandler
+	 */
+	protected Object getHandlerInternal(HttpServletRequest request, String lookupPath) throws Exception {
 		if (logger.isDebugEnabled()) {
 			logger.debug("Looking up handler for [" + lookupPath + "]");
 		}
@@ -125,6 +217,8 @@ public abstract class AbstractUrlHandlerMapping extends AbstractHandlerMapping {
 	 * <p>Supports direct matches, e.g. a registered "/test" matches "/test",
 	 * and various Ant-style pattern matches, e.g. a registered "/t*" matches
 	 * both "/test" and "/team". For details, see the PathMatcher class.
+	 * <p>If several patterns match, the most specific one wins: the one with
+	 * the fewest "**" segments, then the fewest wildcards, then the longest.
 	 * @param urlPath URL the bean is mapped to
 	 * @return the associated handler instance, or null if not found
 	 * @see org.springframework.util.PathMatcher
@@ -135,13 +229,27 @@ public abstract class AbstractUrlHandlerMapping extends AbstractHandlerMapping {
 		//handlerMap缓存中查找
 		Object handler = this.handlerMap.get(urlPath);
 		//缓存中不存在
-		if (handler == null) {
+		if (handler == null && this.patternTrie.size() > 0) {
 			// pattern match?
-			for (Iterator it = this.handlerMap.keySet().iterator(); it.hasNext();) {
-				String registeredPath = (String) it.next();
-				//和handlerMap中的进行对比匹配
-				if (PathMatcher.match(registeredPath, urlPath)) {
-					handler = this.handlerMap.get(registeredPath);
+			if (this.lookupCacheLimit > 0) {
+				synchronized (this.lookupCache) {
+					handler = this.lookupCache.get(urlPath);
+				}
+				if (handler != null) {
+					return (handler != NO_MATCH ? handler : null);
+				}
+			}
+			//在路径模式树中查找最精确的匹配
+			PathPatternTrie.Match match = this.patternTrie.findBestMatch(urlPath);
+			if (match != null) {
+				handler = match.getValue();
+			}
+			if (this.lookupCacheLimit > 0) {
+				synchronized (this.lookupCache) {
+					if (this.lookupCache.size() >= this.lookupCacheLimit) {
+						this.lookupCache.clear();
+					}
+					this.lookupCache.put(urlPath, (handler != null ? handler : NO_MATCH));
 				}
 			}
 		}
@@ -174,6 +282,10 @@ public abstract class AbstractUrlHandlerMapping extends AbstractHandlerMapping {
 		}
 		else {
 			this.handlerMap.put(urlPath, handler);
+			this.patternTrie.addPattern(urlPath, handler);
+			synchronized (this.lookupCache) {
+				this.lookupCache.clear();
+			}
 			if (logger.isInfoEnabled()) {
 				logger.info("Mapped URL path [" + urlPath + "] onto handler [" + handler + "]");
 			}
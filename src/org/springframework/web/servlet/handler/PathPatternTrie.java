@@ -0,0 +1,267 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.servlet.handler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.util.CompiledPathPattern;
+import org.springframework.util.PathMatcher;
+
+/**
+ * Trie of Ant-style path patterns, as used by AbstractUrlHandlerMapping
+ * to resolve a handler for a URL path without evaluating every registered
+ * pattern. Each node represents one path segment: a literal segment,
+ * a segment pattern containing '*' or '?', or a "**" directory wildcard.
+ *
+ * <p>Matching walks the path segment by segment, following literal
+ * children via hash lookup and only evaluating the segment patterns
+ * registered at the current node. The semantics are the same as
+ * PathMatcher's; if several patterns match, the most specific one wins:
+ * fewer "**" segments, then fewer wildcard characters, then the longer
+ * pattern.
+ *
+ * <p>Not thread-safe for registration; lookups are safe once all
+ * patterns have been added.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see org.springframework.util.PathMatcher
+ * @see AbstractUrlHandlerMapping#lookupHandler
+ */
+class PathPatternTrie {
+
+	private static final String DIRECTORY_WILDCARD = "**";
+
+	private final Node absoluteRoot = new Node(null);
+
+	private final Node relativeRoot = new Node(null);
+
+	private int size = 0;
+
+
+	/**
+	 * Add the given pattern with its associated value to this trie.
+	 * @param pattern the Ant-style path pattern
+	 * @param value the value to return for paths matching the pattern
+	 */
+	public void addPattern(String pattern, Object value) {
+		Node node = (pattern.startsWith("/") ? this.absoluteRoot : this.relativeRoot);
+		String[] segments = tokenizePath(pattern);
+		for (int i = 0; i < segments.length; i++) {
+			String segment = segments[i];
+			if (DIRECTORY_WILDCARD.equals(segment)) {
+				// "**/**" is equivalent to a single "**"
+				if (DIRECTORY_WILDCARD.equals(node.segment)) {
+					continue;
+				}
+				if (node.directoryWildcardChild == null) {
+					node.directoryWildcardChild = new Node(segment);
+				}
+				node = node.directoryWildcardChild;
+			}
+			else if (PathMatcher.isPattern(segment)) {
+				Node child = null;
+				for (int j = 0; j < node.patternChildren.size() && child == null; j++) {
+					Node candidate = (Node) node.patternChildren.get(j);
+					if (candidate.segment.equals(segment)) {
+						child = candidate;
+					}
+				}
+				if (child == null) {
+					child = new Node(segment);
+					child.segmentPattern = new CompiledPathPattern(segment);
+					node.patternChildren.add(child);
+				}
+				node = child;
+			}
+			else {
+				Node child = (Node) node.literalChildren.get(segment);
+				if (child == null) {
+					child = new Node(segment);
+					node.literalChildren.put(segment, child);
+				}
+				node = child;
+			}
+		}
+		if (node.match == null) {
+			this.size++;
+		}
+		node.match = new Match(pattern, value);
+	}
+
+	/**
+	 * Return the number of patterns in this trie.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Find the most specific pattern matching the given path.
+	 * @param path the path to match
+	 * @return the Match holding the pattern and its value,
+	 * or null if no pattern matches
+	 */
+	public Match findBestMatch(String path) {
+		Node root = (path.startsWith("/") ? this.absoluteRoot : this.relativeRoot);
+		List matches = new ArrayList(4);
+		collectMatches(root, tokenizePath(path), 0, matches);
+		Match bestMatch = null;
+		for (int i = 0; i < matches.size(); i++) {
+			Match match = (Match) matches.get(i);
+			if (bestMatch == null || match.isMoreSpecificThan(bestMatch)) {
+				bestMatch = match;
+			}
+		}
+		return bestMatch;
+	}
+
+	private void collectMatches(Node node, String[] segments, int index, List matches) {
+		if (index == segments.length) {
+			if (node.match != null) {
+				matches.add(node.match);
+			}
+			// a trailing "**" matches zero directories
+			if (node.directoryWildcardChild != null) {
+				collectMatches(node.directoryWildcardChild, segments, index, matches);
+			}
+			return;
+		}
+		String segment = segments[index];
+		Node literalChild = (Node) node.literalChildren.get(segment);
+		if (literalChild != null) {
+			collectMatches(literalChild, segments, index + 1, matches);
+		}
+		for (int i = 0; i < node.patternChildren.size(); i++) {
+			Node patternChild = (Node) node.patternChildren.get(i);
+			if (patternChild.segmentPattern.matches(segment)) {
+				collectMatches(patternChild, segments, index + 1, matches);
+			}
+		}
+		if (node.directoryWildcardChild != null) {
+			// "**" consumes zero or more directories
+			for (int i = index; i <= segments.length; i++) {
+				collectMatches(node.directoryWildcardChild, segments, i, matches);
+			}
+		}
+	}
+
+	/**
+	 * Break up the given path into its non-empty segments,
+	 * analogous to PathMatcher's tokenization.
+	 */
+	private static String[] tokenizePath(String path) {
+		List segments = new ArrayList();
+		int start = 0;
+		int length = path.length();
+		while (start < length) {
+			int end = path.indexOf('/', start);
+			if (end == -1) {
+				end = length;
+			}
+			if (end > start) {
+				segments.add(path.substring(start, end));
+			}
+			start = end + 1;
+		}
+		return (String[]) segments.toArray(new String[segments.size()]);
+	}
+
+
+	/**
+	 * A registered pattern together with its value.
+	 */
+	public static class Match {
+
+		private final String pattern;
+
+		private final Object value;
+
+		private final int directoryWildcards;
+
+		private final int wildcardChars;
+
+		private Match(String pattern, Object value) {
+			this.pattern = pattern;
+			this.value = value;
+			int directoryWildcards = 0;
+			String[] segments = tokenizePath(pattern);
+			for (int i = 0; i < segments.length; i++) {
+				if (DIRECTORY_WILDCARD.equals(segments[i])) {
+					directoryWildcards++;
+				}
+			}
+			int wildcardChars = 0;
+			for (int i = 0; i < pattern.length(); i++) {
+				char ch = pattern.charAt(i);
+				if (ch == '*' || ch == '?') {
+					wildcardChars++;
+				}
+			}
+			this.directoryWildcards = directoryWildcards;
+			this.wildcardChars = wildcardChars;
+		}
+
+		public String getPattern() {
+			return pattern;
+		}
+
+		public Object getValue() {
+			return value;
+		}
+
+		private boolean isMoreSpecificThan(Match other) {
+			if (this.directoryWildcards != other.directoryWildcards) {
+				return (this.directoryWildcards < other.directoryWildcards);
+			}
+			if (this.wildcardChars != other.wildcardChars) {
+				return (this.wildcardChars < other.wildcardChars);
+			}
+			if (this.pattern.length() != other.pattern.length()) {
+				return (this.pattern.length() > other.pattern.length());
+			}
+			return (this.pattern.compareTo(other.pattern) < 0);
+		}
+	}
+
+
+	/**
+	 * Trie node for a single path segment.
+	 */
+	private static class Node {
+
+		private final String segment;
+
+		private CompiledPathPattern segmentPattern;
+
+		private final Map literalChildren = new HashMap();
+
+		private final List patternChildren = new ArrayList();
+
+		private Node directoryWildcardChild;
+
+		private Match match;
+
+		private Node(String segment) {
+			this.segment = segment;
+		}
+	}
+
+}
@@ -19,6 +19,7 @@ package org.springframework.web.servlet.mvc;
 import javax.servlet.http.HttpServletRequest;
 
 import org.springframework.validation.BindException;
+import org.springframework.validation.BindingPlan;
 import org.springframework.validation.MessageCodesResolver;
 import org.springframework.validation.ValidationUtils;
 import org.springframework.validation.Validator;
@@ -137,6 +138,8 @@ public abstract class BaseCommandController extends AbstractController {
 
 	private MessageCodesResolver messageCodesResolver;
 
+	private BindingPlan bindingPlan;
+
 
 	/**
 	 * Set the name of the command in the model.
@@ -156,9 +159,13 @@ public abstract class BaseCommandController extends AbstractController {
 	/**
 	 * Set the command class for this controller.
 	 * An instance of this class gets populated and validated on each request.
+	 * <p>Also creates the BindingPlan for the command class right away, so that
+	 * it can be shared by all requests without further synchronization.
+	 * @see #getBindingPlan
 	 */
 	public final void setCommandClass(Class commandClass) {
 		this.commandClass = commandClass;
+		this.bindingPlan = (commandClass != null ? new BindingPlan(commandClass) : null);
 	}
 
 	/**
@@ -308,6 +315,8 @@ public abstract class BaseCommandController extends AbstractController {
 	 * ServletRequestDataBinder subclasses.
 	 * <p>Default implementation creates a standard ServletRequestDataBinder,
 	 * sets the specified MessageCodesResolver (if any), and invokes initBinder.
+	 * Finally, it applies the BindingPlan for the command class, if any,
+	 * to reuse binding information across requests.
 	 * Note that initBinder will not be invoked if you override this method!
 	 * @param request current HTTP request
 	 * @param command the command to bind onto
@@ -324,9 +333,26 @@ public abstract class BaseCommandController extends AbstractController {
 			binder.setMessageCodesResolver(this.messageCodesResolver);
 		}
 		initBinder(request, binder);
+		if (this.bindingPlan != null) {
+			binder.setBindingPlan(this.bindingPlan);
+		}
 		return binder;
 	}
 
+	/**
+	 * Return the BindingPlan for the command class, if any.
+	 * Can be applied by custom createBinder implementations.
+	 * <p>The plan allows all fields; binders with specific allowed fields
+	 * will just reuse its property types, and match the allowed field
+	 * patterns themselves. It is ignored for command objects that are
+	 * not exactly of the command class.
+	 * @see #setCommandClass
+	 * @see org.springframework.validation.DataBinder#setBindingPlan
+	 */
+	protected final BindingPlan getBindingPlan() {
+		return this.bindingPlan;
+	}
+
 	/**
 	 * Initialize the given binder instance, for example with custom editors.
 	 * Called by createBinder.
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.servlet.mvc;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Supports ETag-based conditional GET requests, as a finer-grained
+ * alternative to LastModified: for example, for content that changes
+ * several times per second, or that is assembled from multiple sources.
+ *
+ * <p>Evaluated by SimpleControllerHandlerAdapter for GET and HEAD requests:
+ * If the client sends a matching "If-None-Match" header, the adapter answers
+ * with "304 Not Modified" without invoking the controller, so no view gets
+ * rendered. Else, the ETag is sent along with the regular response.
+ * Any controller within Spring's default MVC framework can implement this.
+ *
+ * <p>The ETag should be cheap to compute, typically from a version number
+ * or modification counter of the underlying data ("deep ETag"). For
+ * ETags calculated from the rendered content, see ShallowEtagHeaderFilter.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see SimpleControllerHandlerAdapter
+ * @see LastModified
+ * @see org.springframework.web.filter.ShallowEtagHeaderFilter
+ */
+public interface EntityTag {
+
+	/**
+	 * Return the ETag of the current representation of the requested resource.
+	 * Invoked <b>before</b> request processing.
+	 * <p>The value may be given with or without surrounding quotes; unquoted
+	 * values will be quoted. A "W/" prefix marks a weak ETag.
+	 * @param request current HTTP request
+	 * @return the ETag, or null meaning that the content must always be
+	 * regenerated
+	 */
+	String getEntityTag(HttpServletRequest request);
+
+}
@@ -21,10 +21,14 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.web.servlet.HandlerAdapter;
 import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.util.WebUtils;
 
 /**
  * Adapter to use the Controller workflow interface with the generic DispatcherServlet.
- * Supports controllers that implement the LastModified interface.
+ * Supports controllers that implement the LastModified interface,
+ * and controllers that implement the EntityTag interface: For the latter,
+ * GET requests with a matching "If-None-Match" header get answered with
+ * "304 Not Modified", without invoking the controller.
  *
  * <p>This is an SPI class, not used directly by application code.
  *
@@ -32,6 +36,7 @@ import org.springframework.web.servlet.ModelAndView;
  * @see org.springframework.web.servlet.DispatcherServlet
  * @see Controller
  * @see LastModified
+ * @see EntityTag
  */
 public class SimpleControllerHandlerAdapter implements HandlerAdapter {
 	
@@ -52,8 +57,38 @@ public class SimpleControllerHandlerAdapter implements HandlerAdapter {
 	 */
 	public ModelAndView handle(HttpServletRequest request, HttpServletResponse response, Object handler)
 			throws Exception {
+		if (handler instanceof EntityTag && isConditionalMethod(request)) {
+			String eTag = getEntityTag(request, (EntityTag) handler);
+			if (eTag != null) {
+				response.setHeader(WebUtils.ETAG_HEADER, eTag);
+				if (WebUtils.matchesETag(request, eTag)) {
+					response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+					return null;
+				}
+			}
+		}
 		return ((Controller) handler).handleRequest(request, response);
 	}
+
+	private boolean isConditionalMethod(HttpServletRequest request) {
+		String method = request.getMethod();
+		return ("GET".equals(method) || "HEAD".equals(method));
+	}
+
+	/**
+	 * Determine the ETag of the given handler, quoting it if necessary.
+	 * The "W/" prefix of a weak tag stays outside of the quotes.
+	 */
+	private String getEntityTag(HttpServletRequest request, EntityTag handler) {
+		String eTag = handler.getEntityTag(request);
+		if (eTag == null || eTag.startsWith("\"") || eTag.startsWith("W/\"")) {
+			return eTag;
+		}
+		if (eTag.startsWith("W/")) {
+			return "W/\"" + eTag.substring(2) + "\"";
+		}
+		return "\"" + eTag + "\"";
+	}
 	
 	public long getLastModified(HttpServletRequest request, Object handler) {
 		if (handler instanceof LastModified) {
@@ -18,9 +18,8 @@ package org.springframework.web.servlet.mvc.multiaction;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
+import java.lang.reflect.Modifier;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import javax.servlet.ServletException;
@@ -29,10 +28,13 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 
+import net.sf.cglib.reflect.FastClass;
+import net.sf.cglib.reflect.FastMethod;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import org.springframework.context.ApplicationContextException;
+import org.springframework.validation.BindingPlan;
 import org.springframework.web.bind.ServletRequestDataBinder;
 import org.springframework.web.servlet.ModelAndView;
 import org.springframework.web.servlet.mvc.AbstractController;
@@ -84,6 +86,12 @@ import org.springframework.web.servlet.support.SessionRequiredException;
  *
  * <p>Note that method overloading isn't allowed.
  *
+ * <p>The signature of each handler method is analyzed once, when the delegate
+ * is set. If CGLIB2 is available, handler, last-modified and exception handler
+ * methods are invoked via generated CGLIB FastClass dispatchers rather than
+ * via reflection.
+ * The exception handler resolved for a given exception class is cached.
+ *
  * @author Rod Johnson
  * @author Juergen Hoeller
  * @see MethodNameResolver
@@ -107,6 +115,18 @@ public class MultiActionController extends AbstractController implements LastMod
 	 */
 	protected static final Log pageNotFoundLogger = LogFactory.getLog(PAGE_NOT_FOUND_LOG_CATEGORY);
 
+	private static boolean cglibAvailable;
+
+	static {
+		try {
+			Class.forName("net.sf.cglib.reflect.FastClass");
+			cglibAvailable = true;
+		}
+		catch (ClassNotFoundException ex) {
+			cglibAvailable = false;
+		}
+	}
+
 
 	//---------------------------------------------------------------------
 	// Instance data
@@ -121,15 +141,24 @@ public class MultiActionController extends AbstractController implements LastMod
 	/** Object we'll invoke methods on. Defaults to this. */
 	private Object delegate;
 
-	/** Methods, keyed by name */
+	/** HandlerMethods, keyed by name */
 	private Map methodHash;
 	
-	/** LastModified methods, keyed by handler method name (without LAST_MODIFIED_SUFFIX) */
+	/** LastModified MethodInvokers, keyed by handler method name (without LAST_MODIFIED_SUFFIX) */
 	private Map lastModifiedMethodHash;
 	
 	/** Methods, keyed by exception class */
 	private Map exceptionHandlerHash;
 
+	/** MethodInvokers for exception handlers, keyed by Method */
+	private Map exceptionHandlerInvokerHash;
+
+	/** Resolved exception handler Methods, keyed by thrown exception class */
+	private final Map exceptionHandlerCache = new HashMap();
+
+	/** BindingPlans, keyed by command class */
+	private final Map bindingPlanCache = new HashMap();
+
 
 	//---------------------------------------------------------------------
 	// Constructors
@@ -194,6 +223,7 @@ public class MultiActionController extends AbstractController implements LastMod
 		this.delegate = delegate;
 		this.methodHash = new HashMap();
 		this.lastModifiedMethodHash = new HashMap();
+		Object fastClass = createFastClass(delegate.getClass());
 		
 		// Look at all methods in the subclass, trying to find
 		// methods that are validators according to our criteria
@@ -212,14 +242,16 @@ public class MultiActionController extends AbstractController implements LastMod
 					if (logger.isInfoEnabled()) {
 						logger.info("Found action method [" + methods[i] + "]");
 					}
-					this.methodHash.put(methods[i].getName(), methods[i]);
+					this.methodHash.put(methods[i].getName(),
+							new HandlerMethod(methods[i], createMethodInvoker(fastClass, methods[i])));
 					
 					// look for corresponding LastModified method
 					try {
 						Method lastModifiedMethod = delegate.getClass().getMethod(methods[i].getName() + LAST_MODIFIED_METHOD_SUFFIX,
 																																			new Class[] { HttpServletRequest.class } );
 						// put in cache, keyed by handler method name
-						this.lastModifiedMethodHash.put(methods[i].getName(), lastModifiedMethod);
+						this.lastModifiedMethodHash.put(methods[i].getName(),
+								createMethodInvoker(fastClass, lastModifiedMethod));
 						if (logger.isInfoEnabled()) {
 							logger.info("Found last modified method for action method [" + methods[i] + "]");
 						}
@@ -239,6 +271,10 @@ public class MultiActionController extends AbstractController implements LastMod
 		
 		// now look for exception handlers
 		this.exceptionHandlerHash = new HashMap();
+		this.exceptionHandlerInvokerHash = new HashMap();
+		synchronized (this.exceptionHandlerCache) {
+			this.exceptionHandlerCache.clear();
+		}
 		for (int i = 0; i < methods.length; i++) {
 			if (methods[i].getReturnType().equals(ModelAndView.class) &&
 					methods[i].getParameterTypes().length == 3) {
@@ -249,6 +285,7 @@ public class MultiActionController extends AbstractController implements LastMod
 				) {
 					// Have an exception handler
 					this.exceptionHandlerHash.put(params[2], methods[i]);
+					this.exceptionHandlerInvokerHash.put(methods[i], createMethodInvoker(fastClass, methods[i]));
 					if (logger.isInfoEnabled()) {
 						logger.info("Found exception handler method [" + methods[i] + "]");
 					}
@@ -256,6 +293,38 @@ public class MultiActionController extends AbstractController implements LastMod
 			}
 		}
 	}
+
+	/**
+	 * Create a CGLIB FastClass for the given delegate class, if CGLIB2 is available.
+	 * @return the FastClass, or null if not available
+	 */
+	private Object createFastClass(Class delegateClass) {
+		if (cglibAvailable) {
+			try {
+				return FastClassFactory.createFastClass(delegateClass);
+			}
+			catch (Throwable ex) {
+				logger.info("Could not generate FastClass for [" + delegateClass.getName() +
+				    "] - invoking handler methods via reflection", ex);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Create a MethodInvoker for the given method, using the given FastClass if any.
+	 */
+	private MethodInvoker createMethodInvoker(Object fastClass, Method method) {
+		if (fastClass != null) {
+			try {
+				return FastClassFactory.createMethodInvoker(fastClass, method);
+			}
+			catch (Throwable ex) {
+				logger.info("Could not resolve FastMethod for [" + method + "] - invoking it via reflection", ex);
+			}
+		}
+		return new ReflectiveMethodInvoker(method);
+	}
 	
 	
 	//---------------------------------------------------------------------
@@ -270,7 +339,7 @@ public class MultiActionController extends AbstractController implements LastMod
 	public final long getLastModified(HttpServletRequest request) {
 		try {
 			String handlerMethodName = this.methodNameResolver.getHandlerMethodName(request);
-			Method lastModifiedMethod = (Method) this.lastModifiedMethodHash.get(handlerMethodName);
+			MethodInvoker lastModifiedMethod = (MethodInvoker) this.lastModifiedMethodHash.get(handlerMethodName);
 			if (lastModifiedMethod != null) {
 				try {
 					// invoke the last-modified method
@@ -320,36 +389,35 @@ public class MultiActionController extends AbstractController implements LastMod
 	protected final ModelAndView invokeNamedMethod(String method, HttpServletRequest request,
 	                                               HttpServletResponse response) throws Exception {
 		
-		Method m = (Method) this.methodHash.get(method);
-		if (m == null) {
+		HandlerMethod handlerMethod = (HandlerMethod) this.methodHash.get(method);
+		if (handlerMethod == null) {
 			throw new NoSuchRequestHandlingMethodException(method, getClass());
 		}
 
 		try {
-			// A real generic Collection! Parameters to method.
-			List params = new ArrayList(4);
-			params.add(request);
-			params.add(response);
-				
-			if (m.getParameterTypes().length >= 3 && m.getParameterTypes()[2].equals(HttpSession.class) ){
+			// Parameters to method, in the order determined when analyzing the signature.
+			Object[] params = new Object[handlerMethod.parameterCount];
+			params[0] = request;
+			params[1] = response;
+
+			if (handlerMethod.sessionRequired) {
 				HttpSession session = request.getSession(false);
 				if (session == null) {
 					return handleException(
 							request, response,
 							new SessionRequiredException("Pre-existing session required for handler method '" + method + "'"));
 				}
-				params.add(session);
+				params[2] = session;
 			}
 			
 			// If last parameter isn't of HttpSession type, it's a command.
-			if (m.getParameterTypes().length >= 3 &&
-					!m.getParameterTypes()[m.getParameterTypes().length - 1].equals(HttpSession.class)) {
-				Object command = newCommandObject(m.getParameterTypes()[m.getParameterTypes().length - 1]);
-				params.add(command);
+			if (handlerMethod.commandClass != null) {
+				Object command = newCommandObject(handlerMethod.commandClass);
+				params[params.length - 1] = command;
 				bind(request, command);
 			}
 			
-			return (ModelAndView) m.invoke(this.delegate, params.toArray(new Object[params.size()]));
+			return (ModelAndView) handlerMethod.invoker.invoke(this.delegate, params);
 		}
 		catch (InvocationTargetException ex) {
 			// This is what we're looking for: the handler method threw an exception
@@ -404,24 +472,52 @@ public class MultiActionController extends AbstractController implements LastMod
 	}
 	
 	/**
-	 * Bind request parameters onto the given command bean
+	 * Bind request parameters onto the given command bean,
+	 * reusing a BindingPlan per command class.
 	 * @param request request from which parameters will be bound
 	 * @param command command object, that must be a JavaBean
 	 */
 	protected void bind(ServletRequest request, Object command) throws ServletException {
 		logger.debug("Binding request parameters onto command");
 		ServletRequestDataBinder binder = new ServletRequestDataBinder(command, "command");
+		synchronized (this.bindingPlanCache) {
+			BindingPlan plan = (BindingPlan) this.bindingPlanCache.get(command.getClass());
+			if (plan == null) {
+				plan = new BindingPlan(command.getClass());
+				this.bindingPlanCache.put(command.getClass(), plan);
+			}
+			binder.setBindingPlan(plan);
+		}
 		binder.bind(request);
 		binder.closeNoCatch();
 	}
 	
 	/**
 	 * Can return null if not found.
+	 * <p>The handler resolved for a given exception class is cached,
+	 * so the exception hierarchy only needs to be searched once.
 	 * @return a handler for the given exception type
 	 * @param exception Won't be a ServletException or IOException
 	 */
 	protected Method getExceptionHandler(Throwable exception) {
 		Class exceptionClass = exception.getClass();
+		synchronized (this.exceptionHandlerCache) {
+			if (this.exceptionHandlerCache.containsKey(exceptionClass)) {
+				return (Method) this.exceptionHandlerCache.get(exceptionClass);
+			}
+		}
+		Method handler = findExceptionHandler(exceptionClass);
+		synchronized (this.exceptionHandlerCache) {
+			this.exceptionHandlerCache.put(exceptionClass, handler);
+		}
+		return handler;
+	}
+
+	/**
+	 * Search the exception hierarchy for a handler for the given exception class.
+	 * @return the handler, or null if none found
+	 */
+	private Method findExceptionHandler(Class exceptionClass) {
 		if (logger.isInfoEnabled()) {
 			logger.info("Trying to find handler for exception class [" + exceptionClass.getName() + "]");
 		}
@@ -451,7 +547,12 @@ public class MultiActionController extends AbstractController implements LastMod
 			logger.info("Invoking exception handler [" + handler + "] for exception [" + ex + "]");
 		}
 		try {
-			ModelAndView mv = (ModelAndView) handler.invoke(this.delegate, new Object[] {request, response, ex});
+			MethodInvoker invoker = (MethodInvoker) this.exceptionHandlerInvokerHash.get(handler);
+			if (invoker == null) {
+				// custom handler returned by an overridden getExceptionHandler
+				invoker = new ReflectiveMethodInvoker(handler);
+			}
+			ModelAndView mv = (ModelAndView) invoker.invoke(this.delegate, new Object[] {request, response, ex});
 			return mv;
 		}
 		catch (InvocationTargetException ex2) {
@@ -466,5 +567,83 @@ public class MultiActionController extends AbstractController implements LastMod
 			throw new ServletException("Unknown Throwable type encountered", targetEx);
 		}
 	}
+
+
+	/**
+	 * Strategy for invoking a handler, last-modified or exception handler method.
+	 */
+	private interface MethodInvoker {
+
+		Object invoke(Object target, Object[] args) throws Exception;
+	}
+
+
+	/**
+	 * MethodInvoker that uses plain reflection. Makes public methods of
+	 * non-public classes accessible, as the FastClass-based invoker can
+	 * invoke those as well.
+	 */
+	private static class ReflectiveMethodInvoker implements MethodInvoker {
+
+		private final Method method;
+
+		private ReflectiveMethodInvoker(Method method) {
+			if (!Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+				method.setAccessible(true);
+			}
+			this.method = method;
+		}
+
+		public Object invoke(Object target, Object[] args) throws Exception {
+			return this.method.invoke(target, args);
+		}
+	}
+
+
+	/**
+	 * Handler method signature analyzed once when setting the delegate,
+	 * to avoid introspecting the parameter types on each request.
+	 */
+	private static class HandlerMethod {
+
+		private final MethodInvoker invoker;
+
+		private final int parameterCount;
+
+		private final boolean sessionRequired;
+
+		private final Class commandClass;
+
+		private HandlerMethod(Method method, MethodInvoker invoker) {
+			this.invoker = invoker;
+			Class[] params = method.getParameterTypes();
+			this.parameterCount = params.length;
+			this.sessionRequired = (params.length >= 3 && params[2].equals(HttpSession.class));
+			// If last parameter isn't of HttpSession type, it's a command.
+			this.commandClass = (params.length >= 3 && !params[params.length - 1].equals(HttpSession.class) ?
+					params[params.length - 1] : null);
+		}
+	}
+
+
+	/**
+	 * Actual creation of CGLIB FastClass dispatchers, in an inner class
+	 * to avoid a hard dependency on CGLIB2.
+	 */
+	private static abstract class FastClassFactory {
+
+		private static Object createFastClass(Class delegateClass) {
+			return FastClass.create(delegateClass);
+		}
+
+		private static MethodInvoker createMethodInvoker(Object fastClass, Method method) {
+			final FastMethod fastMethod = ((FastClass) fastClass).getMethod(method);
+			return new MethodInvoker() {
+				public Object invoke(Object target, Object[] args) throws Exception {
+					return fastMethod.invoke(target, args);
+				}
+			};
+		}
+	}
 	
 }
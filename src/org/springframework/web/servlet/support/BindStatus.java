@@ -40,6 +40,9 @@ import org.springframework.web.util.HtmlUtils;
  * error codes and messages. For simplicity's sake and to be able to use the same
  * tags and macros, the same status class is used for both scenarios.
  *
+ * <p>Error messages are resolved lazily, on first access, as many views just
+ * check for errors or render error codes.
+ *
  * @author Rod Johnson
  * @author Juergen Hoeller
  * @author Darren Davison
@@ -48,6 +51,8 @@ import org.springframework.web.util.HtmlUtils;
  */
 public class BindStatus {
 
+	private static final String[] EMPTY_STRING_ARRAY = new String[0];
+
 	protected final Log logger = LogFactory.getLog(getClass());
 
 	private final RequestContext requestContext;
@@ -62,7 +67,10 @@ public class BindStatus {
 
 	private final String[] errorCodes;
 
-	private final String[] errorMessages;
+	/** ObjectErrors to resolve messages for, if not resolved yet */
+	private List objectErrors;
+
+	private String[] errorMessages;
 
 	private final Errors errors;
 
@@ -135,7 +143,12 @@ public class BindStatus {
 			}
 
 			this.errorCodes = getErrorCodes(objectErrors);
-			this.errorMessages = getErrorMessages(objectErrors);
+			if (this.errorCodes.length > 0) {
+				this.objectErrors = objectErrors;
+			}
+			else {
+				this.errorMessages = EMPTY_STRING_ARRAY;
+			}
 		}
 
 		else {
@@ -154,8 +167,8 @@ public class BindStatus {
 				this.value = bw.getPropertyValue(this.expression);
 			}
 
-			this.errorCodes = new String[0];
-			this.errorMessages = new String[0];
+			this.errorCodes = EMPTY_STRING_ARRAY;
+			this.errorMessages = EMPTY_STRING_ARRAY;
 		}
 	}
 
@@ -172,15 +185,19 @@ public class BindStatus {
 	}
 
 	/**
-	 * Extract the error messages from the given ObjectError list.
+	 * Resolve the error messages for the ObjectErrors of this status,
+	 * if not done yet.
 	 */
-	private String[] getErrorMessages(List objectErrors) throws NoSuchMessageException {
-		String[] messages = new String[objectErrors.size()];
-		for (int i = 0; i < objectErrors.size(); i++) {
-			ObjectError error = (ObjectError) objectErrors.get(i);
-			messages[i] = this.requestContext.getMessage(error, this.htmlEscape);
+	private void initErrorMessages() throws NoSuchMessageException {
+		if (this.errorMessages == null) {
+			String[] messages = new String[this.objectErrors.size()];
+			for (int i = 0; i < this.objectErrors.size(); i++) {
+				ObjectError error = (ObjectError) this.objectErrors.get(i);
+				messages[i] = this.requestContext.getMessage(error, this.htmlEscape);
+			}
+			this.errorMessages = messages;
+			this.objectErrors = null;
 		}
-		return messages;
 	}
 
 
@@ -246,6 +263,7 @@ public class BindStatus {
 	 * if any. Returns an empty array instead of null if none.
 	 */
 	public String[] getErrorMessages() {
+		initErrorMessages();
 		return errorMessages;
 	}
 
@@ -253,6 +271,7 @@ public class BindStatus {
 	 * Return the first error message for the field or object, if any.
 	 */
 	public String getErrorMessage() {
+		initErrorMessages();
 		return (this.errorMessages.length > 0 ? this.errorMessages[0] : "");
 	}
 
@@ -263,6 +282,7 @@ public class BindStatus {
 	 * @return the error message string
 	 */
 	public String getErrorMessagesAsString(String delimiter) {
+		initErrorMessages();
 		return StringUtils.arrayToDelimitedString(this.errorMessages, delimiter);
 	}
 
@@ -290,7 +310,7 @@ public class BindStatus {
 		sb.append("value=[").append(this.value).append("]");
 		if (isError()) {
 			sb.append("; errorCodes='" + Arrays.asList(this.errorCodes) + "'; ");
-			sb.append("errorMessages='" + Arrays.asList(this.errorMessages));
+			sb.append("errorMessages='" + Arrays.asList(getErrorMessages()));
 		}
 		return sb.toString();
 	}
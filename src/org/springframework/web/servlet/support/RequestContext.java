@@ -45,6 +45,11 @@ import org.springframework.web.util.WebUtils;
  * <p>Can be instantiated manually, or automatically exposed to views as
  * model attribute via AbstractView's requestContextAttribute property.
  *
+ * <p>The web application context, locale, theme and default HTML escaping
+ * setting are resolved lazily, on first access, and then kept for the
+ * lifetime of the RequestContext. Views that expose a RequestContext
+ * but never use it do not pay for resolving that state.
+ *
  * @author Juergen Hoeller
  * @since 03.03.2003
  * @see org.springframework.web.servlet.view.AbstractView#setRequestContextAttribute
@@ -56,18 +61,22 @@ public class RequestContext {
 
 	private final Map model;
 
-	private final WebApplicationContext webApplicationContext;
+	private WebApplicationContext webApplicationContext;
 
-	private final Locale locale;
+	private Locale locale;
 
-	private final Theme theme;
+	private Theme theme;
 
-	private boolean defaultHtmlEscape;
+	private Boolean defaultHtmlEscape;
 
 	private UrlPathHelper urlPathHelper;
 
+	/** Bind object name -> Errors instance, as retrieved */
 	private Map errorsMap;
 
+	/** Bind object name -> EscapedErrors instance */
+	private Map escapedErrorsMap;
+
 
 	/**
 	 * Create a new RequestContext for the given request,
@@ -92,11 +101,6 @@ public class RequestContext {
 	public RequestContext(HttpServletRequest request, Map model) {
 		this.request = request;
 		this.model = model;
-		this.webApplicationContext = RequestContextUtils.getWebApplicationContext(request);
-		this.locale = RequestContextUtils.getLocale(request);
-		this.theme = RequestContextUtils.getTheme(request);
-		this.defaultHtmlEscape = WebUtils.isDefaultHtmlEscape(this.webApplicationContext.getServletContext());
-		this.urlPathHelper = new UrlPathHelper();
 	}
 
 	/**
@@ -109,23 +113,36 @@ public class RequestContext {
 
 	/**
 	 * Return the current WebApplicationContext.
+	 * @throws IllegalStateException if no WebApplicationContext found
+	 * @see RequestContextUtils#getWebApplicationContext
 	 */
 	public WebApplicationContext getWebApplicationContext() {
-		return webApplicationContext;
+		if (this.webApplicationContext == null) {
+			this.webApplicationContext = RequestContextUtils.getWebApplicationContext(this.request);
+		}
+		return this.webApplicationContext;
 	}
 
 	/**
 	 * Return the current locale.
+	 * @see RequestContextUtils#getLocale
 	 */
 	public Locale getLocale() {
-		return locale;
+		if (this.locale == null) {
+			this.locale = RequestContextUtils.getLocale(this.request);
+		}
+		return this.locale;
 	}
 
 	/**
 	 * Return the current theme.
+	 * @see RequestContextUtils#getTheme
 	 */
 	public Theme getTheme() {
-		return theme;
+		if (this.theme == null) {
+			this.theme = RequestContextUtils.getTheme(this.request);
+		}
+		return this.theme;
 	}
 
 
@@ -136,14 +153,17 @@ public class RequestContext {
 	 * @see org.springframework.web.util.WebUtils#isDefaultHtmlEscape
 	 */
 	public void setDefaultHtmlEscape(boolean defaultHtmlEscape) {
-		this.defaultHtmlEscape = defaultHtmlEscape;
+		this.defaultHtmlEscape = (defaultHtmlEscape ? Boolean.TRUE : Boolean.FALSE);
 	}
 
 	/**
 	 * Is default HTML escaping active?
 	 */
 	public boolean isDefaultHtmlEscape() {
-		return defaultHtmlEscape;
+		if (this.defaultHtmlEscape == null) {
+			setDefaultHtmlEscape(WebUtils.isDefaultHtmlEscape(getWebApplicationContext().getServletContext()));
+		}
+		return this.defaultHtmlEscape.booleanValue();
 	}
 
 	/**
@@ -152,7 +172,7 @@ public class RequestContext {
 	 * <p>A default UrlPathHelper is always available.
 	 */
 	public void setUrlPathHelper(UrlPathHelper urlPathHelper) {
-		this.urlPathHelper = (urlPathHelper != null ? urlPathHelper : new UrlPathHelper());
+		this.urlPathHelper = urlPathHelper;
 	}
 
 	/**
@@ -161,7 +181,10 @@ public class RequestContext {
 	 * <p>A default UrlPathHelper is always available.
 	 */
 	public UrlPathHelper getUrlPathHelper() {
-		return urlPathHelper;
+		if (this.urlPathHelper == null) {
+			this.urlPathHelper = new UrlPathHelper();
+		}
+		return this.urlPathHelper;
 	}
 
 
@@ -173,7 +196,7 @@ public class RequestContext {
 	 * @see #getUrlPathHelper
 	 */
 	public String getContextPath() {
-		return this.urlPathHelper.getContextPath(this.request);
+		return getUrlPathHelper().getContextPath(this.request);
 	}
 
 	/**
@@ -194,7 +217,7 @@ public class RequestContext {
 	 * @see org.springframework.web.servlet.view.UrlBasedViewResolver#setRequestContextAttribute
 	 */
 	public String getRequestUri() {
-		return this.urlPathHelper.getRequestUri(this.request);
+		return getUrlPathHelper().getRequestUri(this.request);
 	}
 
 
@@ -205,7 +228,7 @@ public class RequestContext {
 	 * @return the message
 	 */
 	public String getMessage(String code, String defaultMessage) {
-		return getMessage(code, null, defaultMessage, this.defaultHtmlEscape);
+		return getMessage(code, null, defaultMessage, isDefaultHtmlEscape());
 	}
 
 	/**
@@ -216,7 +239,7 @@ public class RequestContext {
 	 * @return the message
 	 */
 	public String getMessage(String code, Object[] args, String defaultMessage) {
-		return getMessage(code, args, defaultMessage, this.defaultHtmlEscape);
+		return getMessage(code, args, defaultMessage, isDefaultHtmlEscape());
 	}
 
 	/**
@@ -228,7 +251,7 @@ public class RequestContext {
 	 * @return the message
 	 */
 	public String getMessage(String code, Object[] args, String defaultMessage, boolean htmlEscape) {
-		String msg = this.webApplicationContext.getMessage(code, args, defaultMessage, this.locale);
+		String msg = getWebApplicationContext().getMessage(code, args, defaultMessage, getLocale());
 		return (htmlEscape ? HtmlUtils.htmlEscape(msg) : msg);
 	}
 
@@ -239,7 +262,7 @@ public class RequestContext {
 	 * @throws org.springframework.context.NoSuchMessageException if not found
 	 */
 	public String getMessage(String code) throws NoSuchMessageException {
-		return getMessage(code, null, this.defaultHtmlEscape);
+		return getMessage(code, null, isDefaultHtmlEscape());
 	}
 
 	/**
@@ -250,7 +273,7 @@ public class RequestContext {
 	 * @throws org.springframework.context.NoSuchMessageException if not found
 	 */
 	public String getMessage(String code, Object[] args) throws NoSuchMessageException {
-		return getMessage(code, args, this.defaultHtmlEscape);
+		return getMessage(code, args, isDefaultHtmlEscape());
 	}
 
 	/**
@@ -262,7 +285,7 @@ public class RequestContext {
 	 * @throws org.springframework.context.NoSuchMessageException if not found
 	 */
 	public String getMessage(String code, Object[] args, boolean htmlEscape) throws NoSuchMessageException {
-		String msg = this.webApplicationContext.getMessage(code, args, this.locale);
+		String msg = getWebApplicationContext().getMessage(code, args, getLocale());
 		return (htmlEscape ? HtmlUtils.htmlEscape(msg) : msg);
 	}
 
@@ -274,7 +297,7 @@ public class RequestContext {
 	 * @throws org.springframework.context.NoSuchMessageException if not found
 	 */
 	public String getMessage(MessageSourceResolvable resolvable) throws NoSuchMessageException {
-		return getMessage(resolvable, this.defaultHtmlEscape);
+		return getMessage(resolvable, isDefaultHtmlEscape());
 	}
 
 	/**
@@ -285,7 +308,7 @@ public class RequestContext {
 	 * @throws org.springframework.context.NoSuchMessageException if not found
 	 */
 	public String getMessage(MessageSourceResolvable resolvable, boolean htmlEscape) throws NoSuchMessageException {
-		String msg = this.webApplicationContext.getMessage(resolvable, this.locale);
+		String msg = getWebApplicationContext().getMessage(resolvable, getLocale());
 		return (htmlEscape ? HtmlUtils.htmlEscape(msg) : msg);
 	}
 
@@ -299,7 +322,7 @@ public class RequestContext {
 	 * @return the message
 	 */
 	public String getThemeMessage(String code, String defaultMessage) {
-		return this.theme.getMessageSource().getMessage(code, null, defaultMessage, this.locale);
+		return getTheme().getMessageSource().getMessage(code, null, defaultMessage, getLocale());
 	}
 
 	/**
@@ -312,7 +335,7 @@ public class RequestContext {
 	 * @return the message
 	 */
 	public String getThemeMessage(String code, String[] args, String defaultMessage) {
-		return this.theme.getMessageSource().getMessage(code, args, defaultMessage, this.locale);
+		return getTheme().getMessageSource().getMessage(code, args, defaultMessage, getLocale());
 	}
 
 	/**
@@ -324,7 +347,7 @@ public class RequestContext {
 	 * @throws org.springframework.context.NoSuchMessageException if not found
 	 */
 	public String getThemeMessage(String code) throws NoSuchMessageException {
-		return this.theme.getMessageSource().getMessage(code, null, this.locale);
+		return getTheme().getMessageSource().getMessage(code, null, getLocale());
 	}
 
 	/**
@@ -337,7 +360,7 @@ public class RequestContext {
 	 * @throws org.springframework.context.NoSuchMessageException if not found
 	 */
 	public String getThemeMessage(String code, String[] args) throws NoSuchMessageException {
-		return this.theme.getMessageSource().getMessage(code, args, this.locale);
+		return getTheme().getMessageSource().getMessage(code, args, getLocale());
 	}
 
 	/**
@@ -349,7 +372,7 @@ public class RequestContext {
 	 * @throws org.springframework.context.NoSuchMessageException if not found
 	 */
 	public String getThemeMessage(MessageSourceResolvable resolvable) throws NoSuchMessageException {
-		return this.theme.getMessageSource().getMessage(resolvable, this.locale);
+		return getTheme().getMessageSource().getMessage(resolvable, getLocale());
 	}
 
 
@@ -360,7 +383,7 @@ public class RequestContext {
 	 * @return the Errors instance, or null if not found
 	 */
 	public Errors getErrors(String name) {
-		return getErrors(name, this.defaultHtmlEscape);
+		return getErrors(name, isDefaultHtmlEscape());
 	}
 
 	/**
@@ -374,26 +397,29 @@ public class RequestContext {
 			this.errorsMap = new HashMap();
 		}
 		Errors errors = (Errors) this.errorsMap.get(name);
-		boolean put = false;
 		if (errors == null) {
 			errors = retrieveErrors(name);
 			if (errors == null) {
 				return null;
 			}
-			put = true;
+			if (errors instanceof EscapedErrors) {
+				errors = ((EscapedErrors) errors).getSource();
+			}
+			this.errorsMap.put(name, errors);
 		}
-		if (htmlEscape && !(errors instanceof EscapedErrors)) {
-			errors = new EscapedErrors(errors);
-			put = true;
+		if (!htmlEscape) {
+			return errors;
 		}
-		else if (!htmlEscape && errors instanceof EscapedErrors) {
-			errors = ((EscapedErrors) errors).getSource();
-			put = true;
+		// keep the escaping wrapper too, for alternating escaped and unescaped access
+		if (this.escapedErrorsMap == null) {
+			this.escapedErrorsMap = new HashMap();
 		}
-		if (put) {
-			this.errorsMap.put(name, errors);
+		Errors escapedErrors = (Errors) this.escapedErrorsMap.get(name);
+		if (escapedErrors == null) {
+			escapedErrors = new EscapedErrors(errors);
+			this.escapedErrorsMap.put(name, escapedErrors);
 		}
-		return errors;
+		return escapedErrors;
 	}
 
 	/**
@@ -419,7 +445,7 @@ public class RequestContext {
 	 * @throws IllegalStateException if no corresponding Errors object found
 	 */
 	public BindStatus getBindStatus(String path) throws IllegalStateException {
-		return new BindStatus(this, path, this.defaultHtmlEscape);
+		return new BindStatus(this, path, isDefaultHtmlEscape());
 	}
 
 	/**
@@ -101,16 +101,21 @@ public class TransformTag extends HtmlEscapingAwareTag {
 				// else, just do a toString
 				result = resolvedValue.toString();
 			}
-			result = isHtmlEscape() ? HtmlUtils.htmlEscape(result) : result;
 			String resolvedVar = ExpressionEvaluationUtils.evaluateString("var", this.var, pageContext);
 			if (resolvedVar != null) {
+				result = isHtmlEscape() ? HtmlUtils.htmlEscape(result) : result;
 				String resolvedScope = ExpressionEvaluationUtils.evaluateString("scope", this.scope, pageContext);
 				pageContext.setAttribute(resolvedVar, result, TagUtils.getScope(resolvedScope));
 			}
 			else {
 				try {
-					// else, just print it out
-					pageContext.getOut().print(result);
+					// else, just print it out, escaping straight into the JspWriter
+					if (result != null && isHtmlEscape()) {
+						HtmlUtils.htmlEscape(result, pageContext.getOut());
+					}
+					else {
+						pageContext.getOut().print(result);
+					}
 				}
 				catch (IOException ex) {
 					throw new JspException(ex);
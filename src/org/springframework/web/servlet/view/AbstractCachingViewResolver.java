@@ -16,12 +16,10 @@
 
 package org.springframework.web.servlet.view;
 
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Locale;
-import java.util.Map;
 
 import org.springframework.context.ApplicationContextAware;
+import org.springframework.util.LruCache;
 import org.springframework.web.context.support.WebApplicationObjectSupport;
 import org.springframework.web.servlet.View;
 import org.springframework.web.servlet.ViewResolver;
@@ -34,18 +32,51 @@ import org.springframework.web.servlet.ViewResolver;
  * <p>View retrieval is deferred to subclasses via the <code>loadView</code>
  * template method.
  *
+ * <p>The cache is bounded, evicting the least recently used views once
+ * "cacheLimit" is reached, as cache keys include the locale and potentially
+ * dynamic view names. Large caches are split into up to 16 segments by key
+ * hash, each with its own lock and its own share of the limit, so that
+ * concurrent requests for different views rarely contend for the same lock.
+ * Least recently used views are then evicted per segment. View names that could not be resolved can be cached
+ * too, if "cacheUnresolved" is turned on. RedirectViews can be excluded
+ * from caching via "cacheRedirectViews", for view names containing
+ * dynamic redirect URLs.
+ *
  * @author Rod Johnson
  * @author Juergen Hoeller
  * @see #loadView
+ * @see #setCacheLimit
+ * @see #setCacheUnresolved
+ * @see #setCacheRedirectViews
  */
 public abstract class AbstractCachingViewResolver extends WebApplicationObjectSupport implements ViewResolver {
 
-	/** View name --> View instance */
-	private final Map viewMap = Collections.synchronizedMap(new HashMap());
+	/** Default maximum number of entries for the view cache: 1024 */
+	public static final int DEFAULT_CACHE_LIMIT = 1024;
+
+	/** Maximum number of segments that the view cache gets split into */
+	private static final int MAX_CACHE_SEGMENTS = 16;
+
+	/** Minimum number of entries per view cache segment */
+	private static final int MIN_CACHE_SEGMENT_SIZE = 64;
+
+	/** Marker for view names that could not be resolved */
+	private static final Object UNRESOLVED_VIEW = new Object();
+
 
 	/** Whether we should cache views, once resolved */
 	private boolean cache = true;
 
+	/** Whether we should cache view names that could not be resolved */
+	private boolean cacheUnresolved = false;
+
+	/** Whether we should cache RedirectViews */
+	private boolean cacheRedirectViews = true;
+
+	/** Segments of the view cache, each mapping cache key --> View instance */
+	private LruCache[] viewCaches = createViewCaches(DEFAULT_CACHE_LIMIT);
+
+
 	/**
 	 * Enable respectively disable caching. Disable this only for debugging
 	 * and development. Default is for caching to be enabled.
@@ -61,7 +92,122 @@ public abstract class AbstractCachingViewResolver extends WebApplicationObjectSu
 	 * Return if caching is enabled.
 	 */
 	public boolean isCache() {
-		return cache;
+		return (this.cache && this.viewCaches != null);
+	}
+
+	/**
+	 * Specify the maximum number of entries for the view cache.
+	 * Default is 1024; 0 switches caching off, like "cache"=false.
+	 * <p>The least recently used views get evicted when the limit is reached.
+	 * A limit of at least 128 splits the cache into segments with separate
+	 * locks, each holding an equal share of the limit.
+	 * @see #setCache
+	 */
+	public void setCacheLimit(int cacheLimit) {
+		this.viewCaches = (cacheLimit > 0 ? createViewCaches(cacheLimit) : null);
+	}
+
+	/**
+	 * Return the maximum number of entries for the view cache.
+	 */
+	public int getCacheLimit() {
+		LruCache[] viewCaches = this.viewCaches;
+		int cacheLimit = 0;
+		if (viewCaches != null) {
+			for (int i = 0; i < viewCaches.length; i++) {
+				cacheLimit += viewCaches[i].getMaxSize();
+			}
+		}
+		return cacheLimit;
+	}
+
+	/**
+	 * Create the segments of the view cache: as many as possible up to
+	 * MAX_CACHE_SEGMENTS, with at least MIN_CACHE_SEGMENT_SIZE entries each.
+	 */
+	private static LruCache[] createViewCaches(int cacheLimit) {
+		int segments = 1;
+		while (segments < MAX_CACHE_SEGMENTS && cacheLimit / (segments * 2) >= MIN_CACHE_SEGMENT_SIZE) {
+			segments *= 2;
+		}
+		LruCache[] viewCaches = new LruCache[segments];
+		for (int i = 0; i < segments; i++) {
+			viewCaches[i] = new LruCache(cacheLimit / segments + (i < cacheLimit % segments ? 1 : 0));
+		}
+		return viewCaches;
+	}
+
+	/**
+	 * Return the view cache segment for the given cache key.
+	 */
+	private static LruCache getViewCache(LruCache[] viewCaches, Object cacheKey) {
+		int hash = cacheKey.hashCode();
+		return viewCaches[(hash ^ (hash >>> 16)) & (viewCaches.length - 1)];
+	}
+
+	/**
+	 * Set whether view names that could not be resolved, that is, for which
+	 * <code>loadView</code> returned null, should be cached too. Default is false,
+	 * as in Spring 1.1.1, to keep picking up views that appear at runtime,
+	 * for example when new view definitions get added to an underlying store.
+	 * <p>Turn this on to avoid repeated lookups of unresolvable view names,
+	 * typically when chaining several view resolvers.
+	 */
+	public void setCacheUnresolved(boolean cacheUnresolved) {
+		this.cacheUnresolved = cacheUnresolved;
+	}
+
+	/**
+	 * Set whether RedirectViews should be cached. Default is true.
+	 * <p>Turn this off if redirect view names are built dynamically,
+	 * for example containing request parameters in the target URL:
+	 * Each such view name would occupy a separate cache entry.
+	 * @see RedirectView
+	 */
+	public void setCacheRedirectViews(boolean cacheRedirectViews) {
+		this.cacheRedirectViews = cacheRedirectViews;
+	}
+
+	/**
+	 * Return the number of view lookups that were served from the cache.
+	 */
+	public long getCacheHitCount() {
+		LruCache[] viewCaches = this.viewCaches;
+		long hitCount = 0;
+		if (viewCaches != null) {
+			for (int i = 0; i < viewCaches.length; i++) {
+				hitCount += viewCaches[i].getHitCount();
+			}
+		}
+		return hitCount;
+	}
+
+	/**
+	 * Return the number of view lookups that were not served from the cache.
+	 */
+	public long getCacheMissCount() {
+		LruCache[] viewCaches = this.viewCaches;
+		long missCount = 0;
+		if (viewCaches != null) {
+			for (int i = 0; i < viewCaches.length; i++) {
+				missCount += viewCaches[i].getMissCount();
+			}
+		}
+		return missCount;
+	}
+
+	/**
+	 * Return the number of views currently cached.
+	 */
+	public int getCacheSize() {
+		LruCache[] viewCaches = this.viewCaches;
+		int size = 0;
+		if (viewCaches != null) {
+			for (int i = 0; i < viewCaches.length; i++) {
+				size += viewCaches[i].size();
+			}
+		}
+		return size;
 	}
 
 	/**
@@ -73,21 +219,34 @@ public abstract class AbstractCachingViewResolver extends WebApplicationObjectSu
 	 * @throws Exception
 	 */
 	public View resolveViewName(String viewName, Locale locale) throws Exception {
+		LruCache[] viewCaches = this.viewCaches;
 		//不存在缓存，直接创建视图
-		if (!this.cache) {
+		if (!this.cache || viewCaches == null) {
 			logger.warn("View caching is SWITCHED OFF -- DEVELOPMENT SETTING ONLY: This can severely impair performance");
 			return loadAndConfigureView(viewName, locale);
 		}
 		else {//从缓存中提取
 			String cacheKey = getCacheKey(viewName, locale);
+			LruCache viewCache = getViewCache(viewCaches, cacheKey);
 			// no synchronization, as we can live with occasional double caching
-			View view = (View) this.viewMap.get(cacheKey);
+			Object cachedView = viewCache.get(cacheKey);
+			if (cachedView == UNRESOLVED_VIEW) {
+				return null;
+			}
+			View view = (View) cachedView;
 			if (view == null) {
 				// ask the subclass to load the View
 				view = loadAndConfigureView(viewName, locale);
-				this.viewMap.put(cacheKey, view);
-				if (logger.isInfoEnabled()) {
-					logger.info("Cached view '" + cacheKey + "'");
+				if (view == null) {
+					if (this.cacheUnresolved) {
+						viewCache.put(cacheKey, UNRESOLVED_VIEW);
+					}
+				}
+				else if (this.cacheRedirectViews || !(view instanceof RedirectView)) {
+					viewCache.put(cacheKey, view);
+					if (logger.isInfoEnabled()) {
+						logger.info("Cached view '" + cacheKey + "'");
+					}
 				}
 			}
 			return view;
@@ -101,12 +260,13 @@ public abstract class AbstractCachingViewResolver extends WebApplicationObjectSu
 	 * clear the cache for the specified view.
 	 */
 	public void removeFromCache(String viewName, Locale locale) {
-		if (!this.cache) {
+		LruCache[] viewCaches = this.viewCaches;
+		if (!this.cache || viewCaches == null) {
 			logger.warn("View caching is SWITCHED OFF -- removal not necessary");			
 		}
 		else {
 			String cacheKey = getCacheKey(viewName, locale);
-			if (viewMap.remove(cacheKey) == null) {
+			if (getViewCache(viewCaches, cacheKey).remove(cacheKey) == null) {
 				// some debug output might be useful
 				if (logger.isDebugEnabled()) {
 					logger.debug("No cached instance for view " + cacheKey + " was found");
@@ -120,6 +280,20 @@ public abstract class AbstractCachingViewResolver extends WebApplicationObjectSu
 		}
 	}
 
+	/**
+	 * Clear the entire view cache, removing all cached view objects.
+	 * Subsequent resolve calls will lead to recreation of demanded view objects.
+	 */
+	public void clearCache() {
+		LruCache[] viewCaches = this.viewCaches;
+		if (viewCaches != null) {
+			logger.debug("Clearing entire view cache");
+			for (int i = 0; i < viewCaches.length; i++) {
+				viewCaches[i].clear();
+			}
+		}
+	}
+
 	/**
 	 * Load and configure the given View. Only invoked once per View.
 	 * Delegates to the loadView template method for actual loading.
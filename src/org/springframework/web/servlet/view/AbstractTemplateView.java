@@ -16,15 +16,28 @@
 
 package org.springframework.web.servlet.view;
 
+import java.io.ByteArrayOutputStream;
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
 import javax.servlet.http.HttpSession;
 
+import org.springframework.util.LruCache;
 import org.springframework.web.servlet.support.RequestContext;
+import org.springframework.web.servlet.support.RequestContextUtils;
 
 /**
  * AbstractTemplateView provides template based view technologies such as
@@ -37,6 +50,18 @@ import org.springframework.web.servlet.support.RequestContext;
  * for the current user. Furthermore, they are able to create and cache
  * helper objects as request attributes themselves.
  *
+ * <p>Optionally caches the rendered output of GET requests ("outputCacheSeconds"),
+ * for templates whose output only depends on the locale plus specific model
+ * attributes and request parameters ("outputCacheKeyAttributes",
+ * "outputCacheKeyParameters"). A cache hit writes the cached content to the
+ * response without merging the template, and without exposing request or
+ * session attributes. The cache is held per view instance, that is, per view
+ * name and locale if the view resolver caches views, bounded to the specified
+ * number of entries ("outputCacheLimit"). Headers and the response locale
+ * set during rendering are cached and replayed along with the content;
+ * a rendering that adds cookies, sends an error or a redirect, or sets
+ * a status other than OK is not cached.
+ *
  * @author Darren Davison
  * @author Juergen Hoeller
  * @since 17.05.2004
@@ -49,6 +74,11 @@ public abstract class AbstractTemplateView extends AbstractUrlBasedView {
 	 */
 	public static final String SPRING_MACRO_REQUEST_CONTEXT_ATTRIBUTE = "springMacroRequestContext";
 
+	/**
+	 * Default maximum number of cached outputs per view: 256.
+	 */
+	public static final int DEFAULT_OUTPUT_CACHE_LIMIT = 256;
+
 
 	private boolean exposeRequestAttributes = false;
 
@@ -60,6 +90,21 @@ public abstract class AbstractTemplateView extends AbstractUrlBasedView {
 	
 	private boolean allowSessionOverride = false;
 
+	private int outputCacheSeconds = -1;
+
+	private int outputCacheLimit = DEFAULT_OUTPUT_CACHE_LIMIT;
+
+	private String[] outputCacheKeyAttributes;
+
+	private String[] outputCacheKeyParameters;
+
+	/** Cache of rendered output: cache key String -> CachedOutput */
+	private LruCache outputCache;
+
+	private long outputCacheHitCount = 0;
+
+	private long outputCacheMissCount = 0;
+
 
 	/**
 	 * Set whether all request attributes should be added to the
@@ -109,9 +154,206 @@ public abstract class AbstractTemplateView extends AbstractUrlBasedView {
 		this.exposeSpringMacroHelpers = exposeSpringMacroHelpers;
 	}
 
+	/**
+	 * Set the number of seconds to cache rendered output for.
+	 * <ul>
+	 * <li>Default is "-1", not caching any output.
+	 * <li>A positive number will cache the output of GET requests
+	 * for the given number of seconds.
+	 * <li>A value of "0" will cache the output until it gets evicted
+	 * because of the cache limit, or until <code>clearOutputCache</code>.
+	 * </ul>
+	 * <p>Only activate this for views whose output depends solely on the
+	 * locale plus the configured key attributes and key parameters:
+	 * Content from other model attributes, request or session attributes,
+	 * or the bind status of forms would otherwise be served to other users.
+	 * @see #setOutputCacheKeyAttributes
+	 * @see #setOutputCacheKeyParameters
+	 * @see #clearOutputCache
+	 */
+	public void setOutputCacheSeconds(int outputCacheSeconds) {
+		this.outputCacheSeconds = outputCacheSeconds;
+		initOutputCache();
+	}
+
+	/**
+	 * Set the maximum number of different outputs to cache for this view.
+	 * Default is 256; the least recently used output will be evicted.
+	 */
+	public void setOutputCacheLimit(int outputCacheLimit) {
+		this.outputCacheLimit = outputCacheLimit;
+		initOutputCache();
+	}
+
+	/**
+	 * Set the names of the model attributes that the output depends on.
+	 * Their String representations will be part of the cache key.
+	 */
+	public void setOutputCacheKeyAttributes(String[] outputCacheKeyAttributes) {
+		this.outputCacheKeyAttributes = outputCacheKeyAttributes;
+	}
+
+	/**
+	 * Set the names of the request parameters that the output depends on.
+	 * Their values will be part of the cache key.
+	 */
+	public void setOutputCacheKeyParameters(String[] outputCacheKeyParameters) {
+		this.outputCacheKeyParameters = outputCacheKeyParameters;
+	}
+
+	private synchronized void initOutputCache() {
+		this.outputCache = (this.outputCacheSeconds >= 0 && this.outputCacheLimit > 0 ?
+				new LruCache(this.outputCacheLimit) : null);
+	}
+
+	/**
+	 * Return the number of renderings served from the output cache.
+	 */
+	public synchronized long getOutputCacheHitCount() {
+		return outputCacheHitCount;
+	}
+
+	/**
+	 * Return the number of cacheable renderings that had to merge the template.
+	 */
+	public synchronized long getOutputCacheMissCount() {
+		return outputCacheMissCount;
+	}
+
+	/**
+	 * Return the number of outputs currently cached for this view.
+	 */
+	public int getOutputCacheSize() {
+		LruCache cache = this.outputCache;
+		return (cache != null ? cache.size() : 0);
+	}
+
+	/**
+	 * Remove all cached output for this view, for example after
+	 * the underlying data has changed.
+	 */
+	public void clearOutputCache() {
+		LruCache cache = this.outputCache;
+		if (cache != null) {
+			cache.clear();
+		}
+	}
+
+
 	protected final void renderMergedOutputModel(
 			Map model, HttpServletRequest request, HttpServletResponse response) throws Exception {
 
+		LruCache cache = this.outputCache;
+		if (cache != null && "GET".equals(request.getMethod())) {
+			String cacheKey = getOutputCacheKey(model, request);
+			if (cacheKey != null) {
+				renderWithOutputCache(cache, cacheKey, model, request, response);
+				return;
+			}
+		}
+		exposeModelAndRender(model, request, response);
+	}
+
+	/**
+	 * Build the output cache key for the given model and request.
+	 * <p>Default implementation combines the current locale with the configured
+	 * key attributes and key parameters, escaping the separator characters
+	 * within values so that different combinations cannot result in the
+	 * same key. Can be overridden to add further criteria, or to return null
+	 * for renderings that must not be cached.
+	 * @param model the model Map
+	 * @param request current HTTP request
+	 * @return the cache key, or null if the output must not be cached
+	 * @see #setOutputCacheKeyAttributes
+	 * @see #setOutputCacheKeyParameters
+	 */
+	protected String getOutputCacheKey(Map model, HttpServletRequest request) {
+		StringBuffer cacheKey = new StringBuffer();
+		cacheKey.append(RequestContextUtils.getLocale(request));
+		if (this.outputCacheKeyAttributes != null) {
+			for (int i = 0; i < this.outputCacheKeyAttributes.length; i++) {
+				Object value = model.get(this.outputCacheKeyAttributes[i]);
+				cacheKey.append('|');
+				if (value != null) {
+					appendEscaped(cacheKey.append('='), value.toString());
+				}
+			}
+		}
+		if (this.outputCacheKeyParameters != null) {
+			for (int i = 0; i < this.outputCacheKeyParameters.length; i++) {
+				String[] values = request.getParameterValues(this.outputCacheKeyParameters[i]);
+				cacheKey.append('|');
+				if (values != null) {
+					for (int j = 0; j < values.length; j++) {
+						appendEscaped(cacheKey.append(j > 0 ? ',' : '='), values[j]);
+					}
+				}
+			}
+		}
+		return cacheKey.toString();
+	}
+
+	/**
+	 * Append the given cache key value, escaping the separator characters
+	 * '|', ',' and '=' as well as the escaping backslash itself.
+	 */
+	private static void appendEscaped(StringBuffer cacheKey, String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '|' || c == ',' || c == '=' || c == '\\') {
+				cacheKey.append('\\');
+			}
+			cacheKey.append(c);
+		}
+	}
+
+	/**
+	 * Write the cached output for the given key if available and not expired,
+	 * else render the template into a buffer and cache it.
+	 */
+	private void renderWithOutputCache(LruCache cache, String cacheKey, Map model,
+			HttpServletRequest request, HttpServletResponse response) throws Exception {
+
+		CachedOutput cachedOutput = (CachedOutput) cache.get(cacheKey);
+		if (cachedOutput != null && this.outputCacheSeconds > 0 &&
+				cachedOutput.timestamp < System.currentTimeMillis() - this.outputCacheSeconds * 1000L) {
+			cache.remove(cacheKey);
+			cachedOutput = null;
+		}
+		if (cachedOutput != null) {
+			synchronized (this) {
+				this.outputCacheHitCount++;
+			}
+			if (logger.isDebugEnabled()) {
+				logger.debug("Serving cached output for key [" + cacheKey + "] in view '" + getBeanName() + "'");
+			}
+			cachedOutput.writeTo(response);
+			return;
+		}
+
+		synchronized (this) {
+			this.outputCacheMissCount++;
+		}
+		OutputCapturingResponseWrapper responseWrapper = new OutputCapturingResponseWrapper(response);
+		exposeModelAndRender(model, request, responseWrapper);
+		if (responseWrapper.isCompleted()) {
+			// error or redirect sent: neither write nor cache the rendered output
+			return;
+		}
+		cachedOutput = responseWrapper.getCachedOutput();
+		if (cachedOutput != null) {
+			cache.put(cacheKey, cachedOutput);
+		}
+		else {
+			// not cacheable: just write what has been rendered
+			cachedOutput = responseWrapper.getOutput();
+		}
+		cachedOutput.writeContentTo(response);
+	}
+
+	private void exposeModelAndRender(
+			Map model, HttpServletRequest request, HttpServletResponse response) throws Exception {
+
 		if (this.exposeRequestAttributes) {
 			for (Enumeration enum = request.getAttributeNames(); enum.hasMoreElements();) {
 				String attribute = (String) enum.nextElement();
@@ -153,8 +395,14 @@ public abstract class AbstractTemplateView extends AbstractUrlBasedView {
 						"Cannot expose bind macro helper '" + SPRING_MACRO_REQUEST_CONTEXT_ATTRIBUTE +
 						"' because of an existing model object of the same name");
 			}
-			// expose RequestContext instance for Spring macros
-			model.put(SPRING_MACRO_REQUEST_CONTEXT_ATTRIBUTE, new RequestContext(request, model));
+			// expose RequestContext instance for Spring macros,
+			// reusing the one exposed via "requestContextAttribute" if any
+			Object requestContext = (getRequestContextAttribute() != null ?
+					model.get(getRequestContextAttribute()) : null);
+			if (!(requestContext instanceof RequestContext)) {
+				requestContext = new RequestContext(request, model);
+			}
+			model.put(SPRING_MACRO_REQUEST_CONTEXT_ATTRIBUTE, requestContext);
 		}
 
 		renderMergedTemplateModel(model, request, response);
@@ -171,4 +419,304 @@ public abstract class AbstractTemplateView extends AbstractUrlBasedView {
 	protected abstract void renderMergedTemplateModel(
 			Map model, HttpServletRequest request, HttpServletResponse response) throws Exception;
 
+
+	/**
+	 * Rendered output of a template, either as characters or as bytes,
+	 * together with its content type, locale and headers.
+	 */
+	private static class CachedOutput {
+
+		private final String contentType;
+
+		private final Locale locale;
+
+		/** HeaderValue objects, in the order they have been set */
+		private final List headers;
+
+		private final char[] chars;
+
+		private final byte[] bytes;
+
+		private final long timestamp = System.currentTimeMillis();
+
+		private CachedOutput(String contentType, Locale locale, List headers, char[] chars, byte[] bytes) {
+			this.contentType = contentType;
+			this.locale = locale;
+			this.headers = headers;
+			this.chars = chars;
+			this.bytes = bytes;
+		}
+
+		/**
+		 * Replay the recorded locale and headers, then write the content.
+		 */
+		private void writeTo(HttpServletResponse response) throws IOException {
+			if (this.locale != null) {
+				response.setLocale(this.locale);
+			}
+			for (Iterator it = this.headers.iterator(); it.hasNext();) {
+				((HeaderValue) it.next()).applyTo(response);
+			}
+			writeContentTo(response);
+		}
+
+		/**
+		 * Write content type and content only, for the rendering
+		 * that has set the locale and headers itself.
+		 */
+		private void writeContentTo(HttpServletResponse response) throws IOException {
+			if (this.contentType != null) {
+				response.setContentType(this.contentType);
+			}
+			if (this.chars != null) {
+				PrintWriter writer = response.getWriter();
+				writer.write(this.chars);
+				writer.flush();
+			}
+			else if (this.bytes != null) {
+				response.setContentLength(this.bytes.length);
+				ServletOutputStream out = response.getOutputStream();
+				out.write(this.bytes);
+				out.flush();
+			}
+		}
+	}
+
+
+	/**
+	 * Header set or added during rendering, replayed for cached output.
+	 */
+	private static class HeaderValue {
+
+		private final String name;
+
+		/** String, Long for date headers, or Integer for int headers */
+		private final Object value;
+
+		private final boolean add;
+
+		private HeaderValue(String name, Object value, boolean add) {
+			this.name = name;
+			this.value = value;
+			this.add = add;
+		}
+
+		private void applyTo(HttpServletResponse response) {
+			if (this.value instanceof Long) {
+				long date = ((Long) this.value).longValue();
+				if (this.add) {
+					response.addDateHeader(this.name, date);
+				}
+				else {
+					response.setDateHeader(this.name, date);
+				}
+			}
+			else if (this.value instanceof Integer) {
+				int number = ((Integer) this.value).intValue();
+				if (this.add) {
+					response.addIntHeader(this.name, number);
+				}
+				else {
+					response.setIntHeader(this.name, number);
+				}
+			}
+			else {
+				if (this.add) {
+					response.addHeader(this.name, (String) this.value);
+				}
+				else {
+					response.setHeader(this.name, (String) this.value);
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Response wrapper that captures the rendered output, content type,
+	 * locale and headers, tracking whether the response is cacheable.
+	 */
+	private static class OutputCapturingResponseWrapper extends HttpServletResponseWrapper {
+
+		private String contentType;
+
+		private Locale locale;
+
+		private final List headers = new ArrayList();
+
+		private CharArrayWriter charContent;
+
+		private PrintWriter writer;
+
+		private ByteArrayOutputStream byteContent;
+
+		private ServletOutputStream outputStream;
+
+		private boolean cacheable = true;
+
+		private boolean completed = false;
+
+		private OutputCapturingResponseWrapper(HttpServletResponse response) {
+			super(response);
+		}
+
+		public void setContentType(String contentType) {
+			// applied when writing the captured output
+			this.contentType = contentType;
+		}
+
+		public void setContentLength(int contentLength) {
+			// applied when writing the captured output
+		}
+
+		public void setLocale(Locale locale) {
+			// recorded for replaying cached output
+			this.locale = locale;
+			super.setLocale(locale);
+		}
+
+		public void setHeader(String name, String value) {
+			this.headers.add(new HeaderValue(name, value, false));
+			super.setHeader(name, value);
+		}
+
+		public void addHeader(String name, String value) {
+			this.headers.add(new HeaderValue(name, value, true));
+			super.addHeader(name, value);
+		}
+
+		public void setDateHeader(String name, long date) {
+			this.headers.add(new HeaderValue(name, new Long(date), false));
+			super.setDateHeader(name, date);
+		}
+
+		public void addDateHeader(String name, long date) {
+			this.headers.add(new HeaderValue(name, new Long(date), true));
+			super.addDateHeader(name, date);
+		}
+
+		public void setIntHeader(String name, int value) {
+			this.headers.add(new HeaderValue(name, new Integer(value), false));
+			super.setIntHeader(name, value);
+		}
+
+		public void addIntHeader(String name, int value) {
+			this.headers.add(new HeaderValue(name, new Integer(value), true));
+			super.addIntHeader(name, value);
+		}
+
+		public void addCookie(Cookie cookie) {
+			// cookies are usually specific to the current user
+			this.cacheable = false;
+			super.addCookie(cookie);
+		}
+
+		public void setStatus(int sc) {
+			this.cacheable = (this.cacheable && sc == SC_OK);
+			super.setStatus(sc);
+		}
+
+		public void setStatus(int sc, String sm) {
+			this.cacheable = (this.cacheable && sc == SC_OK);
+			super.setStatus(sc, sm);
+		}
+
+		public void sendError(int sc) throws IOException {
+			markCompleted();
+			super.sendError(sc);
+		}
+
+		public void sendError(int sc, String msg) throws IOException {
+			markCompleted();
+			super.sendError(sc, msg);
+		}
+
+		public void sendRedirect(String location) throws IOException {
+			markCompleted();
+			super.sendRedirect(location);
+		}
+
+		/**
+		 * Mark the response as completed by an error or redirect,
+		 * which makes the captured output neither writable nor cacheable.
+		 */
+		private void markCompleted() {
+			this.cacheable = false;
+			this.completed = true;
+		}
+
+		public PrintWriter getWriter() {
+			if (this.outputStream != null) {
+				throw new IllegalStateException("getOutputStream has already been called for this response");
+			}
+			if (this.writer == null) {
+				this.charContent = new CharArrayWriter(4096);
+				this.writer = new PrintWriter(this.charContent);
+			}
+			return this.writer;
+		}
+
+		public ServletOutputStream getOutputStream() {
+			if (this.writer != null) {
+				throw new IllegalStateException("getWriter has already been called for this response");
+			}
+			if (this.outputStream == null) {
+				this.byteContent = new ByteArrayOutputStream(4096);
+				this.outputStream = new ServletOutputStream() {
+					public void write(int b) {
+						byteContent.write(b);
+					}
+					public void write(byte[] b, int off, int len) {
+						byteContent.write(b, off, len);
+					}
+				};
+			}
+			return this.outputStream;
+		}
+
+		public void flushBuffer() {
+			// keep the captured output until rendering has finished
+		}
+
+		public void resetBuffer() {
+			if (this.charContent != null) {
+				this.writer.flush();
+				this.charContent.reset();
+			}
+			if (this.byteContent != null) {
+				this.byteContent.reset();
+			}
+		}
+
+		public void reset() {
+			resetBuffer();
+			this.contentType = null;
+			this.locale = null;
+			this.headers.clear();
+			this.cacheable = true;
+			super.reset();
+		}
+
+		private CachedOutput getOutput() {
+			if (this.writer != null) {
+				this.writer.flush();
+				return new CachedOutput(
+						this.contentType, this.locale, this.headers, this.charContent.toCharArray(), null);
+			}
+			if (this.byteContent != null) {
+				return new CachedOutput(
+						this.contentType, this.locale, this.headers, null, this.byteContent.toByteArray());
+			}
+			return new CachedOutput(this.contentType, this.locale, this.headers, null, null);
+		}
+
+		private CachedOutput getCachedOutput() {
+			return (this.cacheable ? getOutput() : null);
+		}
+
+		private boolean isCompleted() {
+			return this.completed;
+		}
+	}
+
 }
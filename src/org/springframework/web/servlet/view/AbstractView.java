@@ -100,6 +100,8 @@ public abstract class AbstractView extends WebApplicationObjectSupport implement
 	/**
 	 * Set the name of the RequestContext attribute for this view.
 	 * Default is none.
+	 * <p>A RequestContext resolves locale, theme and the like lazily,
+	 * so exposing it is cheap for templates that do not use it.
 	 */
 	public void setRequestContextAttribute(String requestContextAttribute) {
 		this.requestContextAttribute = requestContextAttribute;
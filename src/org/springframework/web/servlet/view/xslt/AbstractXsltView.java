@@ -17,9 +17,12 @@
 package org.springframework.web.servlet.view.xslt;
 
 import java.io.BufferedOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.net.URLConnection;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.Map;
 
 import javax.servlet.ServletException;
@@ -46,8 +49,8 @@ import org.springframework.web.servlet.view.AbstractView;
 
 /**
  * Convenient superclass for views rendered using an XSLT stylesheet.
- * Subclasses must provide the XML W3C document to transform.
- * They do not need to concern themselves with XSLT.
+ * Subclasses must provide the XML W3C document to transform, or an
+ * XML Source to stream from. They do not need to concern themselves with XSLT.
  *
  * <p>Properties:
  * <ul>
@@ -55,18 +58,34 @@ import org.springframework.web.servlet.view.AbstractView;
  * <li>root: name of the root element
  * <li>uriResolver: URIResolver used in the transform
  * <li>cache (optional, default=true): debug setting only
+ * <li>refreshSeconds (optional, default=-1): check interval for stylesheet changes
+ * <li>transformerPoolSize (optional, default=8): number of idle Transformers to keep
  * </ul>
  *
  * <p>Setting cache to false will cause the templates object to be reloaded
  * for each rendering. This is useful during development, but will seriously
- * affect performance in production and isn't threadsafe.
+ * affect performance in production. With cache on, a refreshSeconds value
+ * of 0 or more will reload the stylesheet if it has been modified since
+ * it was last loaded, checking at most once per the given number of seconds.
+ *
+ * <p>Transformers created from the compiled Templates are pooled and reused
+ * for subsequent renderings, as creating a Transformer is comparatively
+ * expensive. A Transformer is never used by more than one thread at a time.
+ *
+ * <p>Subclasses that can produce their XML as a stream of SAX events should
+ * override <code>createXsltSource</code> to return a SAXSource (or StreamSource),
+ * so that large models never have to be held as a full DOM tree in memory.
  *
  * @author Rod Johnson
  * @author Darren Davison
+ * @see #createXsltSource
+ * @see javax.xml.transform.sax.SAXSource
  */
 public abstract class AbstractXsltView extends AbstractView {
 
 	public static final String DEFAULT_ROOT = "DocRoot";
+
+	public static final int DEFAULT_TRANSFORMER_POOL_SIZE = 8;
 	
 	
 	/** URL of stylesheet */
@@ -80,10 +99,14 @@ public abstract class AbstractXsltView extends AbstractView {
 
 	private boolean cache = true;
 
+	private int refreshSeconds = -1;
+
+	private int transformerPoolSize = DEFAULT_TRANSFORMER_POOL_SIZE;
+
 	private TransformerFactory transformerFactory;
 
-	/** XSLT Template */
-	private Templates templates;
+	/** XSLT Templates plus pooled Transformers, replaced as a whole on reload */
+	private TemplatesHolder templatesHolder;
 
 
 	/**
@@ -123,6 +146,46 @@ public abstract class AbstractXsltView extends AbstractView {
 		this.cache = cache;
 	}
 
+	/**
+	 * Set the number of seconds between checks whether the stylesheet
+	 * has been modified, when the cache is active.
+	 * <ul>
+	 * <li>Default is "-1", never checking: the stylesheet is loaded once.
+	 * <li>A positive number will check the last-modified timestamp of the
+	 * stylesheet at most once per the given number of seconds, reloading
+	 * it if it has changed.
+	 * <li>A value of "0" will check the timestamp on every rendering.
+	 * </ul>
+	 * <p>The check happens during rendering: A request that finds a
+	 * modified stylesheet loads it, while concurrent requests continue
+	 * to use the previous Templates.
+	 */
+	public void setRefreshSeconds(int refreshSeconds) {
+		this.refreshSeconds = refreshSeconds;
+	}
+
+	/**
+	 * Set the maximum number of idle Transformers to keep for reuse.
+	 * Default is 8. Transformers beyond this number will be created
+	 * on demand and discarded after use; 0 turns pooling off.
+	 */
+	public void setTransformerPoolSize(int transformerPoolSize) {
+		this.transformerPoolSize = transformerPoolSize;
+	}
+
+	/**
+	 * Return the number of idle Transformers currently pooled.
+	 */
+	public int getPooledTransformerCount() {
+		TemplatesHolder holder = getTemplatesHolder();
+		if (holder == null) {
+			return 0;
+		}
+		synchronized (holder.transformerPool) {
+			return holder.transformerPool.size();
+		}
+	}
+
 
 	/**
 	 * Here we load our template, as we need the ApplicationContext to do it.
@@ -146,11 +209,17 @@ public abstract class AbstractXsltView extends AbstractView {
 	}	
 
 	private void cacheTemplates() throws ApplicationContextException {
+		Templates templates = null;
+		long lastModified = -1;
 		if (this.stylesheetLocation != null) {
+			lastModified = getStylesheetLastModified(this.stylesheetLocation);
 			try {
-				this.templates = this.transformerFactory.newTemplates(getStylesheetSource(this.stylesheetLocation));
+				// TransformerFactory instances are not guaranteed to be thread-safe
+				synchronized (this.transformerFactory) {
+					templates = this.transformerFactory.newTemplates(getStylesheetSource(this.stylesheetLocation));
+				}
 				if (logger.isDebugEnabled()) {
-					logger.debug("Loaded templates [" + this.templates + "] in XSLT view '" + getBeanName() + "'");
+					logger.debug("Loaded templates [" + templates + "] in XSLT view '" + getBeanName() + "'");
 				}
 			}
 			catch (TransformerConfigurationException ex) {
@@ -158,6 +227,70 @@ public abstract class AbstractXsltView extends AbstractView {
 					"Can't load stylesheet from " + this.stylesheetLocation + " in XSLT view '" + getBeanName() + "'", ex);
 			}
 		}
+		setTemplatesHolder(new TemplatesHolder(templates, lastModified));
+	}
+
+	private synchronized void setTemplatesHolder(TemplatesHolder templatesHolder) {
+		this.templatesHolder = templatesHolder;
+	}
+
+	private synchronized TemplatesHolder getTemplatesHolder() {
+		return this.templatesHolder;
+	}
+
+	/**
+	 * Reload the Templates if the refresh interval has elapsed
+	 * and the stylesheet has been modified in the meantime.
+	 */
+	private void refreshTemplatesIfNecessary() throws ApplicationContextException {
+		TemplatesHolder holder = getTemplatesHolder();
+		if (this.refreshSeconds < 0 || this.stylesheetLocation == null) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		synchronized (holder) {
+			if (holder.refreshTimestamp > now - this.refreshSeconds * 1000L) {
+				return;
+			}
+			holder.refreshTimestamp = now;
+		}
+		long lastModified = getStylesheetLastModified(this.stylesheetLocation);
+		if (lastModified < 0 || lastModified != holder.lastModified) {
+			if (logger.isInfoEnabled()) {
+				logger.info("Reloading modified stylesheet [" + this.stylesheetLocation + "] in XSLT view '" +
+						getBeanName() + "'");
+			}
+			cacheTemplates();
+		}
+	}
+
+	/**
+	 * Determine the last-modified timestamp of the given stylesheet, for
+	 * checking whether it needs to be reloaded. Subclasses can override this.
+	 * <p>Default implementation checks the underlying file if available,
+	 * else the last-modified header of a connection to the stylesheet URL.
+	 * @param stylesheetLocation the location of the XSLT stylesheet
+	 * @return the last-modified timestamp, or -1 if it cannot be determined
+	 * (which will lead to a reload on every check)
+	 */
+	protected long getStylesheetLastModified(Resource stylesheetLocation) {
+		try {
+			File file = stylesheetLocation.getFile();
+			return file.lastModified();
+		}
+		catch (IOException ex) {
+			// not in the file system -> try URL
+		}
+		try {
+			URLConnection con = stylesheetLocation.getURL().openConnection();
+			con.setUseCaches(false);
+			long lastModified = con.getLastModified();
+			return (lastModified > 0 ? lastModified : -1);
+		}
+		catch (IOException ex) {
+			logger.debug("Could not determine last-modified timestamp of stylesheet [" + stylesheetLocation + "]", ex);
+			return -1;
+		}
 	}
 
 	/** 
@@ -181,11 +314,15 @@ public abstract class AbstractXsltView extends AbstractView {
 	protected final void renderMergedOutputModel(
 			Map model, HttpServletRequest request, HttpServletResponse response) throws Exception {
 		if (!this.cache) {
-			logger.warn("DEBUG SETTING: NOT THREADSAFE AND WILL IMPAIR PERFORMANCE: template will be refreshed");
+			logger.warn("DEBUG SETTING: WILL IMPAIR PERFORMANCE: template will be refreshed");
 			cacheTemplates();
 		}
+		else {
+			refreshTemplatesIfNecessary();
+		}
 
-		if (this.templates == null) {
+		TemplatesHolder holder = getTemplatesHolder();
+		if (holder == null || holder.templates == null) {
 			if (this.transformerFactory == null) {
 				throw new ServletException("XLST view is incorrectly configured. Templates AND TransformerFactory are null");
 			}
@@ -198,7 +335,6 @@ public abstract class AbstractXsltView extends AbstractView {
 			response.setContentType(getContentType());
 		}
 
-		Node dom = null;
 		String docRoot = null;
 
 		// value of a single element in the map, if there is one
@@ -218,18 +354,53 @@ public abstract class AbstractXsltView extends AbstractView {
 			// We don't need to worry about model name, either:
 			// we leave the Node alone.
 			logger.debug("No need to domify: was passed an XML node");
-			dom = (Node) singleModel;
+			doTransform(model, (Node) singleModel, request, response);
 		}
-		else 			
+		else if (singleModel != null && (singleModel instanceof Source)) {
+			// Stream an XML Source straight into the transformation.
+			logger.debug("No need to domify: was passed an XML Source");
+			doTransform(model, (Source) singleModel, request, response);
+		}
+		else {
 			// docRoot local variable takes precedence
-			dom = createDomNode(model, (docRoot == null) ? this.root : docRoot, request, response);
+			Source source = createXsltSource(model, (docRoot == null) ? this.root : docRoot, request, response);
+			if (source instanceof DOMSource) {
+				// Keep calling the Node-based variant, in case a subclass overrides it.
+				doTransform(model, ((DOMSource) source).getNode(), request, response);
+			}
+			else {
+				doTransform(model, source, request, response);
+			}
+		}
+	}
 		
-		doTransform(model, dom, request, response);
+	/**
+	 * Return the XML Source to transform.
+	 * <p>Default implementation wraps the XML node returned by
+	 * <code>createDomNode</code> in a DOMSource. Subclasses can override
+	 * this method to return a SAXSource that fires SAX events for the model
+	 * directly, or a StreamSource for pre-rendered XML, which avoids
+	 * building a DOM tree for the entire model.
+	 * @param model the model Map
+	 * @param root name for root element (see <code>createDomNode</code>)
+	 * @param request HTTP request
+	 * @param response HTTP response
+	 * @return the XML Source to transform
+	 * @throws Exception we let this method throw any exception; the
+	 * AbstractXlstView superclass will catch exceptions
+	 * @see #createDomNode
+	 * @see javax.xml.transform.sax.SAXSource
+	 * @see javax.xml.transform.stream.StreamSource
+	 */
+	protected Source createXsltSource(
+			Map model, String root, HttpServletRequest request, HttpServletResponse response)
+			throws Exception {
+		return new DOMSource(createDomNode(model, root, request, response));
 	}
 
 	/**
 	 * Return the XML node to transform.
-	 * Subclasses must implement this method.
+	 * Subclasses must implement either this method or <code>createXsltSource</code>.
 	 * @param model the model Map
 	 * @param root name for root element. This can be supplied as a bean property
 	 * to concrete subclasses within the view definition file, but will be overridden
@@ -244,16 +415,20 @@ public abstract class AbstractXsltView extends AbstractView {
 	 * @return the XML node to transform
 	 * @throws Exception we let this method throw any exception; the
 	 * AbstractXlstView superclass will catch exceptions
+	 * @see #createXsltSource
 	 */
-	protected abstract Node createDomNode(
+	protected Node createDomNode(
 			Map model, String root, HttpServletRequest request, HttpServletResponse response)
-			throws Exception;
+			throws Exception {
+		throw new ServletException(
+				"XSLT view with name [" + getBeanName() + "] implements neither createXsltSource nor createDomNode");
+	}
 
 	/**
 	 * Perform the actual transformation, writing to the HTTP response.
 	 * <p>Default implementation delegates to the doTransform version
-	 * that takes a Result argument, building a StreamResult for the
-	 * ServletResponse OutputStream.
+	 * that takes a Node and a Result argument, building a StreamResult
+	 * for the ServletResponse OutputStream.
 	 * @param model the model Map
 	 * @param dom the XNL node to transform
 	 * @param request current HTTP request
@@ -261,20 +436,42 @@ public abstract class AbstractXsltView extends AbstractView {
 	 * @throws Exception we let this method throw any exception; the
 	 * AbstractXlstView superclass will catch exceptions
 	 * @see #doTransform(Node, Map, Result, String)
+	 */
+	protected void doTransform(Map model, Node dom, HttpServletRequest request, HttpServletResponse response)
+	    throws Exception {
+		Map parameters = getParameters(request);
+		BufferedOutputStream out = new BufferedOutputStream(response.getOutputStream());
+		doTransform(dom, parameters, new StreamResult(out), response.getCharacterEncoding());
+		out.flush();
+	}
+
+	/**
+	 * Perform the actual transformation, writing to the HTTP response.
+	 * <p>Default implementation delegates to the doTransform version
+	 * that takes a Result argument, building a StreamResult for the
+	 * ServletResponse OutputStream.
+	 * @param model the model Map
+	 * @param source the XML Source to transform
+	 * @param request current HTTP request
+	 * @param response current HTTP response
+	 * @throws Exception we let this method throw any exception; the
+	 * AbstractXlstView superclass will catch exceptions
+	 * @see #doTransform(Source, Map, Result, String)
 	 * @see javax.xml.transform.stream.StreamResult
 	 * @see javax.servlet.ServletResponse#getOutputStream
 	 */
-	protected void doTransform(Map model, Node dom, HttpServletRequest request, HttpServletResponse response)
+	protected void doTransform(Map model, Source source, HttpServletRequest request, HttpServletResponse response)
 	    throws Exception {
 		Map parameters = getParameters(request);
-		doTransform(
-				dom, parameters,
-				new StreamResult(new BufferedOutputStream(response.getOutputStream())),
-				response.getCharacterEncoding());
+		BufferedOutputStream out = new BufferedOutputStream(response.getOutputStream());
+		doTransform(source, parameters, new StreamResult(out), response.getCharacterEncoding());
+		out.flush();
 	}
 
 	/**
 	 * Perform the actual transformation, writing to the given result.
+	 * <p>Default implementation delegates to the doTransform version
+	 * that takes a Source argument.
 	 * @param dom the XML node to transform
 	 * @param parameters a Map of parameters to be applied to the stylesheet
 	 * @param result the result to write to
@@ -283,10 +480,23 @@ public abstract class AbstractXsltView extends AbstractView {
 	 */
 	protected void doTransform(Node dom, Map parameters, Result result, String encoding)
 	    throws Exception {
+		doTransform(new DOMSource(dom), parameters, result, encoding);
+	}
+
+	/**
+	 * Perform the actual transformation, writing to the given result.
+	 * Uses a pooled Transformer for the current Templates.
+	 * @param source the XML Source to transform
+	 * @param parameters a Map of parameters to be applied to the stylesheet
+	 * @param result the result to write to
+	 * @throws Exception we let this method throw any exception; the
+	 * AbstractXlstView superclass will catch exceptions
+	 */
+	protected void doTransform(Source source, Map parameters, Result result, String encoding)
+	    throws Exception {
+		TemplatesHolder holder = getTemplatesHolder();
 		try {
-			Transformer trans = (this.templates != null) ?
-			    this.templates.newTransformer() : // we have a stylesheet
-					this.transformerFactory.newTransformer(); // just a copy
+			Transformer trans = obtainTransformer(holder);
 				
 			// apply any subclass supplied parameters to the transformer
 			if (parameters != null) {
@@ -299,16 +509,21 @@ public abstract class AbstractXsltView extends AbstractView {
 				}
 			}
 
-			trans.setOutputProperty(OutputKeys.ENCODING, encoding);
+			if (encoding != null) {
+				trans.setOutputProperty(OutputKeys.ENCODING, encoding);
+			}
 			trans.setOutputProperty(OutputKeys.INDENT, "yes");
 
 			// Xalan-specific, but won't do any harm in other XSLT engines
 			trans.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
 
-			trans.transform(new DOMSource(dom), result);
+			trans.transform(source, result);
 			if (logger.isDebugEnabled()) {
 				logger.debug("XSLT transformed with stylesheet [" + this.stylesheetLocation + "]");
 			}
+
+			// Only return the Transformer to the pool if it completed normally.
+			releaseTransformer(holder, trans);
 		}
 		catch (TransformerConfigurationException ex) {
 			throw new ServletException(
@@ -322,6 +537,43 @@ public abstract class AbstractXsltView extends AbstractView {
 		}
 	}
 
+	/**
+	 * Take an idle Transformer from the pool of the given holder,
+	 * or create a new one if none is available.
+	 */
+	private Transformer obtainTransformer(TemplatesHolder holder) throws TransformerConfigurationException {
+		synchronized (holder.transformerPool) {
+			if (!holder.transformerPool.isEmpty()) {
+				return (Transformer) holder.transformerPool.removeFirst();
+			}
+		}
+		if (holder.templates != null) {
+			// we have a stylesheet
+			return holder.templates.newTransformer();
+		}
+		// just a copy
+		synchronized (this.transformerFactory) {
+			return this.transformerFactory.newTransformer();
+		}
+	}
+
+	/**
+	 * Reset the given Transformer and return it to the pool of the given
+	 * holder, unless the pool is full or the Templates have been replaced.
+	 */
+	private void releaseTransformer(TemplatesHolder holder, Transformer trans) {
+		if (holder != getTemplatesHolder()) {
+			return;
+		}
+		trans.clearParameters();
+		trans.setOutputProperties(null);
+		synchronized (holder.transformerPool) {
+			if (holder.transformerPool.size() < this.transformerPoolSize) {
+				holder.transformerPool.addFirst(trans);
+			}
+		}
+	}
+
 	/**
 	 * Return a Map of parameters to be applied to the stylesheet.
 	 * Subclasses can override this method in order to apply one or more
@@ -349,4 +601,27 @@ public abstract class AbstractXsltView extends AbstractView {
 		return null;
 	}
 
+
+	/**
+	 * Holder for the compiled Templates of the stylesheet, together with the
+	 * Transformers created from them. Replaced as a whole when reloading,
+	 * so that Transformers of a previous stylesheet never get reused.
+	 */
+	private static class TemplatesHolder {
+
+		private final Templates templates;
+
+		private final long lastModified;
+
+		private final LinkedList transformerPool = new LinkedList();
+
+		private long refreshTimestamp;
+
+		private TemplatesHolder(Templates templates, long lastModified) {
+			this.templates = templates;
+			this.lastModified = lastModified;
+			this.refreshTimestamp = System.currentTimeMillis();
+		}
+	}
+
 }
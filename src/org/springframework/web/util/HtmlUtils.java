@@ -16,13 +16,19 @@
 
 package org.springframework.web.util;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 
 /**
  * Utility class for HTML escaping. Escapes and unescapes
  * based on the W3C HTML 4.01 recommendation.
  *
+ * <p>Input that does not contain any characters to escape respectively
+ * any references to unescape is returned as-is, without creating a copy.
+ * The Writer-based variants write the result directly to the given Writer,
+ * for example a JspWriter, without building an intermediate String.
+ *
  * <p>Reference:
  * <a href="http://www.w3.org/TR/html4/charset.html">
  * http://www.w3.org/TR/html4/charset.html
@@ -38,264 +44,99 @@ public abstract class HtmlUtils {
 	private static final String REFERENCE_START = "&#";
 	private static final String MALFORMED_REFERENCE = "&#;";
 
-	private static final Map ENTITIES = new HashMap(252);
+	/** Maximum length of a reference, including the terminating ';' */
+	private static final int MAX_REFERENCE_LENGTH = 12;
+
+	/**
+	 * Names of the character entities defined in HTML 4.01,
+	 * in ascending order for binary search.
+	 */
+	private static final String[] ENTITY_NAMES = {
+		"AElig", "Aacute", "Acirc", "Agrave", "Alpha", "Aring", "Atilde", "Auml",
+		"Beta", "Ccedil", "Chi", "Dagger", "Delta", "ETH", "Eacute", "Ecirc",
+		"Egrave", "Epsilon", "Eta", "Euml", "Gamma", "Iacute", "Icirc", "Igrave",
+		"Iota", "Iuml", "Kappa", "Lambda", "Mu", "Ntilde", "Nu", "OElig",
+		"Oacute", "Ocirc", "Ograve", "Omega", "Omicron", "Oslash", "Otilde", "Ouml",
+		"Phi", "Pi", "Prime", "Psi", "Rho", "Scaron", "Sigma", "THORN",
+		"Tau", "Theta", "Uacute", "Ucirc", "Ugrave", "Upsilon", "Uuml", "Xi",
+		"Yacute", "Yuml", "Zeta", "aacute", "acirc", "acute", "aelig", "agrave",
+		"alefsym", "alpha", "amp", "and", "ang", "aring", "asymp", "atilde",
+		"auml", "bdquo", "beta", "brvbar", "bull", "cap", "ccedil", "cedil",
+		"cent", "chi", "circ", "clubs", "cong", "copy", "crarr", "cup",
+		"curren", "dArr", "dagger", "darr", "deg", "delta", "diams", "divide",
+		"eacute", "ecirc", "egrave", "empty", "emsp", "ensp", "epsilon", "equiv",
+		"eta", "eth", "euml", "euro", "exist", "fnof", "forall", "frac12",
+		"frac14", "frac34", "frasl", "gamma", "ge", "gt", "hArr", "harr",
+		"hearts", "hellip", "iacute", "icirc", "iexcl", "igrave", "image", "infin",
+		"int", "iota", "iquest", "isin", "iuml", "kappa", "lArr", "lambda",
+		"lang", "laquo", "larr", "lceil", "ldquo", "le", "lfloor", "lowast",
+		"loz", "lrm", "lsaquo", "lsquo", "lt", "macr", "mdash", "micro",
+		"middot", "minus", "mu", "nabla", "nbsp", "ndash", "ne", "ni",
+		"not", "notin", "nsub", "ntilde", "nu", "oacute", "ocirc", "oelig",
+		"ograve", "oline", "omega", "omicron", "oplus", "or", "ordf", "ordm",
+		"oslash", "otilde", "otimes", "ouml", "para", "part", "permil", "perp",
+		"phi", "pi", "piv", "plusmn", "pound", "prime", "prod", "prop",
+		"psi", "quot", "rArr", "radic", "rang", "raquo", "rarr", "rceil",
+		"rdquo", "real", "reg", "rfloor", "rho", "rlm", "rsaquo", "rsquo",
+		"sbquo", "scaron", "sdot", "sect", "shy", "sigma", "sigmaf", "sim",
+		"spades", "sub", "sube", "sum", "sup", "sup1", "sup2", "sup3",
+		"supe", "szlig", "tau", "there4", "theta", "thetasym", "thinsp", "thorn",
+		"tilde", "times", "trade", "uArr", "uacute", "uarr", "ucirc", "ugrave",
+		"uml", "upsih", "upsilon", "uuml", "weierp", "xi", "yacute", "yen",
+		"yuml", "zeta", "zwj", "zwnj"
+	};
+
+	/** Characters for the entity names at the same index */
+	private static final char[] ENTITY_CHARS = {
+		198, 193, 194, 192, 913, 197, 195, 196,
+		914, 199, 935, 8225, 916, 208, 201, 202,
+		200, 917, 919, 203, 915, 205, 206, 204,
+		921, 207, 922, 923, 924, 209, 925, 338,
+		211, 212, 210, 937, 927, 216, 213, 214,
+		934, 928, 8243, 936, 929, 352, 931, 222,
+		932, 920, 218, 219, 217, 933, 220, 926,
+		221, 376, 918, 225, 226, 180, 230, 224,
+		8501, 945, 38, 8743, 8736, 229, 8776, 227,
+		228, 8222, 946, 166, 8226, 8745, 231, 184,
+		162, 967, 710, 9827, 8773, 169, 8629, 8746,
+		164, 8659, 8224, 8595, 176, 948, 9830, 247,
+		233, 234, 232, 8709, 8195, 8194, 949, 8801,
+		951, 240, 235, 8364, 8707, 402, 8704, 189,
+		188, 190, 8260, 947, 8805, 62, 8660, 8596,
+		9829, 8230, 237, 238, 161, 236, 8465, 8734,
+		8747, 953, 191, 8712, 239, 954, 8656, 955,
+		9001, 171, 8592, 8968, 8220, 8804, 8970, 8727,
+		9674, 8206, 8249, 8216, 60, 175, 8212, 181,
+		183, 8722, 956, 8711, 160, 8211, 8800, 8715,
+		172, 8713, 8836, 241, 957, 243, 244, 339,
+		242, 8254, 969, 959, 8853, 8744, 170, 186,
+		248, 245, 8855, 246, 182, 8706, 8240, 8869,
+		966, 960, 982, 177, 163, 8242, 8719, 8733,
+		968, 34, 8658, 8730, 9002, 187, 8594, 8969,
+		8221, 8476, 174, 8971, 961, 8207, 8250, 8217,
+		8218, 353, 8901, 167, 173, 963, 962, 8764,
+		9824, 8834, 8838, 8721, 8835, 185, 178, 179,
+		8839, 223, 964, 8756, 952, 977, 8201, 254,
+		732, 215, 8482, 8657, 250, 8593, 251, 249,
+		168, 978, 965, 252, 8472, 958, 253, 165,
+		255, 950, 8205, 8204
+	};
+
+	/** Flags for all characters that have a character entity, indexed by character */
+	private static final boolean[] ESCAPED_CHARS;
 
 	static {
-		ENTITIES.put("nbsp", new Integer(160));
-		ENTITIES.put("iexcl", new Integer(161));
-		ENTITIES.put("cent", new Integer(162));
-		ENTITIES.put("pound", new Integer(163));
-		ENTITIES.put("curren", new Integer(164));
-		ENTITIES.put("yen", new Integer(165));
-		ENTITIES.put("brvbar", new Integer(166));
-		ENTITIES.put("sect", new Integer(167));
-		ENTITIES.put("uml", new Integer(168));
-		ENTITIES.put("copy", new Integer(169));
-		ENTITIES.put("ordf", new Integer(170));
-		ENTITIES.put("laquo", new Integer(171));
-		ENTITIES.put("not", new Integer(172));
-		ENTITIES.put("shy", new Integer(173));
-		ENTITIES.put("reg", new Integer(174));
-		ENTITIES.put("macr", new Integer(175));
-		ENTITIES.put("deg", new Integer(176));
-		ENTITIES.put("plusmn", new Integer(177));
-		ENTITIES.put("sup2", new Integer(178));
-		ENTITIES.put("sup3", new Integer(179));
-		ENTITIES.put("acute", new Integer(180));
-		ENTITIES.put("micro", new Integer(181));
-		ENTITIES.put("para", new Integer(182));
-		ENTITIES.put("middot", new Integer(183));
-		ENTITIES.put("cedil", new Integer(184));
-		ENTITIES.put("sup1", new Integer(185));
-		ENTITIES.put("ordm", new Integer(186));
-		ENTITIES.put("raquo", new Integer(187));
-		ENTITIES.put("frac14", new Integer(188));
-		ENTITIES.put("frac12", new Integer(189));
-		ENTITIES.put("frac34", new Integer(190));
-		ENTITIES.put("iquest", new Integer(191));
-		ENTITIES.put("Agrave", new Integer(192));
-		ENTITIES.put("Aacute", new Integer(193));
-		ENTITIES.put("Acirc", new Integer(194));
-		ENTITIES.put("Atilde", new Integer(195));
-		ENTITIES.put("Auml", new Integer(196));
-		ENTITIES.put("Aring", new Integer(197));
-		ENTITIES.put("AElig", new Integer(198));
-		ENTITIES.put("Ccedil", new Integer(199));
-		ENTITIES.put("Egrave", new Integer(200));
-		ENTITIES.put("Eacute", new Integer(201));
-		ENTITIES.put("Ecirc", new Integer(202));
-		ENTITIES.put("Euml", new Integer(203));
-		ENTITIES.put("Igrave", new Integer(204));
-		ENTITIES.put("Iacute", new Integer(205));
-		ENTITIES.put("Icirc", new Integer(206));
-		ENTITIES.put("Iuml", new Integer(207));
-		ENTITIES.put("ETH", new Integer(208));
-		ENTITIES.put("Ntilde", new Integer(209));
-		ENTITIES.put("Ograve", new Integer(210));
-		ENTITIES.put("Oacute", new Integer(211));
-		ENTITIES.put("Ocirc", new Integer(212));
-		ENTITIES.put("Otilde", new Integer(213));
-		ENTITIES.put("Ouml", new Integer(214));
-		ENTITIES.put("times", new Integer(215));
-		ENTITIES.put("Oslash", new Integer(216));
-		ENTITIES.put("Ugrave", new Integer(217));
-		ENTITIES.put("Uacute", new Integer(218));
-		ENTITIES.put("Ucirc", new Integer(219));
-		ENTITIES.put("Uuml", new Integer(220));
-		ENTITIES.put("Yacute", new Integer(221));
-		ENTITIES.put("THORN", new Integer(222));
-		ENTITIES.put("szlig", new Integer(223));
-		ENTITIES.put("agrave", new Integer(224));
-		ENTITIES.put("aacute", new Integer(225));
-		ENTITIES.put("acirc", new Integer(226));
-		ENTITIES.put("atilde", new Integer(227));
-		ENTITIES.put("auml", new Integer(228));
-		ENTITIES.put("aring", new Integer(229));
-		ENTITIES.put("aelig", new Integer(230));
-		ENTITIES.put("ccedil", new Integer(231));
-		ENTITIES.put("egrave", new Integer(232));
-		ENTITIES.put("eacute", new Integer(233));
-		ENTITIES.put("ecirc", new Integer(234));
-		ENTITIES.put("euml", new Integer(235));
-		ENTITIES.put("igrave", new Integer(236));
-		ENTITIES.put("iacute", new Integer(237));
-		ENTITIES.put("icirc", new Integer(238));
-		ENTITIES.put("iuml", new Integer(239));
-		ENTITIES.put("eth", new Integer(240));
-		ENTITIES.put("ntilde", new Integer(241));
-		ENTITIES.put("ograve", new Integer(242));
-		ENTITIES.put("oacute", new Integer(243));
-		ENTITIES.put("ocirc", new Integer(244));
-		ENTITIES.put("otilde", new Integer(245));
-		ENTITIES.put("ouml", new Integer(246));
-		ENTITIES.put("divide", new Integer(247));
-		ENTITIES.put("oslash", new Integer(248));
-		ENTITIES.put("ugrave", new Integer(249));
-		ENTITIES.put("uacute", new Integer(250));
-		ENTITIES.put("ucirc", new Integer(251));
-		ENTITIES.put("uuml", new Integer(252));
-		ENTITIES.put("yacute", new Integer(253));
-		ENTITIES.put("thorn", new Integer(254));
-		ENTITIES.put("yuml", new Integer(255));
-		ENTITIES.put("fnof", new Integer(402));
-		ENTITIES.put("Alpha", new Integer(913));
-		ENTITIES.put("Beta", new Integer(914));
-		ENTITIES.put("Gamma", new Integer(915));
-		ENTITIES.put("Delta", new Integer(916));
-		ENTITIES.put("Epsilon", new Integer(917));
-		ENTITIES.put("Zeta", new Integer(918));
-		ENTITIES.put("Eta", new Integer(919));
-		ENTITIES.put("Theta", new Integer(920));
-		ENTITIES.put("Iota", new Integer(921));
-		ENTITIES.put("Kappa", new Integer(922));
-		ENTITIES.put("Lambda", new Integer(923));
-		ENTITIES.put("Mu", new Integer(924));
-		ENTITIES.put("Nu", new Integer(925));
-		ENTITIES.put("Xi", new Integer(926));
-		ENTITIES.put("Omicron", new Integer(927));
-		ENTITIES.put("Pi", new Integer(928));
-		ENTITIES.put("Rho", new Integer(929));
-		ENTITIES.put("Sigma", new Integer(931));
-		ENTITIES.put("Tau", new Integer(932));
-		ENTITIES.put("Upsilon", new Integer(933));
-		ENTITIES.put("Phi", new Integer(934));
-		ENTITIES.put("Chi", new Integer(935));
-		ENTITIES.put("Psi", new Integer(936));
-		ENTITIES.put("Omega", new Integer(937));
-		ENTITIES.put("alpha", new Integer(945));
-		ENTITIES.put("beta", new Integer(946));
-		ENTITIES.put("gamma", new Integer(947));
-		ENTITIES.put("delta", new Integer(948));
-		ENTITIES.put("epsilon", new Integer(949));
-		ENTITIES.put("zeta", new Integer(950));
-		ENTITIES.put("eta", new Integer(951));
-		ENTITIES.put("theta", new Integer(952));
-		ENTITIES.put("iota", new Integer(953));
-		ENTITIES.put("kappa", new Integer(954));
-		ENTITIES.put("lambda", new Integer(955));
-		ENTITIES.put("mu", new Integer(956));
-		ENTITIES.put("nu", new Integer(957));
-		ENTITIES.put("xi", new Integer(958));
-		ENTITIES.put("omicron", new Integer(959));
-		ENTITIES.put("pi", new Integer(960));
-		ENTITIES.put("rho", new Integer(961));
-		ENTITIES.put("sigmaf", new Integer(962));
-		ENTITIES.put("sigma", new Integer(963));
-		ENTITIES.put("tau", new Integer(964));
-		ENTITIES.put("upsilon", new Integer(965));
-		ENTITIES.put("phi", new Integer(966));
-		ENTITIES.put("chi", new Integer(967));
-		ENTITIES.put("psi", new Integer(968));
-		ENTITIES.put("omega", new Integer(969));
-		ENTITIES.put("thetasym", new Integer(977));
-		ENTITIES.put("upsih", new Integer(978));
-		ENTITIES.put("piv", new Integer(982));
-		ENTITIES.put("bull", new Integer(8226));
-		ENTITIES.put("hellip", new Integer(8230));
-		ENTITIES.put("prime", new Integer(8242));
-		ENTITIES.put("Prime", new Integer(8243));
-		ENTITIES.put("oline", new Integer(8254));
-		ENTITIES.put("frasl", new Integer(8260));
-		ENTITIES.put("weierp", new Integer(8472));
-		ENTITIES.put("image", new Integer(8465));
-		ENTITIES.put("real", new Integer(8476));
-		ENTITIES.put("trade", new Integer(8482));
-		ENTITIES.put("alefsym", new Integer(8501));
-		ENTITIES.put("larr", new Integer(8592));
-		ENTITIES.put("uarr", new Integer(8593));
-		ENTITIES.put("rarr", new Integer(8594));
-		ENTITIES.put("darr", new Integer(8595));
-		ENTITIES.put("harr", new Integer(8596));
-		ENTITIES.put("crarr", new Integer(8629));
-		ENTITIES.put("lArr", new Integer(8656));
-		ENTITIES.put("uArr", new Integer(8657));
-		ENTITIES.put("rArr", new Integer(8658));
-		ENTITIES.put("dArr", new Integer(8659));
-		ENTITIES.put("hArr", new Integer(8660));
-		ENTITIES.put("forall", new Integer(8704));
-		ENTITIES.put("part", new Integer(8706));
-		ENTITIES.put("exist", new Integer(8707));
-		ENTITIES.put("empty", new Integer(8709));
-		ENTITIES.put("nabla", new Integer(8711));
-		ENTITIES.put("isin", new Integer(8712));
-		ENTITIES.put("notin", new Integer(8713));
-		ENTITIES.put("ni", new Integer(8715));
-		ENTITIES.put("prod", new Integer(8719));
-		ENTITIES.put("sum", new Integer(8721));
-		ENTITIES.put("minus", new Integer(8722));
-		ENTITIES.put("lowast", new Integer(8727));
-		ENTITIES.put("radic", new Integer(8730));
-		ENTITIES.put("prop", new Integer(8733));
-		ENTITIES.put("infin", new Integer(8734));
-		ENTITIES.put("ang", new Integer(8736));
-		ENTITIES.put("and", new Integer(8743));
-		ENTITIES.put("or", new Integer(8744));
-		ENTITIES.put("cap", new Integer(8745));
-		ENTITIES.put("cup", new Integer(8746));
-		ENTITIES.put("int", new Integer(8747));
-		ENTITIES.put("there4", new Integer(8756));
-		ENTITIES.put("sim", new Integer(8764));
-		ENTITIES.put("cong", new Integer(8773));
-		ENTITIES.put("asymp", new Integer(8776));
-		ENTITIES.put("ne", new Integer(8800));
-		ENTITIES.put("equiv", new Integer(8801));
-		ENTITIES.put("le", new Integer(8804));
-		ENTITIES.put("ge", new Integer(8805));
-		ENTITIES.put("sub", new Integer(8834));
-		ENTITIES.put("sup", new Integer(8835));
-		ENTITIES.put("nsub", new Integer(8836));
-		ENTITIES.put("sube", new Integer(8838));
-		ENTITIES.put("supe", new Integer(8839));
-		ENTITIES.put("oplus", new Integer(8853));
-		ENTITIES.put("otimes", new Integer(8855));
-		ENTITIES.put("perp", new Integer(8869));
-		ENTITIES.put("sdot", new Integer(8901));
-		ENTITIES.put("lceil", new Integer(8968));
-		ENTITIES.put("rceil", new Integer(8969));
-		ENTITIES.put("lfloor", new Integer(8970));
-		ENTITIES.put("rfloor", new Integer(8971));
-		ENTITIES.put("lang", new Integer(9001));
-		ENTITIES.put("rang", new Integer(9002));
-		ENTITIES.put("loz", new Integer(9674));
-		ENTITIES.put("spades", new Integer(9824));
-		ENTITIES.put("clubs", new Integer(9827));
-		ENTITIES.put("hearts", new Integer(9829));
-		ENTITIES.put("diams", new Integer(9830));
-		ENTITIES.put("quot", new Integer(34));
-		ENTITIES.put("amp", new Integer(38));
-		ENTITIES.put("lt", new Integer(60));
-		ENTITIES.put("gt", new Integer(62));
-		ENTITIES.put("OElig", new Integer(338));
-		ENTITIES.put("oelig", new Integer(339));
-		ENTITIES.put("Scaron", new Integer(352));
-		ENTITIES.put("scaron", new Integer(353));
-		ENTITIES.put("Yuml", new Integer(376));
-		ENTITIES.put("circ", new Integer(710));
-		ENTITIES.put("tilde", new Integer(732));
-		ENTITIES.put("ensp", new Integer(8194));
-		ENTITIES.put("emsp", new Integer(8195));
-		ENTITIES.put("thinsp", new Integer(8201));
-		ENTITIES.put("zwnj", new Integer(8204));
-		ENTITIES.put("zwj", new Integer(8205));
-		ENTITIES.put("lrm", new Integer(8206));
-		ENTITIES.put("rlm", new Integer(8207));
-		ENTITIES.put("ndash", new Integer(8211));
-		ENTITIES.put("mdash", new Integer(8212));
-		ENTITIES.put("lsquo", new Integer(8216));
-		ENTITIES.put("rsquo", new Integer(8217));
-		ENTITIES.put("sbquo", new Integer(8218));
-		ENTITIES.put("ldquo", new Integer(8220));
-		ENTITIES.put("rdquo", new Integer(8221));
-		ENTITIES.put("bdquo", new Integer(8222));
-		ENTITIES.put("dagger", new Integer(8224));
-		ENTITIES.put("Dagger", new Integer(8225));
-		ENTITIES.put("permil", new Integer(8240));
-		ENTITIES.put("lsaquo", new Integer(8249));
-		ENTITIES.put("rsaquo", new Integer(8250));
-		ENTITIES.put("euro", new Integer(8364));
-		System.out.println(ENTITIES.size());
+		int maxChar = 0;
+		for (int i = 0; i < ENTITY_CHARS.length; i++) {
+			maxChar = Math.max(maxChar, ENTITY_CHARS[i]);
+		}
+		ESCAPED_CHARS = new boolean[maxChar + 1];
+		for (int i = 0; i < ENTITY_CHARS.length; i++) {
+			ESCAPED_CHARS[ENTITY_CHARS[i]] = true;
+		}
 	}
 
+
 	/**
 	 * Turn special characters into HTML character references.
 	 * Handles complete character set defined in HTML 4.01 recommendation.
@@ -306,300 +147,79 @@ public abstract class HtmlUtils {
 	 * http://www.w3.org/TR/html4/sgml/entities.html
 	 * </a>
 	 * @param input the (unescaped) input string
-	 * @return the escaped string
+	 * @return the escaped string, or the input string itself
+	 * if it does not contain any special characters
 	 */
 	public static String htmlEscape(String input) {
 		if (input == null) {
 			return null;
 		}
+		int firstEscape = indexOfEscapedChar(input);
+		if (firstEscape == -1) {
+			return input;
+		}
+		// write runs of non-special characters at once,
+		// straight into a StringBuffer rather than through a Writer
+		char[] chars = input.toCharArray();
+		StringBuffer escaped = new StringBuffer(chars.length + 16);
+		int runStart = 0;
+		for (int i = firstEscape; i < chars.length; i++) {
+			char c = chars[i];
+			if (isEscapedChar(c)) {
+				escaped.append(chars, runStart, i - runStart);
+				escaped.append(REFERENCE_START).append((int) c).append(';');
+				runStart = i + 1;
+			}
+		}
+		escaped.append(chars, runStart, chars.length - runStart);
+		return escaped.toString();
+	}
 
-		StringBuffer escaped = new StringBuffer(input.length());
+	/**
+	 * Turn special characters into HTML character references,
+	 * writing the result to the given Writer.
+	 * @param input the (unescaped) input string (may be null)
+	 * @param out the Writer to write the escaped string to
+	 * @throws IOException if thrown by the Writer
+	 * @see #htmlEscape(String)
+	 */
+	public static void htmlEscape(String input, Writer out) throws IOException {
+		if (input != null) {
+			doHtmlEscape(input, 0, out);
+		}
+	}
+
+	private static int indexOfEscapedChar(String input) {
 		for (int i = 0; i < input.length(); i++) {
-			char c = input.charAt(i);
-			// handle non-special ASCII chars first since they will be most common
-			if ((c >= 0 && c <= 33)
-			    || (c >= 35 && c <= 37)
-			    || (c >= 39 && c <= 59)
-			    || (c == 61)
-			    || (c >= 63 && c <= 159)) {
-				escaped.append(c);
-				continue;
+			if (isEscapedChar(input.charAt(i))) {
+				return i;
 			}
+		}
+		return -1;
+	}
 
-			// handle special chars
-			if (c == 34) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 38) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 60) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 62) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c >= 160 && c <= 255) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c >= 338 && c <= 339) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c >= 352 && c <= 353) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 376) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 402) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 710) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 732) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c >= 913 && c <= 929) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c >= 931 && c <= 937) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c >= 945 && c <= 969) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c >= 977 && c <= 978) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 982) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c >= 8194 && c <= 8195) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 8201) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c >= 8204 && c <= 8207) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c >= 8211 && c <= 8212) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c >= 8216 && c <= 8218) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c >= 8220 && c <= 8222) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c >= 8224 && c <= 8226) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 8230) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 8240) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c >= 8242 && c <= 8243) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c >= 8249 && c <= 8250) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 8254) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 8260) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 8364) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 8465) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 8472) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 8476) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 8482) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 8501) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c >= 8592 && c <= 8596) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 8629) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c >= 8656 && c <= 8660) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 8704) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c >= 8706 && c <= 8707) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 8709) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c >= 8711 && c <= 8713) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 8715) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 8719) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c >= 8721 && c <= 8722) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 8727) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 8730) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c >= 8733 && c <= 8734) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 8736) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c >= 8743 && c <= 8747) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 8756) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 8764) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 8773) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 8776) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c >= 8800 && c <= 8801) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c >= 8804 && c <= 8805) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c >= 8834 && c <= 8836) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c >= 8838 && c <= 8839) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 8853) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 8855) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 8869) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 8901) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c >= 8968 && c <= 8971) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c >= 9001 && c <= 9002) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 9674) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 9824) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
-			if (c == 9827) {
-				writeDecimalReference(c, escaped);
-				continue;
-			}
+	private static boolean isEscapedChar(char c) {
+		return (c < ESCAPED_CHARS.length && ESCAPED_CHARS[c]);
+	}
 
-			// all other chars
-			escaped.append(c);
+	private static void doHtmlEscape(String input, int start, Writer out) throws IOException {
+		// write runs of non-special characters at once
+		int runStart = start;
+		for (int i = start; i < input.length(); i++) {
+			char c = input.charAt(i);
+			if (isEscapedChar(c)) {
+				if (i > runStart) {
+					out.write(input, runStart, i - runStart);
+				}
+				out.write(REFERENCE_START);
+				out.write(Integer.toString(c));
+				out.write(';');
+				runStart = i + 1;
+			}
+		}
+		if (input.length() > runStart) {
+			out.write(input, runStart, input.length() - runStart);
 		}
-		return escaped.toString();
 	}
 
 	/**
@@ -619,87 +239,144 @@ public abstract class HtmlUtils {
 	 * http://www.w3.org/TR/html4/sgml/entities.html
 	 * </a>
 	 * @param input the (escaped) input string
-	 * @return the unescaped string
+	 * @return the unescaped string, or the input string itself
+	 * if it does not contain any references
 	 */
 	public static String htmlUnescape(String input) {
 		if (input == null) {
 			return null;
 		}
+		int firstReference = input.indexOf('&');
+		if (firstReference == -1) {
+			return input;
+		}
+		StringWriter unescaped = new StringWriter(input.length());
+		unescaped.write(input, 0, firstReference);
+		try {
+			doHtmlUnescape(input, firstReference, unescaped);
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Unexpected IOException from StringWriter: " + ex.getMessage());
+		}
+		return unescaped.toString();
+	}
 
-		StringBuffer unescaped = new StringBuffer(input.length());
-		for (int i = 0; i < input.length(); i++) {
-			char c = input.charAt(i);
-			if (c == '&') {
-				// don't look more than 12 chars ahead as reference like strings
-				// should not be longer than 12 chars in length (including ';')
-				// prevents the entire string from being searched when an '&'
-				// with no following ';' is an encountered
-				int start = Math.min(i + 1, input.length() - 1);
-				int end = Math.min(input.length(), start + 12);
-
-				String reference = input.substring(start, end);
-				int semi = reference.indexOf(';');
+	/**
+	 * Turn HTML character references into their plain text UNICODE equivalent,
+	 * writing the result to the given Writer.
+	 * @param input the (escaped) input string (may be null)
+	 * @param out the Writer to write the unescaped string to
+	 * @throws IOException if thrown by the Writer
+	 * @see #htmlUnescape(String)
+	 */
+	public static void htmlUnescape(String input, Writer out) throws IOException {
+		if (input != null) {
+			doHtmlUnescape(input, 0, out);
+		}
+	}
 
-				if (semi == -1) {
-					unescaped.append(c);
-					continue;
+	private static void doHtmlUnescape(String input, int start, Writer out) throws IOException {
+		int length = input.length();
+		int runStart = start;
+		int i = input.indexOf('&', start);
+		while (i != -1) {
+			// don't look more than 12 chars ahead as reference like strings
+			// should not be longer than 12 chars in length (including ';')
+			// prevents the entire string from being searched when an '&'
+			// with no following ';' is an encountered
+			int refStart = Math.min(i + 1, length - 1);
+			int refEnd = Math.min(length, refStart + MAX_REFERENCE_LENGTH);
+			int semi = -1;
+			for (int j = refStart; j < refEnd && semi == -1; j++) {
+				if (input.charAt(j) == ';') {
+					semi = j;
 				}
-
-				reference = reference.substring(0, semi);
-				i = start + semi;
-
-				// try entity reference first
-				Integer iso = (Integer) ENTITIES.get(reference);
-				if (iso != null) {
-					unescaped.append((char) iso.intValue());
-					continue;
+			}
+			if (semi != -1) {
+				int refLength = semi - refStart;
+				int entityIndex = findEntity(input, refStart, refLength);
+				String replacement = null;
+				if (entityIndex >= 0) {
+					replacement = String.valueOf(ENTITY_CHARS[entityIndex]);
 				}
-
-				if (reference.length() == 0) {
-					unescaped.append(EMPTY_REFERENCE);
-					continue;
+				else if (refLength == 0) {
+					replacement = EMPTY_REFERENCE;
 				}
-
-				if (reference.charAt(0) == '#') {
-					if (reference.length() > 2) {
-						int index = 1;
-						if (reference.charAt(1) == 'x' || reference.charAt(1) == 'X') {
-							index = 2;
-						}
-						try {
-							unescaped.append(
-							    (char) Integer.parseInt(
-							        reference.substring(index),
-							        (index == 1) ? 10 : 16));
-							continue;
-						}
-						catch (NumberFormatException e) {
-							// wasn't hex or decimal, copy original chars
-							unescaped.append('&' + reference + ';');
-							continue;
-						}
+				else if (input.charAt(refStart) == '#') {
+					replacement = decodeNumericReference(input, refStart, refLength);
+				}
+				if (replacement != null) {
+					if (i > runStart) {
+						out.write(input, runStart, i - runStart);
 					}
-					unescaped.append(MALFORMED_REFERENCE);
-					continue;
+					out.write(replacement);
+					runStart = semi + 1;
 				}
+			}
+			// may not be valid reference, forget it
+			i = input.indexOf('&', Math.max(i + 1, runStart));
+		}
+		if (length > runStart) {
+			out.write(input, runStart, length - runStart);
+		}
+	}
 
-				// may not be valid reference, forget it
-				i = start - 1;
+	/**
+	 * Find the given entity name in the sorted entity table,
+	 * without creating a String for the name.
+	 * @return the index of the entity, or -1 if not found
+	 */
+	private static int findEntity(String input, int offset, int length) {
+		int low = 0;
+		int high = ENTITY_NAMES.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >> 1;
+			int cmp = compareRegion(ENTITY_NAMES[mid], input, offset, length);
+			if (cmp < 0) {
+				low = mid + 1;
+			}
+			else if (cmp > 0) {
+				high = mid - 1;
+			}
+			else {
+				return mid;
 			}
-			unescaped.append(c);
 		}
-		return unescaped.toString();
+		return -1;
+	}
+
+	private static int compareRegion(String name, String input, int offset, int length) {
+		int min = Math.min(name.length(), length);
+		for (int i = 0; i < min; i++) {
+			int diff = name.charAt(i) - input.charAt(offset + i);
+			if (diff != 0) {
+				return diff;
+			}
+		}
+		return name.length() - length;
 	}
 
 	/**
-	 * Write the given character as decimal reference.
-	 * @param c the character to write
-	 * @param buf the buffer to write into
+	 * Decode a decimal or hex reference such as "#68" or "#xE5".
+	 * @return the decoded character, the original reference if malformed,
+	 * or "&#;" for a reference that is too short to be decoded
 	 */
-	private static void writeDecimalReference(char c, StringBuffer buf) {
-		buf.append(REFERENCE_START);
-		buf.append((int) c);
-		buf.append(';');
+	private static String decodeNumericReference(String input, int offset, int length) {
+		if (length > 2) {
+			int index = 1;
+			if (input.charAt(offset + 1) == 'x' || input.charAt(offset + 1) == 'X') {
+				index = 2;
+			}
+			String number = input.substring(offset + index, offset + length);
+			try {
+				return String.valueOf((char) Integer.parseInt(number, (index == 1) ? 10 : 16));
+			}
+			catch (NumberFormatException e) {
+				// wasn't hex or decimal, copy original chars
+				return '&' + input.substring(offset, offset + length) + ';';
+			}
+		}
+		return MALFORMED_REFERENCE;
 	}
 
 }
@@ -16,10 +16,17 @@
 
 package org.springframework.web.util;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
 /**
  * Utility class for JavaScript escaping.
  * Escapes based on the JavaScript 1.5 recommendation.
  *
+ * <p>Input that does not contain any characters to escape is returned as-is.
+ * The Writer-based variant writes directly to the given Writer.
+ *
  * <p>Reference:
  * <a href="http://devedge.netscape.com/library/manuals/2000/javascript/1.5/guide/ident.html">
  * http://devedge.netscape.com/library/manuals/2000/javascript/1.5/guide/ident.html
@@ -34,48 +41,92 @@ public class JavaScriptUtils {
 	 * Turn special characters into escaped characters conforming to JavaScript.
 	 * Handles complete character set defined in HTML 4.01 recommendation.
 	 * @param input the input string
-	 * @return the escaped string
+	 * @return the escaped string, or the input string itself
+	 * if it does not contain any special characters
 	 */
 	public static String javaScriptEscape(String input) {
 		if (input == null) {
 			return input;
 		}
+		int firstEscape = -1;
+		for (int i = 0; i < input.length() && firstEscape == -1; i++) {
+			if (isEscapedChar(input.charAt(i))) {
+				firstEscape = i;
+			}
+		}
+		if (firstEscape == -1) {
+			return input;
+		}
+		StringWriter filtered = new StringWriter(input.length() + 16);
+		filtered.write(input, 0, firstEscape);
+		try {
+			doJavaScriptEscape(input, firstEscape, filtered);
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Unexpected IOException from StringWriter: " + ex.getMessage());
+		}
+		return filtered.toString();
+	}
+
+	/**
+	 * Turn special characters into escaped characters conforming to JavaScript,
+	 * writing the result to the given Writer.
+	 * @param input the input string (may be null)
+	 * @param out the Writer to write the escaped string to
+	 * @throws IOException if thrown by the Writer
+	 * @see #javaScriptEscape(String)
+	 */
+	public static void javaScriptEscape(String input, Writer out) throws IOException {
+		if (input != null) {
+			doJavaScriptEscape(input, 0, out);
+		}
+	}
+
+	private static boolean isEscapedChar(char c) {
+		return (c == '"' || c == '\'' || c == '\\' || c == '\t' || c == '\n' || c == '\r' || c == '\f');
+	}
 
-		StringBuffer filtered = new StringBuffer(input.length());
-		char prevChar = '\u0000';
+	private static void doJavaScriptEscape(String input, int start, Writer out) throws IOException {
+		// write runs of non-special characters at once
+		int runStart = start;
+		char prevChar = (start > 0 ? input.charAt(start - 1) : '\u0000');
 		char c;
-		for (int i = 0; i < input.length(); i++) {
+		for (int i = start; i < input.length(); i++) {
 			c = input.charAt(i);
-			if (c == '"') {
-				filtered.append("\\\"");
-			}
-			else if (c == '\'') {
-				filtered.append("\\'");
-			}
-			else if (c == '\\') {
-				filtered.append("\\\\");
-			}
-			else if (c == '\t') {
-				filtered.append("\\t");
-			}
-			else if (c == '\n') {
-				if (prevChar != '\r') {
-					filtered.append("\\n");
+			if (isEscapedChar(c)) {
+				if (i > runStart) {
+					out.write(input, runStart, i - runStart);
+				}
+				runStart = i + 1;
+				if (c == '"') {
+					out.write("\\\"");
+				}
+				else if (c == '\'') {
+					out.write("\\'");
+				}
+				else if (c == '\\') {
+					out.write("\\\\");
+				}
+				else if (c == '\t') {
+					out.write("\\t");
+				}
+				else if (c == '\n') {
+					if (prevChar != '\r') {
+						out.write("\\n");
+					}
+				}
+				else if (c == '\r') {
+					out.write("\\n");
+				}
+				else if (c == '\f') {
+					out.write("\\f");
 				}
-			}
-			else if (c == '\r') {
-				filtered.append("\\n");
-			}
-			else if (c == '\f') {
-				filtered.append("\\f");
-			}
-			else {
-				filtered.append(c);
 			}
 			prevChar = c;
-
 		}
-		return filtered.toString();
+		if (input.length() > runStart) {
+			out.write(input, runStart, input.length() - runStart);
+		}
 	}
 
 }
@@ -68,6 +68,17 @@ public abstract class WebUtils {
 	/** Name suffixes in case of image buttons */
 	public static final String[] SUBMIT_IMAGE_SUFFIXES = {".x", ".y"};
 
+	/**
+	 * Name of the HTTP request header that carries the ETags
+	 * of cached representations that the client holds.
+	 */
+	public static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+
+	/**
+	 * Name of the HTTP response header that carries the ETag of a representation.
+	 */
+	public static final String ETAG_HEADER = "ETag";
+
 
 	/**
 	 * Set a system property to the web application root directory.
@@ -293,4 +304,36 @@ public abstract class WebUtils {
 		return false;
 	}
 
+	/**
+	 * Check whether the "If-None-Match" header of the given request
+	 * matches the given ETag, either explicitly or via "*".
+	 * Uses weak comparison, that is, ignores a "W/" prefix on either side,
+	 * as appropriate for GET requests.
+	 * @param request current HTTP request
+	 * @param eTag the ETag of the current representation, including quotes
+	 * @return whether the client already holds the current representation
+	 * @see #IF_NONE_MATCH_HEADER
+	 */
+	public static boolean matchesETag(HttpServletRequest request, String eTag) {
+		String ifNoneMatch = request.getHeader(IF_NONE_MATCH_HEADER);
+		if (ifNoneMatch == null || eTag == null) {
+			return false;
+		}
+		String opaqueTag = (eTag.startsWith("W/") ? eTag.substring(2) : eTag);
+		String[] eTags = StringUtils.tokenizeToStringArray(ifNoneMatch, ",", true, true);
+		for (int i = 0; i < eTags.length; i++) {
+			String candidate = eTags[i];
+			if (candidate.equals("*")) {
+				return true;
+			}
+			if (candidate.startsWith("W/")) {
+				candidate = candidate.substring(2);
+			}
+			if (candidate.equals(opaqueTag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 }
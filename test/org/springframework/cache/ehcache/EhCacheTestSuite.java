@@ -20,7 +20,9 @@ import junit.framework.TestCase;
 import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheManager;
 
+import org.springframework.aop.framework.ProxyFactory;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.remoting.support.CachingClientInterceptorTests;
 
 /**
  * @author Dmitriy Kopylenko
@@ -118,4 +120,42 @@ public class EhCacheTestSuite extends TestCase {
 		}
 	}
 
+	public void testEhCacheCachingClientInterceptor() throws Exception {
+		EhCacheManagerFactoryBean cacheManagerFb = new EhCacheManagerFactoryBean();
+		cacheManagerFb.setConfigLocation(new ClassPathResource("testEhcache.xml", getClass()));
+		cacheManagerFb.afterPropertiesSet();
+
+		try {
+			EhCacheFactoryBean cacheFb = new EhCacheFactoryBean();
+			cacheFb.setCacheManager((CacheManager) cacheManagerFb.getObject());
+			cacheFb.setCacheName("myCache1");
+			cacheFb.afterPropertiesSet();
+			Cache cache = (Cache) cacheFb.getObject();
+
+			EhCacheCachingClientInterceptor interceptor = new EhCacheCachingClientInterceptor();
+			interceptor.setCache(cache);
+			interceptor.addCachedMethod("getCountryName", -1);
+			interceptor.afterPropertiesSet();
+			CachingClientInterceptorTests.CountingReferenceDataService target =
+					new CachingClientInterceptorTests.CountingReferenceDataService();
+			ProxyFactory pf = new ProxyFactory(new Class[] {CachingClientInterceptorTests.ReferenceDataService.class});
+			pf.addInterceptor(interceptor);
+			pf.setTarget(target);
+			CachingClientInterceptorTests.ReferenceDataService proxy =
+					(CachingClientInterceptorTests.ReferenceDataService) pf.getProxy();
+
+			assertEquals("de:1", proxy.getCountryName("de"));
+			assertEquals("de:1", proxy.getCountryName("de"));
+			assertEquals("at:2", proxy.getCountryName("at"));
+			assertEquals(1, interceptor.getHitCount());
+			assertEquals(2, cache.getSize());
+			interceptor.clear();
+			assertEquals(0, cache.getSize());
+			assertEquals("de:3", proxy.getCountryName("de"));
+		}
+		finally {
+			cacheManagerFb.destroy();
+		}
+	}
+
 }
@@ -16,6 +16,10 @@
 
 package org.springframework.context.support;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Locale;
 import java.util.Properties;
 
@@ -185,4 +189,109 @@ public class ResourceBundleMessageSourceTests extends TestCase {
 		assertEquals("message1",  ms.getMessage("code1", null, Locale.ENGLISH));
 	}
 
+	public void testReloadableResourceBundleMessageSourceWithMergedProperties() {
+		ReloadableResourceBundleMessageSource ms = new ReloadableResourceBundleMessageSource();
+		ms.setBasenames(new String[] {"org/springframework/context/support/messages",
+		                              "org/springframework/context/support/more-messages"});
+		ms.setFallbackToSystemLocale(false);
+		assertEquals("message1", ms.getMessage("code1", null, Locale.ENGLISH));
+		assertEquals("message2", ms.getMessage("code2", null, Locale.ENGLISH));
+		assertEquals("message3", ms.getMessage("code3", null, Locale.ENGLISH));
+		assertEquals("nachricht2", ms.getMessage("code2", null, Locale.GERMAN));
+		assertEquals("noochricht2", ms.getMessage("code2", null, new Locale("DE", "at", "oo")));
+		assertEquals("message3", ms.getMessage("code3", null, Locale.GERMAN));
+	}
+
+	public void testReloadableResourceBundleMessageSourceWithRefreshOnAccess() throws Exception {
+		File file = File.createTempFile("messages", ".properties");
+		String basename = "file:" + file.getAbsolutePath().substring(0, file.getAbsolutePath().length() - 11);
+		try {
+			writeMessage(file, "code1", "message1", 1000000000000L);
+			ReloadableResourceBundleMessageSource ms = new ReloadableResourceBundleMessageSource();
+			ms.setBasename(basename);
+			ms.setFallbackToSystemLocale(false);
+			ms.setCacheSeconds(0);
+			assertEquals("message1", ms.getMessage("code1", null, Locale.ENGLISH));
+			writeMessage(file, "code1", "message1a", 1000000010000L);
+			assertEquals("message1a", ms.getMessage("code1", null, Locale.ENGLISH));
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	public void testReloadableResourceBundleMessageSourceWithRefreshInBackground() throws Exception {
+		File file = File.createTempFile("messages", ".properties");
+		String basename = "file:" + file.getAbsolutePath().substring(0, file.getAbsolutePath().length() - 11);
+		ReloadableResourceBundleMessageSource ms = new ReloadableResourceBundleMessageSource();
+		try {
+			writeMessage(file, "code1", "message1", 1000000000000L);
+			ms.setBasename(basename);
+			ms.setFallbackToSystemLocale(false);
+			ms.setCacheSeconds(3600);
+			ms.setRefreshInBackground(true);
+			assertEquals("message1", ms.getMessage("code1", null, Locale.ENGLISH));
+			writeMessage(file, "code1", "message1a", 1000000010000L);
+			// not checked on access
+			assertEquals("message1", ms.getMessage("code1", null, Locale.ENGLISH));
+			ms.refreshCache();
+			assertEquals("message1a", ms.getMessage("code1", null, Locale.ENGLISH));
+		}
+		finally {
+			ms.destroy();
+			file.delete();
+		}
+	}
+
+	public void testReloadableResourceBundleMessageSourceWithRefreshDuringMerge() throws Exception {
+		final File file = File.createTempFile("messages", ".properties");
+		String basename = "file:" + file.getAbsolutePath().substring(0, file.getAbsolutePath().length() - 11);
+		final boolean[] refreshed = new boolean[1];
+		ReloadableResourceBundleMessageSource ms = new ReloadableResourceBundleMessageSource() {
+			protected PropertiesHolder getProperties(String filename) {
+				PropertiesHolder propHolder = super.getProperties(filename);
+				if (!refreshed[0] && propHolder.getProperties() != null) {
+					// simulate a background refresh between loading and caching the merge
+					refreshed[0] = true;
+					try {
+						writeMessage(file, "code1", "message1a", 1000000010000L);
+					}
+					catch (IOException ex) {
+						throw new IllegalStateException(ex.getMessage());
+					}
+					refreshCache();
+				}
+				return propHolder;
+			}
+		};
+		try {
+			writeMessage(file, "code1", "message1", 1000000000000L);
+			ms.setBasename(basename);
+			ms.setFallbackToSystemLocale(false);
+			ms.setCacheSeconds(3600);
+			ms.setRefreshInBackground(true);
+			assertEquals("message1", ms.getMessage("code1", null, Locale.ENGLISH));
+			assertTrue(refreshed[0]);
+			// the merge from before the refresh must not have been cached
+			assertEquals("message1a", ms.getMessage("code1", null, Locale.ENGLISH));
+		}
+		finally {
+			ms.destroy();
+			file.delete();
+		}
+	}
+
+	private void writeMessage(File file, String code, String msg, long lastModified) throws IOException {
+		Properties props = new Properties();
+		props.setProperty(code, msg);
+		OutputStream os = new FileOutputStream(file);
+		try {
+			props.store(os, null);
+		}
+		finally {
+			os.close();
+		}
+		file.setLastModified(lastModified);
+	}
+
 }
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.core.task;
+
+import junit.framework.TestCase;
+
+/**
+ * @author agent
+ * @since 1.1.2
+ */
+public class SimpleAsyncTaskExecutorTests extends TestCase {
+
+	public void testExecutesInNewThread() throws InterruptedException {
+		SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("myPrefix-");
+		final String[] threadName = new String[1];
+		final Object monitor = new Object();
+		synchronized (monitor) {
+			executor.execute(new Runnable() {
+				public void run() {
+					synchronized (monitor) {
+						threadName[0] = Thread.currentThread().getName();
+						monitor.notifyAll();
+					}
+				}
+			});
+			while (threadName[0] == null) {
+				monitor.wait();
+			}
+		}
+		assertEquals("myPrefix-1", threadName[0]);
+	}
+
+	public void testConcurrencyLimit() throws InterruptedException {
+		final SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor();
+		executor.setConcurrencyLimit(2);
+		final Object monitor = new Object();
+		final int[] counts = new int[2];
+		Runnable task = new Runnable() {
+			public void run() {
+				synchronized (monitor) {
+					counts[0]++;
+					counts[1] = Math.max(counts[1], executor.getConcurrencyCount());
+				}
+				try {
+					Thread.sleep(50);
+				}
+				catch (InterruptedException ex) {
+				}
+			}
+		};
+		for (int i = 0; i < 6; i++) {
+			executor.execute(task);
+			assertTrue(executor.getConcurrencyCount() <= 2);
+		}
+		while (executor.getConcurrencyCount() > 0) {
+			Thread.sleep(10);
+		}
+		assertEquals(6, counts[0]);
+		assertTrue(counts[1] <= 2);
+	}
+
+	public void testSyncTaskExecutor() {
+		final Thread[] thread = new Thread[1];
+		new SyncTaskExecutor().execute(new Runnable() {
+			public void run() {
+				thread[0] = Thread.currentThread();
+			}
+		});
+		assertSame(Thread.currentThread(), thread[0]);
+	}
+
+}
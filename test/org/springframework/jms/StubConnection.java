@@ -0,0 +1,147 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jms;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionConsumer;
+import javax.jms.ConnectionMetaData;
+import javax.jms.Destination;
+import javax.jms.ExceptionListener;
+import javax.jms.JMSException;
+import javax.jms.ServerSessionPool;
+import javax.jms.Session;
+import javax.jms.Topic;
+
+/**
+ * In-memory JMS Connection for tests, created by StubConnectionFactory.
+ * Consumers only receive messages while the connection is started.
+ *
+ * @author agent
+ * @since 1.1.2
+ */
+public class StubConnection implements Connection {
+
+	private final StubConnectionFactory connectionFactory;
+
+	private final List sessions = new ArrayList();
+
+	private String clientId;
+
+	private ExceptionListener exceptionListener;
+
+	private volatile boolean started = false;
+
+	private volatile boolean closed = false;
+
+	StubConnection(StubConnectionFactory connectionFactory) {
+		this.connectionFactory = connectionFactory;
+	}
+
+	StubConnectionFactory getConnectionFactory() {
+		return connectionFactory;
+	}
+
+	public Session createSession(boolean transacted, int acknowledgeMode) throws JMSException {
+		checkNotClosed();
+		StubSession session = new StubSession(this, transacted, acknowledgeMode);
+		synchronized (this.sessions) {
+			this.sessions.add(session);
+		}
+		this.connectionFactory.sessionCreated();
+		return session;
+	}
+
+	public String getClientID() {
+		return clientId;
+	}
+
+	public void setClientID(String clientId) {
+		this.clientId = clientId;
+	}
+
+	public ConnectionMetaData getMetaData() {
+		throw new UnsupportedOperationException();
+	}
+
+	public ExceptionListener getExceptionListener() {
+		return exceptionListener;
+	}
+
+	public void setExceptionListener(ExceptionListener exceptionListener) {
+		this.exceptionListener = exceptionListener;
+	}
+
+	public void start() throws JMSException {
+		checkNotClosed();
+		this.started = true;
+		this.connectionFactory.notifyConsumers();
+	}
+
+	public void stop() {
+		this.started = false;
+	}
+
+	public boolean isStarted() {
+		return started;
+	}
+
+	public void close() throws JMSException {
+		if (this.closed) {
+			return;
+		}
+		this.started = false;
+		this.closed = true;
+		List sessionsToClose;
+		synchronized (this.sessions) {
+			sessionsToClose = new ArrayList(this.sessions);
+		}
+		for (int i = 0; i < sessionsToClose.size(); i++) {
+			((Session) sessionsToClose.get(i)).close();
+		}
+		this.connectionFactory.notifyConsumers();
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	void sessionClosed(StubSession session) {
+		synchronized (this.sessions) {
+			this.sessions.remove(session);
+		}
+	}
+
+	void checkNotClosed() throws JMSException {
+		if (this.closed) {
+			throw new javax.jms.IllegalStateException("Connection closed");
+		}
+	}
+
+	public ConnectionConsumer createConnectionConsumer(
+			Destination destination, String messageSelector, ServerSessionPool pool, int maxMessages) {
+		throw new UnsupportedOperationException();
+	}
+
+	public ConnectionConsumer createDurableConnectionConsumer(
+			Topic topic, String subscriptionName, String messageSelector, ServerSessionPool pool, int maxMessages) {
+		throw new UnsupportedOperationException();
+	}
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jms;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+
+/**
+ * In-memory JMS ConnectionFactory for tests: a minimal JMS provider that
+ * supports queues, transacted and non-transacted sessions, and synchronous
+ * as well as listener-based receiving. Topics are not supported.
+ *
+ * <p>Counts the JMS resources that get created, for verifying that
+ * resources are reused.
+ *
+ * @author agent
+ * @since 1.1.2
+ */
+public class StubConnectionFactory implements ConnectionFactory {
+
+	/** Queue name -> StubQueue */
+	private final Map queues = new HashMap();
+
+	private int connectionCount = 0;
+
+	private int sessionCount = 0;
+
+	private int closedSessionCount = 0;
+
+	private int producerCount = 0;
+
+	private int consumerCount = 0;
+
+	private int commitCount = 0;
+
+	private int rollbackCount = 0;
+
+	private int recoverCount = 0;
+
+
+	public Connection createConnection() {
+		synchronized (this) {
+			this.connectionCount++;
+		}
+		return new StubConnection(this);
+	}
+
+	public Connection createConnection(String username, String password) {
+		return createConnection();
+	}
+
+	/**
+	 * Return the queue with the given name, creating it if necessary.
+	 */
+	public StubQueue getQueue(String name) {
+		synchronized (this.queues) {
+			StubQueue queue = (StubQueue) this.queues.get(name);
+			if (queue == null) {
+				queue = new StubQueue(name);
+				this.queues.put(name, queue);
+			}
+			return queue;
+		}
+	}
+
+	/**
+	 * Wake up all consumers that wait for messages, e.g. after a connection has been started.
+	 */
+	void notifyConsumers() {
+		synchronized (this.queues) {
+			for (Iterator it = this.queues.values().iterator(); it.hasNext();) {
+				StubQueue queue = (StubQueue) it.next();
+				synchronized (queue) {
+					queue.notifyAll();
+				}
+			}
+		}
+	}
+
+	synchronized void sessionCreated() {
+		this.sessionCount++;
+	}
+
+	synchronized void sessionClosed() {
+		this.closedSessionCount++;
+	}
+
+	synchronized void producerCreated() {
+		this.producerCount++;
+	}
+
+	synchronized void consumerCreated() {
+		this.consumerCount++;
+	}
+
+	synchronized void committed() {
+		this.commitCount++;
+	}
+
+	synchronized void rolledBack() {
+		this.rollbackCount++;
+	}
+
+	synchronized void recovered() {
+		this.recoverCount++;
+	}
+
+	public synchronized int getConnectionCount() {
+		return connectionCount;
+	}
+
+	public synchronized int getSessionCount() {
+		return sessionCount;
+	}
+
+	public synchronized int getClosedSessionCount() {
+		return closedSessionCount;
+	}
+
+	public synchronized int getProducerCount() {
+		return producerCount;
+	}
+
+	public synchronized int getConsumerCount() {
+		return consumerCount;
+	}
+
+	public synchronized int getCommitCount() {
+		return commitCount;
+	}
+
+	public synchronized int getRollbackCount() {
+		return rollbackCount;
+	}
+
+	public synchronized int getRecoverCount() {
+		return recoverCount;
+	}
+
+}
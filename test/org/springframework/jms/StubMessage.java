@@ -0,0 +1,150 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jms;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+
+/**
+ * InvocationHandler for in-memory JMS messages for tests, created by
+ * StubSession. Backs Message, TextMessage and ObjectMessage proxies:
+ * Header fields, properties and the body are simply stored in maps.
+ *
+ * @author agent
+ * @since 1.1.2
+ */
+public class StubMessage implements InvocationHandler {
+
+	/** Header name (e.g. "JMSMessageID") -> value */
+	private final Map headers = new HashMap();
+
+	/** Property name -> value */
+	private final Map properties = new HashMap();
+
+	private final Class messageInterface;
+
+	private Object body;
+
+	private StubSession acknowledgingSession;
+
+	/**
+	 * Create a message proxy for the given JMS message interface.
+	 */
+	public static Object createMessage(Class messageInterface) {
+		return Proxy.newProxyInstance(StubMessage.class.getClassLoader(), new Class[] {messageInterface},
+				new StubMessage(messageInterface));
+	}
+
+	/**
+	 * Return the StubMessage behind the given message proxy.
+	 */
+	static StubMessage getStubMessage(Message message) {
+		return (StubMessage) Proxy.getInvocationHandler(message);
+	}
+
+	private StubMessage(Class messageInterface) {
+		this.messageInterface = messageInterface;
+	}
+
+	/**
+	 * Set the CLIENT_ACKNOWLEDGE session that received this message.
+	 */
+	synchronized void setAcknowledgingSession(StubSession session) {
+		this.acknowledgingSession = session;
+	}
+
+	public synchronized Object invoke(Object proxy, Method method, Object[] args) throws JMSException {
+		String name = method.getName();
+		if (name.equals("equals")) {
+			return (proxy == args[0] ? Boolean.TRUE : Boolean.FALSE);
+		}
+		else if (name.equals("hashCode")) {
+			return new Integer(System.identityHashCode(proxy));
+		}
+		else if (name.equals("toString")) {
+			return "Stub" + this.messageInterface.getName().substring("javax.jms.".length()) +
+					": headers=" + this.headers + ", properties=" + this.properties +
+					", body=[" + this.body + "]";
+		}
+		else if (name.equals("setText") || name.equals("setObject")) {
+			this.body = args[0];
+			return null;
+		}
+		else if (name.equals("getText") || name.equals("getObject")) {
+			return this.body;
+		}
+		else if (name.equals("clearBody")) {
+			this.body = null;
+			return null;
+		}
+		else if (name.equals("clearProperties")) {
+			this.properties.clear();
+			return null;
+		}
+		else if (name.equals("propertyExists")) {
+			return (this.properties.containsKey(args[0]) ? Boolean.TRUE : Boolean.FALSE);
+		}
+		else if (name.equals("getPropertyNames")) {
+			return Collections.enumeration(this.properties.keySet());
+		}
+		else if (name.equals("acknowledge")) {
+			if (this.acknowledgingSession != null) {
+				this.acknowledgingSession.acknowledge();
+			}
+			return null;
+		}
+		else if (name.startsWith("setJMS")) {
+			this.headers.put(name.substring(3), args[0]);
+			return null;
+		}
+		else if (name.startsWith("getJMS")) {
+			return defaultIfNull(this.headers.get(name.substring(3)), method.getReturnType());
+		}
+		else if (name.startsWith("set") && name.endsWith("Property")) {
+			this.properties.put(args[0], args[1]);
+			return null;
+		}
+		else if (name.startsWith("get") && name.endsWith("Property")) {
+			return defaultIfNull(this.properties.get(args[0]), method.getReturnType());
+		}
+		throw new UnsupportedOperationException("Method [" + method + "] not supported by StubMessage");
+	}
+
+	private Object defaultIfNull(Object value, Class returnType) {
+		if (value != null || !returnType.isPrimitive()) {
+			return value;
+		}
+		if (returnType.equals(boolean.class)) {
+			return Boolean.FALSE;
+		}
+		else if (returnType.equals(int.class)) {
+			return new Integer(0);
+		}
+		else if (returnType.equals(long.class)) {
+			return new Long(0);
+		}
+		throw new UnsupportedOperationException("Primitive type [" + returnType + "] not supported");
+	}
+
+}
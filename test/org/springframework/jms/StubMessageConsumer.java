@@ -0,0 +1,122 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jms;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageListener;
+
+/**
+ * In-memory JMS MessageConsumer for tests, created by StubSession.
+ * Supports synchronous receiving only. Message selectors are ignored.
+ *
+ * @author agent
+ * @since 1.1.2
+ */
+public class StubMessageConsumer implements MessageConsumer {
+
+	private final StubSession session;
+
+	private final StubQueue queue;
+
+	private final String messageSelector;
+
+	private volatile boolean closed = false;
+
+	StubMessageConsumer(StubSession session, StubQueue queue, String messageSelector) {
+		this.session = session;
+		this.queue = queue;
+		this.messageSelector = messageSelector;
+	}
+
+	public String getMessageSelector() {
+		return messageSelector;
+	}
+
+	public MessageListener getMessageListener() {
+		return null;
+	}
+
+	public void setMessageListener(MessageListener listener) {
+		throw new UnsupportedOperationException("StubMessageConsumer supports synchronous receiving only");
+	}
+
+	public Message receive() throws JMSException {
+		return doReceive(0);
+	}
+
+	public Message receive(long timeout) throws JMSException {
+		return doReceive(timeout);
+	}
+
+	public Message receiveNoWait() throws JMSException {
+		return doReceive(-1);
+	}
+
+	/**
+	 * Receive the next message, waiting while the connection is stopped.
+	 * @param timeout the timeout in milliseconds: 0 for none, -1 for no waiting
+	 */
+	private Message doReceive(long timeout) throws JMSException {
+		if (this.closed) {
+			throw new javax.jms.IllegalStateException("Consumer closed");
+		}
+		long deadline = (timeout > 0 ? System.currentTimeMillis() + timeout : 0);
+		synchronized (this.queue) {
+			while (!this.closed && !this.session.isClosed()) {
+				if (this.session.getConnection().isStarted()) {
+					Message message = this.queue.poll();
+					if (message != null) {
+						this.session.received(this.queue, message);
+						return message;
+					}
+				}
+				if (timeout < 0) {
+					return null;
+				}
+				long waitTime = 0;
+				if (deadline != 0) {
+					waitTime = deadline - System.currentTimeMillis();
+					if (waitTime <= 0) {
+						return null;
+					}
+				}
+				try {
+					this.queue.wait(waitTime);
+				}
+				catch (InterruptedException ex) {
+					return null;
+				}
+			}
+			return null;
+		}
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	public void close() {
+		this.closed = true;
+		this.session.consumerClosed(this);
+		synchronized (this.queue) {
+			this.queue.notifyAll();
+		}
+	}
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jms;
+
+import javax.jms.DeliveryMode;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+
+/**
+ * In-memory JMS MessageProducer for tests, created by StubSession.
+ *
+ * @author agent
+ * @since 1.1.2
+ */
+public class StubMessageProducer implements MessageProducer {
+
+	private static long messageIdCounter = 0;
+
+	private final StubSession session;
+
+	private final StubQueue queue;
+
+	private boolean disableMessageID = false;
+
+	private boolean disableMessageTimestamp = false;
+
+	private int deliveryMode = DeliveryMode.PERSISTENT;
+
+	private int priority = Message.DEFAULT_PRIORITY;
+
+	private long timeToLive = Message.DEFAULT_TIME_TO_LIVE;
+
+	private boolean closed = false;
+
+	StubMessageProducer(StubSession session, StubQueue queue) {
+		this.session = session;
+		this.queue = queue;
+	}
+
+	public void setDisableMessageID(boolean disableMessageID) {
+		this.disableMessageID = disableMessageID;
+	}
+
+	public boolean getDisableMessageID() {
+		return disableMessageID;
+	}
+
+	public void setDisableMessageTimestamp(boolean disableMessageTimestamp) {
+		this.disableMessageTimestamp = disableMessageTimestamp;
+	}
+
+	public boolean getDisableMessageTimestamp() {
+		return disableMessageTimestamp;
+	}
+
+	public void setDeliveryMode(int deliveryMode) {
+		this.deliveryMode = deliveryMode;
+	}
+
+	public int getDeliveryMode() {
+		return deliveryMode;
+	}
+
+	public void setPriority(int priority) {
+		this.priority = priority;
+	}
+
+	public int getPriority() {
+		return priority;
+	}
+
+	public void setTimeToLive(long timeToLive) {
+		this.timeToLive = timeToLive;
+	}
+
+	public long getTimeToLive() {
+		return timeToLive;
+	}
+
+	public Destination getDestination() {
+		return queue;
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	public void close() {
+		this.closed = true;
+	}
+
+	public void send(Message message) throws JMSException {
+		send(this.queue, message, this.deliveryMode, this.priority, this.timeToLive);
+	}
+
+	public void send(Message message, int deliveryMode, int priority, long timeToLive) throws JMSException {
+		send(this.queue, message, deliveryMode, priority, timeToLive);
+	}
+
+	public void send(Destination destination, Message message) throws JMSException {
+		send(destination, message, this.deliveryMode, this.priority, this.timeToLive);
+	}
+
+	public void send(Destination destination, Message message, int deliveryMode, int priority, long timeToLive)
+			throws JMSException {
+		if (this.closed) {
+			throw new javax.jms.IllegalStateException("Producer closed");
+		}
+		if (!(destination instanceof StubQueue)) {
+			throw new javax.jms.InvalidDestinationException("Only StubQueues supported: " + destination);
+		}
+		if (this.queue != null && destination != this.queue) {
+			throw new UnsupportedOperationException("Cannot send to a different destination than the producer's");
+		}
+		message.setJMSDestination(destination);
+		message.setJMSDeliveryMode(deliveryMode);
+		message.setJMSPriority(priority);
+		if (!this.disableMessageID) {
+			synchronized (StubMessageProducer.class) {
+				message.setJMSMessageID("ID:" + (++messageIdCounter));
+			}
+		}
+		if (!this.disableMessageTimestamp) {
+			message.setJMSTimestamp(System.currentTimeMillis());
+		}
+		this.session.send((StubQueue) destination, message);
+	}
+
+}
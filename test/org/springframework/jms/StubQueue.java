@@ -0,0 +1,84 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jms;
+
+import java.util.LinkedList;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Queue;
+
+/**
+ * In-memory JMS Queue for tests. Holds the messages that have been
+ * sent to it, in delivery order.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see StubConnectionFactory#getQueue
+ */
+public class StubQueue implements Queue {
+
+	private final String name;
+
+	private final LinkedList messages = new LinkedList();
+
+	StubQueue(String name) {
+		this.name = name;
+	}
+
+	public String getQueueName() {
+		return name;
+	}
+
+	/**
+	 * Return the number of messages currently in this queue.
+	 */
+	public synchronized int size() {
+		return this.messages.size();
+	}
+
+	/**
+	 * Add the given message to the end of this queue.
+	 */
+	public synchronized void add(Message message) {
+		this.messages.addLast(message);
+		notifyAll();
+	}
+
+	/**
+	 * Add the given message to the front of this queue, for redelivery.
+	 */
+	synchronized void addFirst(Message message) throws JMSException {
+		message.setJMSRedelivered(true);
+		this.messages.addFirst(message);
+		notifyAll();
+	}
+
+	/**
+	 * Remove and return the first message of this queue.
+	 * Must be called while synchronized on this queue.
+	 * @return the message, or null if none
+	 */
+	Message poll() {
+		return (this.messages.isEmpty() ? null : (Message) this.messages.removeFirst());
+	}
+
+	public String toString() {
+		return "StubQueue[" + this.name + "]";
+	}
+
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jms;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.jms.BytesMessage;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.MapMessage;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageListener;
+import javax.jms.MessageProducer;
+import javax.jms.ObjectMessage;
+import javax.jms.Queue;
+import javax.jms.QueueBrowser;
+import javax.jms.Session;
+import javax.jms.StreamMessage;
+import javax.jms.TemporaryQueue;
+import javax.jms.TemporaryTopic;
+import javax.jms.TextMessage;
+import javax.jms.Topic;
+import javax.jms.TopicSubscriber;
+
+/**
+ * In-memory JMS Session for tests, created by StubConnection.
+ *
+ * <p>A transacted session keeps sent messages back until commit,
+ * and puts received messages back into their queue on rollback.
+ * A CLIENT_ACKNOWLEDGE session puts unacknowledged messages back
+ * into their queue on recover.
+ *
+ * @author agent
+ * @since 1.1.2
+ */
+public class StubSession implements Session {
+
+	private final StubConnection connection;
+
+	private final boolean transacted;
+
+	private final int acknowledgeMode;
+
+	/** Pending messages to send, as Object array of StubQueue and Message */
+	private final List pendingSends = new ArrayList();
+
+	/** Received but not yet committed or acknowledged messages, as Object array of StubQueue and Message */
+	private final List pendingReceives = new ArrayList();
+
+	private final List consumers = new ArrayList();
+
+	private volatile boolean closed = false;
+
+	StubSession(StubConnection connection, boolean transacted, int acknowledgeMode) {
+		this.connection = connection;
+		this.transacted = transacted;
+		this.acknowledgeMode = (transacted ? SESSION_TRANSACTED : acknowledgeMode);
+	}
+
+	StubConnection getConnection() {
+		return connection;
+	}
+
+	public boolean getTransacted() {
+		return transacted;
+	}
+
+	public int getAcknowledgeMode() {
+		return acknowledgeMode;
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	void checkNotClosed() throws JMSException {
+		if (this.closed) {
+			throw new javax.jms.IllegalStateException("Session closed");
+		}
+	}
+
+	public Queue createQueue(String queueName) throws JMSException {
+		checkNotClosed();
+		return this.connection.getConnectionFactory().getQueue(queueName);
+	}
+
+	public MessageProducer createProducer(Destination destination) throws JMSException {
+		checkNotClosed();
+		this.connection.getConnectionFactory().producerCreated();
+		return new StubMessageProducer(this, (StubQueue) destination);
+	}
+
+	public MessageConsumer createConsumer(Destination destination) throws JMSException {
+		return createConsumer(destination, null);
+	}
+
+	public MessageConsumer createConsumer(Destination destination, String messageSelector) throws JMSException {
+		checkNotClosed();
+		if (!(destination instanceof StubQueue)) {
+			throw new javax.jms.InvalidDestinationException("Only StubQueues supported: " + destination);
+		}
+		StubMessageConsumer consumer = new StubMessageConsumer(this, (StubQueue) destination, messageSelector);
+		synchronized (this.consumers) {
+			this.consumers.add(consumer);
+		}
+		this.connection.getConnectionFactory().consumerCreated();
+		return consumer;
+	}
+
+	public MessageConsumer createConsumer(Destination destination, String messageSelector, boolean noLocal)
+			throws JMSException {
+		return createConsumer(destination, messageSelector);
+	}
+
+	void send(StubQueue queue, Message message) throws JMSException {
+		checkNotClosed();
+		if (this.transacted) {
+			synchronized (this.pendingSends) {
+				this.pendingSends.add(new Object[] {queue, message});
+			}
+		}
+		else {
+			queue.add(message);
+		}
+	}
+
+	void received(StubQueue queue, Message message) {
+		if (this.acknowledgeMode == CLIENT_ACKNOWLEDGE) {
+			StubMessage.getStubMessage(message).setAcknowledgingSession(this);
+		}
+		if (this.transacted || this.acknowledgeMode == CLIENT_ACKNOWLEDGE) {
+			synchronized (this.pendingReceives) {
+				this.pendingReceives.add(new Object[] {queue, message});
+			}
+		}
+	}
+
+	/**
+	 * Acknowledge all messages received so far, as triggered by Message.acknowledge().
+	 */
+	void acknowledge() throws JMSException {
+		checkNotClosed();
+		synchronized (this.pendingReceives) {
+			this.pendingReceives.clear();
+		}
+	}
+
+	public void commit() throws JMSException {
+		checkNotClosed();
+		if (!this.transacted) {
+			throw new javax.jms.IllegalStateException("Session not transacted");
+		}
+		synchronized (this.pendingSends) {
+			for (int i = 0; i < this.pendingSends.size(); i++) {
+				Object[] pending = (Object[]) this.pendingSends.get(i);
+				((StubQueue) pending[0]).add((Message) pending[1]);
+			}
+			this.pendingSends.clear();
+		}
+		synchronized (this.pendingReceives) {
+			this.pendingReceives.clear();
+		}
+		this.connection.getConnectionFactory().committed();
+	}
+
+	public void rollback() throws JMSException {
+		checkNotClosed();
+		if (!this.transacted) {
+			throw new javax.jms.IllegalStateException("Session not transacted");
+		}
+		doRollback();
+		this.connection.getConnectionFactory().rolledBack();
+	}
+
+	private void doRollback() throws JMSException {
+		synchronized (this.pendingSends) {
+			this.pendingSends.clear();
+		}
+		redeliverPendingReceives();
+	}
+
+	private void redeliverPendingReceives() throws JMSException {
+		synchronized (this.pendingReceives) {
+			for (int i = this.pendingReceives.size() - 1; i >= 0; i--) {
+				Object[] pending = (Object[]) this.pendingReceives.get(i);
+				((StubQueue) pending[0]).addFirst((Message) pending[1]);
+			}
+			this.pendingReceives.clear();
+		}
+	}
+
+	public void close() throws JMSException {
+		if (this.closed) {
+			return;
+		}
+		List consumersToClose;
+		synchronized (this.consumers) {
+			consumersToClose = new ArrayList(this.consumers);
+		}
+		for (int i = 0; i < consumersToClose.size(); i++) {
+			((MessageConsumer) consumersToClose.get(i)).close();
+		}
+		if (this.transacted) {
+			doRollback();
+		}
+		else {
+			redeliverPendingReceives();
+		}
+		this.closed = true;
+		this.connection.sessionClosed(this);
+		this.connection.getConnectionFactory().sessionClosed();
+	}
+
+	void consumerClosed(StubMessageConsumer consumer) {
+		synchronized (this.consumers) {
+			this.consumers.remove(consumer);
+		}
+	}
+
+	public void recover() throws JMSException {
+		checkNotClosed();
+		if (this.transacted) {
+			throw new javax.jms.IllegalStateException("Session transacted");
+		}
+		redeliverPendingReceives();
+		this.connection.getConnectionFactory().recovered();
+	}
+
+	public Message createMessage() throws JMSException {
+		checkNotClosed();
+		return (Message) StubMessage.createMessage(Message.class);
+	}
+
+	public TextMessage createTextMessage() throws JMSException {
+		checkNotClosed();
+		return (TextMessage) StubMessage.createMessage(TextMessage.class);
+	}
+
+	public TextMessage createTextMessage(String text) throws JMSException {
+		TextMessage message = createTextMessage();
+		message.setText(text);
+		return message;
+	}
+
+	public ObjectMessage createObjectMessage() throws JMSException {
+		checkNotClosed();
+		return (ObjectMessage) StubMessage.createMessage(ObjectMessage.class);
+	}
+
+	public ObjectMessage createObjectMessage(Serializable object) throws JMSException {
+		ObjectMessage message = createObjectMessage();
+		message.setObject(object);
+		return message;
+	}
+
+	public BytesMessage createBytesMessage() {
+		throw new UnsupportedOperationException();
+	}
+
+	public MapMessage createMapMessage() {
+		throw new UnsupportedOperationException();
+	}
+
+	public StreamMessage createStreamMessage() {
+		throw new UnsupportedOperationException();
+	}
+
+	public MessageListener getMessageListener() {
+		return null;
+	}
+
+	public void setMessageListener(MessageListener listener) {
+		throw new UnsupportedOperationException();
+	}
+
+	public void run() {
+		throw new UnsupportedOperationException();
+	}
+
+	public Topic createTopic(String topicName) {
+		throw new UnsupportedOperationException();
+	}
+
+	public TopicSubscriber createDurableSubscriber(Topic topic, String name) {
+		throw new UnsupportedOperationException();
+	}
+
+	public TopicSubscriber createDurableSubscriber(Topic topic, String name, String selector, boolean noLocal) {
+		throw new UnsupportedOperationException();
+	}
+
+	public QueueBrowser createBrowser(Queue queue) {
+		throw new UnsupportedOperationException();
+	}
+
+	public QueueBrowser createBrowser(Queue queue, String selector) {
+		throw new UnsupportedOperationException();
+	}
+
+	public TemporaryQueue createTemporaryQueue() throws JMSException {
+		checkNotClosed();
+		return new StubTemporaryQueue("temporary");
+	}
+
+	public TemporaryTopic createTemporaryTopic() {
+		throw new UnsupportedOperationException();
+	}
+
+	public void unsubscribe(String name) {
+		throw new UnsupportedOperationException();
+	}
+
+}
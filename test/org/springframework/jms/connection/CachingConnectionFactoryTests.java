@@ -0,0 +1,295 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jms.connection;
+
+import javax.jms.Connection;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+
+import junit.framework.TestCase;
+
+import org.springframework.jms.StubConnectionFactory;
+import org.springframework.jms.StubMessageConsumer;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.core.MessageCreator;
+
+/**
+ * @author agent
+ * @since 1.1.2
+ */
+public class CachingConnectionFactoryTests extends TestCase {
+
+	private StubConnectionFactory targetConnectionFactory;
+
+	private CachingConnectionFactory connectionFactory;
+
+	protected void setUp() {
+		this.targetConnectionFactory = new StubConnectionFactory();
+		this.connectionFactory = new CachingConnectionFactory(this.targetConnectionFactory);
+	}
+
+	public void testCachedSessionAndProducer() throws JMSException {
+		JmsTemplate jmsTemplate = new JmsTemplate(this.connectionFactory);
+		sendMessages(jmsTemplate, "queue1", 100);
+		sendMessages(jmsTemplate, "queue2", 10);
+
+		assertEquals(100, this.targetConnectionFactory.getQueue("queue1").size());
+		assertEquals(10, this.targetConnectionFactory.getQueue("queue2").size());
+		assertEquals(1, this.targetConnectionFactory.getConnectionCount());
+		assertEquals(1, this.targetConnectionFactory.getSessionCount());
+		assertEquals(2, this.targetConnectionFactory.getProducerCount());
+		assertEquals(0, this.targetConnectionFactory.getClosedSessionCount());
+		assertEquals(1, this.connectionFactory.getCachedSessionCount());
+
+		this.connectionFactory.destroy();
+		assertEquals(1, this.targetConnectionFactory.getClosedSessionCount());
+		assertEquals(0, this.connectionFactory.getCachedSessionCount());
+	}
+
+	public void testSessionInUseClosedAfterDestroy() throws JMSException {
+		Connection con = this.connectionFactory.createConnection();
+		Session session = con.createSession(false, Session.AUTO_ACKNOWLEDGE);
+		this.connectionFactory.destroy();
+		assertEquals(1, this.targetConnectionFactory.getClosedSessionCount());
+
+		session.close();
+		assertEquals(1, this.targetConnectionFactory.getClosedSessionCount());
+		assertEquals(0, this.connectionFactory.getCachedSessionCount());
+	}
+
+	public void testTransactedSessionCommittedWithoutRollbackOnClose() {
+		JmsTemplate jmsTemplate = new JmsTemplate(this.connectionFactory);
+		jmsTemplate.setSessionTransacted(true);
+		sendMessages(jmsTemplate, "queue", 10);
+
+		assertEquals(10, this.targetConnectionFactory.getQueue("queue").size());
+		assertEquals(1, this.targetConnectionFactory.getSessionCount());
+		assertEquals(10, this.targetConnectionFactory.getCommitCount());
+		assertEquals(0, this.targetConnectionFactory.getRollbackCount());
+	}
+
+	public void testRollbackOnCloseWithUncommittedWork() throws JMSException {
+		Connection con = this.connectionFactory.createConnection();
+		Session session = con.createSession(true, Session.AUTO_ACKNOWLEDGE);
+		MessageProducer producer = session.createProducer(session.createQueue("queue"));
+		producer.send(session.createTextMessage("text"));
+		producer.close();
+		session.close();
+		con.close();
+
+		assertEquals(0, this.targetConnectionFactory.getQueue("queue").size());
+		assertEquals(1, this.targetConnectionFactory.getRollbackCount());
+		assertEquals(0, this.targetConnectionFactory.getClosedSessionCount());
+
+		Session session2 = con.createSession(true, Session.AUTO_ACKNOWLEDGE);
+		assertSame(session, session2);
+		assertSame(producer, session2.createProducer(session.createQueue("queue")));
+		session2.close();
+		assertEquals(1, this.targetConnectionFactory.getRollbackCount());
+	}
+
+	public void testClientAcknowledgeSessionRecoveredOnClose() throws JMSException {
+		Connection con = this.connectionFactory.createConnection();
+		con.start();
+		Session session = con.createSession(false, Session.CLIENT_ACKNOWLEDGE);
+		session.createProducer(session.createQueue("queue")).send(session.createTextMessage("text"));
+		assertNotNull(session.createConsumer(session.createQueue("queue")).receive(1000));
+		assertEquals(0, this.targetConnectionFactory.getQueue("queue").size());
+		session.close();
+
+		// not acknowledged -> redelivered instead of being acknowledged by the next user
+		assertEquals(1, this.targetConnectionFactory.getRecoverCount());
+		assertEquals(1, this.targetConnectionFactory.getQueue("queue").size());
+		assertEquals(1, this.connectionFactory.getCachedSessionCount());
+
+		// no recover for a Session that has only been used for sending
+		Session session2 = con.createSession(false, Session.CLIENT_ACKNOWLEDGE);
+		assertSame(session, session2);
+		session2.createProducer(session2.createQueue("queue")).send(session2.createTextMessage("text"));
+		session2.close();
+		assertEquals(1, this.targetConnectionFactory.getRecoverCount());
+	}
+
+	public void testSessionsPerMode() throws JMSException {
+		Connection con = this.connectionFactory.createConnection();
+		Session session1 = con.createSession(false, Session.AUTO_ACKNOWLEDGE);
+		session1.close();
+		Session session2 = con.createSession(false, Session.CLIENT_ACKNOWLEDGE);
+		session2.close();
+		Session session3 = con.createSession(true, Session.AUTO_ACKNOWLEDGE);
+		session3.close();
+
+		assertNotSame(session1, session2);
+		assertNotSame(session1, session3);
+		assertSame(session1, con.createSession(false, Session.AUTO_ACKNOWLEDGE));
+		assertSame(session2, con.createSession(false, Session.CLIENT_ACKNOWLEDGE));
+		assertEquals(3, this.targetConnectionFactory.getSessionCount());
+	}
+
+	public void testSessionCacheSize() throws JMSException {
+		this.connectionFactory.setSessionCacheSize(2);
+		Connection con = this.connectionFactory.createConnection();
+		Session session1 = con.createSession(false, Session.AUTO_ACKNOWLEDGE);
+		Session session2 = con.createSession(false, Session.AUTO_ACKNOWLEDGE);
+		Session session3 = con.createSession(false, Session.AUTO_ACKNOWLEDGE);
+		assertNotSame(session1, session2);
+		assertNotSame(session2, session3);
+		session1.close();
+		session2.close();
+		session3.close();
+
+		assertEquals(3, this.targetConnectionFactory.getSessionCount());
+		assertEquals(1, this.targetConnectionFactory.getClosedSessionCount());
+		assertEquals(2, this.connectionFactory.getCachedSessionCount());
+	}
+
+	public void testProducerCacheSize() throws JMSException {
+		this.connectionFactory.setProducerCacheSize(2);
+		Connection con = this.connectionFactory.createConnection();
+		Session session = con.createSession(false, Session.AUTO_ACKNOWLEDGE);
+		MessageProducer producer1 = session.createProducer(session.createQueue("queue1"));
+		MessageProducer producer2 = session.createProducer(session.createQueue("queue2"));
+		MessageProducer producer3 = session.createProducer(session.createQueue("queue3"));
+		producer3.close();
+		assertSame(producer1, session.createProducer(session.createQueue("queue1")));
+		assertSame(producer2, session.createProducer(session.createQueue("queue2")));
+		assertNotSame(producer3, session.createProducer(session.createQueue("queue3")));
+		assertEquals(4, this.targetConnectionFactory.getProducerCount());
+		session.close();
+	}
+
+	public void testProducerForTemporaryQueueNotCached() throws JMSException {
+		Connection con = this.connectionFactory.createConnection();
+		Session session = con.createSession(false, Session.AUTO_ACKNOWLEDGE);
+		Destination replyQueue = session.createTemporaryQueue();
+		MessageProducer producer = session.createProducer(replyQueue);
+		producer.close();
+		assertNotSame(producer, session.createProducer(replyQueue));
+		assertEquals(2, this.targetConnectionFactory.getProducerCount());
+		session.close();
+		assertEquals(1, this.connectionFactory.getCachedSessionCount());
+	}
+
+	public void testFailedSessionNotCached() throws JMSException {
+		Connection con = this.connectionFactory.createConnection();
+		Session session = con.createSession(false, Session.AUTO_ACKNOWLEDGE);
+		try {
+			session.createConsumer(new Destination() {});
+			fail("Should have thrown JMSException");
+		}
+		catch (JMSException ex) {
+			// expected
+		}
+		session.close();
+
+		assertEquals(1, this.targetConnectionFactory.getClosedSessionCount());
+		assertEquals(0, this.connectionFactory.getCachedSessionCount());
+		assertNotSame(session, con.createSession(false, Session.AUTO_ACKNOWLEDGE));
+	}
+
+	public void testSessionClosedOnce() throws JMSException {
+		Connection con = this.connectionFactory.createConnection();
+		Session session = con.createSession(false, Session.AUTO_ACKNOWLEDGE);
+		MessageProducer producer = session.createProducer(session.createQueue("queue"));
+		session.close();
+		session.close();
+		assertEquals(1, this.connectionFactory.getCachedSessionCount());
+
+		try {
+			session.createTextMessage("text");
+			fail("Should have thrown IllegalStateException");
+		}
+		catch (javax.jms.IllegalStateException ex) {
+			// expected
+		}
+		try {
+			producer.send(this.targetConnectionFactory.getQueue("queue"), null);
+			fail("Should have thrown IllegalStateException");
+		}
+		catch (javax.jms.IllegalStateException ex) {
+			// expected
+		}
+
+		Session session2 = con.createSession(false, Session.AUTO_ACKNOWLEDGE);
+		assertSame(session, session2);
+		assertEquals(0, this.connectionFactory.getCachedSessionCount());
+		assertNotSame(session2, con.createSession(false, Session.AUTO_ACKNOWLEDGE));
+		session2.createProducer(session2.createQueue("queue")).send(session2.createTextMessage("text"));
+		assertEquals(1, this.targetConnectionFactory.getQueue("queue").size());
+		session2.close();
+		assertEquals(1, this.connectionFactory.getCachedSessionCount());
+	}
+
+	public void testConsumerClosedOnSessionClose() throws JMSException {
+		Connection con = this.connectionFactory.createConnection();
+		Session session = con.createSession(false, Session.AUTO_ACKNOWLEDGE);
+		StubMessageConsumer consumer =
+				(StubMessageConsumer) session.createConsumer(session.createQueue("queue"));
+		session.close();
+		assertTrue(consumer.isClosed());
+		assertEquals(0, this.targetConnectionFactory.getClosedSessionCount());
+	}
+
+	public void testConcurrentSends() throws Exception {
+		final int threadCount = 5;
+		final int messagesPerThread = 1000;
+		this.connectionFactory.setSessionCacheSize(threadCount);
+		final JmsTemplate jmsTemplate = new JmsTemplate(this.connectionFactory);
+		Thread[] threads = new Thread[threadCount];
+		final Throwable[] failure = new Throwable[1];
+		for (int i = 0; i < threadCount; i++) {
+			threads[i] = new Thread() {
+				public void run() {
+					try {
+						sendMessages(jmsTemplate, "queue", messagesPerThread);
+					}
+					catch (Throwable ex) {
+						failure[0] = ex;
+					}
+				}
+			};
+		}
+		for (int i = 0; i < threadCount; i++) {
+			threads[i].start();
+		}
+		for (int i = 0; i < threadCount; i++) {
+			threads[i].join();
+		}
+
+		assertNull(failure[0]);
+		assertEquals(threadCount * messagesPerThread, this.targetConnectionFactory.getQueue("queue").size());
+		assertTrue(this.targetConnectionFactory.getSessionCount() <= threadCount);
+		assertEquals(this.targetConnectionFactory.getSessionCount(), this.targetConnectionFactory.getProducerCount());
+		assertEquals(0, this.targetConnectionFactory.getClosedSessionCount());
+	}
+
+
+	private void sendMessages(JmsTemplate jmsTemplate, String destinationName, int count) {
+		for (int i = 0; i < count; i++) {
+			final String text = "message" + i;
+			jmsTemplate.send(destinationName, new MessageCreator() {
+				public Message createMessage(Session session) throws JMSException {
+					return session.createTextMessage(text);
+				}
+			});
+		}
+	}
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jms.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+
+import junit.framework.TestCase;
+
+import org.springframework.jms.StubConnectionFactory;
+import org.springframework.jms.connection.JmsTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Tests for JmsTemplate's batch send operations against an in-memory provider.
+ * @author agent
+ * @since 1.1.2
+ */
+public class JmsTemplateBatchTests extends TestCase {
+
+	private StubConnectionFactory connectionFactory;
+
+	private JmsTemplate jmsTemplate;
+
+	protected void setUp() {
+		this.connectionFactory = new StubConnectionFactory();
+		this.jmsTemplate = new JmsTemplate(this.connectionFactory);
+		this.jmsTemplate.setReceiveTimeout(100);
+	}
+
+	public void testSendBatchWithBatchSize() {
+		this.jmsTemplate.setSessionTransacted(true);
+		this.jmsTemplate.setBatchSize(10);
+		this.jmsTemplate.sendBatch("queue", createMessageCreators(25));
+
+		assertEquals(25, this.connectionFactory.getQueue("queue").size());
+		assertEquals(1, this.connectionFactory.getSessionCount());
+		assertEquals(1, this.connectionFactory.getProducerCount());
+		assertEquals(3, this.connectionFactory.getCommitCount());
+		assertEquals("message0", this.jmsTemplate.receiveAndConvert("queue"));
+		assertEquals("message1", this.jmsTemplate.receiveAndConvert("queue"));
+	}
+
+	public void testSendBatchWithSingleCommit() {
+		this.jmsTemplate.setSessionTransacted(true);
+		this.jmsTemplate.sendBatch(this.connectionFactory.getQueue("queue"), createMessageCreators(25));
+
+		assertEquals(25, this.connectionFactory.getQueue("queue").size());
+		assertEquals(1, this.connectionFactory.getCommitCount());
+	}
+
+	public void testSendBatchWithExactMultipleOfBatchSize() {
+		this.jmsTemplate.setSessionTransacted(true);
+		this.jmsTemplate.setBatchSize(5);
+		this.jmsTemplate.sendBatch("queue", createMessageCreators(10));
+
+		assertEquals(10, this.connectionFactory.getQueue("queue").size());
+		assertEquals(2, this.connectionFactory.getCommitCount());
+	}
+
+	public void testConvertAndSendBatchToDefaultDestination() {
+		this.jmsTemplate.setDefaultDestination(this.connectionFactory.getQueue("queue"));
+		this.jmsTemplate.convertAndSendBatch(Arrays.asList(new String[] {"text1", "text2", "text3"}));
+
+		assertEquals(1, this.connectionFactory.getSessionCount());
+		assertEquals(0, this.connectionFactory.getCommitCount());
+		assertEquals("text1", this.jmsTemplate.receiveAndConvert());
+		assertEquals("text2", this.jmsTemplate.receiveAndConvert());
+		assertEquals("text3", this.jmsTemplate.receiveAndConvert());
+		assertNull(this.jmsTemplate.receive());
+	}
+
+	public void testSendBatchWithoutDefaultDestination() {
+		try {
+			this.jmsTemplate.sendBatch(createMessageCreators(1));
+			fail("Should have thrown IllegalStateException");
+		}
+		catch (IllegalStateException ex) {
+			// expected
+		}
+	}
+
+	public void testSendBatchWithinTransaction() {
+		this.jmsTemplate.setSessionTransacted(true);
+		this.jmsTemplate.setBatchSize(2);
+		TransactionTemplate tt = new TransactionTemplate(new JmsTransactionManager(this.connectionFactory));
+		tt.execute(new TransactionCallbackWithoutResult() {
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				jmsTemplate.sendBatch("queue", createMessageCreators(5));
+				assertEquals(0, connectionFactory.getQueue("queue").size());
+			}
+		});
+
+		assertEquals(5, this.connectionFactory.getQueue("queue").size());
+		assertEquals(1, this.connectionFactory.getCommitCount());
+	}
+
+	public void testBatchSendUsesFewerResourcesThanIndividualSends() {
+		int count = 200;
+		List messageCreators = createMessageCreators(count);
+		this.jmsTemplate.setSessionTransacted(true);
+
+		for (int i = 0; i < count; i++) {
+			this.jmsTemplate.send("queue1", (MessageCreator) messageCreators.get(i));
+		}
+		int individualSessions = this.connectionFactory.getSessionCount();
+		int individualProducers = this.connectionFactory.getProducerCount();
+		int individualCommits = this.connectionFactory.getCommitCount();
+		assertEquals(count, this.connectionFactory.getQueue("queue1").size());
+		assertEquals(count, individualSessions);
+		assertEquals(count, individualProducers);
+		assertEquals(count, individualCommits);
+
+		this.jmsTemplate.setBatchSize(50);
+		this.jmsTemplate.sendBatch("queue2", messageCreators);
+		assertEquals(count, this.connectionFactory.getQueue("queue2").size());
+		assertEquals(1, this.connectionFactory.getSessionCount() - individualSessions);
+		assertEquals(1, this.connectionFactory.getProducerCount() - individualProducers);
+		assertEquals(count / 50, this.connectionFactory.getCommitCount() - individualCommits);
+		assertEquals(this.connectionFactory.getSessionCount(), this.connectionFactory.getClosedSessionCount());
+	}
+
+
+	private List createMessageCreators(int count) {
+		List messageCreators = new ArrayList(count);
+		for (int i = 0; i < count; i++) {
+			final String text = "message" + i;
+			messageCreators.add(new MessageCreator() {
+				public Message createMessage(Session session) throws JMSException {
+					return session.createTextMessage(text);
+				}
+			});
+		}
+		return messageCreators;
+	}
+
+}
@@ -0,0 +1,329 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jms.listener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+
+import junit.framework.TestCase;
+
+import org.springframework.jms.StubConnectionFactory;
+import org.springframework.jms.StubQueue;
+import org.springframework.jms.connection.CachingConnectionFactory;
+import org.springframework.jms.connection.JmsTransactionManager;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.core.MessageCreator;
+
+/**
+ * @author agent
+ * @since 1.1.2
+ */
+public class MessageListenerContainerTests extends TestCase {
+
+	private StubConnectionFactory connectionFactory;
+
+	private StubQueue queue;
+
+	private MessageListenerContainer container;
+
+	protected void setUp() {
+		this.connectionFactory = new StubConnectionFactory();
+		this.queue = this.connectionFactory.getQueue("requests");
+		this.container = new MessageListenerContainer();
+		this.container.setConnectionFactory(this.connectionFactory);
+		this.container.setDestinationName("requests");
+		this.container.setReceiveTimeout(50);
+	}
+
+	protected void tearDown() {
+		this.container.destroy();
+	}
+
+	public void testLongLivedSessionAndConsumer() throws Exception {
+		CollectingListener listener = new CollectingListener();
+		this.container.setMessageListener(listener);
+		this.container.afterPropertiesSet();
+		sendMessages("requests", 100);
+
+		waitFor(listener, 100, 100);
+		assertEquals(100, this.container.getReceivedMessageCount());
+		assertEquals(0, this.container.getFailedMessageCount());
+		assertEquals("message0", listener.getTexts().get(0));
+		assertEquals("message99", listener.getTexts().get(99));
+		assertTrue(this.container.getThroughput() > 0);
+
+		// one session for the consumer, plus one per send call
+		assertEquals(101, this.connectionFactory.getSessionCount());
+		assertEquals(1, this.connectionFactory.getConsumerCount());
+
+		this.container.stop();
+		assertFalse(this.container.isRunning());
+		assertEquals(0, this.container.getScheduledConsumerCount());
+		sendMessages("requests", 5);
+		Thread.sleep(200);
+		assertEquals(5, this.queue.size());
+
+		this.container.start();
+		waitFor(listener, 105, 5);
+		assertEquals(5, this.container.getReceivedMessageCount());
+	}
+
+	public void testConcurrentConsumersScaleUpAndDown() throws Exception {
+		final Object monitor = new Object();
+		final int[] concurrency = new int[2];
+		CollectingListener listener = new CollectingListener() {
+			public void onMessage(Message message) {
+				synchronized (monitor) {
+					concurrency[0]++;
+					concurrency[1] = Math.max(concurrency[0], concurrency[1]);
+				}
+				try {
+					Thread.sleep(20);
+				}
+				catch (InterruptedException ex) {
+				}
+				synchronized (monitor) {
+					concurrency[0]--;
+				}
+				super.onMessage(message);
+			}
+		};
+		this.container.setMessageListener(listener);
+		this.container.setConcurrentConsumers(1);
+		this.container.setMaxConcurrentConsumers(4);
+		this.container.setIdleReceiveLimit(2);
+		this.container.afterPropertiesSet();
+		assertEquals(1, this.container.getScheduledConsumerCount());
+
+		sendMessages("requests", 100);
+		waitFor(listener, 100, 100);
+		assertTrue(concurrency[1] > 1);
+		assertTrue(concurrency[1] <= 4);
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (this.container.getScheduledConsumerCount() > 1 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		assertEquals(1, this.container.getScheduledConsumerCount());
+	}
+
+	public void testTransactedSessionWithListenerException() throws Exception {
+		CollectingListener listener = new CollectingListener() {
+			public void onMessage(Message message) {
+				try {
+					if (!message.getJMSRedelivered() && "message1".equals(((TextMessage) message).getText())) {
+						throw new IllegalStateException("failing on first delivery");
+					}
+				}
+				catch (JMSException ex) {
+					throw new IllegalStateException(ex.getMessage());
+				}
+				super.onMessage(message);
+			}
+		};
+		this.container.setMessageListener(listener);
+		this.container.setSessionTransacted(true);
+		this.container.afterPropertiesSet();
+		sendMessages("requests", 3);
+
+		waitFor(listener, 3, 3);
+		assertEquals(3, this.container.getReceivedMessageCount());
+		assertEquals(1, this.container.getFailedMessageCount());
+		assertEquals(1, this.connectionFactory.getRollbackCount());
+		assertEquals(3, this.connectionFactory.getCommitCount());
+		assertTrue(listener.getTexts().contains("message1"));
+	}
+
+	public void testClientAcknowledgeWithListenerException() throws Exception {
+		CollectingListener listener = new CollectingListener() {
+			public void onMessage(Message message) {
+				try {
+					if (!message.getJMSRedelivered() && "message1".equals(((TextMessage) message).getText())) {
+						throw new IllegalStateException("failing on first delivery");
+					}
+				}
+				catch (JMSException ex) {
+					throw new IllegalStateException(ex.getMessage());
+				}
+				super.onMessage(message);
+			}
+		};
+		this.container.setMessageListener(listener);
+		this.container.setSessionAcknowledgeMode(Session.CLIENT_ACKNOWLEDGE);
+		this.container.afterPropertiesSet();
+		sendMessages("requests", 3);
+
+		waitFor(listener, 3, 3);
+		assertEquals(3, this.container.getReceivedMessageCount());
+		assertEquals(1, this.container.getFailedMessageCount());
+		assertEquals(1, this.connectionFactory.getRecoverCount());
+		assertTrue(listener.getTexts().contains("message1"));
+
+		// all messages acknowledged: nothing to redeliver on close
+		this.container.destroy();
+		assertEquals(0, this.queue.size());
+	}
+
+	public void testJmsTransactionManager() throws Exception {
+		final JmsTemplate jmsTemplate = new JmsTemplate(this.connectionFactory);
+		final List failed = Collections.synchronizedList(new ArrayList());
+		CollectingListener listener = new CollectingListener() {
+			public void onMessage(final Message message) {
+				// reply within the receive transaction
+				jmsTemplate.send("replies", new MessageCreator() {
+					public Message createMessage(Session session) throws JMSException {
+						return session.createTextMessage("reply to " + ((TextMessage) message).getText());
+					}
+				});
+				try {
+					if (!message.getJMSRedelivered() && "message2".equals(((TextMessage) message).getText())) {
+						failed.add(message);
+						throw new IllegalStateException("failing on first delivery");
+					}
+				}
+				catch (JMSException ex) {
+					throw new IllegalStateException(ex.getMessage());
+				}
+				super.onMessage(message);
+			}
+		};
+		this.container.setMessageListener(listener);
+		this.container.setTransactionManager(new JmsTransactionManager(this.connectionFactory));
+		this.container.afterPropertiesSet();
+		sendMessages("requests", 5);
+
+		waitFor(listener, 5, 5);
+		assertEquals(1, failed.size());
+		assertEquals(5, this.container.getReceivedMessageCount());
+		assertEquals(1, this.container.getFailedMessageCount());
+		assertEquals(1, this.connectionFactory.getRollbackCount());
+		// the reply sent by the failed attempt has been rolled back
+		assertEquals(5, this.connectionFactory.getQueue("replies").size());
+		assertEquals(0, this.queue.size());
+	}
+
+	public void testJmsTransactionManagerWithCachingConnectionFactory() throws Exception {
+		CachingConnectionFactory cachingConnectionFactory = new CachingConnectionFactory(this.connectionFactory);
+		sendMessages("requests", 20);
+		int connectionCount = this.connectionFactory.getConnectionCount();
+		int sessionCount = this.connectionFactory.getSessionCount();
+
+		CollectingListener listener = new CollectingListener();
+		this.container.setConnectionFactory(cachingConnectionFactory);
+		this.container.setMessageListener(listener);
+		this.container.setTransactionManager(new JmsTransactionManager(cachingConnectionFactory));
+		this.container.afterPropertiesSet();
+
+		waitFor(listener, 20, 20);
+		assertEquals(20, this.container.getReceivedMessageCount());
+		// a single shared Connection and a pooled Session instead of one per receive attempt
+		assertEquals(connectionCount + 1, this.connectionFactory.getConnectionCount());
+		assertEquals(sessionCount + 1, this.connectionFactory.getSessionCount());
+		this.container.destroy();
+		cachingConnectionFactory.destroy();
+	}
+
+	public void testNonPositiveReceiveTimeout() {
+		try {
+			this.container.setReceiveTimeout(0);
+			fail("Should have thrown IllegalArgumentException");
+		}
+		catch (IllegalArgumentException ex) {
+			// expected
+		}
+	}
+
+	public void testNoSharedConnectionAfterDestroy() throws Exception {
+		this.container.setMessageListener(new CollectingListener());
+		this.container.setAutoStartup(false);
+		this.container.afterPropertiesSet();
+		this.container.start();
+		this.container.destroy();
+		int connectionCount = this.connectionFactory.getConnectionCount();
+		try {
+			// as called by a consumer that has not noticed the shutdown yet
+			this.container.getSharedConnection();
+			fail("Should have thrown IllegalStateException");
+		}
+		catch (javax.jms.IllegalStateException ex) {
+			// expected
+		}
+		assertEquals(connectionCount, this.connectionFactory.getConnectionCount());
+	}
+
+	public void testMissingDestination() {
+		MessageListenerContainer container = new MessageListenerContainer();
+		container.setConnectionFactory(this.connectionFactory);
+		container.setMessageListener(new CollectingListener());
+		try {
+			container.afterPropertiesSet();
+			fail("Should have thrown IllegalArgumentException");
+		}
+		catch (IllegalArgumentException ex) {
+			// expected
+		}
+	}
+
+
+	private void sendMessages(String destinationName, int count) {
+		JmsTemplate jmsTemplate = new JmsTemplate(this.connectionFactory);
+		for (int i = 0; i < count; i++) {
+			final String text = "message" + i;
+			jmsTemplate.send(destinationName, new MessageCreator() {
+				public Message createMessage(Session session) throws JMSException {
+					return session.createTextMessage(text);
+				}
+			});
+		}
+	}
+
+	private void waitFor(CollectingListener listener, int count, int receivedCount) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while ((listener.getTexts().size() < count || this.container.getReceivedMessageCount() < receivedCount) &&
+				System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(count, listener.getTexts().size());
+	}
+
+
+	private static class CollectingListener implements MessageListener {
+
+		private final List texts = Collections.synchronizedList(new ArrayList());
+
+		public void onMessage(Message message) {
+			try {
+				this.texts.add(((TextMessage) message).getText());
+			}
+			catch (JMSException ex) {
+				throw new IllegalStateException(ex.getMessage());
+			}
+		}
+
+		public List getTexts() {
+			return texts;
+		}
+	}
+
+}
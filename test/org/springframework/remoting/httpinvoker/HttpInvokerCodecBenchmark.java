@@ -0,0 +1,129 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.remoting.httpinvoker;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+import org.springframework.beans.SerializablePerson;
+import org.springframework.remoting.support.RemoteInvocation;
+import org.springframework.remoting.support.RemoteInvocationResult;
+import org.springframework.util.StopWatch;
+
+/**
+ * Benchmark for CompactHttpInvokerCodec against plain Java serialization
+ * via ObjectOutputStream, as used by HTTP invoker before, measuring payload
+ * sizes and encode/decode round trips of a typical invocation and result.
+ * Not a unit test, as wall-clock timings depend on the machine:
+ * Run it via its main method, optionally passing the number of
+ * round trips per iteration.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see HttpInvokerCodecTests
+ */
+public class HttpInvokerCodecBenchmark {
+
+	private static final int WARMUP_ITERATIONS = 5;
+
+	private static final int MEASURED_ITERATIONS = 5;
+
+
+	public static void main(String[] args) throws Exception {
+		int roundTrips = (args.length > 0 ? Integer.parseInt(args[0]) : 20000);
+		SerializablePerson spouse = new SerializablePerson();
+		spouse.setName("spouse");
+		spouse.setAge(30);
+		RemoteInvocation invocation = new RemoteInvocation("setSpouse",
+				new Class[] {SerializablePerson.class, int.class, String.class},
+				new Object[] {spouse, new Integer(5), "someString"});
+		RemoteInvocationResult result = new RemoteInvocationResult(new Integer(99));
+
+		run("ObjectOutputStream", new ObjectStreamCodec(), invocation, result, roundTrips);
+		run("SerializationHttpInvokerCodec", new SerializationHttpInvokerCodec(), invocation, result, roundTrips);
+		run("CompactHttpInvokerCodec", new CompactHttpInvokerCodec(), invocation, result, roundTrips);
+	}
+
+	private static void run(String name, HttpInvokerCodec codec, RemoteInvocation invocation,
+			RemoteInvocationResult result, int roundTrips) throws Exception {
+
+		RemoteInvocation decoded = (RemoteInvocation) roundTrip(codec, invocation);
+		if (!invocation.getMethodName().equals(decoded.getMethodName())) {
+			throw new IllegalStateException("Codec [" + name + "] does not preserve the invocation");
+		}
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			iterate(codec, invocation, result, roundTrips);
+		}
+		StopWatch sw = new StopWatch(name);
+		for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+			sw.start("iteration " + (i + 1));
+			iterate(codec, invocation, result, roundTrips);
+			sw.stop();
+		}
+		System.out.println(name + ": invocation " + encode(codec, invocation).length + " bytes, result " +
+				encode(codec, result).length + " bytes, " + (sw.getTotalTimeMillis() / MEASURED_ITERATIONS) +
+				" ms per " + roundTrips + " round trips (average of " + MEASURED_ITERATIONS +
+				" iterations after " + WARMUP_ITERATIONS + " warm-up iterations)");
+	}
+
+	private static void iterate(HttpInvokerCodec codec, RemoteInvocation invocation,
+			RemoteInvocationResult result, int roundTrips) throws Exception {
+
+		for (int i = 0; i < roundTrips; i++) {
+			roundTrip(codec, invocation);
+			roundTrip(codec, result);
+		}
+	}
+
+	private static byte[] encode(HttpInvokerCodec codec, Object obj) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		codec.encode(obj, baos);
+		return baos.toByteArray();
+	}
+
+	private static Object roundTrip(HttpInvokerCodec codec, Object obj) throws IOException, ClassNotFoundException {
+		return codec.decode(new ByteArrayInputStream(encode(codec, obj)));
+	}
+
+
+	/**
+	 * Plain Java serialization, without the codec's buffer handling
+	 * and compression support.
+	 */
+	private static class ObjectStreamCodec implements HttpInvokerCodec {
+
+		public String getContentType() {
+			return "application/x-java-serialized-object";
+		}
+
+		public void encode(Object obj, OutputStream os) throws IOException {
+			ObjectOutputStream oos = new ObjectOutputStream(os);
+			oos.writeObject(obj);
+			oos.flush();
+		}
+
+		public Object decode(InputStream is) throws IOException, ClassNotFoundException {
+			return new ObjectInputStream(is).readObject();
+		}
+	}
+
+}
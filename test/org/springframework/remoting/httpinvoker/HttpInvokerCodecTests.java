@@ -0,0 +1,194 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.remoting.httpinvoker;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.springframework.beans.SerializablePerson;
+import org.springframework.remoting.support.RemoteInvocation;
+import org.springframework.remoting.support.RemoteInvocationResult;
+
+/**
+ * @author agent
+ * @since 1.1.2
+ */
+public class HttpInvokerCodecTests extends TestCase {
+
+	public void testCompactCodecWithInvocation() throws Exception {
+		SerializablePerson tb = new SerializablePerson();
+		tb.setName("tb");
+		Class[] parameterTypes = new Class[] {
+			int.class, boolean.class, String.class, SerializablePerson.class, Object.class, Object.class, char.class};
+		RemoteInvocation invocation = new RemoteInvocation("myMethod", parameterTypes,
+				new Object[] {new Integer(5), Boolean.TRUE, "myString", tb, tb, null, new Character('x')});
+		invocation.addAttribute("myKey", "myValue");
+
+		RemoteInvocation decoded = (RemoteInvocation) roundTrip(new CompactHttpInvokerCodec(), invocation);
+		assertEquals("myMethod", decoded.getMethodName());
+		assertTrue(Arrays.equals(invocation.getParameterTypes(), decoded.getParameterTypes()));
+		Object[] args = decoded.getArguments();
+		assertEquals(new Integer(5), args[0]);
+		assertEquals(Boolean.TRUE, args[1]);
+		assertEquals("myString", args[2]);
+		assertEquals("tb", ((SerializablePerson) args[3]).getName());
+		assertSame(args[3], args[4]);
+		assertNull(args[5]);
+		assertEquals(new Character('x'), args[6]);
+		assertEquals("myValue", decoded.getAttribute("myKey"));
+	}
+
+	public void testCompactCodecWithValues() throws Exception {
+		StringBuffer longString = new StringBuffer();
+		for (int i = 0; i < 30000; i++) {
+			longString.append('\u20ac');
+		}
+		List list = new ArrayList();
+		list.add(int.class);
+		list.add(Thread.class);
+		list.add(new long[] {1, 2});
+		Object[] values = new Object[] {
+			null, "", longString.toString(), new Long(Long.MAX_VALUE), new Double(1.5), new Float(2.5f),
+			new Short((short) 3), new Byte((byte) -4), Boolean.FALSE, list};
+		CompactHttpInvokerCodec codec = new CompactHttpInvokerCodec();
+		for (int i = 0; i < values.length - 1; i++) {
+			assertEquals(values[i], roundTrip(codec, values[i]));
+		}
+		List decodedList = (List) roundTrip(codec, list);
+		assertEquals(int.class, decodedList.get(0));
+		assertEquals(Thread.class, decodedList.get(1));
+		assertTrue(Arrays.equals(new long[] {1, 2}, (long[]) decodedList.get(2)));
+	}
+
+	public void testCompactCodecWithResults() throws Exception {
+		CompactHttpInvokerCodec codec = new CompactHttpInvokerCodec();
+		RemoteInvocationResult result =
+				(RemoteInvocationResult) roundTrip(codec, new RemoteInvocationResult(new Integer(42)));
+		assertEquals(new Integer(42), result.getValue());
+		assertFalse(result.hasException());
+
+		result = (RemoteInvocationResult) roundTrip(codec, new RemoteInvocationResult(new IllegalStateException("msg")));
+		assertTrue(result.getException() instanceof IllegalStateException);
+		assertEquals("msg", result.getException().getMessage());
+
+		result = (RemoteInvocationResult) roundTrip(codec, new RemoteInvocationResult((Object) null));
+		assertNull(result.getValue());
+		assertFalse(result.hasException());
+	}
+
+	public void testCompactCodecWithInvocationSubclass() throws Exception {
+		RemoteInvocation invocation = new TestRemoteInvocation("myMethod", new Class[] {String.class});
+		RemoteInvocation decoded = (RemoteInvocation) roundTrip(new CompactHttpInvokerCodec(), invocation);
+		assertTrue(decoded instanceof TestRemoteInvocation);
+		assertEquals("myMethod", decoded.getMethodName());
+	}
+
+	public void testCompactCodecIsSmallerThanSerialization() throws Exception {
+		RemoteInvocation invocation = createInvocation();
+		int serializedSize = encode(new SerializationHttpInvokerCodec(), invocation).length;
+		int compactSize = encode(new CompactHttpInvokerCodec(), invocation).length;
+		assertTrue("Compact invocation (" + compactSize + " bytes) not less than half the size of " +
+				"serialized invocation (" + serializedSize + " bytes)", compactSize * 2 < serializedSize);
+
+		RemoteInvocationResult result = new RemoteInvocationResult(new Integer(99));
+		serializedSize = encode(new SerializationHttpInvokerCodec(), result).length;
+		compactSize = encode(new CompactHttpInvokerCodec(), result).length;
+		assertTrue("Compact size " + compactSize + " not smaller than serialized size " + serializedSize,
+				compactSize < serializedSize);
+	}
+
+	public void testCompressionThreshold() throws Exception {
+		RemoteInvocation invocation = createInvocation();
+		SerializationHttpInvokerCodec codec = new SerializationHttpInvokerCodec();
+		byte[] uncompressed = encode(codec, invocation);
+		codec.setCompressionThreshold(uncompressed.length);
+		assertTrue(Arrays.equals(uncompressed, encode(codec, invocation)));
+
+		codec.setCompressionThreshold(uncompressed.length - 1);
+		byte[] compressed = encode(codec, invocation);
+		assertEquals((byte) 0x1f, compressed[0]);
+		assertEquals((byte) 0x8b, compressed[1]);
+		RemoteInvocation decoded = (RemoteInvocation) new SerializationHttpInvokerCodec().decode(
+				new ByteArrayInputStream(compressed));
+		assertEquals("setSpouse", decoded.getMethodName());
+
+		CompactHttpInvokerCodec compactCodec = new CompactHttpInvokerCodec();
+		compactCodec.setCompressionThreshold(0);
+		decoded = (RemoteInvocation) roundTrip(compactCodec, invocation);
+		assertEquals("setSpouse", decoded.getMethodName());
+	}
+
+	public void testCompressionWhileEncodingLargeContent() throws Exception {
+		StringBuffer sb = new StringBuffer();
+		for (int i = 0; i < 10000; i++) {
+			sb.append("someString");
+		}
+		RemoteInvocation invocation = new RemoteInvocation("setName", new Class[] {String.class},
+				new Object[] {sb.toString()});
+		CompactHttpInvokerCodec codec = new CompactHttpInvokerCodec();
+		int uncompressedSize = encode(codec, invocation).length;
+		codec.setCompressionThreshold(100);
+		byte[] compressed = encode(codec, invocation);
+		assertTrue(compressed.length < uncompressedSize);
+		RemoteInvocation decoded = (RemoteInvocation) codec.decode(new ByteArrayInputStream(compressed));
+		assertEquals(sb.toString(), decoded.getArguments()[0]);
+	}
+
+	public void testDecodeEmptyContent() throws Exception {
+		try {
+			new SerializationHttpInvokerCodec().decode(new ByteArrayInputStream(new byte[0]));
+			fail("Should have thrown IOException");
+		}
+		catch (IOException ex) {
+			// expected
+		}
+	}
+
+
+	private RemoteInvocation createInvocation() {
+		SerializablePerson spouse = new SerializablePerson();
+		spouse.setName("spouse");
+		spouse.setAge(30);
+		return new RemoteInvocation("setSpouse", new Class[] {SerializablePerson.class, int.class, String.class},
+				new Object[] {spouse, new Integer(5), "someString"});
+	}
+
+	private byte[] encode(HttpInvokerCodec codec, Object obj) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		codec.encode(obj, baos);
+		return baos.toByteArray();
+	}
+
+	private Object roundTrip(HttpInvokerCodec codec, Object obj) throws IOException, ClassNotFoundException {
+		return codec.decode(new ByteArrayInputStream(encode(codec, obj)));
+	}
+
+
+	private static class TestRemoteInvocation extends RemoteInvocation {
+
+		public TestRemoteInvocation(String methodName, Class[] parameterTypes) {
+			super(methodName, parameterTypes, new Object[parameterTypes.length]);
+		}
+	}
+
+}
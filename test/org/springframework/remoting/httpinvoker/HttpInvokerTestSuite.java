@@ -19,13 +19,24 @@ package org.springframework.remoting.httpinvoker;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import junit.framework.AssertionFailedError;
 import junit.framework.TestCase;
 import org.aopalliance.intercept.MethodInvocation;
 
+import org.springframework.beans.DerivedTestBean;
 import org.springframework.beans.ITestBean;
 import org.springframework.beans.TestBean;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.remoting.RemoteAccessException;
@@ -87,6 +98,347 @@ public class HttpInvokerTestSuite extends TestCase {
 		}
 	}
 
+	public void testHttpInvokerProxyFactoryBeanAndServiceExporterWithCompactCodec() throws Throwable {
+		TestBean target = new TestBean("myname", 99);
+		final HttpInvokerServiceExporter exporter = new HttpInvokerServiceExporter();
+		exporter.setServiceInterface(ITestBean.class);
+		exporter.setService(target);
+		exporter.setCodecs(new HttpInvokerCodec[] {new SerializationHttpInvokerCodec(), new CompactHttpInvokerCodec()});
+		exporter.afterPropertiesSet();
+
+		HttpInvokerProxyFactoryBean pfb = new HttpInvokerProxyFactoryBean();
+		pfb.setServiceInterface(ITestBean.class);
+		pfb.setServiceUrl("http://myurl");
+
+		AbstractHttpInvokerRequestExecutor executor = new AbstractHttpInvokerRequestExecutor() {
+			protected RemoteInvocationResult doExecuteRequest(
+					HttpInvokerClientConfiguration config, ByteArrayOutputStream baos)
+					throws IOException, ClassNotFoundException {
+				MockHttpServletRequest request = new MockHttpServletRequest();
+				MockHttpServletResponse response = new MockHttpServletResponse();
+				request.setContentType(getContentType() + "; charset=ISO-8859-1");
+				request.setContent(baos.toByteArray());
+				exporter.handleRequest(request, response);
+				assertEquals(CompactHttpInvokerCodec.CONTENT_TYPE_COMPACT_SERIALIZED_OBJECT, response.getContentType());
+				return readRemoteInvocationResult(new ByteArrayInputStream(response.getContentAsByteArray()));
+			}
+		};
+		executor.setCodec(new CompactHttpInvokerCodec());
+		pfb.setHttpInvokerRequestExecutor(executor);
+
+		pfb.afterPropertiesSet();
+		ITestBean proxy = (ITestBean) pfb.getObject();
+		assertEquals("myname", proxy.getName());
+		assertEquals(99, proxy.getAge());
+		proxy.setAge(50);
+		assertEquals(50, proxy.getAge());
+		proxy.setSpouse(new DerivedTestBean());
+		assertTrue(proxy.getSpouse() instanceof DerivedTestBean);
+
+		try {
+			proxy.exceptional(new IllegalStateException());
+			fail("Should have thrown IllegalStateException");
+		}
+		catch (IllegalStateException ex) {
+			// expected
+		}
+	}
+
+	public void testHttpInvokerServiceExporterFallsBackToFirstCodec() throws Exception {
+		TestBean target = new TestBean("myname", 99);
+		HttpInvokerServiceExporter exporter = new HttpInvokerServiceExporter();
+		exporter.setServiceInterface(ITestBean.class);
+		exporter.setService(target);
+		exporter.setCodecs(new HttpInvokerCodec[] {new SerializationHttpInvokerCodec(), new CompactHttpInvokerCodec()});
+		exporter.afterPropertiesSet();
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		new SerializationHttpInvokerCodec().encode(new RemoteInvocation("getName", new Class[0], new Object[0]), baos);
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		request.setContent(baos.toByteArray());
+		exporter.handleRequest(request, response);
+		assertEquals(SerializationHttpInvokerCodec.CONTENT_TYPE_SERIALIZED_OBJECT, response.getContentType());
+		RemoteInvocationResult result = (RemoteInvocationResult) new SerializationHttpInvokerCodec().decode(
+				new ByteArrayInputStream(response.getContentAsByteArray()));
+		assertEquals("myname", result.getValue());
+	}
+
+	public void testHttpInvokerServiceExporterCallsReadAndWriteHooks() throws Exception {
+		TestBean target = new TestBean("myname", 99);
+		final List calls = new ArrayList();
+		HttpInvokerServiceExporter exporter = new HttpInvokerServiceExporter() {
+			protected RemoteInvocation readRemoteInvocation(HttpServletRequest request)
+					throws IOException, ClassNotFoundException {
+				calls.add("read");
+				return super.readRemoteInvocation(request);
+			}
+			protected void writeRemoteInvocationResult(HttpServletResponse response, RemoteInvocationResult result)
+					throws IOException {
+				calls.add("write");
+				super.writeRemoteInvocationResult(response, result);
+			}
+		};
+		exporter.setServiceInterface(ITestBean.class);
+		exporter.setService(target);
+		exporter.setCodecs(new HttpInvokerCodec[] {new SerializationHttpInvokerCodec(), new CompactHttpInvokerCodec()});
+		exporter.afterPropertiesSet();
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		CompactHttpInvokerCodec codec = new CompactHttpInvokerCodec();
+		codec.encode(new RemoteInvocation("getName", new Class[0], new Object[0]), baos);
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		request.setContentType(codec.getContentType());
+		request.setContent(baos.toByteArray());
+		exporter.handleRequest(request, response);
+
+		assertEquals(Arrays.asList(new String[] {"read", "write"}), calls);
+		assertEquals(CompactHttpInvokerCodec.CONTENT_TYPE_COMPACT_SERIALIZED_OBJECT, response.getContentType());
+		RemoteInvocationResult result = (RemoteInvocationResult) codec.decode(
+				new ByteArrayInputStream(response.getContentAsByteArray()));
+		assertEquals("myname", result.getValue());
+	}
+
+	public void testHttpInvokerProxyFactoryBeanAndServiceExporterWithCompression() throws Exception {
+		TestBean target = new TestBean("myname", 99);
+		final HttpInvokerServiceExporter exporter = new HttpInvokerServiceExporter();
+		exporter.setServiceInterface(ITestBean.class);
+		exporter.setService(target);
+		SerializationHttpInvokerCodec serverCodec = new SerializationHttpInvokerCodec();
+		serverCodec.setCompressionThreshold(0);
+		exporter.setCodec(serverCodec);
+		exporter.afterPropertiesSet();
+
+		HttpInvokerProxyFactoryBean pfb = new HttpInvokerProxyFactoryBean();
+		pfb.setServiceInterface(ITestBean.class);
+		pfb.setServiceUrl("http://myurl");
+
+		AbstractHttpInvokerRequestExecutor executor = new AbstractHttpInvokerRequestExecutor() {
+			protected RemoteInvocationResult doExecuteRequest(
+					HttpInvokerClientConfiguration config, ByteArrayOutputStream baos)
+					throws IOException, ClassNotFoundException {
+				byte[] content = baos.toByteArray();
+				assertEquals((byte) 0x1f, content[0]);
+				assertEquals((byte) 0x8b, content[1]);
+				MockHttpServletRequest request = new MockHttpServletRequest();
+				MockHttpServletResponse response = new MockHttpServletResponse();
+				request.setContent(content);
+				exporter.handleRequest(request, response);
+				assertEquals((byte) 0x1f, response.getContentAsByteArray()[0]);
+				return readRemoteInvocationResult(new ByteArrayInputStream(response.getContentAsByteArray()));
+			}
+		};
+		SerializationHttpInvokerCodec clientCodec = new SerializationHttpInvokerCodec();
+		clientCodec.setCompressionThreshold(0);
+		executor.setCodec(clientCodec);
+		pfb.setHttpInvokerRequestExecutor(executor);
+
+		pfb.afterPropertiesSet();
+		ITestBean proxy = (ITestBean) pfb.getObject();
+		assertEquals("myname", proxy.getName());
+		proxy.setAge(50);
+		assertEquals(50, proxy.getAge());
+	}
+
+	public void testHttpInvokerProxyFactoryBeanAndServiceExporterWithChunkedStreaming() throws Exception {
+		TestBean target = new TestBean("myname", 99);
+		final HttpInvokerServiceExporter exporter = new HttpInvokerServiceExporter();
+		exporter.setServiceInterface(ITestBean.class);
+		exporter.setService(target);
+		exporter.afterPropertiesSet();
+
+		HttpInvokerProxyFactoryBean pfb = new HttpInvokerProxyFactoryBean();
+		pfb.setServiceInterface(ITestBean.class);
+		pfb.setServiceUrl("http://myurl");
+
+		AbstractHttpInvokerRequestExecutor executor = new AbstractHttpInvokerRequestExecutor() {
+			protected RemoteInvocationResult doExecuteRequest(
+					HttpInvokerClientConfiguration config, ByteArrayOutputStream baos) {
+				throw new AssertionFailedError("Should not have buffered the invocation");
+			}
+			protected RemoteInvocationResult doExecuteStreamingRequest(
+					HttpInvokerClientConfiguration config, RemoteInvocation invocation)
+					throws IOException, ClassNotFoundException {
+				ByteArrayOutputStream content = new ByteArrayOutputStream();
+				writeRemoteInvocation(invocation, createBufferedOutputStream(content));
+				MockHttpServletRequest request = new MockHttpServletRequest();
+				MockHttpServletResponse response = new MockHttpServletResponse();
+				request.setContent(content.toByteArray());
+				exporter.handleRequest(request, response);
+				return readRemoteInvocationResult(new ByteArrayInputStream(response.getContentAsByteArray()));
+			}
+		};
+		executor.setChunkedStreaming(true);
+		pfb.setHttpInvokerRequestExecutor(executor);
+
+		pfb.afterPropertiesSet();
+		ITestBean proxy = (ITestBean) pfb.getObject();
+		assertEquals("myname", proxy.getName());
+		proxy.setAge(50);
+		assertEquals(50, proxy.getAge());
+	}
+
+	public void testChunkedStreamingFallsBackToBuffering() throws Exception {
+		TestBean target = new TestBean("myname", 99);
+		final HttpInvokerServiceExporter exporter = new HttpInvokerServiceExporter();
+		exporter.setServiceInterface(ITestBean.class);
+		exporter.setService(target);
+		exporter.afterPropertiesSet();
+
+		HttpInvokerProxyFactoryBean pfb = new HttpInvokerProxyFactoryBean();
+		pfb.setServiceInterface(ITestBean.class);
+		pfb.setServiceUrl("http://myurl");
+
+		AbstractHttpInvokerRequestExecutor executor = new AbstractHttpInvokerRequestExecutor() {
+			protected RemoteInvocationResult doExecuteRequest(
+					HttpInvokerClientConfiguration config, ByteArrayOutputStream baos)
+					throws IOException, ClassNotFoundException {
+				MockHttpServletRequest request = new MockHttpServletRequest();
+				MockHttpServletResponse response = new MockHttpServletResponse();
+				request.setContent(baos.toByteArray());
+				exporter.handleRequest(request, response);
+				return readRemoteInvocationResult(new ByteArrayInputStream(response.getContentAsByteArray()));
+			}
+		};
+		executor.setChunkedStreaming(true);
+		pfb.setHttpInvokerRequestExecutor(executor);
+
+		pfb.afterPropertiesSet();
+		ITestBean proxy = (ITestBean) pfb.getObject();
+		assertEquals("myname", proxy.getName());
+	}
+
+	public void testBufferPool() throws IOException {
+		BufferPool pool = new BufferPool(4, 1);
+		ByteArrayOutputStream target = new ByteArrayOutputStream();
+		OutputStream os = pool.createOutputStream(target);
+		os.write(1);
+		os.write(new byte[] {2, 3, 4});
+		assertEquals(0, target.size());
+		os.write(5);
+		assertEquals(4, target.size());
+		os.write(new byte[] {6, 7, 8, 9, 10}, 1, 4);
+		assertEquals(9, target.size());
+		os.write(11);
+		os.close();
+		assertTrue(Arrays.equals(new byte[] {1, 2, 3, 4, 5, 7, 8, 9, 10, 11}, target.toByteArray()));
+		assertEquals(1, pool.getPoolSize());
+		os.close();
+		assertEquals(1, pool.getPoolSize());
+		try {
+			os.write(12);
+			fail("Should have thrown IOException");
+		}
+		catch (IOException ex) {
+			// expected
+		}
+
+		byte[] buffer = pool.obtainBuffer();
+		assertEquals(0, pool.getPoolSize());
+		pool.releaseBuffer(buffer);
+		pool.releaseBuffer(new byte[4]);
+		assertEquals(1, pool.getPoolSize());
+	}
+
+	public void testHttpInvokerProxyFactoryBeanAndServiceExporterWithBatching() throws Exception {
+		TestBean target = new TestBean("myname", 99);
+		final HttpInvokerServiceExporter exporter = new HttpInvokerServiceExporter();
+		exporter.setServiceInterface(ITestBean.class);
+		exporter.setService(target);
+		exporter.setBatchTaskExecutor(new SimpleAsyncTaskExecutor());
+		exporter.afterPropertiesSet();
+
+		HttpInvokerProxyFactoryBean pfb = new HttpInvokerProxyFactoryBean();
+		pfb.setServiceInterface(ITestBean.class);
+		pfb.setServiceUrl("http://myurl");
+		pfb.setBatchWindow(2000);
+		pfb.setMaxBatchSize(4);
+
+		final List batchSizes = Collections.synchronizedList(new ArrayList());
+		pfb.setHttpInvokerRequestExecutor(new AbstractHttpInvokerRequestExecutor() {
+			public RemoteInvocationResult doExecuteRequest(
+					HttpInvokerClientConfiguration config, ByteArrayOutputStream baos)
+					throws IOException, ClassNotFoundException {
+				RemoteInvocation invocation = (RemoteInvocation) getCodec().decode(
+						new ByteArrayInputStream(baos.toByteArray()));
+				batchSizes.add(new Integer(invocation instanceof BatchRemoteInvocation ?
+						((BatchRemoteInvocation) invocation).getInvocations().length : 1));
+				MockHttpServletRequest request = new MockHttpServletRequest();
+				MockHttpServletResponse response = new MockHttpServletResponse();
+				request.setContent(baos.toByteArray());
+				exporter.handleRequest(request, response);
+				return readRemoteInvocationResult(new ByteArrayInputStream(response.getContentAsByteArray()));
+			}
+		});
+
+		pfb.afterPropertiesSet();
+		final ITestBean proxy = (ITestBean) pfb.getObject();
+		final Object[] results = new Object[4];
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			final int index = i;
+			threads[i] = new Thread() {
+				public void run() {
+					try {
+						if (index == 3) {
+							proxy.exceptional(new IllegalStateException());
+						}
+						else {
+							results[index] = (index % 2 == 0 ? (Object) proxy.getName() : new Integer(proxy.getAge()));
+						}
+					}
+					catch (Throwable ex) {
+						results[index] = ex;
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].join();
+		}
+
+		assertEquals("myname", results[0]);
+		assertEquals(new Integer(99), results[1]);
+		assertEquals("myname", results[2]);
+		assertTrue(results[3] instanceof IllegalStateException);
+		assertEquals(new Integer(4), batchSizes.get(0));
+		assertEquals(1, batchSizes.size());
+
+		// single invocation within the window: sent as plain invocation
+		pfb.setBatchWindow(10);
+		assertEquals(99, proxy.getAge());
+		assertEquals(new Integer(1), batchSizes.get(1));
+	}
+
+	public void testHttpInvokerServiceExporterWithBatch() throws Exception {
+		TestBean target = new TestBean("myname", 99);
+		HttpInvokerServiceExporter exporter = new HttpInvokerServiceExporter();
+		exporter.setServiceInterface(ITestBean.class);
+		exporter.setService(target);
+		exporter.afterPropertiesSet();
+
+		RemoteInvocation[] invocations = new RemoteInvocation[] {
+			new RemoteInvocation("setAge", new Class[] {int.class}, new Object[] {new Integer(50)}),
+			new RemoteInvocation("getAge", new Class[0], new Object[0]),
+			new RemoteInvocation("getNotExisting", new Class[0], new Object[0])};
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		new SerializationHttpInvokerCodec().encode(new BatchRemoteInvocation(invocations), baos);
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		request.setContent(baos.toByteArray());
+		exporter.handleRequest(request, response);
+
+		RemoteInvocationResult result = (RemoteInvocationResult) new SerializationHttpInvokerCodec().decode(
+				new ByteArrayInputStream(response.getContentAsByteArray()));
+		RemoteInvocationResult[] results = (RemoteInvocationResult[]) result.getValue();
+		assertEquals(3, results.length);
+		assertNull(results[0].getValue());
+		assertEquals(new Integer(50), results[1].getValue());
+		assertTrue(results[2].getException() instanceof NoSuchMethodException);
+	}
+
 	public void testHttpInvokerProxyFactoryBeanAndServiceExporterWithIOException() throws Exception {
 		TestBean target = new TestBean("myname", 99);
 		final HttpInvokerServiceExporter exporter = new HttpInvokerServiceExporter();
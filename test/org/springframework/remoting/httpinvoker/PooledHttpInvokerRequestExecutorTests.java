@@ -0,0 +1,396 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.remoting.httpinvoker;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.SimpleHttpConnectionManager;
+
+import org.springframework.beans.ITestBean;
+import org.springframework.beans.TestBean;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.remoting.RemoteAccessException;
+
+/**
+ * Tests PooledHttpInvokerRequestExecutor against a minimal embedded
+ * HTTP 1.1 server that supports persistent connections.
+ *
+ * @author agent
+ * @since 1.1.2
+ */
+public class PooledHttpInvokerRequestExecutorTests extends TestCase {
+
+	private SimpleHttpServer server;
+
+	private PooledHttpInvokerRequestExecutor executor;
+
+	protected void setUp() throws Exception {
+		HttpInvokerServiceExporter exporter = new HttpInvokerServiceExporter();
+		exporter.setServiceInterface(ITestBean.class);
+		exporter.setService(new TestBean("myname", 99));
+		exporter.afterPropertiesSet();
+		this.server = new SimpleHttpServer(exporter);
+		this.executor = new PooledHttpInvokerRequestExecutor();
+	}
+
+	protected void tearDown() throws Exception {
+		this.executor.destroy();
+		this.server.shutdown();
+	}
+
+	private ITestBean createProxy() throws Exception {
+		HttpInvokerProxyFactoryBean pfb = new HttpInvokerProxyFactoryBean();
+		pfb.setServiceInterface(ITestBean.class);
+		pfb.setServiceUrl(this.server.getServiceUrl());
+		pfb.setHttpInvokerRequestExecutor(this.executor);
+		pfb.afterPropertiesSet();
+		return (ITestBean) pfb.getObject();
+	}
+
+	public void testDefaults() {
+		assertEquals(PooledHttpInvokerRequestExecutor.DEFAULT_MAX_CONNECTIONS_PER_HOST,
+				this.executor.getMaxConnectionsPerHost());
+		assertEquals(PooledHttpInvokerRequestExecutor.DEFAULT_MAX_TOTAL_CONNECTIONS,
+				this.executor.getMaxTotalConnections());
+		assertEquals(PooledHttpInvokerRequestExecutor.DEFAULT_CONNECT_TIMEOUT, this.executor.getConnectTimeout());
+		assertEquals(PooledHttpInvokerRequestExecutor.DEFAULT_READ_TIMEOUT, this.executor.getReadTimeout());
+		assertTrue(this.executor.isStaleConnectionCheck());
+	}
+
+	public void testCustomHttpClient() throws Exception {
+		this.executor.setMaxConnectionsPerHost(5);
+		this.executor.setReadTimeout(5000);
+		MultiThreadedHttpConnectionManager connectionManager = new MultiThreadedHttpConnectionManager();
+		HttpClient httpClient = new HttpClient(connectionManager);
+		this.executor.setHttpClient(httpClient);
+		assertSame(httpClient, this.executor.getHttpClient());
+		assertEquals(5, connectionManager.getMaxConnectionsPerHost());
+		assertEquals(PooledHttpInvokerRequestExecutor.DEFAULT_MAX_TOTAL_CONNECTIONS,
+				connectionManager.getMaxTotalConnections());
+		assertTrue(connectionManager.isConnectionStaleCheckingEnabled());
+
+		this.executor.setMaxTotalConnections(50);
+		assertEquals(50, connectionManager.getMaxTotalConnections());
+
+		ITestBean proxy = createProxy();
+		assertEquals("myname", proxy.getName());
+		assertEquals(1, this.executor.getOpenConnections());
+		assertEquals(1, connectionManager.getConnectionsInUse());
+
+		// the pool of a given HttpClient is left to the caller
+		this.executor.destroy();
+		assertEquals(1, connectionManager.getConnectionsInUse());
+		connectionManager.shutdown();
+
+		try {
+			this.executor.setHttpClient(new HttpClient(new SimpleHttpConnectionManager()));
+			fail("Should have thrown IllegalArgumentException");
+		}
+		catch (IllegalArgumentException ex) {
+			// expected
+		}
+	}
+
+	public void testConnectionReuse() throws Exception {
+		ITestBean proxy = createProxy();
+		for (int i = 0; i < 10; i++) {
+			assertEquals("myname", proxy.getName());
+		}
+		assertEquals(1, this.server.getConnectionCount());
+		assertEquals(10, this.server.getRequestCount());
+		assertEquals(10, this.executor.getRequestCount());
+		assertEquals(0, this.executor.getFailureCount());
+		assertEquals(0, this.executor.getActiveRequestCount());
+		assertEquals(1, this.executor.getOpenConnections());
+		assertEquals(1, this.executor.getOpenConnections(this.server.getServiceUrl()));
+		assertEquals(0, this.executor.getOpenConnections("http://localhost:1/service"));
+	}
+
+	public void testConnectionReuseWithChunkedStreaming() throws Exception {
+		this.executor.setChunkedStreaming(true);
+		ITestBean proxy = createProxy();
+		for (int i = 0; i < 5; i++) {
+			proxy.setAge(i);
+			assertEquals(i, proxy.getAge());
+		}
+		assertEquals(1, this.server.getConnectionCount());
+		assertEquals(10, this.server.getRequestCount());
+	}
+
+	public void testMaxConnectionsPerHost() throws Exception {
+		this.executor.setMaxConnectionsPerHost(2);
+		this.server.setResponseDelay(20);
+		final ITestBean proxy = createProxy();
+		final List failures = new ArrayList();
+		Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				public void run() {
+					try {
+						for (int j = 0; j < 3; j++) {
+							if (!"myname".equals(proxy.getName())) {
+								throw new IllegalStateException("Wrong result");
+							}
+						}
+					}
+					catch (RuntimeException ex) {
+						synchronized (failures) {
+							failures.add(ex);
+						}
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].join();
+		}
+		assertEquals(failures.toString(), 0, failures.size());
+		assertEquals(24, this.server.getRequestCount());
+		assertEquals(2, this.server.getConnectionCount());
+		assertEquals(2, this.executor.getOpenConnections());
+		assertEquals(0, this.executor.getActiveRequestCount());
+	}
+
+	public void testReadTimeout() throws Exception {
+		this.executor.setReadTimeout(100);
+		this.server.setResponseDelay(1000);
+		ITestBean proxy = createProxy();
+		long startTime = System.currentTimeMillis();
+		try {
+			proxy.getName();
+			fail("Should have thrown RemoteAccessException");
+		}
+		catch (RemoteAccessException ex) {
+			// expected
+		}
+		assertTrue("Timed out in time", System.currentTimeMillis() - startTime < 900);
+		assertEquals(1, this.executor.getFailureCount());
+		assertEquals(0, this.executor.getActiveRequestCount());
+	}
+
+	public void testStaleConnectionCheck() throws Exception {
+		this.server.setCloseAfterResponse(true);
+		ITestBean proxy = createProxy();
+		for (int i = 0; i < 3; i++) {
+			assertEquals("myname", proxy.getName());
+			// give the server time to close the connection
+			Thread.sleep(50);
+		}
+		assertEquals(3, this.server.getConnectionCount());
+		assertEquals(0, this.executor.getFailureCount());
+	}
+
+
+	/**
+	 * Minimal HTTP 1.1 server that dispatches POST requests to an
+	 * HttpInvokerServiceExporter, keeping connections alive.
+	 */
+	private static class SimpleHttpServer implements Runnable {
+
+		private final HttpInvokerServiceExporter exporter;
+
+		private final ServerSocket serverSocket;
+
+		private final List sockets = new ArrayList();
+
+		private int connectionCount = 0;
+
+		private int requestCount = 0;
+
+		private long responseDelay = 0;
+
+		private boolean closeAfterResponse = false;
+
+		private volatile boolean active = true;
+
+		public SimpleHttpServer(HttpInvokerServiceExporter exporter) throws IOException {
+			this.exporter = exporter;
+			this.serverSocket = new ServerSocket(0);
+			Thread thread = new Thread(this, "SimpleHttpServer");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		public String getServiceUrl() {
+			return "http://localhost:" + this.serverSocket.getLocalPort() + "/service";
+		}
+
+		public synchronized void setResponseDelay(long responseDelay) {
+			this.responseDelay = responseDelay;
+		}
+
+		public synchronized void setCloseAfterResponse(boolean closeAfterResponse) {
+			this.closeAfterResponse = closeAfterResponse;
+		}
+
+		public synchronized int getConnectionCount() {
+			return connectionCount;
+		}
+
+		public synchronized int getRequestCount() {
+			return requestCount;
+		}
+
+		public void run() {
+			while (this.active) {
+				try {
+					final Socket socket = this.serverSocket.accept();
+					synchronized (this) {
+						this.connectionCount++;
+						this.sockets.add(socket);
+					}
+					Thread thread = new Thread() {
+						public void run() {
+							handleConnection(socket);
+						}
+					};
+					thread.setDaemon(true);
+					thread.start();
+				}
+				catch (IOException ex) {
+					// shut down
+				}
+			}
+		}
+
+		private void handleConnection(Socket socket) {
+			try {
+				InputStream in = new BufferedInputStream(socket.getInputStream());
+				OutputStream out = socket.getOutputStream();
+				while (this.active) {
+					String requestLine = readLine(in);
+					if (requestLine == null) {
+						break;
+					}
+					int contentLength = -1;
+					boolean chunked = false;
+					String contentType = null;
+					String header;
+					while ((header = readLine(in)) != null && header.length() > 0) {
+						String name = header.substring(0, header.indexOf(':')).trim().toLowerCase();
+						String value = header.substring(header.indexOf(':') + 1).trim();
+						if ("content-length".equals(name)) {
+							contentLength = Integer.parseInt(value);
+						}
+						else if ("transfer-encoding".equals(name)) {
+							chunked = "chunked".equalsIgnoreCase(value);
+						}
+						else if ("content-type".equals(name)) {
+							contentType = value;
+						}
+					}
+					byte[] body = (chunked ? readChunkedBody(in) : readBody(in, contentLength));
+					long delay;
+					boolean close;
+					synchronized (this) {
+						this.requestCount++;
+						delay = this.responseDelay;
+						close = this.closeAfterResponse;
+					}
+					if (delay > 0) {
+						Thread.sleep(delay);
+					}
+					MockHttpServletRequest request = new MockHttpServletRequest("POST", "/service");
+					request.setContentType(contentType);
+					request.setContent(body);
+					MockHttpServletResponse response = new MockHttpServletResponse();
+					this.exporter.handleRequest(request, response);
+					byte[] responseBody = response.getContentAsByteArray();
+					String headers = "HTTP/1.1 200 OK\r\nContent-Type: " + response.getContentType() +
+							"\r\nContent-Length: " + responseBody.length + "\r\n\r\n";
+					out.write(headers.getBytes("ISO-8859-1"));
+					out.write(responseBody);
+					out.flush();
+					if (close) {
+						break;
+					}
+				}
+			}
+			catch (Exception ex) {
+				// connection closed or timed out on the client side
+			}
+			finally {
+				try {
+					socket.close();
+				}
+				catch (IOException ex) {
+					// ignore
+				}
+			}
+		}
+
+		private String readLine(InputStream in) throws IOException {
+			ByteArrayOutputStream line = new ByteArrayOutputStream();
+			int b;
+			while ((b = in.read()) != -1 && b != '\n') {
+				if (b != '\r') {
+					line.write(b);
+				}
+			}
+			return (b == -1 && line.size() == 0 ? null : line.toString("ISO-8859-1"));
+		}
+
+		private byte[] readBody(InputStream in, int length) throws IOException {
+			byte[] body = new byte[Math.max(length, 0)];
+			int offset = 0;
+			while (offset < body.length) {
+				int read = in.read(body, offset, body.length - offset);
+				if (read == -1) {
+					throw new IOException("Unexpected end of request body");
+				}
+				offset += read;
+			}
+			return body;
+		}
+
+		private byte[] readChunkedBody(InputStream in) throws IOException {
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			int size;
+			while ((size = Integer.parseInt(readLine(in).trim(), 16)) > 0) {
+				body.write(readBody(in, size));
+				readLine(in);
+			}
+			// trailing CRLF after the last chunk
+			readLine(in);
+			return body.toByteArray();
+		}
+
+		public void shutdown() throws IOException {
+			this.active = false;
+			this.serverSocket.close();
+			synchronized (this) {
+				for (int i = 0; i < this.sockets.size(); i++) {
+					((Socket) this.sockets.get(i)).close();
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.remoting.support;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.remoting.RemoteTimeoutException;
+
+/**
+ * @author agent
+ * @since 1.1.2
+ */
+public class AsyncRemoteProxyFactoryBeanTests extends TestCase {
+
+	public void testFutureInvocation() throws Exception {
+		AsyncRemoteProxyFactoryBean pfb = createFactoryBean(new EchoServiceImpl(0));
+		AsyncEchoService proxy = (AsyncEchoService) pfb.getObject();
+		RemoteInvocationFuture future = proxy.echo("myName");
+		assertEquals("myName", future.get());
+		assertTrue(future.isDone());
+		pfb.destroy();
+	}
+
+	public void testCallbackInvocation() throws Exception {
+		AsyncRemoteProxyFactoryBean pfb = createFactoryBean(new EchoServiceImpl(0));
+		AsyncEchoService proxy = (AsyncEchoService) pfb.getObject();
+		final List results = new ArrayList();
+		proxy.echo("myName", new RemoteInvocationCallback() {
+			public void onSuccess(Object result) {
+				synchronized (results) {
+					results.add(result);
+					results.notifyAll();
+				}
+			}
+			public void onFailure(Throwable ex) {
+				synchronized (results) {
+					results.add(ex);
+					results.notifyAll();
+				}
+			}
+		});
+		synchronized (results) {
+			if (results.isEmpty()) {
+				results.wait(5000);
+			}
+		}
+		assertEquals(1, results.size());
+		assertEquals("myName", results.get(0));
+		pfb.destroy();
+	}
+
+	public void testSynchronousInvocation() throws Exception {
+		AsyncRemoteProxyFactoryBean pfb = createFactoryBean(new EchoServiceImpl(0));
+		AsyncEchoService proxy = (AsyncEchoService) pfb.getObject();
+		assertEquals("myName", proxy.echoNow("myName"));
+		try {
+			proxy.echoNow(null);
+			fail("Should have thrown IllegalArgumentException");
+		}
+		catch (IllegalArgumentException ex) {
+			// expected
+		}
+		pfb.destroy();
+	}
+
+	public void testFutureInvocationWithException() throws Exception {
+		AsyncRemoteProxyFactoryBean pfb = createFactoryBean(new EchoServiceImpl(0));
+		AsyncEchoService proxy = (AsyncEchoService) pfb.getObject();
+		RemoteInvocationFuture future = proxy.echo(null);
+		try {
+			future.get();
+			fail("Should have thrown IllegalArgumentException");
+		}
+		catch (IllegalArgumentException ex) {
+			// expected
+		}
+		pfb.destroy();
+	}
+
+	public void testTimeout() throws Exception {
+		AsyncRemoteProxyFactoryBean pfb = new AsyncRemoteProxyFactoryBean();
+		pfb.setAsyncInterface(AsyncEchoService.class);
+		pfb.setTarget(new EchoServiceImpl(2000));
+		pfb.setTimeout(100);
+		pfb.afterPropertiesSet();
+		AsyncEchoService proxy = (AsyncEchoService) pfb.getObject();
+		long start = System.currentTimeMillis();
+		RemoteInvocationFuture future = proxy.echo("myName");
+		try {
+			future.get();
+			fail("Should have thrown RemoteTimeoutException");
+		}
+		catch (RemoteTimeoutException ex) {
+			// expected
+		}
+		assertTrue("Timed out in time", System.currentTimeMillis() - start < 1500);
+		pfb.destroy();
+	}
+
+	public void testConcurrencyLimit() throws Exception {
+		EchoServiceImpl target = new EchoServiceImpl(50);
+		AsyncRemoteProxyFactoryBean pfb = new AsyncRemoteProxyFactoryBean();
+		pfb.setAsyncInterface(AsyncEchoService.class);
+		pfb.setTarget(target);
+		pfb.setConcurrencyLimit(2);
+		pfb.afterPropertiesSet();
+		AsyncEchoService proxy = (AsyncEchoService) pfb.getObject();
+		RemoteInvocationFuture[] futures = new RemoteInvocationFuture[10];
+		for (int i = 0; i < futures.length; i++) {
+			futures[i] = proxy.echo("name" + i);
+		}
+		assertTrue(pfb.getQueueSize() > 0);
+		for (int i = 0; i < futures.length; i++) {
+			assertEquals("name" + i, futures[i].get(5000));
+		}
+		assertEquals(2, target.getMaxConcurrency());
+		// slots get released right after completing the futures
+		for (int i = 0; i < 50 && pfb.getActiveCount() > 0; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(0, pfb.getActiveCount());
+		assertEquals(0, pfb.getQueueSize());
+		pfb.destroy();
+	}
+
+	public void testConcurrencyLimitWithSharedBoundedExecutor() throws Exception {
+		SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor();
+		executor.setDaemon(true);
+		executor.setConcurrencyLimit(1);
+		EchoServiceImpl target = new EchoServiceImpl(20);
+		AsyncRemoteProxyFactoryBean pfb = new AsyncRemoteProxyFactoryBean();
+		pfb.setAsyncInterface(AsyncEchoService.class);
+		pfb.setTarget(target);
+		pfb.setTaskExecutor(executor);
+		pfb.setConcurrencyLimit(1);
+		pfb.afterPropertiesSet();
+		AsyncEchoService proxy = (AsyncEchoService) pfb.getObject();
+		RemoteInvocationFuture[] futures = new RemoteInvocationFuture[5];
+		for (int i = 0; i < futures.length; i++) {
+			futures[i] = proxy.echo("name" + i);
+		}
+		for (int i = 0; i < futures.length; i++) {
+			assertEquals("name" + i, futures[i].get(5000));
+		}
+		assertEquals(1, target.getMaxConcurrency());
+		// the executor slot gets released right after completing the futures
+		for (int i = 0; i < 50 && executor.getConcurrencyCount() > 0; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(0, executor.getConcurrencyCount());
+		assertEquals(0, pfb.getActiveCount());
+		assertEquals(0, pfb.getQueueSize());
+		pfb.destroy();
+	}
+
+	public void testInvalidAsyncInterface() {
+		AsyncRemoteProxyFactoryBean pfb = new AsyncRemoteProxyFactoryBean();
+		pfb.setAsyncInterface(InvalidAsyncEchoService.class);
+		pfb.setTarget(new EchoServiceImpl(0));
+		try {
+			pfb.afterPropertiesSet();
+			fail("Should have thrown IllegalArgumentException");
+		}
+		catch (IllegalArgumentException ex) {
+			// expected
+		}
+	}
+
+	private AsyncRemoteProxyFactoryBean createFactoryBean(Object target) {
+		AsyncRemoteProxyFactoryBean pfb = new AsyncRemoteProxyFactoryBean();
+		pfb.setAsyncInterface(AsyncEchoService.class);
+		pfb.setTarget(target);
+		pfb.afterPropertiesSet();
+		return pfb;
+	}
+
+
+	public static interface EchoService {
+
+		String echo(String value);
+
+		String echoNow(String value);
+	}
+
+
+	public static interface AsyncEchoService {
+
+		RemoteInvocationFuture echo(String value);
+
+		void echo(String value, RemoteInvocationCallback callback);
+
+		String echoNow(String value);
+	}
+
+
+	public static interface InvalidAsyncEchoService {
+
+		RemoteInvocationFuture echo(int value);
+	}
+
+
+	public static class EchoServiceImpl implements EchoService {
+
+		private final long delay;
+
+		private int concurrency;
+
+		private int maxConcurrency;
+
+		public EchoServiceImpl(long delay) {
+			this.delay = delay;
+		}
+
+		public String echo(String value) {
+			synchronized (this) {
+				this.concurrency++;
+				this.maxConcurrency = Math.max(this.maxConcurrency, this.concurrency);
+			}
+			try {
+				if (this.delay > 0) {
+					Thread.sleep(this.delay);
+				}
+			}
+			catch (InterruptedException ex) {
+				// proceed
+			}
+			finally {
+				synchronized (this) {
+					this.concurrency--;
+				}
+			}
+			return echoNow(value);
+		}
+
+		public String echoNow(String value) {
+			if (value == null) {
+				throw new IllegalArgumentException("value must not be null");
+			}
+			return value;
+		}
+
+		public synchronized int getMaxConcurrency() {
+			return maxConcurrency;
+		}
+	}
+
+}
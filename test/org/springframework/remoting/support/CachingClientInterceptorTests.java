@@ -0,0 +1,245 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.remoting.support;
+
+import java.util.Properties;
+
+import junit.framework.TestCase;
+
+import org.springframework.aop.framework.ProxyFactory;
+
+/**
+ * @author agent
+ * @since 1.1.2
+ */
+public class CachingClientInterceptorTests extends TestCase {
+
+	private CountingReferenceDataService target;
+
+	private CachingClientInterceptor interceptor;
+
+	private ReferenceDataService proxy;
+
+	protected void setUp() {
+		this.target = new CountingReferenceDataService();
+		this.interceptor = new CachingClientInterceptor();
+		Properties cachedMethods = new Properties();
+		cachedMethods.setProperty("get*", "-1");
+		cachedMethods.setProperty("getRates", "50");
+		this.interceptor.setCachedMethods(cachedMethods);
+		this.proxy = createProxy(this.interceptor);
+	}
+
+	private ReferenceDataService createProxy(CachingClientInterceptor interceptor) {
+		ProxyFactory pf = new ProxyFactory(new Class[] {ReferenceDataService.class});
+		pf.addInterceptor(interceptor);
+		pf.setTarget(this.target);
+		return (ReferenceDataService) pf.getProxy();
+	}
+
+	public void testCachedMethodKeyedByArguments() {
+		assertEquals("de:1", this.proxy.getCountryName("de"));
+		assertEquals("de:1", this.proxy.getCountryName("de"));
+		assertEquals("at:2", this.proxy.getCountryName("at"));
+		assertEquals("at:2", this.proxy.getCountryName("at"));
+		assertEquals(null, this.proxy.getCountryName(null));
+		assertEquals(null, this.proxy.getCountryName(null));
+		assertEquals(3, this.target.getInvocationCount());
+		assertEquals(3, this.interceptor.getHitCount());
+		assertEquals(3, this.interceptor.getMissCount());
+		assertEquals(0.5, this.interceptor.getHitRatio(), 0.0001);
+	}
+
+	public void testMethodsWithSameArgumentsCachedSeparately() {
+		assertEquals("de:1", this.proxy.getCountryName("de"));
+		assertEquals("DE:2", this.proxy.getCountryCode("de"));
+		assertEquals("de:1", this.proxy.getCountryName("de"));
+		assertEquals("DE:2", this.proxy.getCountryCode("de"));
+		assertEquals(2, this.target.getInvocationCount());
+	}
+
+	public void testArrayArgumentsComparedByElements() {
+		assertEquals("de,at:1", this.proxy.getCountryNames(new String[] {"de", "at"}, new int[] {0, 1}));
+		assertEquals("de,at:1", this.proxy.getCountryNames(new String[] {"de", "at"}, new int[] {0, 1}));
+		assertEquals("de,at:2", this.proxy.getCountryNames(new String[] {"de", "at"}, new int[] {1, 0}));
+		assertEquals("de,ch:3", this.proxy.getCountryNames(new String[] {"de", "ch"}, new int[] {0, 1}));
+		assertEquals("de,ch:3", this.proxy.getCountryNames(new String[] {"de", "ch"}, new int[] {0, 1}));
+		assertEquals(3, this.target.getInvocationCount());
+		assertEquals(2, this.interceptor.getHitCount());
+	}
+
+	public void testArrayArgumentsModifiedAfterInvocation() {
+		String[] codes = new String[] {"de", "at"};
+		int[] order = new int[] {0, 1};
+		assertEquals("de,at:1", this.proxy.getCountryNames(codes, order));
+		codes[1] = "ch";
+		assertEquals("de,ch:2", this.proxy.getCountryNames(codes, order));
+		order[0] = 1;
+		assertEquals("de,ch:3", this.proxy.getCountryNames(codes, order));
+		assertEquals("de,at:1", this.proxy.getCountryNames(new String[] {"de", "at"}, new int[] {0, 1}));
+		assertEquals(3, this.target.getInvocationCount());
+	}
+
+	public void testNestedArrayArgumentsModifiedAfterInvocation() {
+		String[][] regions = new String[][] {{"de", "at"}, {"ch"}};
+		assertEquals("de,at:1", this.proxy.getRegionNames(regions));
+		regions[0][1] = "li";
+		assertEquals("de,li:2", this.proxy.getRegionNames(regions));
+		assertEquals("de,at:1", this.proxy.getRegionNames(new String[][] {{"de", "at"}, {"ch"}}));
+		assertEquals(2, this.target.getInvocationCount());
+	}
+
+	public void testUncachedMethodPassedThrough() {
+		this.proxy.updateCountry("de", "Deutschland");
+		this.proxy.updateCountry("de", "Deutschland");
+		assertEquals(2, this.target.getInvocationCount());
+		assertEquals(0, this.interceptor.getHitCount());
+		assertEquals(0, this.interceptor.getMissCount());
+		assertEquals(0.0, this.interceptor.getHitRatio(), 0.0);
+	}
+
+	public void testTimeToLive() throws Exception {
+		assertEquals("eur:1", this.proxy.getRates("eur"));
+		assertEquals("eur:1", this.proxy.getRates("eur"));
+		Thread.sleep(100);
+		assertEquals("eur:2", this.proxy.getRates("eur"));
+		assertEquals("eur:2", this.proxy.getRates("eur"));
+		assertEquals(2, this.target.getInvocationCount());
+	}
+
+	public void testExceptionNotCached() {
+		for (int i = 0; i < 2; i++) {
+			try {
+				this.proxy.getCountryName("");
+				fail("Should have thrown IllegalArgumentException");
+			}
+			catch (IllegalArgumentException ex) {
+				// expected
+			}
+		}
+		assertEquals(2, this.target.getInvocationCount());
+	}
+
+	public void testCacheSize() {
+		this.interceptor.setCacheSize(2);
+		this.proxy.getCountryName("de");
+		this.proxy.getCountryName("at");
+		this.proxy.getCountryName("ch");
+		this.proxy.getCountryName("ch");
+		this.proxy.getCountryName("at");
+		assertEquals(3, this.target.getInvocationCount());
+		this.proxy.getCountryName("de");
+		assertEquals(4, this.target.getInvocationCount());
+	}
+
+	public void testClear() {
+		this.proxy.getCountryName("de");
+		this.interceptor.clear();
+		this.proxy.getCountryName("de");
+		assertEquals(2, this.target.getInvocationCount());
+	}
+
+	public void testInvalidTimeToLive() {
+		Properties cachedMethods = new Properties();
+		cachedMethods.setProperty("get*", "forever");
+		try {
+			this.interceptor.setCachedMethods(cachedMethods);
+			fail("Should have thrown IllegalArgumentException");
+		}
+		catch (IllegalArgumentException ex) {
+			// expected
+		}
+	}
+
+	public void testPerformance() {
+		ReferenceDataService target = new CountingReferenceDataService();
+		ProxyFactory pf = new ProxyFactory(new Class[] {ReferenceDataService.class});
+		pf.addInterceptor(this.interceptor);
+		pf.setTarget(target);
+		ReferenceDataService proxy = (ReferenceDataService) pf.getProxy();
+		String[] countries = new String[100];
+		for (int i = 0; i < countries.length; i++) {
+			countries[i] = "c" + i;
+		}
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < 100000; i++) {
+			proxy.getCountryName(countries[i % countries.length]);
+		}
+		long time = System.currentTimeMillis() - start;
+		assertTrue("100000 cached invocations took less than 5 seconds", time < 5000);
+		assertEquals(0.999, this.interceptor.getHitRatio(), 0.0001);
+	}
+
+
+	public static interface ReferenceDataService {
+
+		String getCountryName(String code);
+
+		String getCountryCode(String code);
+
+		String getRates(String currency);
+
+		String getCountryNames(String[] codes, int[] order);
+
+		String getRegionNames(String[][] regions);
+
+		void updateCountry(String code, String name);
+	}
+
+
+	public static class CountingReferenceDataService implements ReferenceDataService {
+
+		private int invocationCount = 0;
+
+		public String getCountryName(String code) {
+			this.invocationCount++;
+			if ("".equals(code)) {
+				throw new IllegalArgumentException("Empty country code");
+			}
+			return (code != null ? code + ":" + this.invocationCount : null);
+		}
+
+		public String getCountryCode(String code) {
+			this.invocationCount++;
+			return code.toUpperCase() + ":" + this.invocationCount;
+		}
+
+		public String getRates(String currency) {
+			this.invocationCount++;
+			return currency + ":" + this.invocationCount;
+		}
+
+		public String getCountryNames(String[] codes, int[] order) {
+			this.invocationCount++;
+			return codes[0] + "," + codes[1] + ":" + this.invocationCount;
+		}
+
+		public String getRegionNames(String[][] regions) {
+			this.invocationCount++;
+			return regions[0][0] + "," + regions[0][1] + ":" + this.invocationCount;
+		}
+
+		public void updateCountry(String code, String name) {
+			this.invocationCount++;
+		}
+
+		public int getInvocationCount() {
+			return invocationCount;
+		}
+	}
+
+}
@@ -0,0 +1,366 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.remoting.support;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import org.springframework.beans.ITestBean;
+import org.springframework.beans.TestBean;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.remoting.RemoteAccessException;
+import org.springframework.remoting.RemoteConnectFailureException;
+import org.springframework.remoting.httpinvoker.AbstractHttpInvokerRequestExecutor;
+import org.springframework.remoting.httpinvoker.HttpInvokerClientConfiguration;
+import org.springframework.remoting.httpinvoker.HttpInvokerClientInterceptor;
+import org.springframework.remoting.httpinvoker.HttpInvokerServiceExporter;
+
+/**
+ * @author agent
+ * @since 1.1.2
+ */
+public class LoadBalancingProxyFactoryBeanTests extends TestCase {
+
+	public void testRoundRobin() throws Exception {
+		FakeEndpoint ep1 = new FakeEndpoint("url1");
+		FakeEndpoint ep2 = new FakeEndpoint("url2");
+		FakeEndpoint ep3 = new FakeEndpoint("url3");
+		ITestBean proxy = createProxy(new Object[] {ep1, ep2, ep3}, null);
+		for (int i = 0; i < 2; i++) {
+			assertEquals("url1", proxy.getName());
+			assertEquals("url2", proxy.getName());
+			assertEquals("url3", proxy.getName());
+		}
+		assertEquals(2, ep1.getInvocationCount());
+		assertEquals(2, ep2.getInvocationCount());
+		assertEquals(2, ep3.getInvocationCount());
+	}
+
+	public void testFailoverOnConnectFailureWithEjection() throws Exception {
+		FakeEndpoint ep1 = new FakeEndpoint("url1");
+		ep1.setFailureMode(FakeEndpoint.FAILURE_CONNECT);
+		FakeEndpoint ep2 = new FakeEndpoint("url2");
+		LoadBalancingProxyFactoryBean pfb = createFactoryBean(new Object[] {ep1, ep2}, null);
+		pfb.setFailureThreshold(1);
+		ITestBean proxy = (ITestBean) pfb.getObject();
+
+		// connect failures get retried even for non-idempotent methods
+		proxy.setAge(5);
+		assertEquals(1, ep1.getInvocationCount());
+		assertEquals(1, ep2.getInvocationCount());
+		assertEquals(Arrays.asList(new String[] {"url1"}), Arrays.asList(pfb.getEjectedEndpointDescriptions()));
+
+		for (int i = 0; i < 4; i++) {
+			assertEquals("url2", proxy.getName());
+		}
+		assertEquals(1, ep1.getInvocationCount());
+		assertEquals(5, ep2.getInvocationCount());
+	}
+
+	public void testEjectionAfterFailureThreshold() throws Exception {
+		FakeEndpoint ep1 = new FakeEndpoint("url1");
+		ep1.setFailureMode(FakeEndpoint.FAILURE_CONNECT);
+		FakeEndpoint ep2 = new FakeEndpoint("url2");
+		LoadBalancingProxyFactoryBean pfb = createFactoryBean(new Object[] {ep1, ep2}, null);
+		pfb.setEjectionTime(50);
+		ITestBean proxy = (ITestBean) pfb.getObject();
+
+		assertEquals("url2", proxy.getName());
+		assertEquals(0, pfb.getEjectedEndpointDescriptions().length);
+		assertEquals("url2", proxy.getName());
+		assertEquals("url2", proxy.getName());
+		assertEquals(1, pfb.getEjectedEndpointDescriptions().length);
+		int count = ep1.getInvocationCount();
+		assertEquals("url2", proxy.getName());
+		assertEquals(count, ep1.getInvocationCount());
+
+		Thread.sleep(100);
+		assertEquals(0, pfb.getEjectedEndpointDescriptions().length);
+		ep1.setFailureMode(FakeEndpoint.FAILURE_NONE);
+		assertEquals("url1", proxy.getName());
+		assertEquals("url2", proxy.getName());
+	}
+
+	public void testRemoteAccessFailureRetriedForIdempotentMethodsOnly() throws Exception {
+		FakeEndpoint ep1 = new FakeEndpoint("url1");
+		ep1.setFailureMode(FakeEndpoint.FAILURE_REMOTE);
+		FakeEndpoint ep2 = new FakeEndpoint("url2");
+		ITestBean proxy = createProxy(new Object[] {ep1, ep2}, new String[] {"get*"});
+
+		assertEquals("url2", proxy.getName());
+		assertEquals(1, ep1.getInvocationCount());
+		assertEquals(1, ep2.getInvocationCount());
+		try {
+			proxy.setAge(5);
+			fail("Should have thrown RemoteAccessException");
+		}
+		catch (RemoteAccessException ex) {
+			// expected
+		}
+		assertEquals(2, ep1.getInvocationCount());
+		assertEquals(1, ep2.getInvocationCount());
+	}
+
+	public void testServiceExceptionNotRetried() throws Throwable {
+		FakeEndpoint ep1 = new FakeEndpoint("url1");
+		FakeEndpoint ep2 = new FakeEndpoint("url2");
+		LoadBalancingProxyFactoryBean pfb = createFactoryBean(new Object[] {ep1, ep2}, new String[] {"*"});
+		pfb.setFailureThreshold(1);
+		ITestBean proxy = (ITestBean) pfb.getObject();
+		try {
+			proxy.exceptional(new IllegalStateException());
+			fail("Should have thrown IllegalStateException");
+		}
+		catch (IllegalStateException ex) {
+			// expected
+		}
+		assertEquals(1, ep1.getInvocationCount());
+		assertEquals(0, ep2.getInvocationCount());
+		assertEquals(0, pfb.getEjectedEndpointDescriptions().length);
+	}
+
+	public void testAllEndpointsFailing() throws Exception {
+		FakeEndpoint ep1 = new FakeEndpoint("url1");
+		ep1.setFailureMode(FakeEndpoint.FAILURE_CONNECT);
+		FakeEndpoint ep2 = new FakeEndpoint("url2");
+		ep2.setFailureMode(FakeEndpoint.FAILURE_CONNECT);
+		LoadBalancingProxyFactoryBean pfb = createFactoryBean(new Object[] {ep1, ep2}, null);
+		pfb.setFailureThreshold(1);
+		ITestBean proxy = (ITestBean) pfb.getObject();
+		for (int i = 1; i <= 2; i++) {
+			try {
+				proxy.getName();
+				fail("Should have thrown RemoteConnectFailureException");
+			}
+			catch (RemoteConnectFailureException ex) {
+				// expected
+			}
+			// ejected endpoints still get tried if there is no alternative
+			assertEquals(i, ep1.getInvocationCount());
+			assertEquals(i, ep2.getInvocationCount());
+		}
+		assertEquals(2, pfb.getEjectedEndpointDescriptions().length);
+	}
+
+	public void testMaxAttempts() throws Exception {
+		FakeEndpoint ep1 = new FakeEndpoint("url1");
+		ep1.setFailureMode(FakeEndpoint.FAILURE_CONNECT);
+		FakeEndpoint ep2 = new FakeEndpoint("url2");
+		ep2.setFailureMode(FakeEndpoint.FAILURE_CONNECT);
+		FakeEndpoint ep3 = new FakeEndpoint("url3");
+		LoadBalancingProxyFactoryBean pfb = createFactoryBean(new Object[] {ep1, ep2, ep3}, null);
+		pfb.setMaxAttempts(2);
+		ITestBean proxy = (ITestBean) pfb.getObject();
+		try {
+			proxy.getName();
+			fail("Should have thrown RemoteConnectFailureException");
+		}
+		catch (RemoteConnectFailureException ex) {
+			// expected
+		}
+		assertEquals(0, ep3.getInvocationCount());
+	}
+
+	public void testLeastLatency() throws Exception {
+		FakeEndpoint ep1 = new FakeEndpoint("url1");
+		ep1.setDelay(50);
+		FakeEndpoint ep2 = new FakeEndpoint("url2");
+		LoadBalancingProxyFactoryBean pfb = createFactoryBean(new Object[] {ep1, ep2}, null);
+		pfb.setSelectionPolicyName("SELECTION_LEAST_LATENCY");
+		ITestBean proxy = (ITestBean) pfb.getObject();
+
+		// endpoints without measurements get tried first
+		proxy.getName();
+		proxy.getName();
+		assertEquals(1, ep1.getInvocationCount());
+		assertEquals(1, ep2.getInvocationCount());
+		assertTrue(pfb.getAverageLatency("url1") > pfb.getAverageLatency("url2"));
+		for (int i = 0; i < 5; i++) {
+			assertEquals("url2", proxy.getName());
+		}
+		assertEquals(1, ep1.getInvocationCount());
+	}
+
+	public void testInvalidSelectionPolicy() {
+		LoadBalancingProxyFactoryBean pfb = new LoadBalancingProxyFactoryBean();
+		try {
+			pfb.setSelectionPolicyName("ROUND_ROBIN");
+			fail("Should have thrown IllegalArgumentException");
+		}
+		catch (IllegalArgumentException ex) {
+			// expected
+		}
+		try {
+			pfb.setSelectionPolicy(5);
+			fail("Should have thrown IllegalArgumentException");
+		}
+		catch (IllegalArgumentException ex) {
+			// expected
+		}
+	}
+
+	public void testServiceUrlsWithEndpointClass() throws Exception {
+		LoadBalancingProxyFactoryBean pfb = new LoadBalancingProxyFactoryBean();
+		pfb.setServiceInterface(ITestBean.class);
+		pfb.setServiceUrls(new String[] {"url1", "url2"});
+		pfb.setEndpointClass(FakeEndpoint.class);
+		Map endpointProperties = new HashMap();
+		endpointProperties.put("failureMode", "remote");
+		pfb.setEndpointProperties(endpointProperties);
+		pfb.setIdempotentMethods(new String[] {"getName"});
+		pfb.afterPropertiesSet();
+		assertEquals(Arrays.asList(new String[] {"url1", "url2"}), Arrays.asList(pfb.getEndpointDescriptions()));
+		ITestBean proxy = (ITestBean) pfb.getObject();
+		try {
+			proxy.getName();
+			fail("Should have thrown RemoteAccessException");
+		}
+		catch (RemoteAccessException ex) {
+			assertTrue(ex.getMessage().startsWith("url2"));
+		}
+	}
+
+	public void testInvalidEndpointClass() {
+		LoadBalancingProxyFactoryBean pfb = new LoadBalancingProxyFactoryBean();
+		try {
+			pfb.setEndpointClass(TestBean.class);
+			fail("Should have thrown IllegalArgumentException");
+		}
+		catch (IllegalArgumentException ex) {
+			// expected
+		}
+	}
+
+	public void testWithHttpInvokerEndpoints() throws Exception {
+		final HttpInvokerServiceExporter exporter = new HttpInvokerServiceExporter();
+		exporter.setServiceInterface(ITestBean.class);
+		exporter.setService(new TestBean("myname", 99));
+		exporter.afterPropertiesSet();
+
+		AbstractHttpInvokerRequestExecutor executor = new AbstractHttpInvokerRequestExecutor() {
+			protected RemoteInvocationResult doExecuteRequest(
+					HttpInvokerClientConfiguration config, ByteArrayOutputStream baos)
+					throws IOException, ClassNotFoundException {
+				if ("http://down".equals(config.getServiceUrl())) {
+					throw new ConnectException("Connection refused");
+				}
+				MockHttpServletRequest request = new MockHttpServletRequest();
+				MockHttpServletResponse response = new MockHttpServletResponse();
+				request.setContent(baos.toByteArray());
+				exporter.handleRequest(request, response);
+				return readRemoteInvocationResult(new ByteArrayInputStream(response.getContentAsByteArray()));
+			}
+		};
+
+		LoadBalancingProxyFactoryBean pfb = new LoadBalancingProxyFactoryBean();
+		pfb.setServiceInterface(ITestBean.class);
+		pfb.setServiceUrls(new String[] {"http://down", "http://up"});
+		pfb.setEndpointClass(HttpInvokerClientInterceptor.class);
+		pfb.setEndpointProperties(Collections.singletonMap("httpInvokerRequestExecutor", executor));
+		pfb.setFailureThreshold(1);
+		pfb.afterPropertiesSet();
+		ITestBean proxy = (ITestBean) pfb.getObject();
+		proxy.setAge(50);
+		assertEquals(50, proxy.getAge());
+		assertEquals("myname", proxy.getName());
+		assertEquals(Arrays.asList(new String[] {"http://down"}),
+				Arrays.asList(pfb.getEjectedEndpointDescriptions()));
+	}
+
+	private ITestBean createProxy(Object[] endpoints, String[] idempotentMethods) throws Exception {
+		return (ITestBean) createFactoryBean(endpoints, idempotentMethods).getObject();
+	}
+
+	private LoadBalancingProxyFactoryBean createFactoryBean(Object[] endpoints, String[] idempotentMethods)
+			throws Exception {
+		LoadBalancingProxyFactoryBean pfb = new LoadBalancingProxyFactoryBean();
+		pfb.setServiceInterface(ITestBean.class);
+		pfb.setEndpoints(endpoints);
+		pfb.setIdempotentMethods(idempotentMethods);
+		pfb.afterPropertiesSet();
+		return pfb;
+	}
+
+
+	public static class FakeEndpoint extends UrlBasedRemoteAccessor implements MethodInterceptor {
+
+		public static final String FAILURE_NONE = "none";
+
+		public static final String FAILURE_CONNECT = "connect";
+
+		public static final String FAILURE_REMOTE = "remote";
+
+		private String failureMode = FAILURE_NONE;
+
+		private long delay;
+
+		private int invocationCount;
+
+		public FakeEndpoint() {
+		}
+
+		public FakeEndpoint(String serviceUrl) {
+			setServiceUrl(serviceUrl);
+		}
+
+		public void setFailureMode(String failureMode) {
+			this.failureMode = failureMode;
+		}
+
+		public void setDelay(long delay) {
+			this.delay = delay;
+		}
+
+		public synchronized int getInvocationCount() {
+			return invocationCount;
+		}
+
+		public Object invoke(MethodInvocation invocation) throws Throwable {
+			synchronized (this) {
+				this.invocationCount++;
+			}
+			if (this.delay > 0) {
+				Thread.sleep(this.delay);
+			}
+			if (FAILURE_CONNECT.equals(this.failureMode)) {
+				throw new RemoteConnectFailureException(getServiceUrl(), new ConnectException());
+			}
+			if (FAILURE_REMOTE.equals(this.failureMode)) {
+				throw new RemoteAccessException(getServiceUrl(), new IOException());
+			}
+			if ("exceptional".equals(invocation.getMethod().getName())) {
+				throw (Throwable) invocation.getArguments()[0];
+			}
+			if ("getName".equals(invocation.getMethod().getName())) {
+				return getServiceUrl();
+			}
+			return null;
+		}
+	}
+
+}
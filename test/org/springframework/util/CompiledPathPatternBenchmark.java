@@ -0,0 +1,121 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.util;
+
+/**
+ * Benchmark for CompiledPathPattern against the tokenizing PathMatcher
+ * algorithm of Spring 1.1.1, in the style of a JMH benchmark: Each
+ * variant is run for a number of warm-up iterations first, followed by
+ * measured iterations that report the average time per iteration.
+ * Not a unit test, as wall-clock timings depend on the machine:
+ * Run it via its main method, optionally passing the number of
+ * matches per iteration.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see CompiledPathPatternTests
+ */
+public class CompiledPathPatternBenchmark {
+
+	private static final int WARMUP_ITERATIONS = 5;
+
+	private static final int MEASURED_ITERATIONS = 5;
+
+	/**
+	 * Typical patterns as found in handler mappings and resource locations,
+	 * each with a matching and a non-matching path.
+	 */
+	private static final String[][] PATTERNS = new String[][] {
+		{"/welcome.html", "/welcome.html", "/welcome.htm"},
+		{"/*.html", "/index.html", "/docs/index.html"},
+		{"/admin/**", "/admin/users/1/edit", "/adminx/users"},
+		{"/**/*.jsp", "/WEB-INF/jsp/views/list.jsp", "/WEB-INF/jsp/views/list.jspx"},
+		{"/shop/**/product?.html", "/shop/a/b/c/product1.html", "/shop/a/b/c/product12.html"},
+		{"/static/**/*.js", "/static/lib/dojo/dojo.js", "/static/lib/dojo/dojo.css"},
+	};
+
+	/** Sum of the match results, so that the JIT cannot drop the matching */
+	private static int matchCount;
+
+
+	public static void main(String[] args) {
+		int matches = (args.length > 0 ? Integer.parseInt(args[0]) : 200000);
+		final CompiledPathPattern[] compiledPatterns = new CompiledPathPattern[PATTERNS.length];
+		for (int i = 0; i < PATTERNS.length; i++) {
+			compiledPatterns[i] = new CompiledPathPattern(PATTERNS[i][0]);
+			for (int j = 1; j < PATTERNS[i].length; j++) {
+				if (compiledPatterns[i].matches(PATTERNS[i][j]) !=
+						CompiledPathPatternTests.referenceMatch(PATTERNS[i][0], PATTERNS[i][j])) {
+					throw new IllegalStateException("Different results for pattern [" + PATTERNS[i][0] +
+							"] against path [" + PATTERNS[i][j] + "]");
+				}
+			}
+		}
+
+		run("tokenizing PathMatcher (1.1.1)", matches, new Variant() {
+			public boolean match(int patternIndex, String path) {
+				return CompiledPathPatternTests.referenceMatch(PATTERNS[patternIndex][0], path);
+			}
+		});
+		run("PathMatcher.match", matches, new Variant() {
+			public boolean match(int patternIndex, String path) {
+				return PathMatcher.match(PATTERNS[patternIndex][0], path);
+			}
+		});
+		run("precompiled CompiledPathPattern", matches, new Variant() {
+			public boolean match(int patternIndex, String path) {
+				return compiledPatterns[patternIndex].matches(path);
+			}
+		});
+	}
+
+	private static void run(String name, int matches, Variant variant) {
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			matchCount += iterate(matches, variant);
+		}
+		StopWatch sw = new StopWatch(name);
+		for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+			sw.start("iteration " + (i + 1));
+			matchCount += iterate(matches, variant);
+			sw.stop();
+		}
+		System.out.println(name + ": " + (sw.getTotalTimeMillis() / MEASURED_ITERATIONS) + " ms per " +
+				matches + " matches (average of " + MEASURED_ITERATIONS + " iterations after " +
+				WARMUP_ITERATIONS + " warm-up iterations)");
+	}
+
+	private static int iterate(int matches, Variant variant) {
+		int matched = 0;
+		for (int i = 0; i < matches; i++) {
+			int patternIndex = i % PATTERNS.length;
+			if (variant.match(patternIndex, PATTERNS[patternIndex][1 + (i / PATTERNS.length) % 2])) {
+				matched++;
+			}
+		}
+		return matched;
+	}
+
+
+	/**
+	 * Matching variant to measure.
+	 */
+	private interface Variant {
+
+		boolean match(int patternIndex, String path);
+	}
+
+}
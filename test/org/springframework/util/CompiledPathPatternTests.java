@@ -0,0 +1,383 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+
+import junit.framework.TestCase;
+
+/**
+ * @author agent
+ * @since 1.1.2
+ */
+public class CompiledPathPatternTests extends TestCase {
+
+	/**
+	 * Typical patterns as found in handler mappings and resource locations,
+	 * each with a matching and a non-matching path.
+	 */
+	private static final String[][] TYPICAL_PATTERNS = new String[][] {
+		{"/welcome.html", "/welcome.html", "/welcome.htm"},
+		{"/*.html", "/index.html", "/docs/index.html"},
+		{"/admin/*", "/admin/users", "/admin/users/1"},
+		{"/admin/**", "/admin/users/1/edit", "/adminx/users"},
+		{"/**/*.jsp", "/WEB-INF/jsp/views/list.jsp", "/WEB-INF/jsp/views/list.jspx"},
+		{"/shop/**/product?.html", "/shop/a/b/c/product1.html", "/shop/a/b/c/product12.html"},
+		{"/static/**/*.js", "/static/lib/dojo/dojo.js", "/static/lib/dojo/dojo.css"},
+		{"/WEB-INF/*-context.xml", "/WEB-INF/app-context.xml", "/WEB-INF/conf/app-context.xml"},
+	};
+
+	/**
+	 * Patterns and paths that get matched against each other,
+	 * for comparison with the tokenizing algorithm.
+	 */
+	private static final String[] EQUIVALENCE_PATTERNS = new String[] {
+		"", "/", "*", "/*", "**", "/**", "/**/", "?", "/?", "/??", "a", "/a", "/a/", "a/b", "/a/b", "/a//b",
+		"/a/*", "/a/**", "/a/**/b", "/a/**/**/b", "/a/**/b/**", "/a/**/b/**/c", "/**/b", "/**/*.html",
+		"/**/a/*/b", "/*/b/**", "*.html", "/*.html", "/a/*.html", "/a/b*", "/a/*b", "/a/*b*", "/a/*b*c",
+		"/a/**b", "/a/b?c", "/a/?*", "/a/*?", "/a/**/*", "/a/*/*/c", "/**/**", "/a/b/**/**/**", "a/**",
+		"**/b", "/t?st", "/te*st", "/*test*", "/a*b*c*d", "/x/**/y/**/z/*.jsp"
+	};
+
+	private static final String[] EQUIVALENCE_PATHS = new String[] {
+		"", "/", "//", "a", "/a", "/a/", "//a", "a/b", "/a/b", "/a/b/", "/a//b", "/a/b/c", "/a/b/c/d",
+		"/a/x/b", "/a/x/y/b", "/a/b/b", "/a/b/x/c", "/a/x/b/y/c", "/b", "/x/b", "/x/y/b", "/index.html",
+		"index.html", "/a/index.html", "/a/b/index.html", "/a/bc", "/a/cb", "/a/abc", "/a/abbc", "/a/bxc",
+		"/a/b.html", "/test", "/tst", "/tast", "/teest", "/mytestfile", "/abcd", "/aXbYcZd", "/adcb",
+		"/x/y/z/a.jsp", "/x/1/y/2/z/a.jsp", "/x/y/a.jsp", "/x/z/y/a.jsp"
+	};
+
+
+	public void testTypicalPatterns() {
+		for (int i = 0; i < TYPICAL_PATTERNS.length; i++) {
+			CompiledPathPattern pattern = new CompiledPathPattern(TYPICAL_PATTERNS[i][0]);
+			assertTrue(pattern + " should match " + TYPICAL_PATTERNS[i][1], pattern.matches(TYPICAL_PATTERNS[i][1]));
+			assertFalse(pattern + " should not match " + TYPICAL_PATTERNS[i][2], pattern.matches(TYPICAL_PATTERNS[i][2]));
+		}
+	}
+
+	public void testReuseAcrossPaths() {
+		CompiledPathPattern pattern = new CompiledPathPattern("/x/**/*.html");
+		assertTrue(pattern.isPattern());
+		assertEquals("/x/**/*.html", pattern.getPattern());
+		assertTrue(pattern.matches("/x/a.html"));
+		assertTrue(pattern.matches("/x/a/b/c.html"));
+		assertFalse(pattern.matches("/x/a/b/c.htm"));
+		assertFalse(pattern.matches("x/a.html"));
+		assertTrue(pattern.matches("/x/a.html"));
+	}
+
+	public void testSlashHandling() {
+		CompiledPathPattern pattern = new CompiledPathPattern("/a/b/c");
+		assertFalse(pattern.isPattern());
+		assertTrue(pattern.matches("/a/b/c"));
+		assertTrue(pattern.matches("/a//b/c/"));
+		assertFalse(pattern.matches("a/b/c"));
+		assertTrue(new CompiledPathPattern("/").matches("/"));
+		assertFalse(new CompiledPathPattern("/").matches("/a"));
+	}
+
+	public void testDirectoryWildcards() {
+		CompiledPathPattern pattern = new CompiledPathPattern("/a/**/**/b/**");
+		assertTrue(pattern.matches("/a/b"));
+		assertTrue(pattern.matches("/a/x/y/b/z"));
+		assertTrue(pattern.matches("/a/b/b/b"));
+		assertFalse(pattern.matches("/a/x/y"));
+		assertTrue(new CompiledPathPattern("/**").matches("/"));
+		assertTrue(new CompiledPathPattern("**/*").matches("a/b/c"));
+	}
+
+	public void testEqualsAndHashCode() {
+		assertEquals(new CompiledPathPattern("/a/*"), new CompiledPathPattern("/a/*"));
+		assertEquals(new CompiledPathPattern("/a/*").hashCode(), new CompiledPathPattern("/a/*").hashCode());
+		assertFalse(new CompiledPathPattern("/a/*").equals(new CompiledPathPattern("/a/**")));
+	}
+
+	public void testEquivalentToTokenizingMatcher() {
+		for (int i = 0; i < EQUIVALENCE_PATTERNS.length; i++) {
+			CompiledPathPattern pattern = new CompiledPathPattern(EQUIVALENCE_PATTERNS[i]);
+			for (int j = 0; j < EQUIVALENCE_PATHS.length; j++) {
+				boolean expected = referenceMatch(EQUIVALENCE_PATTERNS[i], EQUIVALENCE_PATHS[j]);
+				assertEquals("Pattern [" + EQUIVALENCE_PATTERNS[i] + "] against path [" + EQUIVALENCE_PATHS[j] + "]",
+						expected, pattern.matches(EQUIVALENCE_PATHS[j]));
+				assertEquals(expected, PathMatcher.match(EQUIVALENCE_PATTERNS[i], EQUIVALENCE_PATHS[j]));
+			}
+		}
+	}
+
+
+	/**
+	 * The tokenizing matching algorithm of PathMatcher as of Spring 1.1.1,
+	 * as reference for the compiled patterns and for CompiledPathPatternBenchmark.
+	 */
+	static boolean referenceMatch(String pattern, String str) {
+		if (str.startsWith("/") != pattern.startsWith("/")) {
+			return false;
+		}
+
+		List patDirs = tokenizePath(pattern);
+		List strDirs = tokenizePath(str);
+
+		int patIdxStart = 0;
+		int patIdxEnd = patDirs.size() - 1;
+		int strIdxStart = 0;
+		int strIdxEnd = strDirs.size() - 1;
+
+		// match all elements up to the first **
+		while (patIdxStart <= patIdxEnd && strIdxStart <= strIdxEnd) {
+			String patDir = (String) patDirs.get(patIdxStart);
+			if (patDir.equals("**")) {
+				break;
+			}
+			if (!matchStrings(patDir, (String) strDirs.get(strIdxStart))) {
+				return false;
+			}
+			patIdxStart++;
+			strIdxStart++;
+		}
+
+		if (strIdxStart > strIdxEnd) {
+			// String is exhausted, only match if rest of pattern is **'s
+			for (int i = patIdxStart; i <= patIdxEnd; i++) {
+				if (!patDirs.get(i).equals("**")) {
+					return false;
+				}
+			}
+			return true;
+		}
+		else {
+			if (patIdxStart > patIdxEnd) {
+				// String not exhausted, but pattern is. Failure.
+				return false;
+			}
+		}
+
+		// up to last '**'
+		while (patIdxStart <= patIdxEnd && strIdxStart <= strIdxEnd) {
+			String patDir = (String) patDirs.get(patIdxEnd);
+			if (patDir.equals("**")) {
+				break;
+			}
+			if (!matchStrings(patDir, (String) strDirs.get(strIdxEnd))) {
+				return false;
+			}
+			patIdxEnd--;
+			strIdxEnd--;
+		}
+		if (strIdxStart > strIdxEnd) {
+			// String is exhausted
+			for (int i = patIdxStart; i <= patIdxEnd; i++) {
+				if (!patDirs.get(i).equals("**")) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		while (patIdxStart != patIdxEnd && strIdxStart <= strIdxEnd) {
+			int patIdxTmp = -1;
+			for (int i = patIdxStart + 1; i <= patIdxEnd; i++) {
+				if (patDirs.get(i).equals("**")) {
+					patIdxTmp = i;
+					break;
+				}
+			}
+			if (patIdxTmp == patIdxStart + 1) {
+				// '**/**' situation, so skip one
+				patIdxStart++;
+				continue;
+			}
+			// Find the pattern between padIdxStart & padIdxTmp in str between
+			// strIdxStart & strIdxEnd
+			int patLength = (patIdxTmp - patIdxStart - 1);
+			int strLength = (strIdxEnd - strIdxStart + 1);
+			int foundIdx = -1;
+			strLoop:
+			    for (int i = 0; i <= strLength - patLength; i++) {
+				    for (int j = 0; j < patLength; j++) {
+					    String subPat = (String) patDirs.get(patIdxStart + j + 1);
+					    String subStr = (String) strDirs.get(strIdxStart + i + j);
+					    if (!matchStrings(subPat, subStr)) {
+						    continue strLoop;
+					    }
+				    }
+
+				    foundIdx = strIdxStart + i;
+				    break;
+			    }
+
+			if (foundIdx == -1) {
+				return false;
+			}
+
+			patIdxStart = patIdxTmp;
+			strIdxStart = foundIdx + patLength;
+		}
+
+		for (int i = patIdxStart; i <= patIdxEnd; i++) {
+			if (!patDirs.get(i).equals("**")) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static boolean matchStrings(String pattern, String str) {
+		char[] patArr = pattern.toCharArray();
+		char[] strArr = str.toCharArray();
+		int patIdxStart = 0;
+		int patIdxEnd = patArr.length - 1;
+		int strIdxStart = 0;
+		int strIdxEnd = strArr.length - 1;
+		char ch;
+
+		boolean containsStar = false;
+		for (int i = 0; i < patArr.length; i++) {
+			if (patArr[i] == '*') {
+				containsStar = true;
+				break;
+			}
+		}
+
+		if (!containsStar) {
+			// No '*'s, so we make a shortcut
+			if (patIdxEnd != strIdxEnd) {
+				return false; // Pattern and string do not have the same size
+			}
+			for (int i = 0; i <= patIdxEnd; i++) {
+				ch = patArr[i];
+				if (ch != '?') {
+					if (ch != strArr[i]) {
+						return false;// Character mismatch
+					}
+				}
+			}
+			return true; // String matches against pattern
+		}
+
+		if (patIdxEnd == 0) {
+			return true; // Pattern contains only '*', which matches anything
+		}
+
+		// Process characters before first star
+		while ((ch = patArr[patIdxStart]) != '*' && strIdxStart <= strIdxEnd) {
+			if (ch != '?') {
+				if (ch != strArr[strIdxStart]) {
+					return false;// Character mismatch
+				}
+			}
+			patIdxStart++;
+			strIdxStart++;
+		}
+		if (strIdxStart > strIdxEnd) {
+			// All characters in the string are used. Check if only '*'s are
+			// left in the pattern. If so, we succeeded. Otherwise failure.
+			for (int i = patIdxStart; i <= patIdxEnd; i++) {
+				if (patArr[i] != '*') {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		// Process characters after last star
+		while ((ch = patArr[patIdxEnd]) != '*' && strIdxStart <= strIdxEnd) {
+			if (ch != '?') {
+				if (ch != strArr[strIdxEnd]) {
+					return false;// Character mismatch
+				}
+			}
+			patIdxEnd--;
+			strIdxEnd--;
+		}
+		if (strIdxStart > strIdxEnd) {
+			// All characters in the string are used. Check if only '*'s are
+			// left in the pattern. If so, we succeeded. Otherwise failure.
+			for (int i = patIdxStart; i <= patIdxEnd; i++) {
+				if (patArr[i] != '*') {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		// process pattern between stars. padIdxStart and patIdxEnd point
+		// always to a '*'.
+		while (patIdxStart != patIdxEnd && strIdxStart <= strIdxEnd) {
+			int patIdxTmp = -1;
+			for (int i = patIdxStart + 1; i <= patIdxEnd; i++) {
+				if (patArr[i] == '*') {
+					patIdxTmp = i;
+					break;
+				}
+			}
+			if (patIdxTmp == patIdxStart + 1) {
+				// Two stars next to each other, skip the first one.
+				patIdxStart++;
+				continue;
+			}
+			// Find the pattern between padIdxStart & padIdxTmp in str between
+			// strIdxStart & strIdxEnd
+			int patLength = (patIdxTmp - patIdxStart - 1);
+			int strLength = (strIdxEnd - strIdxStart + 1);
+			int foundIdx = -1;
+			strLoop:
+			for (int i = 0; i <= strLength - patLength; i++) {
+				for (int j = 0; j < patLength; j++) {
+					ch = patArr[patIdxStart + j + 1];
+					if (ch != '?') {
+						if (ch != strArr[strIdxStart + i + j]) {
+							continue strLoop;
+						}
+					}
+				}
+
+				foundIdx = strIdxStart + i;
+				break;
+			}
+
+			if (foundIdx == -1) {
+				return false;
+			}
+
+			patIdxStart = patIdxTmp;
+			strIdxStart = foundIdx + patLength;
+		}
+
+		// All characters in the string are used. Check if only '*'s are left
+		// in the pattern. If so, we succeeded. Otherwise failure.
+		for (int i = patIdxStart; i <= patIdxEnd; i++) {
+			if (patArr[i] != '*') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static List tokenizePath(String path) {
+		List ret = new ArrayList();
+		StringTokenizer st = new StringTokenizer(path, "/");
+		while (st.hasMoreTokens()) {
+			ret.add(st.nextToken());
+		}
+		return ret;
+	}
+
+}
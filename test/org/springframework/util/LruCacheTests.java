@@ -0,0 +1,74 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.util;
+
+import junit.framework.TestCase;
+
+/**
+ * @author agent
+ * @since 1.1.2
+ */
+public class LruCacheTests extends TestCase {
+
+	public void testEvictsLeastRecentlyUsed() {
+		LruCache cache = new LruCache(2);
+		cache.put("a", "1");
+		cache.put("b", "2");
+		assertEquals("1", cache.get("a"));
+		cache.put("c", "3");
+		assertEquals(2, cache.size());
+		assertNull(cache.get("b"));
+		assertEquals("1", cache.get("a"));
+		assertEquals("3", cache.get("c"));
+		assertEquals(1, cache.getEvictionCount());
+	}
+
+	public void testStatistics() {
+		LruCache cache = new LruCache(10);
+		assertNull(cache.get("a"));
+		cache.put("a", "1");
+		assertEquals("1", cache.get("a"));
+		assertEquals("1", cache.get("a"));
+		assertEquals(2, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(0, cache.getEvictionCount());
+	}
+
+	public void testPutReplacesAndRemove() {
+		LruCache cache = new LruCache(2);
+		assertNull(cache.put("a", "1"));
+		assertEquals("1", cache.put("a", "2"));
+		assertEquals(1, cache.size());
+		assertEquals("2", cache.remove("a"));
+		assertNull(cache.remove("a"));
+		cache.put("b", "3");
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertNull(cache.get("b"));
+	}
+
+	public void testInvalidMaxSize() {
+		try {
+			new LruCache(0);
+			fail("Should have thrown IllegalArgumentException");
+		}
+		catch (IllegalArgumentException ex) {
+			// expected
+		}
+	}
+
+}
@@ -23,6 +23,8 @@ import java.util.Map;
 import junit.framework.TestCase;
 
 import org.springframework.beans.BeanWithObjectProperty;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
 import org.springframework.beans.DerivedTestBean;
 import org.springframework.beans.IndexedTestBean;
 import org.springframework.beans.MutablePropertyValues;
@@ -212,6 +214,126 @@ public class ValidationTestSuite extends TestCase {
 		assertTrue("Same object", tb.equals(rod));
 	}
 
+	public void testBindingWithBindingPlan() throws Exception {
+		String[] allowedFields = new String[] {"name", "*ouchy"};
+		BindingPlan plan = new BindingPlan(TestBean.class, allowedFields);
+		final int[] isAllowedCalls = new int[1];
+		for (int i = 0; i < 3; i++) {
+			TestBean rod = new TestBean();
+			DataBinder binder = new DataBinder(rod, "person") {
+				protected boolean isAllowed(String field) {
+					isAllowedCalls[0]++;
+					return super.isAllowed(field);
+				}
+			};
+			binder.setAllowedFields(allowedFields);
+			binder.setBindingPlan(plan);
+			MutablePropertyValues pvs = new MutablePropertyValues();
+			pvs.addPropertyValue(new PropertyValue("name", "Rod" + i));
+			pvs.addPropertyValue(new PropertyValue("touchy", "Rod"));
+			pvs.addPropertyValue(new PropertyValue("age", "32"));
+			binder.bind(pvs);
+			binder.close();
+			assertEquals("Rod" + i, rod.getName());
+			assertEquals("Rod", rod.getTouchy());
+			assertEquals(0, rod.getAge());
+		}
+		// overridden isAllowed still invoked for "touchy" and "age", "name" matched directly
+		assertEquals(6, isAllowedCalls[0]);
+	}
+
+	public void testBindingPlanHonorsOverriddenIsAllowed() throws Exception {
+		String[] allowedFields = new String[] {"na*", "*ouchy", "age"};
+		BindingPlan plan = new BindingPlan(TestBean.class, allowedFields);
+		final boolean[] touchyAllowed = new boolean[1];
+		for (int i = 0; i < 4; i++) {
+			touchyAllowed[0] = (i % 2 == 0);
+			TestBean rod = new TestBean();
+			DataBinder binder = new DataBinder(rod, "person") {
+				protected boolean isAllowed(String field) {
+					if ("touchy".equals(field)) {
+						return touchyAllowed[0];
+					}
+					return super.isAllowed(field);
+				}
+			};
+			binder.setAllowedFields(allowedFields);
+			binder.setBindingPlan(plan);
+			MutablePropertyValues pvs = new MutablePropertyValues();
+			pvs.addPropertyValue(new PropertyValue("name", "Rod"));
+			pvs.addPropertyValue(new PropertyValue("touchy", "Rod"));
+			pvs.addPropertyValue(new PropertyValue("spouse", "Kerry"));
+			binder.bind(pvs);
+			binder.close();
+			assertEquals("Rod", rod.getName());
+			assertEquals(touchyAllowed[0] ? "Rod" : null, rod.getTouchy());
+			assertNull(rod.getSpouse());
+		}
+	}
+
+	public void testBindingPlanMatchesAllowedFieldPatterns() throws Exception {
+		String[] allowedFields = new String[] {"na*", "*ouchy", "age", "spouse*", "*Array"};
+		String[] fields = new String[] {"name", "touchy", "age", "spouse", "stringArray", "unknown", "nam", "ouch"};
+		BindingPlan plan = new BindingPlan(TestBean.class, allowedFields);
+		for (int n = 0; n < 2; n++) {
+			DataBinder binder = new DataBinder(new TestBean(), "person");
+			binder.setAllowedFields(allowedFields);
+			DataBinder binderWithPlan = new DataBinder(new TestBean(), "person");
+			binderWithPlan.setAllowedFields(allowedFields);
+			binderWithPlan.setBindingPlan(plan);
+			for (int i = 0; i < fields.length; i++) {
+				assertEquals(fields[i], binder.isAllowedField(fields[i]), binderWithPlan.isAllowedField(fields[i]));
+				assertEquals(fields[i], binder.getWritablePropertyType(fields[i]),
+						binderWithPlan.getWritablePropertyType(fields[i]));
+			}
+		}
+		assertTrue(plan.isAllowed("name"));
+		assertTrue(plan.isAllowed("stringArray"));
+		assertFalse(plan.isAllowed("unknown"));
+		assertFalse(plan.isAllowed("ouch"));
+	}
+
+	public void testBindingPlanAvoidsPropertyLookups() throws Exception {
+		BindingPlan plan = new BindingPlan(TestBean.class);
+		final int[] lookups = new int[1];
+		BeanWrapper bw = new BeanWrapperImpl(new TestBean()) {
+			public boolean isWritableProperty(String propertyName) {
+				lookups[0]++;
+				return super.isWritableProperty(propertyName);
+			}
+			public Class getPropertyType(String propertyName) {
+				lookups[0]++;
+				return super.getPropertyType(propertyName);
+			}
+		};
+		assertEquals(String.class, plan.getWritablePropertyType("name", bw));
+		assertEquals(int.class, plan.getWritablePropertyType("age", bw));
+		assertEquals(String[].class, plan.getWritablePropertyType("stringArray", bw));
+		assertNull(plan.getWritablePropertyType("unknown", bw));
+		assertEquals(0, lookups[0]);
+		// nested paths depend on the target object
+		assertNull(plan.getWritablePropertyType("spouse.name", bw));
+		assertEquals(1, lookups[0]);
+	}
+
+	public void testBindingPlanIgnoredIfNotMatching() throws Exception {
+		BindingPlan plan = new BindingPlan(TestBean.class, new String[] {"name"});
+		TestBean rod = new TestBean();
+		DataBinder binder = new DataBinder(rod, "person");
+		binder.setAllowedFields(new String[] {"age"});
+		binder.setBindingPlan(plan);
+		MutablePropertyValues pvs = new MutablePropertyValues();
+		pvs.addPropertyValue(new PropertyValue("name", "Rod"));
+		pvs.addPropertyValue(new PropertyValue("age", "32"));
+		binder.bind(pvs);
+		assertNull(rod.getName());
+		assertEquals(32, rod.getAge());
+
+		assertTrue(plan.matches(new TestBean(), new String[] {"name"}));
+		assertFalse(plan.matches(new DerivedTestBean(), new String[] {"name"}));
+		assertFalse(plan.matches(new TestBean(), null));
+	}
+
 	/**
 	 * Tests for required field, both null, non-existing and empty strings
 	 */
@@ -26,6 +26,7 @@ import org.springframework.beans.TestBean;
 import org.springframework.beans.propertyeditors.StringTrimmerEditor;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockServletContext;
+import org.springframework.validation.BindingPlan;
 import org.springframework.validation.Errors;
 import org.springframework.validation.Validator;
 
@@ -163,4 +164,24 @@ public class BindUtilsTestSuite extends TestCase {
 		assertTrue("stringArray length", tb.getStringArray().length == 2);
 	}
 
+	public void testFieldMarkersWithBindingPlan() throws ServletException {
+		BindingPlan plan = new BindingPlan(TestBean.class);
+		for (int i = 0; i < 2; i++) {
+			MockHttpServletRequest request = new MockHttpServletRequest(new MockServletContext());
+			request.addParameter("_stringArray", "visible");
+			request.addParameter("_name", "visible");
+			request.addParameter("_unknown", "visible");
+			request.addParameter("_spouse.name", "visible");
+			TestBean tb = new TestBean();
+			tb.setName("name");
+			tb.setStringArray(new String[] {"a"});
+			ServletRequestDataBinder binder = new ServletRequestDataBinder(tb, "tb");
+			binder.setBindingPlan(plan);
+			binder.bind(request);
+			assertEquals(0, tb.getStringArray().length);
+			assertNull(tb.getName());
+			assertEquals(0, binder.getErrors().getErrorCount());
+		}
+	}
+
 }
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.filter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
+
+import junit.framework.TestCase;
+
+import org.springframework.mock.web.MockFilterConfig;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.util.FileCopyUtils;
+
+/**
+ * @author agent
+ * @since 1.1.2
+ */
+public class CompressionFilterTestSuite extends TestCase {
+
+	private static final String LARGE_CONTENT;
+
+	static {
+		StringBuffer content = new StringBuffer();
+		for (int i = 0; i < 500; i++) {
+			content.append("<tr><td>row ").append(i).append("</td><td>some value</td></tr>\n");
+		}
+		LARGE_CONTENT = content.toString();
+	}
+
+	private CompressionFilter filter;
+
+	protected void setUp() throws Exception {
+		MockFilterConfig filterConfig = new MockFilterConfig(new MockServletContext(), "compression");
+		filterConfig.addInitParameter("threshold", "1024");
+		this.filter = new CompressionFilter();
+		this.filter.init(filterConfig);
+	}
+
+	protected void tearDown() {
+		this.filter.destroy();
+	}
+
+	private MockHttpServletResponse doFilter(String acceptEncoding, final String contentType,
+	                                         final String content, final int status) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/page.html");
+		if (acceptEncoding != null) {
+			request.addHeader("Accept-Encoding", acceptEncoding);
+		}
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		this.filter.doFilter(request, response, new FilterChain() {
+			public void doFilter(ServletRequest request, ServletResponse response) throws IOException {
+				HttpServletResponse httpResponse = (HttpServletResponse) response;
+				httpResponse.setContentType(contentType);
+				httpResponse.setHeader("Cache-Control", "max-age=60");
+				if (status != HttpServletResponse.SC_OK) {
+					httpResponse.setStatus(status);
+				}
+				PrintWriter writer = response.getWriter();
+				// write in chunks, like a JSP page would
+				for (int i = 0; i < content.length(); i += 100) {
+					writer.write(content.substring(i, Math.min(content.length(), i + 100)));
+				}
+				writer.flush();
+			}
+		});
+		return response;
+	}
+
+	private String gunzip(byte[] content) throws IOException {
+		return new String(FileCopyUtils.copyToByteArray(new GZIPInputStream(new ByteArrayInputStream(content))));
+	}
+
+	public void testCompressLargeResponse() throws Exception {
+		MockHttpServletResponse response = doFilter("gzip, deflate", "text/html", LARGE_CONTENT, 200);
+		assertEquals("gzip", response.getHeader("Content-Encoding"));
+		assertEquals("Accept-Encoding", response.getHeader("Vary"));
+		assertEquals("max-age=60", response.getHeader("Cache-Control"));
+		byte[] compressed = response.getContentAsByteArray();
+		assertTrue(compressed.length < LARGE_CONTENT.length() / 4);
+		assertEquals(LARGE_CONTENT, gunzip(compressed));
+
+		assertEquals(1, this.filter.getCompressedResponseCount());
+		assertEquals(0, this.filter.getUncompressedResponseCount());
+		assertTrue(this.filter.getCompressionRatio() < 0.25);
+
+		// pooled Deflater gets reused
+		response = doFilter("gzip", "text/html", LARGE_CONTENT, 200);
+		assertEquals(LARGE_CONTENT, gunzip(response.getContentAsByteArray()));
+		assertEquals(2, this.filter.getCompressedResponseCount());
+	}
+
+	public void testSmallResponseNotCompressed() throws Exception {
+		MockHttpServletResponse response = doFilter("gzip", "text/html", "<p>Hello</p>", 200);
+		assertNull(response.getHeader("Content-Encoding"));
+		assertEquals("Accept-Encoding", response.getHeader("Vary"));
+		assertEquals("<p>Hello</p>", response.getContentAsString());
+		assertEquals(12, response.getContentLength());
+		assertEquals(1, this.filter.getUncompressedResponseCount());
+	}
+
+	public void testNoCompressionWithoutAcceptEncoding() throws Exception {
+		MockHttpServletResponse response = doFilter(null, "text/html", LARGE_CONTENT, 200);
+		assertNull(response.getHeader("Content-Encoding"));
+		assertEquals(LARGE_CONTENT, response.getContentAsString());
+		assertEquals(0, this.filter.getUncompressedResponseCount());
+	}
+
+	public void testNoCompressionForOtherContentTypes() throws Exception {
+		MockHttpServletResponse response = doFilter("gzip", "image/png", LARGE_CONTENT, 200);
+		assertNull(response.getHeader("Content-Encoding"));
+		assertNull(response.getHeader("Vary"));
+		assertEquals(LARGE_CONTENT, response.getContentAsString());
+		assertEquals(1, this.filter.getUncompressedResponseCount());
+	}
+
+	public void testNoCompressionForNotModified() throws Exception {
+		MockHttpServletResponse response =
+				doFilter("gzip", "text/html", "", HttpServletResponse.SC_NOT_MODIFIED);
+		assertNull(response.getHeader("Content-Encoding"));
+		assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+	}
+
+	public void testNoCompressionForUnparseableContentLength() throws Exception {
+		String[] lengths = new String[] {"unknown", "3000000000"};
+		for (int i = 0; i < lengths.length; i++) {
+			final String length = lengths[i];
+			MockHttpServletRequest request = new MockHttpServletRequest("GET", "/page.html");
+			request.addHeader("Accept-Encoding", "gzip");
+			MockHttpServletResponse response = new MockHttpServletResponse();
+			this.filter.doFilter(request, response, new FilterChain() {
+				public void doFilter(ServletRequest request, ServletResponse response) throws IOException {
+					response.setContentType("text/html");
+					((HttpServletResponse) response).setHeader("Content-Length", length);
+					response.getOutputStream().write(LARGE_CONTENT.getBytes());
+				}
+			});
+			assertNull(response.getHeader("Content-Encoding"));
+			assertEquals(length, response.getHeader("Content-Length"));
+			assertEquals(LARGE_CONTENT, response.getContentAsString());
+		}
+	}
+
+	public void testNotFilteredTwice() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/page.html");
+		request.addHeader("Accept-Encoding", "gzip");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		this.filter.doFilter(request, response, new FilterChain() {
+			public void doFilter(ServletRequest request, ServletResponse response)
+			    throws IOException, ServletException {
+				filter.doFilter(request, response, new FilterChain() {
+					public void doFilter(ServletRequest request, ServletResponse response) throws IOException {
+						response.setContentType("text/plain");
+						response.getOutputStream().write(LARGE_CONTENT.getBytes());
+					}
+				});
+			}
+		});
+		assertEquals(LARGE_CONTENT, gunzip(response.getContentAsByteArray()));
+	}
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.filter;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
+
+import junit.framework.TestCase;
+
+import org.springframework.mock.web.MockFilterConfig;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+
+/**
+ * @author agent
+ * @since 1.1.2
+ */
+public class ShallowEtagHeaderFilterTestSuite extends TestCase {
+
+	private ShallowEtagHeaderFilter filter;
+
+	protected void setUp() throws Exception {
+		MockFilterConfig filterConfig = new MockFilterConfig(new MockServletContext(), "etag");
+		filterConfig.addInitParameter("maxBufferSize", "100");
+		this.filter = new ShallowEtagHeaderFilter();
+		this.filter.init(filterConfig);
+	}
+
+	private MockHttpServletResponse doFilter(String method, String ifNoneMatch, final String content,
+	                                         final String deepETag) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest(method, "/page.html");
+		if (ifNoneMatch != null) {
+			request.addHeader("If-None-Match", ifNoneMatch);
+		}
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		this.filter.doFilter(request, response, new FilterChain() {
+			public void doFilter(ServletRequest request, ServletResponse response) throws IOException {
+				HttpServletResponse httpResponse = (HttpServletResponse) response;
+				httpResponse.setContentType("text/html");
+				if (deepETag != null) {
+					httpResponse.setHeader("ETag", deepETag);
+				}
+				httpResponse.getWriter().write(content);
+				httpResponse.getWriter().flush();
+			}
+		});
+		return response;
+	}
+
+	public void testETagGenerated() throws Exception {
+		MockHttpServletResponse response = doFilter("GET", null, "Hello World", null);
+		assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+		String eTag = (String) response.getHeader("ETag");
+		assertNotNull(eTag);
+		assertTrue(eTag.startsWith("\"0") && eTag.endsWith("\""));
+		assertEquals(11, response.getContentLength());
+		assertEquals("Hello World", response.getContentAsString());
+		assertEquals(eTag, doFilter("GET", null, "Hello World", null).getHeader("ETag"));
+		assertFalse(eTag.equals(doFilter("GET", null, "Hello Worlds", null).getHeader("ETag")));
+		assertEquals(3, this.filter.getETagCount());
+	}
+
+	public void testNotModified() throws Exception {
+		String eTag = (String) doFilter("GET", null, "Hello World", null).getHeader("ETag");
+		MockHttpServletResponse response = doFilter("GET", eTag, "Hello World", null);
+		assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+		assertEquals(0, response.getContentAsByteArray().length);
+		assertEquals(eTag, response.getHeader("ETag"));
+		assertEquals(1, this.filter.getNotModifiedCount());
+
+		response = doFilter("GET", eTag, "Hello Worlds", null);
+		assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+		assertEquals("Hello Worlds", response.getContentAsString());
+	}
+
+	public void testLargeResponseStreamedWithoutETag() throws Exception {
+		StringBuffer content = new StringBuffer();
+		for (int i = 0; i < 20; i++) {
+			content.append("0123456789");
+		}
+		MockHttpServletResponse response = doFilter("GET", null, content.toString(), null);
+		assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+		assertNull(response.getHeader("ETag"));
+		assertEquals(content.toString(), response.getContentAsString());
+	}
+
+	public void testDeepETagPassedThrough() throws Exception {
+		MockHttpServletResponse response = doFilter("GET", "\"v1\"", "Hello World", "\"v1\"");
+		assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+		assertEquals("\"v1\"", response.getHeader("ETag"));
+		assertEquals("Hello World", response.getContentAsString());
+		assertEquals(0, this.filter.getETagCount());
+	}
+
+	public void testPostNotBuffered() throws Exception {
+		MockHttpServletResponse response = doFilter("POST", null, "Hello World", null);
+		assertNull(response.getHeader("ETag"));
+		assertEquals("Hello World", response.getContentAsString());
+	}
+
+}
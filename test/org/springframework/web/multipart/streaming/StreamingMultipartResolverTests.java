@@ -0,0 +1,396 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.multipart.streaming;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.servlet.http.HttpServletRequestWrapper;
+
+import junit.framework.TestCase;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.multipart.MultipartException;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.multipart.MultipartHttpServletRequest;
+import org.springframework.web.util.WebUtils;
+
+/**
+ * @author agent
+ * @since 1.1.2
+ */
+public class StreamingMultipartResolverTests extends TestCase {
+
+	private static final String BOUNDARY = "----7d4a1b2c3d";
+
+	private StreamingMultipartResolver resolver;
+
+	private File tempDir;
+
+	protected void setUp() throws IOException {
+		this.tempDir = File.createTempFile("streaming", "");
+		this.tempDir.delete();
+		this.tempDir.mkdirs();
+		MockServletContext servletContext = new MockServletContext();
+		servletContext.setAttribute(WebUtils.TEMP_DIR_CONTEXT_ATTRIBUTE, this.tempDir);
+		this.resolver = new StreamingMultipartResolver(servletContext);
+	}
+
+	protected void tearDown() {
+		File[] files = this.tempDir.listFiles();
+		for (int i = 0; i < files.length; i++) {
+			files[i].delete();
+		}
+		this.tempDir.delete();
+	}
+
+	public void testIsMultipart() {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/upload");
+		assertFalse(this.resolver.isMultipart(request));
+		request.setContentType("Multipart/Form-Data; boundary=" + BOUNDARY);
+		assertTrue(this.resolver.isMultipart(request));
+	}
+
+	public void testLeadingParametersAndNextFile() throws Exception {
+		MultipartBody body = new MultipartBody();
+		body.addField("field1", "value1");
+		body.addField("field2", "value2");
+		body.addField("field2", "value2b");
+		body.addFile("file1", "a.txt", "text/plain", "content of file 1");
+		body.addField("field3", "value3");
+		body.addFile("file2", "b.bin", "application/octet-stream", "file 2");
+		body.addFile("file3", "", "application/octet-stream", "");
+
+		StreamingMultipartHttpServletRequest request =
+				(StreamingMultipartHttpServletRequest) this.resolver.resolveMultipart(body.createRequest());
+		assertEquals("value1", request.getParameter("field1"));
+		assertEquals(2, request.getParameterValues("field2").length);
+		assertEquals("value2b", request.getParameterValues("field2")[1]);
+		assertNull(request.getParameter("field3"));
+
+		MultipartFile file1 = request.nextFile();
+		assertTrue(file1 instanceof StreamingMultipartFile);
+		assertEquals("file1", file1.getName());
+		assertEquals("a.txt", file1.getOriginalFilename());
+		assertEquals("text/plain", file1.getContentType());
+		assertFalse(file1.isEmpty());
+		assertEquals("content of file 1", new String(file1.getBytes()));
+		assertEquals(17, file1.getSize());
+		try {
+			file1.getInputStream();
+			fail("Should have thrown IllegalStateException");
+		}
+		catch (IllegalStateException ex) {
+			// expected
+		}
+
+		MultipartFile file2 = request.nextFile();
+		assertEquals("file2", file2.getName());
+		assertEquals("value3", request.getParameter("field3"));
+		File dest = new File(this.tempDir, "b.bin");
+		file2.transferTo(dest);
+		assertEquals("file 2", new String(FileCopyUtils.copyToByteArray(dest)));
+
+		MultipartFile file3 = request.nextFile();
+		assertEquals("file3", file3.getName());
+		assertTrue(file3.isEmpty());
+		assertNull(request.nextFile());
+		this.resolver.cleanupMultipart(request);
+	}
+
+	public void testNextFileSkipsUnreadContent() throws Exception {
+		MultipartBody body = new MultipartBody();
+		body.addFile("file1", "a.txt", "text/plain", repeat('a', 20000));
+		body.addFile("file2", "b.txt", "text/plain", "second");
+
+		StreamingMultipartHttpServletRequest request =
+				(StreamingMultipartHttpServletRequest) this.resolver.resolveMultipart(body.createRequest());
+		MultipartFile file1 = request.nextFile();
+		InputStream in = file1.getInputStream();
+		assertEquals('a', in.read());
+		MultipartFile file2 = request.nextFile();
+		assertEquals("second", new String(file2.getBytes()));
+		assertNull(request.nextFile());
+	}
+
+	public void testGetFileReadsAhead() throws Exception {
+		String largeContent = repeat('x', 30000);
+		MultipartBody body = new MultipartBody();
+		body.addField("field1", "value1");
+		body.addFile("small", "small.txt", "text/plain", "small content");
+		body.addFile("large", "large.txt", "text/plain", largeContent);
+		body.addField("field2", "value2");
+
+		MultipartHttpServletRequest request = this.resolver.resolveMultipart(body.createRequest());
+		MultipartFile small = request.getFile("small");
+		assertEquals("small content", new String(small.getBytes()));
+		assertEquals(13, small.getSize());
+		assertEquals("value2", request.getParameter("field2"));
+		assertEquals(2, request.getFileMap().size());
+
+		MultipartFile large = request.getFile("large");
+		assertEquals(30000, large.getSize());
+		assertEquals(largeContent, new String(large.getBytes()));
+		assertEquals(1, this.tempDir.listFiles().length);
+		assertEquals(largeContent, new String(FileCopyUtils.copyToByteArray(large.getInputStream())));
+
+		File dest = new File(this.tempDir, "large.txt");
+		large.transferTo(dest);
+		assertEquals(largeContent, new String(FileCopyUtils.copyToByteArray(dest)));
+		assertTrue(dest.delete());
+
+		try {
+			((StreamingMultipartHttpServletRequest) request).nextFile();
+			fail("Should have thrown IllegalStateException");
+		}
+		catch (IllegalStateException ex) {
+			// expected
+		}
+		this.resolver.cleanupMultipart(request);
+		assertEquals(0, this.tempDir.listFiles().length);
+	}
+
+	public void testCleanupDeletesTempFiles() throws Exception {
+		this.resolver.setMaxInMemorySize(10);
+		MultipartBody body = new MultipartBody();
+		body.addFile("file1", "a.txt", "text/plain", "content larger than 10 bytes");
+
+		MultipartHttpServletRequest request = this.resolver.resolveMultipart(body.createRequest());
+		assertEquals("content larger than 10 bytes", new String(request.getFile("file1").getBytes()));
+		assertEquals(1, this.tempDir.listFiles().length);
+		this.resolver.cleanupMultipart(request);
+		assertEquals(0, this.tempDir.listFiles().length);
+	}
+
+	public void testCleanupDeletesTempFilesWithSameName() throws Exception {
+		this.resolver.setMaxInMemorySize(10);
+		MultipartBody body = new MultipartBody();
+		body.addFile("file1", "a.txt", "text/plain", "content larger than 10 bytes");
+		body.addFile("file1", "b.txt", "text/plain", "other content larger than 10 bytes");
+
+		MultipartHttpServletRequest request = this.resolver.resolveMultipart(body.createRequest());
+		assertEquals("b.txt", request.getFile("file1").getOriginalFilename());
+		assertEquals(2, this.tempDir.listFiles().length);
+		this.resolver.cleanupMultipart(request);
+		assertEquals(0, this.tempDir.listFiles().length);
+	}
+
+	public void testMaxUploadSizeFromContentLength() throws Exception {
+		this.resolver.setMaxUploadSize(100);
+		MultipartBody body = new MultipartBody();
+		body.addFile("file1", "a.txt", "text/plain", repeat('a', 200));
+		try {
+			this.resolver.resolveMultipart(body.createRequest());
+			fail("Should have thrown MaxUploadSizeExceededException");
+		}
+		catch (MaxUploadSizeExceededException ex) {
+			assertEquals(100, ex.getMaxUploadSize());
+		}
+	}
+
+	public void testMaxUploadSizeWhileStreaming() throws Exception {
+		this.resolver.setMaxUploadSize(20000);
+		MultipartBody body = new MultipartBody();
+		body.addFile("file1", "a.txt", "text/plain", repeat('a', 50000));
+		StreamingMultipartHttpServletRequest request = (StreamingMultipartHttpServletRequest)
+				this.resolver.resolveMultipart(new UnknownLengthRequest(body.createRequest()));
+		MultipartFile file = request.nextFile();
+		try {
+			file.getBytes();
+			fail("Should have thrown IOException");
+		}
+		catch (IOException ex) {
+			// expected
+		}
+		try {
+			request.nextFile();
+			fail("Should have thrown MaxUploadSizeExceededException");
+		}
+		catch (MaxUploadSizeExceededException ex) {
+			assertEquals(20000, ex.getMaxUploadSize());
+		}
+	}
+
+	public void testTempFileDeletedWhenReadAheadFails() throws Exception {
+		this.resolver.setMaxUploadSize(20000);
+		this.resolver.setMaxInMemorySize(10);
+		MultipartBody body = new MultipartBody();
+		body.addFile("file1", "a.txt", "text/plain", repeat('a', 50000));
+		MultipartHttpServletRequest request =
+				this.resolver.resolveMultipart(new UnknownLengthRequest(body.createRequest()));
+		try {
+			request.getFile("file1");
+			fail("Should have thrown IllegalStateException");
+		}
+		catch (IllegalStateException ex) {
+			// expected
+		}
+		assertEquals(0, this.tempDir.listFiles().length);
+	}
+
+	public void testMaxFileSize() throws Exception {
+		this.resolver.setMaxFileSize(100);
+		MultipartBody body = new MultipartBody();
+		body.addFile("file1", "a.txt", "text/plain", repeat('a', 50));
+		body.addFile("file2", "b.txt", "text/plain", repeat('b', 150));
+
+		MultipartHttpServletRequest request = this.resolver.resolveMultipart(body.createRequest());
+		try {
+			request.getFile("file1");
+			fail("Should have thrown IllegalStateException");
+		}
+		catch (IllegalStateException ex) {
+			// expected
+		}
+	}
+
+	public void testMaxFieldSize() throws Exception {
+		this.resolver.setMaxFieldSize(10);
+		MultipartBody body = new MultipartBody();
+		body.addField("field1", "value longer than 10 bytes");
+		try {
+			this.resolver.resolveMultipart(body.createRequest());
+			fail("Should have thrown MultipartException");
+		}
+		catch (MultipartException ex) {
+			// expected
+		}
+	}
+
+	public void testMaxFieldCount() throws Exception {
+		this.resolver.setMaxFieldCount(2);
+		MultipartBody body = new MultipartBody();
+		body.addField("field1", "");
+		body.addField("field2", "");
+		body.addField("field3", "");
+		try {
+			this.resolver.resolveMultipart(body.createRequest());
+			fail("Should have thrown MultipartException");
+		}
+		catch (MultipartException ex) {
+			// expected
+		}
+	}
+
+	public void testMaxTotalFieldSize() throws Exception {
+		this.resolver.setMaxTotalFieldSize(10);
+		MultipartBody body = new MultipartBody();
+		body.addField("field1", "value1");
+		body.addField("field2", "value2");
+		try {
+			this.resolver.resolveMultipart(body.createRequest());
+			fail("Should have thrown MultipartException");
+		}
+		catch (MultipartException ex) {
+			// expected
+		}
+	}
+
+	public void testMissingBoundary() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/upload");
+		request.setContentType("multipart/form-data");
+		try {
+			this.resolver.resolveMultipart(request);
+			fail("Should have thrown MultipartException");
+		}
+		catch (MultipartException ex) {
+			// expected
+		}
+	}
+
+	public void testQuotedBoundaryAndEncoding() throws Exception {
+		this.resolver.setDefaultEncoding("UTF-8");
+		MultipartBody body = new MultipartBody();
+		body.addField("field1", "\u00e4\u00f6\u00fc");
+		MockHttpServletRequest mockRequest = body.createRequest();
+		mockRequest.setContentType("multipart/form-data; boundary=\"" + BOUNDARY + "\"");
+		MultipartHttpServletRequest request = this.resolver.resolveMultipart(mockRequest);
+		assertEquals("\u00e4\u00f6\u00fc", request.getParameter("field1"));
+		assertTrue(request.getFileMap().isEmpty());
+	}
+
+	public void testMalformedContent() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/upload");
+		request.setContentType("multipart/form-data; boundary=" + BOUNDARY);
+		request.setContent(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"field1\"\r\n\r\nvalue").getBytes());
+		try {
+			this.resolver.resolveMultipart(request);
+			fail("Should have thrown MultipartException");
+		}
+		catch (MultipartException ex) {
+			// expected
+		}
+	}
+
+
+	private static String repeat(char c, int count) {
+		StringBuffer sb = new StringBuffer(count);
+		for (int i = 0; i < count; i++) {
+			sb.append(c);
+		}
+		return sb.toString();
+	}
+
+
+	private static class MultipartBody {
+
+		private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+		public void addField(String name, String value) throws IOException {
+			addPart("Content-Disposition: form-data; name=\"" + name + "\"\r\n", value.getBytes("UTF-8"));
+		}
+
+		public void addFile(String name, String filename, String contentType, String value) throws IOException {
+			addPart("Content-Disposition: form-data; name=\"" + name + "\"; filename=\"" + filename + "\"\r\n" +
+					"Content-Type: " + contentType + "\r\n", value.getBytes("ISO-8859-1"));
+		}
+
+		private void addPart(String headers, byte[] value) throws IOException {
+			this.content.write(("--" + BOUNDARY + "\r\n" + headers + "\r\n").getBytes("ISO-8859-1"));
+			this.content.write(value);
+			this.content.write("\r\n".getBytes("ISO-8859-1"));
+		}
+
+		public MockHttpServletRequest createRequest() throws IOException {
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			this.content.writeTo(body);
+			body.write(("--" + BOUNDARY + "--\r\n").getBytes("ISO-8859-1"));
+			MockHttpServletRequest request = new MockHttpServletRequest("POST", "/upload");
+			request.setContentType("multipart/form-data; boundary=" + BOUNDARY);
+			request.setContent(body.toByteArray());
+			return request;
+		}
+	}
+
+
+	private static class UnknownLengthRequest extends HttpServletRequestWrapper {
+
+		public UnknownLengthRequest(MockHttpServletRequest request) {
+			super(request);
+		}
+
+		public int getContentLength() {
+			return -1;
+		}
+	}
+
+}
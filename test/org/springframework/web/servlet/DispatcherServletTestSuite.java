@@ -26,6 +26,7 @@ import javax.servlet.http.HttpServletResponse;
 
 import junit.framework.TestCase;
 
+import org.springframework.beans.BeansException;
 import org.springframework.beans.MutablePropertyValues;
 import org.springframework.beans.PropertyValue;
 import org.springframework.context.support.DefaultMessageSourceResolvable;
@@ -39,6 +40,7 @@ import org.springframework.web.context.WebApplicationContext;
 import org.springframework.web.context.support.StaticWebApplicationContext;
 import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.multipart.MultipartHttpServletRequest;
+import org.springframework.web.servlet.handler.BeanNameUrlHandlerMapping;
 import org.springframework.web.servlet.handler.SimpleMappingExceptionResolver;
 import org.springframework.web.servlet.handler.SimpleUrlHandlerMapping;
 import org.springframework.web.servlet.mvc.BaseCommandController;
@@ -136,6 +138,30 @@ public class DispatcherServletTestSuite extends TestCase {
 		assertTrue("Not forwarded", response.getForwardedUrl() == null);
 	}
 
+	public void testCacheableHandlerMapping() throws Exception {
+		DispatcherServlet servlet = new DispatcherServlet();
+		servlet.setContextClass(CacheableWebApplicationContext.class);
+		servlet.setCacheHandlerAdapters(true);
+		servlet.init(new MockServletConfig(servletConfig.getServletContext(), "cacheable"));
+
+		for (int i = 0; i < 3; i++) {
+			MockHttpServletRequest request = new MockHttpServletRequest(servletConfig.getServletContext(), "GET", "/locale.do");
+			request.addPreferredLocale(Locale.CANADA);
+			MockHttpServletResponse response = new MockHttpServletResponse();
+			servlet.service(request, response);
+			assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+		}
+		// first getLastModified call misses, doService reuses its handler, then two cache hits
+		assertEquals(1, servlet.getHandlerCacheMissCount());
+		assertEquals(2, servlet.getHandlerCacheHitCount());
+
+		MockHttpServletRequest request = new MockHttpServletRequest(servletConfig.getServletContext(), "POST", "/locale.do");
+		request.addPreferredLocale(Locale.CANADA);
+		servlet.service(request, new MockHttpServletResponse());
+		assertEquals(2, servlet.getHandlerCacheMissCount());
+		assertEquals(2, servlet.getHandlerCacheHitCount());
+	}
+
 	public void testUnknownRequest() throws Exception {
 		MockHttpServletRequest request = new MockHttpServletRequest(servletConfig.getServletContext(), "GET", "/unknown.do");
 		MockHttpServletResponse response = new MockHttpServletResponse();
@@ -533,4 +559,14 @@ public class DispatcherServletTestSuite extends TestCase {
 		}
 	}
 
+	public static class CacheableWebApplicationContext extends SimpleWebApplicationContext {
+
+		public void refresh() throws BeansException {
+			MutablePropertyValues pvs = new MutablePropertyValues();
+			pvs.addPropertyValue("cacheable", Boolean.TRUE);
+			registerSingleton("handlerMapping", BeanNameUrlHandlerMapping.class, pvs);
+			super.refresh();
+		}
+	}
+
 }
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.servlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+
+import junit.framework.TestCase;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletConfig;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.util.FileCopyUtils;
+
+/**
+ * @author agent
+ * @since 1.1.2
+ */
+public class ResourceServletTestSuite extends TestCase {
+
+	private File baseDir;
+
+	private File cssFile;
+
+	private String cssContent;
+
+	private ResourceServlet servlet;
+
+	protected void setUp() throws Exception {
+		this.baseDir = File.createTempFile("resources", "");
+		this.baseDir.delete();
+		this.baseDir.mkdir();
+		StringBuffer css = new StringBuffer();
+		for (int i = 0; i < 100; i++) {
+			css.append("body .c").append(i).append(" { margin: 0; padding: 0; }\n");
+		}
+		this.cssContent = css.toString();
+		this.cssFile = new File(this.baseDir, "style.css");
+		FileCopyUtils.copy(this.cssContent.getBytes("ISO-8859-1"), this.cssFile);
+	}
+
+	protected void tearDown() {
+		this.cssFile.delete();
+		new File(this.baseDir, "large.css").delete();
+		this.baseDir.delete();
+	}
+
+	private void initServlet(int maxCachedFileSize) throws ServletException {
+		MockServletContext servletContext = new MockServletContext(this.baseDir.getAbsolutePath(), new ResourceLoader() {
+			public Resource getResource(String location) {
+				return new FileSystemResource(location);
+			}
+		});
+		MockServletConfig config = new MockServletConfig(servletContext, "resources");
+		config.addInitParameter("serveDirectly", "true");
+		config.addInitParameter("contentType", "text/css");
+		config.addInitParameter("maxCachedFileSize", Integer.toString(maxCachedFileSize));
+		this.servlet = new ResourceServlet();
+		this.servlet.init(config);
+	}
+
+	private MockHttpServletResponse doGet(String resource, String headerName, String headerValue)
+	    throws ServletException, IOException {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/resources");
+		request.addParameter("resource", resource);
+		if (headerName != null) {
+			request.addHeader(headerName, headerValue);
+		}
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		this.servlet.service(request, response);
+		return response;
+	}
+
+	public void testServeCachedResource() throws Exception {
+		initServlet(ResourceServlet.DEFAULT_MAX_CACHED_FILE_SIZE);
+		MockHttpServletResponse response = doGet("/style.css", null, null);
+		assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+		assertEquals("text/css", response.getContentType());
+		assertEquals(this.cssContent, response.getContentAsString());
+		assertEquals(this.cssContent.length(), response.getContentLength());
+		assertNotNull(response.getHeader("ETag"));
+		assertNull(response.getIncludedUrl());
+	}
+
+	public void testNotModified() throws Exception {
+		initServlet(ResourceServlet.DEFAULT_MAX_CACHED_FILE_SIZE);
+		String eTag = (String) doGet("/style.css", null, null).getHeader("ETag");
+		MockHttpServletResponse response = doGet("/style.css", "If-None-Match", eTag);
+		assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+		assertEquals(0, response.getContentAsByteArray().length);
+
+		this.cssFile.setLastModified(this.cssFile.lastModified() - 10000);
+		response = doGet("/style.css", "If-None-Match", eTag);
+		assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+		assertFalse(eTag.equals(response.getHeader("ETag")));
+	}
+
+	public void testGzippedResource() throws Exception {
+		initServlet(ResourceServlet.DEFAULT_MAX_CACHED_FILE_SIZE);
+		MockHttpServletResponse response = doGet("/style.css", "Accept-Encoding", "gzip, deflate");
+		assertEquals("gzip", response.getHeader("Content-Encoding"));
+		assertEquals("Accept-Encoding", response.getHeader("Vary"));
+		byte[] gzipped = response.getContentAsByteArray();
+		assertTrue(gzipped.length < this.cssContent.length());
+		byte[] content = FileCopyUtils.copyToByteArray(new GZIPInputStream(new ByteArrayInputStream(gzipped)));
+		assertEquals(this.cssContent, new String(content, "ISO-8859-1"));
+	}
+
+	public void testGzippedResourceHasOwnETag() throws Exception {
+		initServlet(ResourceServlet.DEFAULT_MAX_CACHED_FILE_SIZE);
+		String eTag = (String) doGet("/style.css", null, null).getHeader("ETag");
+		String gzipETag = (String) doGet("/style.css", "Accept-Encoding", "gzip").getHeader("ETag");
+		assertFalse(eTag.equals(gzipETag));
+
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/resources");
+		request.addParameter("resource", "/style.css");
+		request.addHeader("Accept-Encoding", "gzip");
+		request.addHeader("If-None-Match", gzipETag);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		this.servlet.service(request, response);
+		assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+		assertEquals("Accept-Encoding", response.getHeader("Vary"));
+
+		// the gzip ETag does not validate the identity representation
+		response = doGet("/style.css", "If-None-Match", gzipETag);
+		assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+		assertEquals(this.cssContent, response.getContentAsString());
+		assertEquals("Accept-Encoding", response.getHeader("Vary"));
+	}
+
+	public void testByteRange() throws Exception {
+		initServlet(ResourceServlet.DEFAULT_MAX_CACHED_FILE_SIZE);
+		MockHttpServletResponse response = doGet("/style.css", "Range", "bytes=5-10");
+		assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+		assertEquals(this.cssContent.substring(5, 11), response.getContentAsString());
+		assertEquals("bytes 5-10/" + this.cssContent.length(), response.getHeader("Content-Range"));
+
+		response = doGet("/style.css", "Range", "bytes=-4");
+		assertEquals(this.cssContent.substring(this.cssContent.length() - 4), response.getContentAsString());
+
+		response = doGet("/style.css", "Range", "bytes=100000-");
+		assertEquals(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatus());
+	}
+
+	public void testStreamLargeResource() throws Exception {
+		initServlet(100);
+		File largeFile = new File(this.baseDir, "large.css");
+		FileCopyUtils.copy(this.cssFile, largeFile);
+		MockHttpServletResponse response = doGet("/large.css", "Accept-Encoding", "gzip");
+		assertEquals(this.cssContent, response.getContentAsString());
+		assertNull(response.getHeader("Content-Encoding"));
+
+		response = doGet("/large.css", "Range", "bytes=1000-1999");
+		assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+		assertEquals(this.cssContent.substring(1000, 2000), response.getContentAsString());
+	}
+
+	public void testContentLengthOfHugeResource() throws Exception {
+		initServlet(100);
+		File largeFile = new File(this.baseDir, "large.css");
+		RandomAccessFile raf = new RandomAccessFile(largeFile, "rw");
+		try {
+			// sparse file, not actually taking up disk space
+			raf.setLength(Integer.MAX_VALUE + 11L);
+		}
+		finally {
+			raf.close();
+		}
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/resources");
+		request.addParameter("resource", "/large.css");
+		MockHttpServletResponse response = createNonWritingResponse();
+		try {
+			this.servlet.service(request, response);
+			fail("Should have thrown IOException");
+		}
+		catch (IOException ex) {
+			// expected: headers have been set before
+		}
+		assertEquals("2147483658", response.getHeader("Content-Length"));
+
+		request.addHeader("Range", "bytes=10-");
+		response = createNonWritingResponse();
+		try {
+			this.servlet.service(request, response);
+			fail("Should have thrown IOException");
+		}
+		catch (IOException ex) {
+			// expected: headers have been set before
+		}
+		assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+		assertEquals("2147483648", response.getHeader("Content-Length"));
+	}
+
+	/**
+	 * Create a response that fails on writing content, for checking the
+	 * headers of huge resources without actually copying their content.
+	 */
+	private MockHttpServletResponse createNonWritingResponse() {
+		return new MockHttpServletResponse() {
+			public ServletOutputStream getOutputStream() {
+				return new ServletOutputStream() {
+					public void write(int b) throws IOException {
+						throw new IOException("not writing the content");
+					}
+				};
+			}
+		};
+	}
+
+	public void testResourceNotFound() throws Exception {
+		initServlet(ResourceServlet.DEFAULT_MAX_CACHED_FILE_SIZE);
+		MockHttpServletResponse response = doGet("/missing.css", null, null);
+		assertEquals(HttpServletResponse.SC_NOT_FOUND, response.getStatus());
+	}
+
+	public void testRelativePathRejected() throws Exception {
+		MockServletContext servletContext = new MockServletContext(this.baseDir.getAbsolutePath(), new ResourceLoader() {
+			public Resource getResource(String location) {
+				return new FileSystemResource(location);
+			}
+		});
+		MockServletConfig config = new MockServletConfig(servletContext, "resources");
+		config.addInitParameter("serveDirectly", "true");
+		config.addInitParameter("allowedResources", "/static/**");
+		this.servlet = new ResourceServlet();
+		this.servlet.init(config);
+		try {
+			doGet("/static/../style.css", null, null);
+			fail("Should have thrown ServletException");
+		}
+		catch (ServletException ex) {
+			// expected
+		}
+		try {
+			doGet("/static/..\\style.css", null, null);
+			fail("Should have thrown ServletException");
+		}
+		catch (ServletException ex) {
+			// expected
+		}
+	}
+
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.servlet.handler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+import org.springframework.util.StopWatch;
+
+/**
+ * Benchmark for PathPatternTrie lookups against the pattern loop that
+ * AbstractUrlHandlerMapping used before, for growing numbers of patterns.
+ * The loop uses a copy of the tokenizing PathMatcher algorithm of
+ * Spring 1.1.1, as PathMatcher itself uses compiled patterns by now.
+ * Not a unit test, as wall-clock timings depend on the machine:
+ * Run it via its main method, optionally passing the number of
+ * lookups per measurement.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see PathPatternTrieTests
+ */
+public class PathPatternTrieBenchmark {
+
+	private static final int[] PATTERN_COUNTS = new int[] {10, 100, 1000};
+
+	private static final int WARMUP_ROUNDS = 3;
+
+
+	public static void main(String[] args) {
+		int lookups = (args.length > 0 ? Integer.parseInt(args[0]) : 20000);
+		for (int i = 0; i < PATTERN_COUNTS.length; i++) {
+			run(PATTERN_COUNTS[i], lookups);
+		}
+	}
+
+	private static void run(int patternCount, int lookups) {
+		Map handlerMap = new HashMap();
+		PathPatternTrie trie = new PathPatternTrie();
+		for (int i = 0; i < patternCount; i++) {
+			String pattern = "/module" + (i % 10) + "/section" + i + "/*.html";
+			handlerMap.put(pattern, pattern);
+			trie.addPattern(pattern, pattern);
+		}
+		String[] paths = new String[] {
+			"/module0/section0/page.html",
+			"/module" + ((patternCount - 1) % 10) + "/section" + (patternCount - 1) + "/page.html",
+			"/module1/section1/page.pdf",
+			"/unmapped/page.html"
+		};
+
+		// warm up both variants, checking that they find the same handlers
+		for (int n = 0; n < WARMUP_ROUNDS; n++) {
+			for (int i = 0; i < lookups / 10; i++) {
+				String path = paths[i % paths.length];
+				PathPatternTrie.Match match = trie.findBestMatch(path);
+				Object expected = loopLookup(handlerMap, path);
+				if (expected != (match != null ? match.getValue() : null)) {
+					throw new IllegalStateException("Different handlers for path [" + path + "]");
+				}
+			}
+		}
+
+		StopWatch sw = new StopWatch(patternCount + " patterns, " + lookups + " lookups");
+		sw.start("pattern loop");
+		for (int i = 0; i < lookups; i++) {
+			loopLookup(handlerMap, paths[i % paths.length]);
+		}
+		sw.stop();
+		sw.start("PathPatternTrie");
+		for (int i = 0; i < lookups; i++) {
+			trie.findBestMatch(paths[i % paths.length]);
+		}
+		sw.stop();
+		System.out.println(sw.prettyPrint());
+	}
+
+	/**
+	 * The lookup of AbstractUrlHandlerMapping as of Spring 1.1.1:
+	 * a direct match, else a loop over all registered patterns.
+	 */
+	private static Object loopLookup(Map handlerMap, String urlPath) {
+		Object handler = handlerMap.get(urlPath);
+		if (handler == null) {
+			for (Iterator it = handlerMap.keySet().iterator(); it.hasNext();) {
+				String registeredPath = (String) it.next();
+				if (previousMatch(registeredPath, urlPath)) {
+					handler = handlerMap.get(registeredPath);
+				}
+			}
+		}
+		return handler;
+	}
+
+	/**
+	 * The tokenizing matching algorithm of PathMatcher as of Spring 1.1.1.
+	 */
+	private static boolean previousMatch(String pattern, String str) {
+		if (str.startsWith("/") != pattern.startsWith("/")) {
+			return false;
+		}
+
+		List patDirs = tokenizePath(pattern);
+		List strDirs = tokenizePath(str);
+
+		int patIdxStart = 0;
+		int patIdxEnd = patDirs.size() - 1;
+		int strIdxStart = 0;
+		int strIdxEnd = strDirs.size() - 1;
+
+		// match all elements up to the first **
+		while (patIdxStart <= patIdxEnd && strIdxStart <= strIdxEnd) {
+			String patDir = (String) patDirs.get(patIdxStart);
+			if (patDir.equals("**")) {
+				break;
+			}
+			if (!matchStrings(patDir, (String) strDirs.get(strIdxStart))) {
+				return false;
+			}
+			patIdxStart++;
+			strIdxStart++;
+		}
+
+		if (strIdxStart > strIdxEnd) {
+			// String is exhausted, only match if rest of pattern is **'s
+			for (int i = patIdxStart; i <= patIdxEnd; i++) {
+				if (!patDirs.get(i).equals("**")) {
+					return false;
+				}
+			}
+			return true;
+		}
+		else {
+			if (patIdxStart > patIdxEnd) {
+				// String not exhausted, but pattern is. Failure.
+				return false;
+			}
+		}
+
+		// up to last '**'
+		while (patIdxStart <= patIdxEnd && strIdxStart <= strIdxEnd) {
+			String patDir = (String) patDirs.get(patIdxEnd);
+			if (patDir.equals("**")) {
+				break;
+			}
+			if (!matchStrings(patDir, (String) strDirs.get(strIdxEnd))) {
+				return false;
+			}
+			patIdxEnd--;
+			strIdxEnd--;
+		}
+		if (strIdxStart > strIdxEnd) {
+			// String is exhausted
+			for (int i = patIdxStart; i <= patIdxEnd; i++) {
+				if (!patDirs.get(i).equals("**")) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		while (patIdxStart != patIdxEnd && strIdxStart <= strIdxEnd) {
+			int patIdxTmp = -1;
+			for (int i = patIdxStart + 1; i <= patIdxEnd; i++) {
+				if (patDirs.get(i).equals("**")) {
+					patIdxTmp = i;
+					break;
+				}
+			}
+			if (patIdxTmp == patIdxStart + 1) {
+				// '**/**' situation, so skip one
+				patIdxStart++;
+				continue;
+			}
+			// Find the pattern between padIdxStart & padIdxTmp in str between
+			// strIdxStart & strIdxEnd
+			int patLength = (patIdxTmp - patIdxStart - 1);
+			int strLength = (strIdxEnd - strIdxStart + 1);
+			int foundIdx = -1;
+			strLoop:
+			    for (int i = 0; i <= strLength - patLength; i++) {
+				    for (int j = 0; j < patLength; j++) {
+					    String subPat = (String) patDirs.get(patIdxStart + j + 1);
+					    String subStr = (String) strDirs.get(strIdxStart + i + j);
+					    if (!matchStrings(subPat, subStr)) {
+						    continue strLoop;
+					    }
+				    }
+
+				    foundIdx = strIdxStart + i;
+				    break;
+			    }
+
+			if (foundIdx == -1) {
+				return false;
+			}
+
+			patIdxStart = patIdxTmp;
+			strIdxStart = foundIdx + patLength;
+		}
+
+		for (int i = patIdxStart; i <= patIdxEnd; i++) {
+			if (!patDirs.get(i).equals("**")) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static boolean matchStrings(String pattern, String str) {
+		char[] patArr = pattern.toCharArray();
+		char[] strArr = str.toCharArray();
+		int patIdxStart = 0;
+		int patIdxEnd = patArr.length - 1;
+		int strIdxStart = 0;
+		int strIdxEnd = strArr.length - 1;
+		char ch;
+
+		boolean containsStar = false;
+		for (int i = 0; i < patArr.length; i++) {
+			if (patArr[i] == '*') {
+				containsStar = true;
+				break;
+			}
+		}
+
+		if (!containsStar) {
+			// No '*'s, so we make a shortcut
+			if (patIdxEnd != strIdxEnd) {
+				return false; // Pattern and string do not have the same size
+			}
+			for (int i = 0; i <= patIdxEnd; i++) {
+				ch = patArr[i];
+				if (ch != '?') {
+					if (ch != strArr[i]) {
+						return false;// Character mismatch
+					}
+				}
+			}
+			return true; // String matches against pattern
+		}
+
+		if (patIdxEnd == 0) {
+			return true; // Pattern contains only '*', which matches anything
+		}
+
+		// Process characters before first star
+		while ((ch = patArr[patIdxStart]) != '*' && strIdxStart <= strIdxEnd) {
+			if (ch != '?') {
+				if (ch != strArr[strIdxStart]) {
+					return false;// Character mismatch
+				}
+			}
+			patIdxStart++;
+			strIdxStart++;
+		}
+		if (strIdxStart > strIdxEnd) {
+			// All characters in the string are used. Check if only '*'s are
+			// left in the pattern. If so, we succeeded. Otherwise failure.
+			for (int i = patIdxStart; i <= patIdxEnd; i++) {
+				if (patArr[i] != '*') {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		// Process characters after last star
+		while ((ch = patArr[patIdxEnd]) != '*' && strIdxStart <= strIdxEnd) {
+			if (ch != '?') {
+				if (ch != strArr[strIdxEnd]) {
+					return false;// Character mismatch
+				}
+			}
+			patIdxEnd--;
+			strIdxEnd--;
+		}
+		if (strIdxStart > strIdxEnd) {
+			// All characters in the string are used. Check if only '*'s are
+			// left in the pattern. If so, we succeeded. Otherwise failure.
+			for (int i = patIdxStart; i <= patIdxEnd; i++) {
+				if (patArr[i] != '*') {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		// process pattern between stars. padIdxStart and patIdxEnd point
+		// always to a '*'.
+		while (patIdxStart != patIdxEnd && strIdxStart <= strIdxEnd) {
+			int patIdxTmp = -1;
+			for (int i = patIdxStart + 1; i <= patIdxEnd; i++) {
+				if (patArr[i] == '*') {
+					patIdxTmp = i;
+					break;
+				}
+			}
+			if (patIdxTmp == patIdxStart + 1) {
+				// Two stars next to each other, skip the first one.
+				patIdxStart++;
+				continue;
+			}
+			// Find the pattern between padIdxStart & padIdxTmp in str between
+			// strIdxStart & strIdxEnd
+			int patLength = (patIdxTmp - patIdxStart - 1);
+			int strLength = (strIdxEnd - strIdxStart + 1);
+			int foundIdx = -1;
+			strLoop:
+			for (int i = 0; i <= strLength - patLength; i++) {
+				for (int j = 0; j < patLength; j++) {
+					ch = patArr[patIdxStart + j + 1];
+					if (ch != '?') {
+						if (ch != strArr[strIdxStart + i + j]) {
+							continue strLoop;
+						}
+					}
+				}
+
+				foundIdx = strIdxStart + i;
+				break;
+			}
+
+			if (foundIdx == -1) {
+				return false;
+			}
+
+			patIdxStart = patIdxTmp;
+			strIdxStart = foundIdx + patLength;
+		}
+
+		// All characters in the string are used. Check if only '*'s are left
+		// in the pattern. If so, we succeeded. Otherwise failure.
+		for (int i = patIdxStart; i <= patIdxEnd; i++) {
+			if (patArr[i] != '*') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static List tokenizePath(String path) {
+		List ret = new ArrayList();
+		StringTokenizer st = new StringTokenizer(path, "/");
+		while (st.hasMoreTokens()) {
+			ret.add(st.nextToken());
+		}
+		return ret;
+	}
+
+}
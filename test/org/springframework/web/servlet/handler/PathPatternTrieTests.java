@@ -0,0 +1,126 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.servlet.handler;
+
+import junit.framework.TestCase;
+
+import org.springframework.util.PathMatcher;
+
+/**
+ * @author agent
+ * @since 1.1.2
+ */
+public class PathPatternTrieTests extends TestCase {
+
+	private static final String[] PATTERNS = new String[] {
+		"welcome.html", "/**/pathmatchingTest.html", "/**/pathmatching??.html",
+		"/**/*.jsp", "/administrator/**/pathmatching.html", "/administrator/**/testlast*",
+		"/administrator/another/bla.xml", "/administrator/testing/longer/**/**/**/**/**",
+		"/administrator/testing/longer2/**/**/bla/**", "/*test*.jpeg", "/*/test.jpeg",
+		"/anotherTest*", "/shortpattern/testing", "/show123.html", "/sho*", "/docs/**",
+		"/docs/*/index.html", "/"
+	};
+
+	private static final String[] PATHS = new String[] {
+		"welcome.html", "/welcome.html", "/pathmatchingTest.html", "/a/b/pathmatchingTest.html",
+		"/pathmatchingAA.html", "/pathmatchingA.html", "/administrator/pathmatching.html",
+		"/administrator/test/pathmatching.html", "/administratort/pathmatching.html",
+		"/bla.jsp", "/testing/bla.jsp", "/administrator/another/bla.xml",
+		"/administrator/another/bla.gif", "/administrator/test/testlastbit",
+		"/administrator/test/testla", "/administrator/testing/longer/bla",
+		"/administrator/testing/longer/test.jsp", "/administrator/testing/longer2/notmatching/notmatching",
+		"/administrator/testing/longer2/x/bla/y", "/shortpattern/testing/toolong", "/shortpattern//testing",
+		"/reallyGood-test-is-this.jpeg", "/testing/test.jpeg", "/testing/test.jpg", "/anotherTest",
+		"/show1.html", "/show123.html", "/docs", "/docs/", "/docs/guide/index.html", "/", "", "/x/y/z"
+	};
+
+
+	public void testMatchesLikePathMatcher() {
+		PathPatternTrie trie = new PathPatternTrie();
+		for (int i = 0; i < PATTERNS.length; i++) {
+			trie.addPattern(PATTERNS[i], PATTERNS[i]);
+		}
+		assertEquals(PATTERNS.length, trie.size());
+		for (int i = 0; i < PATHS.length; i++) {
+			boolean anyMatch = false;
+			for (int j = 0; j < PATTERNS.length; j++) {
+				anyMatch = anyMatch || PathMatcher.match(PATTERNS[j], PATHS[i]);
+			}
+			PathPatternTrie.Match match = trie.findBestMatch(PATHS[i]);
+			assertEquals("Match for [" + PATHS[i] + "]", anyMatch, match != null);
+			if (match != null) {
+				assertTrue(PathMatcher.match(match.getPattern(), PATHS[i]));
+				assertEquals(match.getPattern(), match.getValue());
+			}
+		}
+	}
+
+	public void testMostSpecificPatternWins() {
+		PathPatternTrie trie = new PathPatternTrie();
+		trie.addPattern("/**", "any");
+		trie.addPattern("/docs/**", "docs");
+		trie.addPattern("/docs/*.html", "html");
+		trie.addPattern("/docs/index.html", "index");
+		trie.addPattern("/docs/ind?x.html", "indx");
+		assertEquals("index", trie.findBestMatch("/docs/index.html").getValue());
+		assertEquals("indx", trie.findBestMatch("/docs/indax.html").getValue());
+		assertEquals("html", trie.findBestMatch("/docs/guide.html").getValue());
+		assertEquals("docs", trie.findBestMatch("/docs/guide.pdf").getValue());
+		assertEquals("docs", trie.findBestMatch("/docs").getValue());
+		assertEquals("any", trie.findBestMatch("/other").getValue());
+		assertNull(trie.findBestMatch("relative"));
+	}
+
+	public void testReplacePattern() {
+		PathPatternTrie trie = new PathPatternTrie();
+		trie.addPattern("/a/*", "first");
+		trie.addPattern("/a/*", "second");
+		assertEquals(1, trie.size());
+		assertEquals("second", trie.findBestMatch("/a/b").getValue());
+	}
+
+	public void testLargePatternSetMatchesLinearLookup() {
+		int patternCount = 1500;
+		String[] patterns = new String[patternCount];
+		PathPatternTrie trie = new PathPatternTrie();
+		for (int i = 0; i < patternCount; i++) {
+			patterns[i] = "/module" + (i % 50) + "/section" + i + "/*.html";
+			trie.addPattern(patterns[i], patterns[i]);
+		}
+		assertEquals(patternCount, trie.size());
+		for (int n = 0; n < patternCount; n += 7) {
+			String[] paths = new String[] {
+				"/module" + (n % 50) + "/section" + n + "/page.html",
+				"/module" + (n % 50) + "/section" + n + "/page.pdf",
+				"/module" + ((n + 1) % 50) + "/section" + n + "/page.html",
+				"/module" + (n % 50) + "/section" + n + "/sub/page.html"
+			};
+			for (int k = 0; k < paths.length; k++) {
+				String found = null;
+				for (int i = 0; i < patternCount; i++) {
+					if (PathMatcher.match(patterns[i], paths[k])) {
+						assertNull("Ambiguous test patterns", found);
+						found = patterns[i];
+					}
+				}
+				PathPatternTrie.Match match = trie.findBestMatch(paths[k]);
+				assertEquals("Match for [" + paths[k] + "]", found, (match != null ? match.getValue() : null));
+			}
+		}
+	}
+
+}
@@ -16,10 +16,16 @@
 
 package org.springframework.web.servlet.handler;
 
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
 import junit.framework.TestCase;
 
 import org.springframework.beans.FatalBeanException;
 import org.springframework.beans.factory.NoSuchBeanDefinitionException;
+import org.springframework.context.support.StaticApplicationContext;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockServletContext;
 import org.springframework.web.context.support.XmlWebApplicationContext;
@@ -104,4 +110,64 @@ public class SimpleUrlHandlerMappingTestSuite extends TestCase {
 		assertTrue("Handler is correct bean", hec != null && hec.getHandler() == bean);
 	}
 
+	public void testCacheKeyLookupPathReusedForHandlerLookup() throws Exception {
+		final int[] lookupCount = new int[1];
+		SimpleUrlHandlerMapping hm = new SimpleUrlHandlerMapping();
+		hm.setUrlPathHelper(new UrlPathHelper() {
+			public String getLookupPathForRequest(HttpServletRequest request) {
+				lookupCount[0]++;
+				return super.getLookupPathForRequest(request);
+			}
+		});
+		Object handler = new Object();
+		Map urlMap = new HashMap();
+		urlMap.put("/welcome.html", handler);
+		hm.setUrlMap(urlMap);
+		hm.setCacheable(true);
+		hm.setApplicationContext(new StaticApplicationContext());
+
+		MockHttpServletRequest req = new MockHttpServletRequest("GET", "/welcome.html");
+		Object cacheKey = hm.getHandlerCacheKey(req);
+		assertEquals("/welcome.html", cacheKey);
+		HandlerExecutionChain hec = hm.getHandler(req, cacheKey);
+		assertTrue("Handler is correct object", hec != null && hec.getHandler() == handler);
+		assertEquals(1, lookupCount[0]);
+		// nothing left in the request for forwards and includes
+		assertFalse(req.getAttributeNames().hasMoreElements());
+
+		req = new MockHttpServletRequest("GET", "/welcome.html");
+		hec = hm.getHandler(req);
+		assertTrue("Handler is correct object", hec != null && hec.getHandler() == handler);
+		assertEquals(2, lookupCount[0]);
+	}
+
+	public void testCachedLookupGoesThroughOverriddenHook() throws Exception {
+		final Object specialHandler = new Object();
+		SimpleUrlHandlerMapping hm = new SimpleUrlHandlerMapping() {
+			protected Object getHandlerInternal(HttpServletRequest request, String lookupPath) throws Exception {
+				if (request.getParameter("special") != null) {
+					return specialHandler;
+				}
+				return super.getHandlerInternal(request, lookupPath);
+			}
+		};
+		Object handler = new Object();
+		Map urlMap = new HashMap();
+		urlMap.put("/welcome.html", handler);
+		hm.setUrlMap(urlMap);
+		hm.setCacheable(true);
+		hm.setApplicationContext(new StaticApplicationContext());
+
+		MockHttpServletRequest req = new MockHttpServletRequest("GET", "/welcome.html");
+		req.addParameter("special", "true");
+		HandlerExecutionChain hec = hm.getHandler(req, hm.getHandlerCacheKey(req));
+		assertTrue("Handler is special object", hec != null && hec.getHandler() == specialHandler);
+		hec = hm.getHandler(req);
+		assertTrue("Handler is special object", hec != null && hec.getHandler() == specialHandler);
+
+		req = new MockHttpServletRequest("GET", "/welcome.html");
+		hec = hm.getHandler(req, hm.getHandlerCacheKey(req));
+		assertTrue("Handler is correct object", hec != null && hec.getHandler() == handler);
+	}
+
 }
@@ -181,6 +181,76 @@ public class ControllerTestSuite extends TestCase {
 	}
 
 
+	public void testEntityTagControllerNotModified() throws Exception {
+		EntityTagController controller = new EntityTagController("v1");
+		SimpleControllerHandlerAdapter adapter = new SimpleControllerHandlerAdapter();
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/page.html");
+		request.addHeader("If-None-Match", "\"v0\", W/\"v1\"");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		assertNull(adapter.handle(request, response, controller));
+		assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+		assertEquals("\"v1\"", response.getHeader("ETag"));
+		assertEquals(0, controller.invocationCount);
+	}
+
+	public void testEntityTagControllerModified() throws Exception {
+		EntityTagController controller = new EntityTagController("\"v2\"");
+		SimpleControllerHandlerAdapter adapter = new SimpleControllerHandlerAdapter();
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/page.html");
+		request.addHeader("If-None-Match", "\"v1\"");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		ModelAndView mv = adapter.handle(request, response, controller);
+		assertEquals("view", mv.getViewName());
+		assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+		assertEquals("\"v2\"", response.getHeader("ETag"));
+		assertEquals(1, controller.invocationCount);
+	}
+
+	public void testWeakEntityTagQuoted() throws Exception {
+		EntityTagController controller = new EntityTagController("W/v1");
+		SimpleControllerHandlerAdapter adapter = new SimpleControllerHandlerAdapter();
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/page.html");
+		request.addHeader("If-None-Match", "W/\"v1\"");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		assertNull(adapter.handle(request, response, controller));
+		assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+		assertEquals("W/\"v1\"", response.getHeader("ETag"));
+		assertEquals(0, controller.invocationCount);
+	}
+
+	public void testEntityTagControllerWithPost() throws Exception {
+		EntityTagController controller = new EntityTagController("v1");
+		SimpleControllerHandlerAdapter adapter = new SimpleControllerHandlerAdapter();
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/page.html");
+		request.addHeader("If-None-Match", "\"v1\"");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		assertNotNull(adapter.handle(request, response, controller));
+		assertNull(response.getHeader("ETag"));
+		assertEquals(1, controller.invocationCount);
+	}
+
+
+	private static class EntityTagController implements Controller, EntityTag {
+
+		private final String eTag;
+
+		private int invocationCount = 0;
+
+		private EntityTagController(String eTag) {
+			this.eTag = eTag;
+		}
+
+		public String getEntityTag(HttpServletRequest request) {
+			return this.eTag;
+		}
+
+		public ModelAndView handleRequest(HttpServletRequest request, HttpServletResponse response) {
+			this.invocationCount++;
+			return new ModelAndView("view");
+		}
+	}
+
+
 	public static class TestServlet implements Servlet {
 
 		private static ServletConfig config;
@@ -16,6 +16,11 @@
 
 package org.springframework.web.servlet.mvc;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
 import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
@@ -347,6 +352,57 @@ public class MultiActionControllerTestSuite extends TestCase {
 		testExceptionNoHandler(mc, new Exception());
 	}
 
+	public void testExceptionHandlerResolutionCached() throws Exception {
+		TestMaController mc = new TestServletExceptionHandler();
+		Method handler = mc.exposeExceptionHandler(new ServletRequestBindingException("foo"));
+		assertEquals("handleServletException", handler.getName());
+		assertSame(handler, mc.exposeExceptionHandler(new ServletRequestBindingException("bar")));
+		assertNull(mc.exposeExceptionHandler(new RuntimeException()));
+		assertNull(mc.exposeExceptionHandler(new RuntimeException()));
+
+		// changing the delegate must not keep stale handlers
+		mc.setDelegate(new TestRTEHandler());
+		assertNull(mc.exposeExceptionHandler(new ServletRequestBindingException("foo")));
+		assertEquals("handleRuntimeProblem", mc.exposeExceptionHandler(new RuntimeException()).getName());
+	}
+
+	public void testInvokesCorrectMethodOnNonPublicDelegate() throws Exception {
+		NonPublicDelegate d = new NonPublicDelegate();
+		MultiActionController mac = new MultiActionController(d);
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/test.html");
+		ModelAndView mv = mac.handleRequest(request, new MockHttpServletResponse());
+		assertEquals("test", mv.getViewName());
+		assertTrue(d.invoked);
+
+		request = new MockHttpServletRequest("GET", "/failing.html");
+		mv = mac.handleRequest(request, new MockHttpServletResponse());
+		assertEquals("handled", mv.getViewName());
+	}
+
+	public void testInvokesCorrectMethodOnNonPublicDelegateViaReflection() throws Exception {
+		// load the delegate class in a ClassLoader that cannot see CGLIB,
+		// so that no FastClass can be generated for it
+		ClassLoader classLoader = new NoCglibClassLoader(NonPublicDelegate.class.getName());
+		try {
+			classLoader.loadClass("net.sf.cglib.reflect.FastClass");
+			fail("Should have thrown ClassNotFoundException");
+		}
+		catch (ClassNotFoundException ex) {
+			// expected
+		}
+		Constructor ctor = classLoader.loadClass(NonPublicDelegate.class.getName()).getDeclaredConstructor(new Class[0]);
+		ctor.setAccessible(true);
+		MultiActionController mac = new MultiActionController(ctor.newInstance(new Object[0]));
+
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/test.html");
+		ModelAndView mv = mac.handleRequest(request, new MockHttpServletResponse());
+		assertEquals("test", mv.getViewName());
+
+		request = new MockHttpServletRequest("GET", "/failing.html");
+		mv = mac.handleRequest(request, new MockHttpServletResponse());
+		assertEquals("handled", mv.getViewName());
+	}
+
 	/** No error handlers */
 	public static class TestMaController extends MultiActionController {
 
@@ -416,6 +472,10 @@ public class MultiActionControllerTestSuite extends TestCase {
 			return invoked.size();
 		}
 
+		public Method exposeExceptionHandler(Throwable ex) {
+			return getExceptionHandler(ex);
+		}
+
 	}
 
 	public static class TestExceptionHandler extends TestMaController {
@@ -480,5 +540,68 @@ public class MultiActionControllerTestSuite extends TestCase {
 		}
 	}
 
-}
 
+	static class NonPublicDelegate {
+
+		private boolean invoked;
+
+		public ModelAndView test(HttpServletRequest request, HttpServletResponse response) {
+			this.invoked = true;
+			return new ModelAndView("test");
+		}
+
+		public ModelAndView failing(HttpServletRequest request, HttpServletResponse response) {
+			throw new IllegalStateException();
+		}
+
+		public ModelAndView handle(HttpServletRequest request, HttpServletResponse response, IllegalStateException ex) {
+			return new ModelAndView("handled");
+		}
+	}
+
+
+	/**
+	 * ClassLoader that defines the given class itself and hides CGLIB from it,
+	 * delegating to the test's ClassLoader for all other classes.
+	 */
+	private static class NoCglibClassLoader extends ClassLoader {
+
+		private final String className;
+
+		private NoCglibClassLoader(String className) {
+			super(NoCglibClassLoader.class.getClassLoader());
+			this.className = className;
+		}
+
+		protected synchronized Class loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if (name.startsWith("net.sf.cglib.")) {
+				throw new ClassNotFoundException(name);
+			}
+			if (!name.equals(this.className)) {
+				return super.loadClass(name, resolve);
+			}
+			Class clazz = findLoadedClass(name);
+			if (clazz == null) {
+				try {
+					InputStream is = getParent().getResourceAsStream(name.replace('.', '/') + ".class");
+					ByteArrayOutputStream baos = new ByteArrayOutputStream();
+					byte[] buffer = new byte[4096];
+					int count;
+					while ((count = is.read(buffer)) != -1) {
+						baos.write(buffer, 0, count);
+					}
+					is.close();
+					clazz = defineClass(name, baos.toByteArray(), 0, baos.size());
+				}
+				catch (IOException ex) {
+					throw new ClassNotFoundException(name);
+				}
+			}
+			if (resolve) {
+				resolveClass(clazz);
+			}
+			return clazz;
+		}
+	}
+
+}
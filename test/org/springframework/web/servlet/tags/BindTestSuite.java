@@ -18,16 +18,22 @@ package org.springframework.web.servlet.tags;
 
 import java.beans.PropertyEditorSupport;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.jsp.JspException;
 import javax.servlet.jsp.PageContext;
 import javax.servlet.jsp.tagext.Tag;
 
 import org.springframework.beans.IndexedTestBean;
 import org.springframework.beans.TestBean;
+import org.springframework.context.NoSuchMessageException;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.validation.BindException;
 import org.springframework.validation.DataBinder;
+import org.springframework.validation.Errors;
+import org.springframework.web.bind.EscapedErrors;
 import org.springframework.web.bind.ServletRequestDataBinder;
 import org.springframework.web.servlet.support.BindStatus;
+import org.springframework.web.servlet.support.RequestContext;
 
 /**
  * @author Juergen Hoeller
@@ -126,6 +132,62 @@ public class BindTestSuite extends AbstractTagTests {
 		assertTrue("Correct errorMessagesAsString", "message1".equals(status.getErrorMessagesAsString(",")));
 	}
 
+	public void testRequestContextResolvesLazily() throws JspException {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/test");
+		RequestContext rc = new RequestContext(request);
+		assertEquals("/test", rc.getRequestUri());
+		try {
+			rc.getWebApplicationContext();
+			fail("Should have thrown IllegalStateException");
+		}
+		catch (IllegalStateException ex) {
+			// expected: no WebApplicationContext available, resolved on access
+		}
+
+		PageContext pc = createPageContext();
+		rc = new RequestContext((HttpServletRequest) pc.getRequest());
+		assertSame(rc.getLocale(), rc.getLocale());
+		assertNotNull(rc.getTheme());
+		assertFalse(rc.isDefaultHtmlEscape());
+		rc.setDefaultHtmlEscape(true);
+		assertTrue(rc.isDefaultHtmlEscape());
+	}
+
+	public void testRequestContextKeepsEscapedErrors() throws JspException {
+		PageContext pc = createPageContext();
+		BindException errors = new ServletRequestDataBinder(new TestBean(), "tb").getErrors();
+		pc.getRequest().setAttribute(BindException.ERROR_KEY_PREFIX + "tb", errors);
+		RequestContext rc = new RequestContext((HttpServletRequest) pc.getRequest());
+		Errors escaped = rc.getErrors("tb", true);
+		assertTrue(escaped instanceof EscapedErrors);
+		assertSame(errors, rc.getErrors("tb", false));
+		assertSame(escaped, rc.getErrors("tb", true));
+		assertNull(rc.getErrors("other"));
+	}
+
+	public void testBindStatusResolvesErrorMessagesLazily() throws JspException {
+		PageContext pc = createPageContext();
+		BindException errors = new ServletRequestDataBinder(new TestBean(), "tb").getErrors();
+		errors.rejectValue("name", "unknownCode", null, null);
+		pc.getRequest().setAttribute(BindException.ERROR_KEY_PREFIX + "tb", errors);
+		RequestContext rc = new RequestContext((HttpServletRequest) pc.getRequest());
+
+		BindStatus status = rc.getBindStatus("tb.name");
+		assertTrue(status.isError());
+		assertEquals("unknownCode", status.getErrorCode());
+		try {
+			status.getErrorMessage();
+			fail("Should have thrown NoSuchMessageException");
+		}
+		catch (NoSuchMessageException ex) {
+			// expected: message resolution deferred until access
+		}
+
+		status = rc.getBindStatus("tb.age");
+		assertFalse(status.isError());
+		assertEquals(0, status.getErrorMessages().length);
+	}
+
 	public void testBindStatusGetErrorMessagesAsString() throws JspException {
 		// one error (should not include delimiter)
 		PageContext pc = createPageContext();
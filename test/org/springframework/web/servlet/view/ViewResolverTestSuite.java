@@ -270,6 +270,107 @@ public class ViewResolverTestSuite extends TestCase {
 		}
 	}
 
+	public void testCacheLimitAndStatistics() throws Exception {
+		CountingViewResolver vr = new CountingViewResolver();
+		vr.setCacheLimit(2);
+		assertEquals(2, vr.getCacheLimit());
+		View view1 = vr.resolveViewName("example1", Locale.ENGLISH);
+		assertSame(view1, vr.resolveViewName("example1", Locale.ENGLISH));
+		vr.resolveViewName("example2", Locale.ENGLISH);
+		vr.resolveViewName("example1", Locale.GERMAN);
+		assertEquals(2, vr.getCacheSize());
+		assertEquals(3, vr.loadCount);
+		// example1 for English has been evicted as least recently used
+		assertNotSame(view1, vr.resolveViewName("example1", Locale.ENGLISH));
+		assertEquals(4, vr.loadCount);
+		assertEquals(1, vr.getCacheHitCount());
+		assertEquals(4, vr.getCacheMissCount());
+
+		vr.clearCache();
+		assertEquals(0, vr.getCacheSize());
+		vr.setCacheLimit(0);
+		assertFalse(vr.isCache());
+		vr.resolveViewName("example1", Locale.ENGLISH);
+		vr.resolveViewName("example1", Locale.ENGLISH);
+		assertEquals(6, vr.loadCount);
+	}
+
+	public void testCacheSegments() throws Exception {
+		CountingViewResolver vr = new CountingViewResolver();
+		assertEquals(AbstractCachingViewResolver.DEFAULT_CACHE_LIMIT, vr.getCacheLimit());
+		vr.setCacheLimit(1000);
+		assertEquals(1000, vr.getCacheLimit());
+		for (int i = 0; i < 2000; i++) {
+			vr.resolveViewName("example" + i, Locale.ENGLISH);
+		}
+		assertEquals(2000, vr.loadCount);
+		assertTrue(vr.getCacheSize() > 0 && vr.getCacheSize() <= 1000);
+		// the most recently resolved view is still cached
+		View view = vr.resolveViewName("example1999", Locale.ENGLISH);
+		assertSame(view, vr.resolveViewName("example1999", Locale.ENGLISH));
+		assertEquals(2000, vr.loadCount);
+		assertEquals(2, vr.getCacheHitCount());
+
+		vr.removeFromCache("example1999", Locale.ENGLISH);
+		assertNotSame(view, vr.resolveViewName("example1999", Locale.ENGLISH));
+		vr.clearCache();
+		assertEquals(0, vr.getCacheSize());
+	}
+
+	public void testCacheUnresolved() throws Exception {
+		CountingViewResolver vr = new CountingViewResolver();
+		assertNull(vr.resolveViewName("unknown", Locale.ENGLISH));
+		assertNull(vr.resolveViewName("unknown", Locale.ENGLISH));
+		assertEquals(2, vr.loadCount);
+
+		vr = new CountingViewResolver();
+		vr.setCacheUnresolved(true);
+		assertNull(vr.resolveViewName("unknown", Locale.ENGLISH));
+		assertNull(vr.resolveViewName("unknown", Locale.ENGLISH));
+		assertEquals(1, vr.loadCount);
+	}
+
+	public void testCacheRedirectViews() throws Exception {
+		CountingViewResolver vr = new CountingViewResolver();
+		View view = vr.resolveViewName("redirect", Locale.ENGLISH);
+		assertTrue(view instanceof RedirectView);
+		assertSame(view, vr.resolveViewName("redirect", Locale.ENGLISH));
+
+		vr = new CountingViewResolver();
+		vr.setCacheRedirectViews(false);
+		view = vr.resolveViewName("redirect", Locale.ENGLISH);
+		assertNotSame(view, vr.resolveViewName("redirect", Locale.ENGLISH));
+		assertEquals(0, vr.getCacheSize());
+		assertEquals(2, vr.loadCount);
+	}
+
+
+	private static class CountingViewResolver extends AbstractCachingViewResolver {
+
+		private int loadCount = 0;
+
+		public CountingViewResolver() {
+			StaticWebApplicationContext wac = new StaticWebApplicationContext();
+			wac.setServletContext(new MockServletContext());
+			wac.refresh();
+			setApplicationContext(wac);
+		}
+
+		protected View loadView(String viewName, Locale locale) {
+			this.loadCount++;
+			if ("unknown".equals(viewName)) {
+				return null;
+			}
+			if ("redirect".equals(viewName)) {
+				return new RedirectView("/target");
+			}
+			InternalResourceView view = new InternalResourceView();
+			view.setUrl(viewName);
+			return view;
+		}
+	}
+
+
 	public static class TestView extends InternalResourceView {
 
 		public void setLocation(Resource location) {
@@ -23,6 +23,7 @@ import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 
+import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletResponse;
 
 import freemarker.template.Configuration;
@@ -119,6 +120,199 @@ public class FreeMarkerViewTests extends TestCase {
 	}
 
 
+	public void testOutputCache() throws Exception {
+		FreeMarkerView fv = new FreeMarkerView();
+
+		MockControl wmc = MockControl.createControl(WebApplicationContext.class);
+		WebApplicationContext wac = (WebApplicationContext) wmc.getMock();
+		wac.getBeansOfType(FreeMarkerConfig.class, true, true);
+		Map configs = new HashMap();
+		FreeMarkerConfigurer configurer = new FreeMarkerConfigurer();
+		CountingConfiguration configuration = new CountingConfiguration();
+		configurer.setConfiguration(configuration);
+		configs.put("freemarkerConfig", configurer);
+		wmc.setReturnValue(configs);
+		wac.getParentBeanFactory();
+		wmc.setReturnValue(null);
+		wmc.replay();
+
+		fv.setUrl("templateName");
+		fv.setOutputCacheSeconds(0);
+		fv.setOutputCacheKeyAttributes(new String[] {"product"});
+		fv.setOutputCacheKeyParameters(new String[] {"page"});
+		fv.setApplicationContext(wac);
+
+		assertEquals("Hello a", renderCached(fv, "a", "1", "GET", Locale.US));
+		assertEquals("Hello a", renderCached(fv, "a", "1", "GET", Locale.US));
+		assertEquals(1, configuration.processCount);
+		assertEquals(1, fv.getOutputCacheHitCount());
+		assertEquals(1, fv.getOutputCacheMissCount());
+
+		assertEquals("Hello b", renderCached(fv, "b", "1", "GET", Locale.US));
+		assertEquals("Hello a", renderCached(fv, "a", "2", "GET", Locale.US));
+		assertEquals("Hello a", renderCached(fv, "a", "1", "GET", Locale.GERMAN));
+		assertEquals(4, configuration.processCount);
+		assertEquals(4, fv.getOutputCacheSize());
+
+		assertEquals("Hello a", renderCached(fv, "a", "1", "POST", Locale.US));
+		assertEquals(5, configuration.processCount);
+
+		fv.clearOutputCache();
+		assertEquals(0, fv.getOutputCacheSize());
+		assertEquals("Hello a", renderCached(fv, "a", "1", "GET", Locale.US));
+		assertEquals(6, configuration.processCount);
+	}
+
+	public void testOutputCacheLimit() throws Exception {
+		FreeMarkerView fv = new FreeMarkerView();
+		CountingConfiguration configuration = new CountingConfiguration();
+		fv.setConfiguration(configuration);
+		fv.setUrl("templateName");
+		fv.setOutputCacheSeconds(60);
+		fv.setOutputCacheLimit(2);
+		fv.setOutputCacheKeyAttributes(new String[] {"product"});
+
+		renderCached(fv, "a", null, "GET", Locale.US);
+		renderCached(fv, "b", null, "GET", Locale.US);
+		renderCached(fv, "c", null, "GET", Locale.US);
+		assertEquals(2, fv.getOutputCacheSize());
+		assertEquals("Hello c", renderCached(fv, "c", null, "GET", Locale.US));
+		assertEquals(3, configuration.processCount);
+		renderCached(fv, "a", null, "GET", Locale.US);
+		assertEquals(4, configuration.processCount);
+	}
+
+	public void testOutputCacheSkippedAfterSendError() throws Exception {
+		FreeMarkerView fv = new FreeMarkerView() {
+			protected void processTemplate(Template template, Map model, HttpServletResponse response)
+					throws IOException, TemplateException {
+				super.processTemplate(template, model, response);
+				if ("missing".equals(model.get("product"))) {
+					response.sendError(HttpServletResponse.SC_NOT_FOUND);
+				}
+			}
+		};
+		CountingConfiguration configuration = new CountingConfiguration();
+		fv.setConfiguration(configuration);
+		fv.setUrl("templateName");
+		fv.setOutputCacheSeconds(60);
+		fv.setOutputCacheKeyAttributes(new String[] {"product"});
+
+		for (int i = 0; i < 2; i++) {
+			MockHttpServletRequest request = new MockHttpServletRequest("GET", "/product.html");
+			request.addPreferredLocale(Locale.US);
+			request.setAttribute(DispatcherServlet.LOCALE_RESOLVER_ATTRIBUTE, new AcceptHeaderLocaleResolver());
+			MockHttpServletResponse response = new MockHttpServletResponse();
+			Map model = new HashMap();
+			model.put("product", "missing");
+			fv.render(model, request, response);
+			assertEquals(HttpServletResponse.SC_NOT_FOUND, response.getStatus());
+			assertEquals("", response.getContentAsString());
+		}
+		assertEquals(2, configuration.processCount);
+		assertEquals(0, fv.getOutputCacheSize());
+	}
+
+	public void testOutputCacheKeyEscapesSeparators() throws Exception {
+		FreeMarkerView fv = new FreeMarkerView();
+		CountingConfiguration configuration = new CountingConfiguration();
+		fv.setConfiguration(configuration);
+		fv.setUrl("templateName");
+		fv.setOutputCacheSeconds(60);
+		fv.setOutputCacheKeyAttributes(new String[] {"product", "category"});
+
+		Map model = new HashMap();
+		model.put("product", "a|b");
+		model.put("category", "c");
+		assertEquals("Hello a|b", render(fv, model, new MockHttpServletResponse()));
+		model.put("product", "a");
+		model.put("category", "b|c");
+		assertEquals("Hello a", render(fv, model, new MockHttpServletResponse()));
+		model.put("product", "null");
+		model.remove("category");
+		assertEquals("Hello null", render(fv, model, new MockHttpServletResponse()));
+		assertEquals(3, configuration.processCount);
+		assertEquals(3, fv.getOutputCacheSize());
+	}
+
+	public void testOutputCacheReplaysHeadersAndSkipsCookies() throws Exception {
+		FreeMarkerView fv = new FreeMarkerView() {
+			protected void processTemplate(Template template, Map model, HttpServletResponse response)
+					throws IOException, TemplateException {
+				response.setLocale(Locale.GERMAN);
+				response.setHeader("Cache-Control", "max-age=60");
+				if ("personal".equals(model.get("product"))) {
+					response.addCookie(new Cookie("user", "juergen"));
+				}
+				super.processTemplate(template, model, response);
+			}
+		};
+		CountingConfiguration configuration = new CountingConfiguration();
+		fv.setConfiguration(configuration);
+		fv.setUrl("templateName");
+		fv.setOutputCacheSeconds(60);
+		fv.setOutputCacheKeyAttributes(new String[] {"product"});
+
+		Map model = new HashMap();
+		model.put("product", "a");
+		for (int i = 0; i < 2; i++) {
+			MockHttpServletResponse response = new MockHttpServletResponse();
+			assertEquals("Hello a", render(fv, model, response));
+			assertEquals(Locale.GERMAN, response.getLocale());
+			assertEquals("max-age=60", response.getHeader("Cache-Control"));
+		}
+		assertEquals(1, configuration.processCount);
+
+		model.put("product", "personal");
+		for (int i = 0; i < 2; i++) {
+			MockHttpServletResponse response = new MockHttpServletResponse();
+			assertEquals("Hello personal", render(fv, model, response));
+			assertEquals(1, response.getCookies().length);
+		}
+		assertEquals(3, configuration.processCount);
+		assertEquals(1, fv.getOutputCacheSize());
+	}
+
+	private String render(FreeMarkerView fv, Map model, MockHttpServletResponse response) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/product.html");
+		request.addPreferredLocale(Locale.US);
+		request.setAttribute(DispatcherServlet.LOCALE_RESOLVER_ATTRIBUTE, new AcceptHeaderLocaleResolver());
+		fv.render(new HashMap(model), request, response);
+		return response.getContentAsString();
+	}
+
+	private String renderCached(FreeMarkerView fv, String product, String page, String method, Locale locale)
+			throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest(method, "/product.html");
+		request.addPreferredLocale(locale);
+		request.setAttribute(DispatcherServlet.LOCALE_RESOLVER_ATTRIBUTE, new AcceptHeaderLocaleResolver());
+		if (page != null) {
+			request.addParameter("page", page);
+		}
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		Map model = new HashMap();
+		model.put("product", product);
+		fv.render(model, request, response);
+		assertEquals("text/html; charset=ISO-8859-1", response.getContentType());
+		return response.getContentAsString();
+	}
+
+
+	private static class CountingConfiguration extends Configuration {
+
+		private int processCount = 0;
+
+		public Template getTemplate(String name, Locale locale) throws IOException {
+			return new Template(name, new StringReader("Hello ${product}"), this) {
+				public void process(Object model, Writer writer) throws TemplateException, IOException {
+					processCount++;
+					super.process(model, writer);
+				}
+			};
+		}
+	}
+
+
 	private class TestConfiguration extends Configuration {
 
 		public Template getTemplate(String name, final Locale locale) throws IOException {
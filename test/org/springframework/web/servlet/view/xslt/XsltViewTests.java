@@ -0,0 +1,241 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.servlet.view.xslt;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+
+import junit.framework.TestCase;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.web.context.support.StaticWebApplicationContext;
+
+/**
+ * @author agent
+ * @since 1.1.2
+ */
+public class XsltViewTests extends TestCase {
+
+	private File stylesheet;
+
+	protected void setUp() throws IOException {
+		this.stylesheet = File.createTempFile("XsltViewTests", ".xsl");
+		writeStylesheet("Hello");
+	}
+
+	protected void tearDown() {
+		this.stylesheet.delete();
+	}
+
+	private void writeStylesheet(String greeting) throws IOException {
+		FileWriter writer = new FileWriter(this.stylesheet);
+		writer.write("<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">" +
+				"<xsl:output method=\"text\"/><xsl:param name=\"suffix\"/>" +
+				"<xsl:template match=\"/\">" + greeting + " <xsl:value-of select=\"//name\"/>" +
+				"<xsl:value-of select=\"$suffix\"/></xsl:template></xsl:stylesheet>");
+		writer.close();
+	}
+
+	private String render(AbstractXsltView view, Map model) throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		view.render(model, new MockHttpServletRequest(), response);
+		return response.getContentAsString();
+	}
+
+	private void initView(AbstractXsltView view) {
+		StaticWebApplicationContext wac = new StaticWebApplicationContext();
+		wac.setServletContext(new MockServletContext());
+		view.setStylesheetLocation(new FileSystemResource(this.stylesheet));
+		view.setApplicationContext(wac);
+	}
+
+	public void testDomNodeIsTransformed() throws Exception {
+		DomXsltView view = new DomXsltView();
+		initView(view);
+		Map model = new HashMap();
+		model.put("name", "Juergen");
+		model.put("other", "value");
+		assertEquals("Hello Juergen", render(view, model));
+	}
+
+	public void testDomNodeGoesThroughNodeTransformHook() throws Exception {
+		final Node[] transformedNodes = new Node[1];
+		DomXsltView view = new DomXsltView() {
+			protected void doTransform(Node dom, Map parameters, Result result, String encoding) throws Exception {
+				transformedNodes[0] = dom;
+				super.doTransform(dom, parameters, result, encoding);
+			}
+		};
+		initView(view);
+		assertEquals("Hello Juergen", render(view, Collections.singletonMap("name", "Juergen")));
+		assertNotNull(transformedNodes[0]);
+	}
+
+	public void testStreamingSourceIsTransformed() throws Exception {
+		StreamingXsltView view = new StreamingXsltView();
+		initView(view);
+		assertEquals("Hello Rod", render(view, Collections.singletonMap("name", "Rod")));
+		assertFalse("Must not have built a DOM", view.domCreated);
+	}
+
+	public void testSingleSourceInModel() throws Exception {
+		DomXsltView view = new DomXsltView();
+		initView(view);
+		Source source = new StreamSource(new StringReader("<doc><name>Colin</name></doc>"));
+		assertEquals("Hello Colin", render(view, Collections.singletonMap("doc", source)));
+	}
+
+	public void testTransformersArePooledAndReset() throws Exception {
+		StreamingXsltView view = new StreamingXsltView();
+		view.parameters = Collections.singletonMap("suffix", "!");
+		view.setTransformerPoolSize(1);
+		initView(view);
+		assertEquals(0, view.getPooledTransformerCount());
+		assertEquals("Hello Rod!", render(view, Collections.singletonMap("name", "Rod")));
+		assertEquals(1, view.getPooledTransformerCount());
+		view.parameters = null;
+		assertEquals("Hello Rod", render(view, Collections.singletonMap("name", "Rod")));
+		assertEquals(1, view.getPooledTransformerCount());
+	}
+
+	public void testNoPooling() throws Exception {
+		StreamingXsltView view = new StreamingXsltView();
+		view.setTransformerPoolSize(0);
+		initView(view);
+		assertEquals("Hello Rod", render(view, Collections.singletonMap("name", "Rod")));
+		assertEquals(0, view.getPooledTransformerCount());
+	}
+
+	public void testStylesheetIsReloadedWhenModified() throws Exception {
+		StreamingXsltView view = new StreamingXsltView();
+		view.setRefreshSeconds(0);
+		initView(view);
+		assertEquals("Hello Rod", render(view, Collections.singletonMap("name", "Rod")));
+		assertEquals(1, view.getPooledTransformerCount());
+
+		writeStylesheet("Goodbye");
+		this.stylesheet.setLastModified(this.stylesheet.lastModified() + 5000);
+		assertEquals("Goodbye Rod", render(view, Collections.singletonMap("name", "Rod")));
+		assertEquals(1, view.getPooledTransformerCount());
+	}
+
+	public void testStylesheetIsNotReloadedByDefault() throws Exception {
+		StreamingXsltView view = new StreamingXsltView();
+		initView(view);
+		assertEquals("Hello Rod", render(view, Collections.singletonMap("name", "Rod")));
+		writeStylesheet("Goodbye");
+		this.stylesheet.setLastModified(this.stylesheet.lastModified() + 5000);
+		assertEquals("Hello Rod", render(view, Collections.singletonMap("name", "Rod")));
+	}
+
+	public void testConcurrentRendering() throws Exception {
+		final StreamingXsltView view = new StreamingXsltView();
+		view.setTransformerPoolSize(2);
+		initView(view);
+		final int[] failures = new int[1];
+		Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++) {
+			final String name = "name" + i;
+			threads[i] = new Thread() {
+				public void run() {
+					try {
+						for (int n = 0; n < 50; n++) {
+							if (!("Hello " + name).equals(render(view, Collections.singletonMap("name", name)))) {
+								synchronized (failures) {
+									failures[0]++;
+								}
+							}
+						}
+					}
+					catch (Exception ex) {
+						synchronized (failures) {
+							failures[0]++;
+						}
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].join();
+		}
+		assertEquals(0, failures[0]);
+		assertTrue(view.getPooledTransformerCount() <= 2);
+	}
+
+
+	private static class DomXsltView extends AbstractXsltView {
+
+		protected Node createDomNode(
+				Map model, String root, HttpServletRequest request, HttpServletResponse response)
+				throws Exception {
+			Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+			Element rootElement = doc.createElement(root);
+			doc.appendChild(rootElement);
+			for (Iterator it = model.entrySet().iterator(); it.hasNext();) {
+				Map.Entry entry = (Map.Entry) it.next();
+				Element element = doc.createElement((String) entry.getKey());
+				element.appendChild(doc.createTextNode((String) entry.getValue()));
+				rootElement.appendChild(element);
+			}
+			return doc;
+		}
+	}
+
+
+	private static class StreamingXsltView extends AbstractXsltView {
+
+		private boolean domCreated = false;
+
+		private Map parameters;
+
+		protected Source createXsltSource(
+				Map model, String root, HttpServletRequest request, HttpServletResponse response) {
+			return new StreamSource(new StringReader("<" + root + "><name>" + model.get("name") + "</name></" + root + ">"));
+		}
+
+		protected Node createDomNode(
+				Map model, String root, HttpServletRequest request, HttpServletResponse response) {
+			this.domCreated = true;
+			return null;
+		}
+
+		protected Map getParameters() {
+			return this.parameters;
+		}
+	}
+
+}
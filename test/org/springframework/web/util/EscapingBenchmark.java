@@ -0,0 +1,178 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.util;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.springframework.util.StopWatch;
+
+/**
+ * Benchmark for HtmlUtils.htmlEscape and JavaScriptUtils.javaScriptEscape
+ * against the escaping algorithms of Spring 1.1.1, for typical form field
+ * values and messages that mostly do not contain special characters.
+ * Each variant is run for a number of warm-up iterations first, followed
+ * by measured iterations that report the average time per iteration.
+ * Not a unit test, as wall-clock timings depend on the machine:
+ * Run it via its main method, optionally passing the number of
+ * passes over the values per iteration.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see HtmlUtilsTestSuite
+ * @see JavaScriptUtilsTestSuite
+ */
+public class EscapingBenchmark {
+
+	private static final int WARMUP_ITERATIONS = 5;
+
+	private static final int MEASURED_ITERATIONS = 5;
+
+	private static final String[] VALUES = new String[] {
+		"John", "Doe", "john.doe@example.com", "42", "Main Street 12", "Please enter a valid date",
+		"Price must be > 0", "Smith & Sons", "\"quoted\"", "M\u00fcnchen", "It's done", "line1\r\nline2"};
+
+	/** Sum of the result lengths, so that the JIT cannot drop the escaping */
+	private static long resultLength;
+
+
+	public static void main(String[] args) throws IOException {
+		int passes = (args.length > 0 ? Integer.parseInt(args[0]) : 100000);
+		for (int i = 0; i < VALUES.length; i++) {
+			StringWriter out = new StringWriter();
+			HtmlUtils.htmlEscape(VALUES[i], out);
+			if (!HtmlUtilsTestSuite.previousHtmlEscape(VALUES[i]).equals(HtmlUtils.htmlEscape(VALUES[i])) ||
+					!HtmlUtils.htmlEscape(VALUES[i]).equals(out.toString())) {
+				throw new IllegalStateException("Different htmlEscape results for [" + VALUES[i] + "]");
+			}
+			out = new StringWriter();
+			JavaScriptUtils.javaScriptEscape(VALUES[i], out);
+			if (!previousJavaScriptEscape(VALUES[i]).equals(JavaScriptUtils.javaScriptEscape(VALUES[i])) ||
+					!JavaScriptUtils.javaScriptEscape(VALUES[i]).equals(out.toString())) {
+				throw new IllegalStateException("Different javaScriptEscape results for [" + VALUES[i] + "]");
+			}
+		}
+
+		run("htmlEscape (1.1.1)", passes, new Variant() {
+			public void escape(String value, StringWriter out) {
+				resultLength += HtmlUtilsTestSuite.previousHtmlEscape(value).length();
+			}
+		});
+		run("HtmlUtils.htmlEscape to String", passes, new Variant() {
+			public void escape(String value, StringWriter out) {
+				resultLength += HtmlUtils.htmlEscape(value).length();
+			}
+		});
+		run("HtmlUtils.htmlEscape to Writer", passes, new Variant() {
+			public void escape(String value, StringWriter out) throws IOException {
+				HtmlUtils.htmlEscape(value, out);
+			}
+		});
+		run("javaScriptEscape (1.1.1)", passes, new Variant() {
+			public void escape(String value, StringWriter out) {
+				resultLength += previousJavaScriptEscape(value).length();
+			}
+		});
+		run("JavaScriptUtils.javaScriptEscape to String", passes, new Variant() {
+			public void escape(String value, StringWriter out) {
+				resultLength += JavaScriptUtils.javaScriptEscape(value).length();
+			}
+		});
+		run("JavaScriptUtils.javaScriptEscape to Writer", passes, new Variant() {
+			public void escape(String value, StringWriter out) throws IOException {
+				JavaScriptUtils.javaScriptEscape(value, out);
+			}
+		});
+	}
+
+	private static void run(String name, int passes, Variant variant) throws IOException {
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			iterate(passes, variant);
+		}
+		StopWatch sw = new StopWatch(name);
+		for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+			sw.start("iteration " + (i + 1));
+			iterate(passes, variant);
+			sw.stop();
+		}
+		System.out.println(name + ": " + (sw.getTotalTimeMillis() / MEASURED_ITERATIONS) + " ms per " +
+				passes + " passes over " + VALUES.length + " values (average of " + MEASURED_ITERATIONS +
+				" iterations after " + WARMUP_ITERATIONS + " warm-up iterations)");
+	}
+
+	private static void iterate(int passes, Variant variant) throws IOException {
+		StringWriter out = new StringWriter(1024);
+		for (int n = 0; n < passes; n++) {
+			out.getBuffer().setLength(0);
+			for (int i = 0; i < VALUES.length; i++) {
+				variant.escape(VALUES[i], out);
+			}
+			resultLength += out.getBuffer().length();
+		}
+	}
+
+	/**
+	 * The javaScriptEscape algorithm of Spring 1.1.1,
+	 * which copied every value into a new StringBuffer.
+	 */
+	private static String previousJavaScriptEscape(String input) {
+		StringBuffer filtered = new StringBuffer(input.length());
+		char prevChar = '\u0000';
+		char c;
+		for (int i = 0; i < input.length(); i++) {
+			c = input.charAt(i);
+			if (c == '"') {
+				filtered.append("\\\"");
+			}
+			else if (c == '\'') {
+				filtered.append("\\'");
+			}
+			else if (c == '\\') {
+				filtered.append("\\\\");
+			}
+			else if (c == '\t') {
+				filtered.append("\\t");
+			}
+			else if (c == '\n') {
+				if (prevChar != '\r') {
+					filtered.append("\\n");
+				}
+			}
+			else if (c == '\r') {
+				filtered.append("\\n");
+			}
+			else if (c == '\f') {
+				filtered.append("\\f");
+			}
+			else {
+				filtered.append(c);
+			}
+			prevChar = c;
+		}
+		return filtered.toString();
+	}
+
+
+	/**
+	 * Escaping variant to measure.
+	 */
+	private interface Variant {
+
+		void escape(String value, StringWriter out) throws IOException;
+	}
+
+}
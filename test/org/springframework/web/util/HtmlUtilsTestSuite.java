@@ -6,6 +6,8 @@
  */
 package org.springframework.web.util;
 
+import java.io.StringWriter;
+
 import junit.framework.TestCase;
 
 /**
@@ -46,4 +48,81 @@ public class HtmlUtilsTestSuite extends TestCase {
 		
 	}
 
+	public void testHtmlEscapeReturnsCleanInputAsIs() {
+		String clean = "John Doe, 42 Main Street";
+		assertSame(clean, HtmlUtils.htmlEscape(clean));
+		assertSame(clean, HtmlUtils.htmlUnescape(clean));
+		assertNull(HtmlUtils.htmlEscape(null));
+		assertNull(HtmlUtils.htmlUnescape(null));
+	}
+
+	public void testHtmlEscapeSpecialCharacters() {
+		assertEquals("a &#60;b&#62; &#38; &#34;c&#34;", HtmlUtils.htmlEscape("a <b> & \"c\""));
+		assertEquals("&#252;ber &#8364;5 &#9829;", HtmlUtils.htmlEscape("\u00fcber \u20ac5 \u2665"));
+		assertEquals("'=?\u4e00", HtmlUtils.htmlEscape("'=?\u4e00"));
+	}
+
+	public void testHtmlEscapeToWriter() throws Exception {
+		StringWriter out = new StringWriter();
+		HtmlUtils.htmlEscape("<a href=\"x\">", out);
+		HtmlUtils.htmlEscape(null, out);
+		HtmlUtils.htmlEscape("clean", out);
+		assertEquals("&#60;a href=&#34;x&#34;&#62;clean", out.toString());
+	}
+
+	public void testHtmlUnescapeReferences() throws Exception {
+		assertEquals("<>&\"\u00e5\u00e5D", HtmlUtils.htmlUnescape("&lt;&gt;&amp;&quot;&aring;&#xE5;&#68;"));
+		assertEquals("\u00c6\u00e6\u2666", HtmlUtils.htmlUnescape("&AElig;&aelig;&diams;"));
+		assertEquals("a & b", HtmlUtils.htmlUnescape("a & b"));
+		assertEquals("&unknown; &;", HtmlUtils.htmlUnescape("&unknown; &;"));
+		assertEquals("&#zz;", HtmlUtils.htmlUnescape("&#zz;"));
+		assertEquals("x&", HtmlUtils.htmlUnescape("x&"));
+		StringWriter out = new StringWriter();
+		HtmlUtils.htmlUnescape("&lt;b&gt;", out);
+		assertEquals("<b>", out.toString());
+	}
+
+	public void testHtmlEscapeRoundtrip() {
+		StringBuffer all = new StringBuffer();
+		for (char c = 0; c < 10000; c++) {
+			all.append(c);
+		}
+		assertEquals(all.toString(), HtmlUtils.htmlUnescape(HtmlUtils.htmlEscape(all.toString())));
+	}
+
+	public void testHtmlEscapeMatchesPreviousImplementation() throws Exception {
+		// typical form field values and messages, mostly without special characters
+		String[] values = new String[] {"John", "Doe", "john.doe@example.com", "42", "Main Street 12",
+				"Please enter a valid date", "Price must be > 0", "Smith & Sons", "\"quoted\"", "M\u00fcnchen"};
+		for (int i = 0; i < values.length; i++) {
+			StringWriter out = new StringWriter();
+			HtmlUtils.htmlEscape(values[i], out);
+			assertEquals(previousHtmlEscape(values[i]), HtmlUtils.htmlEscape(values[i]));
+			assertEquals(previousHtmlEscape(values[i]), out.toString());
+		}
+	}
+
+	/**
+	 * The htmlEscape algorithm of Spring 1.1.1, which copied every value
+	 * into a new StringBuffer. Reduced to characters up to 255: The checks
+	 * for higher characters are not reached by the test and benchmark values.
+	 */
+	static String previousHtmlEscape(String input) {
+		StringBuffer escaped = new StringBuffer(input.length());
+		for (int i = 0; i < input.length(); i++) {
+			char c = input.charAt(i);
+			if ((c >= 0 && c <= 33) || (c >= 35 && c <= 37) || (c >= 39 && c <= 59) ||
+					(c == 61) || (c >= 63 && c <= 159)) {
+				escaped.append(c);
+				continue;
+			}
+			if (c == 34 || c == 38 || c == 60 || c == 62 || (c >= 160 && c <= 255)) {
+				escaped.append("&#").append((int) c).append(';');
+				continue;
+			}
+			escaped.append(c);
+		}
+		return escaped.toString();
+	}
+
 }
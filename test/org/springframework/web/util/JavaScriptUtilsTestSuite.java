@@ -0,0 +1,47 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.util;
+
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+/**
+ * @author agent
+ * @since 1.1.2
+ */
+public class JavaScriptUtilsTestSuite extends TestCase {
+
+	public void testJavaScriptEscape() {
+		assertEquals("it\\'s \\\"quoted\\\"\\n\\t\\\\", JavaScriptUtils.javaScriptEscape("it's \"quoted\"\n\t\\"));
+		assertEquals("a\\nb\\nc\\f", JavaScriptUtils.javaScriptEscape("a\r\nb\rc\f"));
+		assertNull(JavaScriptUtils.javaScriptEscape(null));
+	}
+
+	public void testJavaScriptEscapeReturnsCleanInputAsIs() {
+		String clean = "Please enter a valid date.";
+		assertSame(clean, JavaScriptUtils.javaScriptEscape(clean));
+	}
+
+	public void testJavaScriptEscapeToWriter() throws Exception {
+		StringWriter out = new StringWriter();
+		JavaScriptUtils.javaScriptEscape("line1\r\nline2 'x'", out);
+		JavaScriptUtils.javaScriptEscape(null, out);
+		assertEquals("line1\\nline2 \\'x\\'", out.toString());
+	}
+
+}